@@ -0,0 +1,75 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end findClosestDrivers on a synthetic city, including the share of busy
+ * drivers the matching path has to skip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverMatchingBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    private int drivers;
+
+    @Param({"5", "20"})
+    private int k;
+
+    @Param({"0.3"})
+    private double busyShare;
+
+    private DriverMatchingService matchingService;
+    private double[][] pickups;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42);
+        DriverService driverService = new DriverService();
+        Random random = new Random(42);
+
+        for (Driver driver : city.drivers(drivers)) {
+            driverService.registerDriver(driver);
+            if (random.nextDouble() < busyShare) {
+                driverService.setDriverAvailability(driver.getId(), false);
+            }
+        }
+
+        matchingService = new DriverMatchingService(driverService);
+        pickups = new SyntheticCity(7).pickups(QUERIES);
+    }
+
+    @Benchmark
+    public List<DriverWithDistance> findClosestDrivers() {
+        if (cursor >= QUERIES) {
+            cursor = 0;
+        }
+        double[] pickup = pickups[cursor++];
+
+        return matchingService.findClosestDrivers(pickup[0], pickup[1], k);
+    }
+}
@@ -0,0 +1,79 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geohash encoding and decoding, string and long forms, over city-distributed points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeohashBenchmark {
+    private static final int POINTS = 1024;
+
+    private double[][] points;
+    private String[] hashes;
+    private long[] longHashes;
+
+    @Setup
+    public void setUp() {
+        points = new SyntheticCity(42).pickups(POINTS);
+        hashes = new String[POINTS];
+        longHashes = new long[POINTS];
+
+        for (int i = 0; i < POINTS; i++) {
+            hashes[i] = GeohashUtil.encode(points[i][0], points[i][1]);
+            longHashes[i] = GeohashUtil.encodeLong(points[i][0], points[i][1]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void encode(Blackhole blackhole) {
+        for (double[] point : points) {
+            blackhole.consume(GeohashUtil.encode(point[0], point[1]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void encodeLong(Blackhole blackhole) {
+        for (double[] point : points) {
+            blackhole.consume(GeohashUtil.encodeLong(point[0], point[1]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void decode(Blackhole blackhole) {
+        for (String hash : hashes) {
+            blackhole.consume(GeohashUtil.decode(hash));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void decodeLong(Blackhole blackhole) {
+        for (long hash : longHashes) {
+            blackhole.consume(GeohashUtil.decodeLatitude(hash, GeohashUtil.DEFAULT_PRECISION));
+            blackhole.consume(GeohashUtil.decodeLongitude(hash, GeohashUtil.DEFAULT_PRECISION));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trie operations on a city-sized index, using the concurrent mode DriverService runs in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeohashTrieBenchmark {
+    private static final int PRECISION = GeohashUtil.DEFAULT_PRECISION;
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    private int drivers;
+
+    private Driver[] driverArray;
+    private long[] geohashes;
+    private long[] alternateGeohashes;
+    private GeohashTrie trie;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42);
+        driverArray = city.drivers(drivers);
+        geohashes = new long[drivers];
+        alternateGeohashes = new long[drivers];
+        trie = new GeohashTrie(true);
+
+        double[] point = new double[2];
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = driverArray[i];
+            geohashes[i] = GeohashUtil.encodeLong(driver.getLatitude(), driver.getLongitude(), PRECISION);
+            trie.insert(geohashes[i], PRECISION, driver);
+
+            city.nextLocation(point);
+            alternateGeohashes[i] = GeohashUtil.encodeLong(point[0], point[1], PRECISION);
+        }
+    }
+
+    /**
+     * Search prefixes around pickups drawn from the same distribution as the drivers
+     */
+    @State(Scope.Benchmark)
+    public static class Queries {
+        @Param({"5", "6"})
+        private int searchPrecision;
+
+        private String[] prefixes;
+        private long[] longPrefixes;
+        private int cursor;
+
+        @Setup
+        public void setUp() {
+            double[][] pickups = new SyntheticCity(7).pickups(QUERIES);
+            prefixes = new String[QUERIES];
+            longPrefixes = new long[QUERIES];
+
+            for (int i = 0; i < QUERIES; i++) {
+                prefixes[i] = GeohashUtil.encode(pickups[i][0], pickups[i][1], searchPrecision);
+                longPrefixes[i] = GeohashUtil.encodeLong(pickups[i][0], pickups[i][1], searchPrecision);
+            }
+        }
+
+        int next() {
+            if (cursor >= QUERIES) {
+                cursor = 0;
+            }
+            return cursor++;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public GeohashTrie insertAll() {
+        GeohashTrie fresh = new GeohashTrie(true);
+        for (int i = 0; i < drivers; i++) {
+            fresh.insert(geohashes[i], PRECISION, driverArray[i]);
+        }
+        return fresh;
+    }
+
+    @Benchmark
+    public List<Driver> searchByPrefix(Queries queries) {
+        return trie.searchByPrefix(queries.prefixes[queries.next()]);
+    }
+
+    @Benchmark
+    public List<Driver> searchByLongPrefix(Queries queries) {
+        return trie.searchByPrefix(queries.longPrefixes[queries.next()], queries.searchPrecision);
+    }
+
+    @Benchmark
+    public boolean updateLocation() {
+        if (cursor >= drivers) {
+            cursor = 0;
+        }
+        int i = cursor++;
+
+        // Move the driver to its alternate cell; the next visit moves it back
+        long from = geohashes[i];
+        long to = alternateGeohashes[i];
+        geohashes[i] = to;
+        alternateGeohashes[i] = from;
+
+        return trie.updateLocation(from, to, PRECISION, driverArray[i]);
+    }
+}
@@ -0,0 +1,97 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.util.HaversineDistanceCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a pickup against a block of driver positions, one call per driver and
+ * with the batch kernel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HaversineBenchmark {
+    private static final int POINTS = 1024;
+
+    private double pickupLatitude;
+    private double pickupLongitude;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] cosLatitudes;
+    private double[] distances;
+
+    @Setup
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42);
+        double[][] points = city.pickups(POINTS + 1);
+
+        pickupLatitude = points[POINTS][0];
+        pickupLongitude = points[POINTS][1];
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        cosLatitudes = new double[POINTS];
+        distances = new double[POINTS];
+
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = points[i][0];
+            longitudes[i] = points[i][1];
+            cosLatitudes[i] = Math.cos(Math.toRadians(points[i][0]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double calculateDistance() {
+        double sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += HaversineDistanceCalculator.calculateDistance(
+                    pickupLatitude, pickupLongitude,
+                    latitudes[i], longitudes[i]
+            );
+        }
+        return sum;
+    }
+
+    /**
+     * Batch kernel; vectorized when the JVM runs with --add-modules jdk.incubator.vector
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] calculateDistances() {
+        HaversineDistanceCalculator.calculateDistances(
+                pickupLatitude, pickupLongitude,
+                latitudes, longitudes, POINTS,
+                distances
+        );
+        return distances;
+    }
+
+    /**
+     * Batch kernel with cached latitude cosines, as fed from DriverLocationStore
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] calculateDistancesWithCachedCosines() {
+        HaversineDistanceCalculator.calculateDistances(
+                pickupLatitude, pickupLongitude,
+                latitudes, longitudes, cosLatitudes, POINTS,
+                distances
+        );
+        return distances;
+    }
+}
@@ -0,0 +1,112 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+import com.rideshare.rideshare_backend.service.HotCellCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a ping while the hot-cell cache is full of entries watching the pinging
+ * driver's cell, against the same ping with no cache. Every ping goes through the
+ * cache's listener, which looks the cell up and checks each watching entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotCellCachePingBenchmark {
+    // JFK arrivals area
+    private static final double LATITUDE = 40.6413;
+    private static final double LONGITUDE = -73.7781;
+    private static final int DRIVERS = 2_000;
+    private static final int[] KS = {1, 3, 5, 10};
+    private static final int PINGS = 4096;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private DriverService driverService;
+    private DriverMatchingService matchingService;
+    private double[][] pickups;
+    private Driver[] pinging;
+    private double[][] positions;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        driverService = new DriverService();
+        for (int i = 0; i < DRIVERS; i++) {
+            driverService.registerDriver(new Driver("driver-" + i, "Driver " + i,
+                    LATITUDE + (random.nextDouble() - 0.5) * 0.03,
+                    LONGITUDE + (random.nextDouble() - 0.5) * 0.03));
+        }
+        matchingService = cached
+                ? new DriverMatchingService(driverService, Runnable::run, new HotCellCache())
+                : new DriverMatchingService(driverService);
+
+        // Pickup cells on a grid around the terminals
+        pickups = new double[256][];
+        for (int i = 0; i < pickups.length; i++) {
+            pickups[i] = new double[]{LATITUDE + (i / 16 - 8) * 0.0014, LONGITUDE + (i % 16 - 8) * 0.0014};
+        }
+
+        // Drivers near the middle jitter by a meter or two, staying inside every circle
+        pinging = new Driver[PINGS];
+        positions = new double[PINGS][];
+        for (int i = 0; i < PINGS; i++) {
+            pinging[i] = driverService.getDriverById("driver-" + random.nextInt(DRIVERS)).orElseThrow();
+            positions[i] = new double[]{pinging[i].getLatitude() + (random.nextDouble() - 0.5) * 0.00002,
+                    pinging[i].getLongitude() + (random.nextDouble() - 0.5) * 0.00002};
+        }
+    }
+
+    /**
+     * Fill the cache again: invalidations during an iteration drain it
+     */
+    @Setup(Level.Iteration)
+    public void fillCache() {
+        for (int round = 0; round < 2; round++) {
+            for (double[] pickup : pickups) {
+                for (int k : KS) {
+                    matchingService.findClosestDrivers(pickup[0], pickup[1], k);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Driver ping() {
+        if (cursor >= PINGS) {
+            cursor = 0;
+        }
+        int i = cursor++;
+
+        // Alternate between the two positions so the driver keeps moving
+        Driver driver = pinging[i];
+        double[] position = positions[i];
+        double latitude = driver.getLatitude();
+        double longitude = driver.getLongitude();
+        Driver moved = driverService.updateDriverLocation(driver.getId(), position[0], position[1]);
+        position[0] = latitude;
+        position[1] = longitude;
+        return moved;
+    }
+}
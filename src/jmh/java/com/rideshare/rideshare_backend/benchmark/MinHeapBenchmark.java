@@ -0,0 +1,68 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.datastructure.MinHeap;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MinHeap insert and extract over pre-built candidates, so only heap work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinHeapBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private DriverWithDistance[] candidates;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        candidates = new DriverWithDistance[size];
+
+        for (int i = 0; i < size; i++) {
+            Driver driver = new Driver("driver-" + i, "Driver " + i, 0, 0);
+            candidates[i] = new DriverWithDistance(driver, random.nextDouble() * 80.0);
+        }
+    }
+
+    @Benchmark
+    public MinHeap<DriverWithDistance> insertAll() {
+        MinHeap<DriverWithDistance> heap = new MinHeap<>();
+        for (DriverWithDistance candidate : candidates) {
+            heap.insert(candidate);
+        }
+        return heap;
+    }
+
+    @Benchmark
+    public void insertAndExtractAll(Blackhole blackhole) {
+        MinHeap<DriverWithDistance> heap = new MinHeap<>();
+        for (DriverWithDistance candidate : candidates) {
+            heap.insert(candidate);
+        }
+
+        while (!heap.isEmpty()) {
+            blackhole.consume(heap.extractMin());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.controller.RideController;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Rendering a /api/rides/request response to JSON: the typed records RideController
+ * returns against the per-driver HashMap and String.format rendering they replaced.
+ * Run with -prof gc to compare allocation per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RideResponseBenchmark {
+    @Param({"5", "20"})
+    private int k;
+
+    private JsonMapper mapper;
+    private List<DriverWithDistance> closestDrivers;
+
+    @Setup
+    public void setUp() {
+        mapper = JsonMapper.builder().build();
+        Random random = new Random(42);
+        closestDrivers = new ArrayList<>(k);
+
+        for (int i = 0; i < k; i++) {
+            Driver driver = new Driver("driver-" + i, "Driver " + i,
+                    40.7 + random.nextDouble() * 0.05, -74.0 + random.nextDouble() * 0.05);
+            closestDrivers.add(new DriverWithDistance(driver, 0.3 + i * 0.4));
+        }
+    }
+
+    @Benchmark
+    public byte[] records() {
+        return mapper.writeValueAsBytes(RideController.RideResponse.of("rider-1", 40.7128, -74.0060, closestDrivers));
+    }
+
+    /**
+     * The rendering RideController used before the response records
+     */
+    @Benchmark
+    public byte[] maps() {
+        List<Map<String, Object>> driverInfo = closestDrivers.stream()
+                .map(dwd -> {
+                    Map<String, Object> info = new HashMap<>();
+                    info.put("driverId", dwd.getDriver().getId());
+                    info.put("driverName", dwd.getDriver().getName());
+                    info.put("latitude", dwd.getDriver().getLatitude());
+                    info.put("longitude", dwd.getDriver().getLongitude());
+                    info.put("distanceKm", Math.round(dwd.getDistanceKm() * 100.0) / 100.0);
+                    info.put("distanceFormatted", dwd.getDistanceKm() < 1.0
+                            ? String.format("%.0f m", dwd.getDistanceKm() * 1000)
+                            : String.format("%.2f km", dwd.getDistanceKm()));
+                    info.put("estimatedArrivalMinutes", Math.round(dwd.getEstimatedArrivalMinutes()));
+                    info.put("estimatedArrivalFormatted", dwd.getEstimatedArrivalMinutes() < 1.0
+                            ? "< 1 min"
+                            : String.format("%.0f mins", dwd.getEstimatedArrivalMinutes()));
+                    return info;
+                })
+                .collect(Collectors.toList());
+
+        return mapper.writeValueAsBytes(Map.of(
+                "success", true,
+                "message", "Found " + closestDrivers.size() + " nearby driver(s)",
+                "riderId", "rider-1",
+                "pickupLocation", Map.of(
+                        "latitude", 40.7128,
+                        "longitude", -74.0060
+                ),
+                "driversFound", closestDrivers.size(),
+                "nearestDrivers", driverInfo
+        ));
+    }
+}
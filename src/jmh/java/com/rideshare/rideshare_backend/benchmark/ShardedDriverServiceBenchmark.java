@@ -0,0 +1,103 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pings that change cell and ride requests on one city, with the index in one shard
+ * versus split over single-writer shards. Run with several threads, e.g. {@code -t 8},
+ * since sharding only pays off when writers would otherwise contend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedDriverServiceBenchmark {
+    private static final int DRIVERS = 100_000;
+    private static final int QUERIES = 1024;
+
+    @Param({"1", "8"})
+    private int shards;
+
+    private DriverService driverService;
+    private DriverMatchingService matchingService;
+    private Driver[] drivers;
+    private double[][] alternates;
+    private double[][] pickups;
+    private final AtomicInteger nextDriver = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42);
+        driverService = new DriverService(shards, true);
+        drivers = city.drivers(DRIVERS);
+        alternates = new double[DRIVERS][2];
+
+        for (int i = 0; i < DRIVERS; i++) {
+            driverService.registerDriver(drivers[i]);
+            city.nextLocation(alternates[i]);
+        }
+
+        matchingService = new DriverMatchingService(driverService);
+        pickups = new SyntheticCity(7).pickups(QUERIES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        driverService.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    /**
+     * Swap a driver with its alternate position: almost always a different cell, and
+     * often a different shard
+     */
+    @Benchmark
+    public Driver crossCellPing() {
+        int i = Math.floorMod(nextDriver.getAndIncrement(), DRIVERS);
+        Driver driver = drivers[i];
+
+        synchronized (alternates[i]) {
+            double latitude = alternates[i][0];
+            double longitude = alternates[i][1];
+            alternates[i][0] = driver.getLatitude();
+            alternates[i][1] = driver.getLongitude();
+            return driverService.updateDriverLocation(driver.getId(), latitude, longitude);
+        }
+    }
+
+    @Benchmark
+    public List<DriverWithDistance> findClosestDrivers(Cursor cursor) {
+        if (cursor.next >= QUERIES) {
+            cursor.next = 0;
+        }
+        double[] pickup = pickups[cursor.next++];
+
+        return matchingService.findClosestDrivers(pickup[0], pickup[1], 5);
+    }
+}
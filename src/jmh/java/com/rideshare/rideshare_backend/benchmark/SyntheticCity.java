@@ -0,0 +1,79 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.model.Driver;
+
+import java.util.Random;
+
+/**
+ * Synthetic driver distribution shaped like a large city: most drivers cluster
+ * around a few hotspots (downtown, airports, nightlife) and the rest are spread
+ * over the metro area. Same seed, same drivers, so runs are comparable.
+ */
+public final class SyntheticCity {
+    // Centered on Manhattan; the metro area spans roughly 40 x 40 km
+    public static final double CENTER_LATITUDE = 40.7580;
+    public static final double CENTER_LONGITUDE = -73.9855;
+    private static final double METRO_HALF_SPAN_DEGREES = 0.18;
+
+    // {latitude, longitude, spread in degrees, share of drivers}
+    private static final double[][] HOTSPOTS = {
+            {40.7580, -73.9855, 0.015, 0.30},  // Midtown
+            {40.7075, -74.0113, 0.010, 0.15},  // Financial District
+            {40.6413, -73.7781, 0.008, 0.10},  // JFK
+            {40.7769, -73.8740, 0.006, 0.05},  // LaGuardia
+            {40.7163, -73.9571, 0.012, 0.10}   // Williamsburg
+    };
+
+    private final Random random;
+
+    public SyntheticCity(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public Driver[] drivers(int count) {
+        Driver[] drivers = new Driver[count];
+        double[] point = new double[2];
+
+        for (int i = 0; i < count; i++) {
+            nextLocation(point);
+            drivers[i] = new Driver("driver-" + i, "Driver " + i, point[0], point[1]);
+        }
+
+        return drivers;
+    }
+
+    /**
+     * Next location from the driver distribution
+     *
+     * @param out Receives {latitude, longitude}
+     */
+    public void nextLocation(double[] out) {
+        double pick = random.nextDouble();
+
+        for (double[] hotspot : HOTSPOTS) {
+            pick -= hotspot[3];
+            if (pick < 0) {
+                out[0] = hotspot[0] + random.nextGaussian() * hotspot[2];
+                out[1] = hotspot[1] + random.nextGaussian() * hotspot[2];
+                return;
+            }
+        }
+
+        // Remaining share: uniform over the metro area
+        out[0] = CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * METRO_HALF_SPAN_DEGREES;
+        out[1] = CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * METRO_HALF_SPAN_DEGREES;
+    }
+
+    /**
+     * Pickup locations follow the driver distribution, so most queries land in dense areas
+     *
+     * @return count x {latitude, longitude}
+     */
+    public double[][] pickups(int count) {
+        double[][] pickups = new double[count][2];
+        for (int i = 0; i < count; i++) {
+            nextLocation(pickups[i]);
+        }
+        return pickups;
+    }
+}
@@ -0,0 +1,84 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.datastructure.MinHeap;
+import com.rideshare.rideshare_backend.datastructure.TopKSelector;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selecting the K closest of N scored candidates: the unbounded MinHeap that
+ * DriverMatchingService used to fill with one DriverWithDistance per candidate,
+ * against the bounded TopKSelector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKSelectionBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int candidates;
+
+    @Param({"20"})
+    private int k;
+
+    private Driver[] drivers;
+    private double[] distances;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        drivers = new Driver[candidates];
+        distances = new double[candidates];
+
+        for (int i = 0; i < candidates; i++) {
+            drivers[i] = new Driver("driver-" + i, "Driver " + i, 0, 0);
+            distances[i] = random.nextDouble() * 80.0;
+        }
+    }
+
+    @Benchmark
+    public List<DriverWithDistance> unboundedMinHeap() {
+        MinHeap<DriverWithDistance> heap = new MinHeap<>();
+
+        for (int i = 0; i < candidates; i++) {
+            heap.insert(new DriverWithDistance(drivers[i], distances[i]));
+        }
+
+        List<DriverWithDistance> result = new ArrayList<>();
+        for (int i = 0; i < k && !heap.isEmpty(); i++) {
+            result.add(heap.extractMin());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<DriverWithDistance> boundedTopK() {
+        TopKSelector<Driver> selector = new TopKSelector<>(k);
+
+        for (int i = 0; i < candidates; i++) {
+            selector.offer(distances[i], drivers[i]);
+        }
+
+        List<DriverWithDistance> result = new ArrayList<>(selector.size());
+        selector.drainSorted((driver, distance) -> result.add(new DriverWithDistance(driver, distance)));
+        return result;
+    }
+}
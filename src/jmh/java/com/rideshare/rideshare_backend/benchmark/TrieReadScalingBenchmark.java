@@ -0,0 +1,115 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
+import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Neighborhood scans while a background thread keeps moving drivers between cells,
+ * with readers locking stripes versus reading copy-on-write snapshots.
+ *
+ * Run with increasing reader counts to see how reads scale, leaving a core for the
+ * writer, e.g. {@code -t 1}, {@code -t 4}, {@code -t 8}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieReadScalingBenchmark {
+    private static final int PRECISION = GeohashUtil.DEFAULT_PRECISION;
+    private static final int DRIVERS = 100_000;
+    private static final int QUERIES = 1024;
+
+    @Param({"false", "true"})
+    private boolean copyOnWrite;
+
+    private GeohashTrie trie;
+    private long[][] neighborhoods;
+    private Thread writer;
+    private volatile boolean writing;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42);
+        Driver[] drivers = city.drivers(DRIVERS);
+        long[] geohashes = new long[DRIVERS];
+        long[] alternates = new long[DRIVERS];
+        trie = new GeohashTrie(new DriverLocationStore(), true, copyOnWrite);
+
+        double[] point = new double[2];
+        for (int i = 0; i < DRIVERS; i++) {
+            geohashes[i] = GeohashUtil.encodeLong(drivers[i].getLatitude(), drivers[i].getLongitude(), PRECISION);
+            trie.insert(geohashes[i], PRECISION, drivers[i]);
+
+            city.nextLocation(point);
+            alternates[i] = GeohashUtil.encodeLong(point[0], point[1], PRECISION);
+        }
+
+        double[][] pickups = new SyntheticCity(7).pickups(QUERIES);
+        neighborhoods = new long[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            long center = GeohashUtil.encodeLong(pickups[i][0], pickups[i][1], PRECISION);
+            neighborhoods[i] = GeohashUtil.getNeighborhood(center, PRECISION);
+        }
+
+        // Pings that cross a cell boundary, back to back
+        writing = true;
+        writer = new Thread(() -> {
+            int i = 0;
+            while (writing) {
+                long from = geohashes[i];
+                geohashes[i] = alternates[i];
+                alternates[i] = from;
+                trie.updateLocation(from, geohashes[i], PRECISION, drivers[i]);
+                i = i + 1 == DRIVERS ? 0 : i + 1;
+            }
+        }, "trie-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        writing = false;
+        writer.join();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+        private int found;
+
+        long[] next(long[][] neighborhoods) {
+            if (next == neighborhoods.length) {
+                next = 0;
+            }
+            return neighborhoods[next++];
+        }
+    }
+
+    @Benchmark
+    public int scanNeighborhood(Cursor cursor) {
+        long[] cells = cursor.next(neighborhoods);
+        cursor.found = 0;
+        trie.forEachAvailableSlotInPrefixes(cells, cells.length, PRECISION, slot -> cursor.found++);
+        return cursor.found;
+    }
+}
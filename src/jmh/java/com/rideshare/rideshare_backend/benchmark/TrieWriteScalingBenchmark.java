@@ -0,0 +1,99 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
+import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves between cells of one metro area from several writer threads at once, each
+ * moving its own drivers. All of them used to queue on the one lock of the metro's
+ * top-level cell; with precision-4 stripes they mostly take different locks.
+ *
+ * Run with increasing thread counts, e.g. {@code -t 1}, {@code -t 4}, {@code -t 8}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrieWriteScalingBenchmark {
+    private static final int PRECISION = GeohashUtil.DEFAULT_PRECISION;
+    private static final int DRIVERS = 100_000;
+    private static final int MAX_THREADS = 64;
+
+    @Param({"false", "true"})
+    private boolean copyOnWrite;
+
+    private GeohashTrie trie;
+    private Driver[] drivers;
+    private long[] geohashes;
+    private long[] alternates;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCity city = new SyntheticCity(42);
+        drivers = city.drivers(DRIVERS);
+        geohashes = new long[DRIVERS];
+        alternates = new long[DRIVERS];
+        trie = new GeohashTrie(new DriverLocationStore(), true, copyOnWrite);
+
+        double[] point = new double[2];
+        for (int i = 0; i < DRIVERS; i++) {
+            geohashes[i] = GeohashUtil.encodeLong(drivers[i].getLatitude(), drivers[i].getLongitude(), PRECISION);
+            trie.insert(geohashes[i], PRECISION, drivers[i]);
+
+            city.nextLocation(point);
+            alternates[i] = GeohashUtil.encodeLong(point[0], point[1], PRECISION);
+        }
+    }
+
+    /**
+     * Each thread moves every MAX_THREADS-th driver from its own offset, so no two
+     * threads move the same driver
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        private int next = -1;
+        private int offset;
+
+        int next(TrieWriteScalingBenchmark benchmark) {
+            if (next < 0) {
+                offset = benchmark.threads.getAndIncrement() % MAX_THREADS;
+                next = offset;
+            }
+            int driver = next;
+            next += MAX_THREADS;
+            if (next >= DRIVERS) {
+                next = offset;
+            }
+            return driver;
+        }
+    }
+
+    @Benchmark
+    public boolean moveAcrossCells(Writer writer) {
+        int i = writer.next(this);
+        long from = geohashes[i];
+        geohashes[i] = alternates[i];
+        alternates[i] = from;
+        return trie.updateLocation(from, geohashes[i], PRECISION, drivers[i]);
+    }
+}
@@ -0,0 +1,148 @@
+package com.rideshare.rideshare_backend.benchmark;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Request handling on Tomcat's default platform pool versus one virtual thread per request.
+ *
+ * Each invocation is a burst of requests, mostly location pings with some ride requests,
+ * each blocking briefly the way a request blocks on socket writes or downstream calls.
+ * The score is time per request; ping latency from submission to completion is kept per
+ * iteration and its p50/p99 printed on teardown, since pings queueing behind ride requests
+ * is what the virtual-thread mode is meant to fix.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebTierThreadingBenchmark {
+    private static final int BURST = 2000;
+    private static final int DRIVERS = 10000;
+    // Tomcat's default server.tomcat.threads.max
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"0.05"})
+    private double rideShare;
+
+    @Param({"1000"})
+    private long blockingMicros;
+
+    private ExecutorService executor;
+    private DriverService driverService;
+    private DriverMatchingService matchingService;
+    private Driver[] drivers;
+    private double[][] locations;
+    private double[][] pickups;
+    private boolean[] isRide;
+
+    private long[] pingLatencies;
+    private int pingLatencyCount;
+
+    @Setup
+    public void setUp() {
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+
+        SyntheticCity city = new SyntheticCity(42);
+        driverService = new DriverService();
+        drivers = city.drivers(DRIVERS);
+        for (Driver driver : drivers) {
+            driverService.registerDriver(driver);
+        }
+        matchingService = new DriverMatchingService(driverService);
+
+        locations = new SyntheticCity(11).pickups(BURST);
+        pickups = new SyntheticCity(7).pickups(BURST);
+        isRide = new boolean[BURST];
+        // Spread ride requests evenly through the burst so pings queue behind them
+        int every = Math.max(1, (int) Math.round(1.0 / rideShare));
+        for (int i = 0; i < BURST; i += every) {
+            isRide[i] = true;
+        }
+
+        pingLatencies = new long[BURST * 64];
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPingLatency() {
+        if (pingLatencyCount == 0) {
+            return;
+        }
+
+        long[] sorted = Arrays.copyOf(pingLatencies, pingLatencyCount);
+        Arrays.sort(sorted);
+        System.out.printf("%n  ping latency (%s): p50 %d us, p99 %d us%n",
+                threads,
+                sorted[sorted.length / 2] / 1000,
+                sorted[(int) (sorted.length * 0.99)] / 1000);
+        pingLatencyCount = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        long[] submitted = new long[BURST];
+        long[] completed = new long[BURST];
+
+        for (int i = 0; i < BURST; i++) {
+            int request = i;
+            submitted[i] = System.nanoTime();
+            executor.execute(() -> {
+                if (isRide[request]) {
+                    matchingService.findClosestDrivers(pickups[request][0], pickups[request][1], 5);
+                } else {
+                    Driver driver = drivers[request % DRIVERS];
+                    driverService.updateDriverLocation(driver.getId(),
+                            locations[request][0], locations[request][1]);
+                }
+                // Blocking I/O the handler thread waits on
+                LockSupport.parkNanos(blockingMicros * 1000);
+                completed[request] = System.nanoTime();
+                done.countDown();
+            });
+        }
+
+        done.await();
+
+        for (int i = 0; i < BURST; i++) {
+            if (!isRide[i] && pingLatencyCount < pingLatencies.length) {
+                pingLatencies[pingLatencyCount++] = completed[i] - submitted[i];
+            }
+        }
+    }
+}
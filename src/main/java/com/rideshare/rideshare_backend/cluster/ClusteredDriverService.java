@@ -0,0 +1,290 @@
+package com.rideshare.rideshare_backend.cluster;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.rideshare.rideshare_backend.util.HaversineDistanceCalculator.EARTH_RADIUS_KM;
+
+/**
+ * Driver service over several nodes, each running its own DriverService for the
+ * geohash prefixes a ConsistentHashRing assigns to it.
+ *
+ * A driver lives on the node owning its prefix at the partition precision. Writes go to
+ * that node only. A ping into a prefix of another node hands the driver off: it is
+ * removed from the old node and registered on the new one with the same id, name and
+ * availability. Queries scatter to every node owning a prefix they may cover and gather
+ * the answers, so a pickup near a partition edge still sees drivers on both sides.
+ *
+ * This service keeps the directory of which node holds each driver and serializes the
+ * writes to one driver, so all writes must come through one instance of it (e.g. the
+ * ingest gateway). During a handoff the driver is on neither node for one round trip
+ * and queries do not see it. If the new node refuses the driver, it is registered on
+ * the old node again at its old position and the error is rethrown.
+ */
+public class ClusteredDriverService {
+    /**
+     * Precision-3 prefixes (about 156 x 156 km) keep a metro area and its search radius
+     * on one or a few nodes while still spreading a country over many
+     */
+    public static final int DEFAULT_PARTITION_PRECISION = 3;
+
+    private static final double MAX_SEARCH_RADIUS_KM = 50.0;
+    private static final int DEFAULT_MAX_DRIVERS = 5;
+    // Length of a degree of latitude, and of longitude at the equator, on the sphere the
+    // nodes measure distances on. An ellipsoid's figures would make the covered box
+    // narrower than the circle.
+    private static final double KM_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_KM;
+    private static final int LOCK_STRIPES = 64;
+
+    private final ConsistentHashRing ring;
+    private final NodeTransport transport;
+    private final int partitionPrecision;
+    private final Map<String, String> nodeByDriver = new ConcurrentHashMap<>();
+    private final Object[] driverLocks = new Object[LOCK_STRIPES];
+
+    public ClusteredDriverService(ConsistentHashRing ring, NodeTransport transport) {
+        this(ring, transport, DEFAULT_PARTITION_PRECISION);
+    }
+
+    public ClusteredDriverService(ConsistentHashRing ring, NodeTransport transport, int partitionPrecision) {
+        if (partitionPrecision < 1 || partitionPrecision > GeohashUtil.MAX_LONG_PRECISION) {
+            throw new IllegalArgumentException("Partition precision must be between 1 and "
+                    + GeohashUtil.MAX_LONG_PRECISION + ": " + partitionPrecision);
+        }
+
+        this.ring = ring;
+        this.transport = transport;
+        this.partitionPrecision = partitionPrecision;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            driverLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return Id of the node owning the location's prefix
+     */
+    public String nodeFor(double latitude, double longitude) {
+        return ring.nodeFor(GeohashUtil.encodeLong(latitude, longitude, partitionPrecision));
+    }
+
+    /**
+     * @return Id of the node holding the driver, or null if it is not registered
+     */
+    public String nodeOfDriver(String driverId) {
+        return nodeByDriver.get(driverId);
+    }
+
+    public Driver registerDriver(Driver driver) {
+        if (driver == null) {
+            throw new IllegalArgumentException("Driver cannot be null");
+        }
+
+        String node = nodeFor(driver.getLatitude(), driver.getLongitude());
+
+        synchronized (lockFor(driver.getId())) {
+            if (nodeByDriver.containsKey(driver.getId())) {
+                throw new IllegalArgumentException("Driver with ID " + driver.getId() + " already exists");
+            }
+
+            Driver registered = await(transport.registerDriver(node, driver));
+            nodeByDriver.put(driver.getId(), node);
+            return registered;
+        }
+    }
+
+    public Driver updateDriverLocation(String driverId, double newLatitude, double newLongitude) {
+        String to = nodeFor(newLatitude, newLongitude);
+
+        synchronized (lockFor(driverId)) {
+            String from = nodeByDriver.get(driverId);
+            if (from == null) {
+                throw new IllegalArgumentException("Driver not found: " + driverId);
+            }
+
+            if (from.equals(to)) {
+                return await(transport.updateDriverLocation(to, driverId, newLatitude, newLongitude));
+            }
+
+            // Handoff to the node owning the new prefix
+            Driver driver = await(transport.removeDriver(from, driverId));
+            if (driver == null) {
+                nodeByDriver.remove(driverId);
+                throw new IllegalArgumentException("Driver not found: " + driverId);
+            }
+
+            double oldLatitude = driver.getLatitude();
+            double oldLongitude = driver.getLongitude();
+            driver.updateLocation(newLatitude, newLongitude);
+            try {
+                Driver registered = await(transport.registerDriver(to, driver));
+                nodeByDriver.put(driverId, to);
+                return registered;
+            } catch (RuntimeException e) {
+                // Put it back where it was, so a failed ping does not log the driver out
+                driver.updateLocation(oldLatitude, oldLongitude);
+                try {
+                    await(transport.registerDriver(from, driver));
+                } catch (RuntimeException restore) {
+                    // The old node no longer has it either
+                    nodeByDriver.remove(driverId);
+                    e.addSuppressed(restore);
+                }
+                throw e;
+            }
+        }
+    }
+
+    public Driver setDriverAvailability(String driverId, boolean available) {
+        synchronized (lockFor(driverId)) {
+            String node = nodeByDriver.get(driverId);
+            if (node == null) {
+                throw new IllegalArgumentException("Driver not found: " + driverId);
+            }
+
+            return await(transport.setDriverAvailability(node, driverId, available));
+        }
+    }
+
+    public boolean removeDriver(String driverId) {
+        synchronized (lockFor(driverId)) {
+            String node = nodeByDriver.get(driverId);
+            if (node == null) {
+                return false;
+            }
+
+            Driver removed = await(transport.removeDriver(node, driverId));
+            nodeByDriver.remove(driverId);
+            return removed != null;
+        }
+    }
+
+    public int getTotalDrivers() {
+        return nodeByDriver.size();
+    }
+
+    /**
+     * Find available drivers in the cell containing the location. A cell inside one
+     * partition prefix is answered by its node alone; a coarser cell may span prefixes
+     * of every node, so it is sent to all of them.
+     */
+    public List<Driver> findNearbyDrivers(double latitude, double longitude, int precision) {
+        List<String> nodes = precision >= partitionPrecision
+                ? List.of(nodeFor(latitude, longitude))
+                : ring.getNodes();
+
+        List<CompletableFuture<List<Driver>>> answers = new ArrayList<>(nodes.size());
+        for (String node : nodes) {
+            answers.add(transport.findNearbyDrivers(node, latitude, longitude, precision));
+        }
+
+        List<Driver> drivers = new ArrayList<>();
+        for (CompletableFuture<List<Driver>> answer : answers) {
+            drivers.addAll(await(answer));
+        }
+        return drivers;
+    }
+
+    public List<DriverWithDistance> findClosestDrivers(double pickupLatitude, double pickupLongitude, int maxDrivers) {
+        return findDriversWithinRadius(pickupLatitude, pickupLongitude, MAX_SEARCH_RADIUS_KM, maxDrivers);
+    }
+
+    public List<DriverWithDistance> findClosestDrivers(double pickupLatitude, double pickupLongitude) {
+        return findClosestDrivers(pickupLatitude, pickupLongitude, DEFAULT_MAX_DRIVERS);
+    }
+
+    /**
+     * Find the closest available drivers within a radius across the cluster. Each node
+     * owning a prefix that touches the radius returns its own closest maxDrivers, and
+     * the overall closest maxDrivers are among them.
+     */
+    public List<DriverWithDistance> findDriversWithinRadius(
+            double pickupLatitude,
+            double pickupLongitude,
+            double maxDistanceKm,
+            int maxDrivers
+    ) {
+        if (maxDrivers <= 0) {
+            return Collections.emptyList();
+        }
+
+        Set<String> nodes = nodesCovering(pickupLatitude, pickupLongitude, maxDistanceKm);
+        List<CompletableFuture<List<DriverWithDistance>>> answers = new ArrayList<>(nodes.size());
+        for (String node : nodes) {
+            answers.add(transport.findDriversWithinRadius(node, pickupLatitude, pickupLongitude,
+                    maxDistanceKm, maxDrivers));
+        }
+
+        List<DriverWithDistance> candidates = new ArrayList<>();
+        for (CompletableFuture<List<DriverWithDistance>> answer : answers) {
+            candidates.addAll(await(answer));
+        }
+        if (answers.size() > 1) {
+            Collections.sort(candidates);
+        }
+        return candidates.size() > maxDrivers ? candidates.subList(0, maxDrivers) : candidates;
+    }
+
+    /**
+     * Nodes owning any partition prefix that overlaps the bounding box of a circle.
+     * The box is sampled at steps of one prefix cell along each axis, which hits every
+     * cell row and column it overlaps.
+     */
+    Set<String> nodesCovering(double latitude, double longitude, double radiusKm) {
+        double deltaLat = radiusKm / KM_PER_DEGREE;
+        double minLat = Math.max(-90.0, latitude - deltaLat);
+        double maxLat = Math.min(90.0, latitude + deltaLat);
+
+        double widestLat = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double cosLat = Math.cos(Math.toRadians(widestLat));
+        double deltaLon = cosLat <= 0.0 ? 180.0
+                : Math.min(180.0, radiusKm / (KM_PER_DEGREE * cosLat));
+
+        double height = GeohashUtil.cellHeightDegrees(partitionPrecision);
+        double width = GeohashUtil.cellWidthDegrees(partitionPrecision);
+        Set<String> nodes = new LinkedHashSet<>();
+
+        for (double lat = minLat; ; lat = Math.min(maxLat, lat + height)) {
+            for (double lon = longitude - deltaLon; ; lon = Math.min(longitude + deltaLon, lon + width)) {
+                nodes.add(nodeFor(lat, normalizeLongitude(lon)));
+                if (lon >= longitude + deltaLon) {
+                    break;
+                }
+            }
+            if (lat >= maxLat || nodes.size() == ring.getNodes().size()) {
+                break;
+            }
+        }
+        return nodes;
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        double wrapped = (longitude + 180.0) % 360.0;
+        return (wrapped < 0 ? wrapped + 360.0 : wrapped) - 180.0;
+    }
+
+    private Object lockFor(String driverId) {
+        return driverLocks[Math.floorMod(driverId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static <T> T await(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Node call failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.rideshare.rideshare_backend.cluster;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring assigning geohash prefixes to nodes.
+ *
+ * Each node is placed on the ring at several pseudo-random points (virtual nodes) and a
+ * prefix belongs to the first point at or after its own hash, wrapping around. Adding a
+ * node only takes over the prefixes landing just before its points, so about 1/N of
+ * them move and every other prefix keeps its owner; the virtual nodes keep the shares
+ * even. The ring is immutable: a membership change builds a new one.
+ */
+public class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+    private final List<String> nodes;
+
+    public ConsistentHashRing(Collection<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("Ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes must be positive: " + virtualNodes);
+        }
+        if (new HashSet<>(nodes).size() != nodes.size()) {
+            throw new IllegalArgumentException("Duplicate node ids: " + nodes);
+        }
+
+        this.nodes = List.copyOf(nodes);
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                String previous = points.put(hash(node + "#" + i), node);
+                if (previous != null && !previous.equals(node)) {
+                    throw new IllegalArgumentException("Ring position collision between "
+                            + previous + " and " + node);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param prefix Geohash bits of a prefix; callers use the same precision for every
+     *               lookup, since prefixes of different lengths hash independently
+     * @return Id of the node owning the prefix
+     */
+    public String nodeFor(long prefix) {
+        Map.Entry<Long, String> point = points.ceilingEntry(mix(prefix));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    private static long hash(String key) {
+        // FNV-1a, then mixed so nearby ids do not land on nearby points
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 finalizer: adjacent prefixes differ only in their low bits
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,133 @@
+package com.rideshare.rideshare_backend.cluster;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * NodeTransport to DriverServices living in this JVM, standing in for a cluster in tests
+ * and benchmarks. Drivers are copied on the way in and out, so nodes share no objects
+ * with each other or with the caller, just as if they were on separate machines.
+ */
+public class InProcessTransport implements NodeTransport {
+    private record Node(DriverService driverService, DriverMatchingService matchingService) {
+    }
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    public InProcessTransport() {
+        // Without an executor, each call runs on the caller and its future is already done
+        this(Runnable::run);
+    }
+
+    /**
+     * @param executor Runs the node side of each call, so calls to several nodes can
+     *                 overlap like requests in flight
+     */
+    public InProcessTransport(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void addNode(String nodeId, DriverService driverService) {
+        if (nodes.putIfAbsent(nodeId, new Node(driverService, new DriverMatchingService(driverService))) != null) {
+            throw new IllegalArgumentException("Node already exists: " + nodeId);
+        }
+    }
+
+    public DriverService getNode(String nodeId) {
+        Node node = nodes.get(nodeId);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown node: " + nodeId);
+        }
+        return node.driverService();
+    }
+
+    @Override
+    public CompletableFuture<Driver> registerDriver(String nodeId, Driver driver) {
+        Driver copy = copyOf(driver);
+        return call(nodeId, node -> copyOf(node.driverService().registerDriver(copy)));
+    }
+
+    @Override
+    public CompletableFuture<Driver> updateDriverLocation(String nodeId, String driverId,
+                                                          double latitude, double longitude) {
+        return call(nodeId, node -> copyOf(node.driverService().updateDriverLocation(driverId, latitude, longitude)));
+    }
+
+    @Override
+    public CompletableFuture<Driver> setDriverAvailability(String nodeId, String driverId, boolean available) {
+        return call(nodeId, node -> copyOf(node.driverService().setDriverAvailability(driverId, available)));
+    }
+
+    @Override
+    public CompletableFuture<Driver> removeDriver(String nodeId, String driverId) {
+        return call(nodeId, node -> {
+            DriverService driverService = node.driverService();
+            Driver driver = driverService.getDriverById(driverId).orElse(null);
+            if (driver == null) {
+                return null;
+            }
+
+            // Copy before removing: the node resets the driver's index state on removal
+            Driver copy = copyOf(driver);
+            return driverService.removeDriver(driverId) ? copy : null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Driver>> findNearbyDrivers(String nodeId, double latitude, double longitude,
+                                                             int precision) {
+        return call(nodeId, node -> {
+            List<Driver> drivers = node.driverService().findNearbyDrivers(latitude, longitude, precision);
+            List<Driver> copies = new ArrayList<>(drivers.size());
+            for (Driver driver : drivers) {
+                copies.add(copyOf(driver));
+            }
+            return copies;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<DriverWithDistance>> findDriversWithinRadius(String nodeId, double latitude,
+                                                                               double longitude, double radiusKm,
+                                                                               int maxDrivers) {
+        return call(nodeId, node -> {
+            List<DriverWithDistance> matches = node.matchingService()
+                    .findDriversWithinRadius(latitude, longitude, radiusKm, maxDrivers);
+            List<DriverWithDistance> copies = new ArrayList<>(matches.size());
+            for (DriverWithDistance match : matches) {
+                copies.add(new DriverWithDistance(copyOf(match.getDriver()), match.getDistanceKm(),
+                        match.getEstimatedArrivalMinutes()));
+            }
+            return copies;
+        });
+    }
+
+    private <T> CompletableFuture<T> call(String nodeId, Function<Node, T> request) {
+        Node node = nodes.get(nodeId);
+        if (node == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown node: " + nodeId));
+        }
+        return CompletableFuture.supplyAsync(() -> request.apply(node), executor);
+    }
+
+    private static Driver copyOf(Driver driver) {
+        // Nodes change a driver under its monitor, so this reads one consistent state
+        synchronized (driver) {
+            Driver copy = new Driver(driver.getId(), driver.getName(), driver.getLatitude(), driver.getLongitude());
+            copy.setAvailable(driver.isAvailable());
+            copy.setLastUpdated(driver.getLastUpdated());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.rideshare.rideshare_backend.cluster;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Calls from a ClusteredDriverService to the DriverService of one node. Every call is
+ * asynchronous so queries can be sent to several nodes at once and gathered.
+ *
+ * Implementations pass drivers by value, as a network transport would: the Driver a
+ * node returns is a copy, and changing it does not change the node's state. Failures
+ * on the node (such as an unknown driver id) complete the future exceptionally with the
+ * node's exception.
+ */
+public interface NodeTransport {
+    /**
+     * @return The driver as registered on the node
+     */
+    CompletableFuture<Driver> registerDriver(String nodeId, Driver driver);
+
+    CompletableFuture<Driver> updateDriverLocation(String nodeId, String driverId,
+                                                   double latitude, double longitude);
+
+    CompletableFuture<Driver> setDriverAvailability(String nodeId, String driverId, boolean available);
+
+    /**
+     * @return The removed driver, or null if the node did not have it
+     */
+    CompletableFuture<Driver> removeDriver(String nodeId, String driverId);
+
+    /**
+     * @return The node's available drivers in the cell of the location at the precision
+     */
+    CompletableFuture<List<Driver>> findNearbyDrivers(String nodeId, double latitude, double longitude,
+                                                      int precision);
+
+    /**
+     * @return Up to maxDrivers of the node's available drivers within the radius, closest first
+     */
+    CompletableFuture<List<DriverWithDistance>> findDriversWithinRadius(String nodeId, double latitude,
+                                                                        double longitude, double radiusKm,
+                                                                        int maxDrivers);
+}
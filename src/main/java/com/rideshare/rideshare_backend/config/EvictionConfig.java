@@ -0,0 +1,23 @@
+package com.rideshare.rideshare_backend.config;
+
+import com.rideshare.rideshare_backend.service.DriverService;
+import com.rideshare.rideshare_backend.service.StaleDriverEvictor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "rideshare.eviction.enabled", havingValue = "true")
+public class EvictionConfig {
+    /**
+     * Removes drivers that have not sent a location for the TTL
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public StaleDriverEvictor staleDriverEvictor(
+            DriverService driverService,
+            @Value("${rideshare.eviction.ttl-ms:60000}") long ttlMillis,
+            @Value("${rideshare.eviction.tick-ms:1000}") long tickMillis) {
+        return new StaleDriverEvictor(driverService, ttlMillis, tickMillis);
+    }
+}
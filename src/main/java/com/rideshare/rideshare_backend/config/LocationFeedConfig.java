@@ -0,0 +1,24 @@
+package com.rideshare.rideshare_backend.config;
+
+import com.rideshare.rideshare_backend.ingest.LocationFeedServer;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "rideshare.location-feed.enabled", havingValue = "true")
+public class LocationFeedConfig {
+    /**
+     * Binary TCP listener for telematics gateways; see LocationFeedProtocol
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public LocationFeedServer locationFeedServer(
+            DriverService driverService,
+            @Value("${rideshare.location-feed.bind-address:127.0.0.1}") String bindAddress,
+            @Value("${rideshare.location-feed.port:7070}") int port,
+            @Value("${rideshare.location-feed.max-age-ms:30000}") long maxAgeMillis) {
+        return new LocationFeedServer(driverService, bindAddress, port, maxAgeMillis);
+    }
+}
@@ -0,0 +1,26 @@
+package com.rideshare.rideshare_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class MatchingExecutorConfig {
+    /**
+     * Executor that fans matching work out, e.g. one task per pickup of a batch ride request.
+     *
+     * Follows spring.threads.virtual.enabled, the same switch that moves Tomcat's request
+     * handling onto virtual threads: one virtual thread per task when it is on, otherwise
+     * a platform pool sized to the CPUs, since matching itself is CPU-bound.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService matchingExecutor(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+}
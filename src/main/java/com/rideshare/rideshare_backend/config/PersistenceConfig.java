@@ -0,0 +1,28 @@
+package com.rideshare.rideshare_backend.config;
+
+import com.rideshare.rideshare_backend.persistence.DriverIndexPersistence;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+@ConditionalOnProperty(name = "rideshare.persistence.enabled", havingValue = "true")
+public class PersistenceConfig {
+    /**
+     * Snapshot and write-ahead log for the driver index; rebuilds the index on start
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public DriverIndexPersistence driverIndexPersistence(
+            DriverService driverService,
+            @Value("${rideshare.persistence.directory:data/driver-index}") String directory,
+            @Value("${rideshare.persistence.flush-interval-ms:100}") long flushIntervalMillis,
+            @Value("${rideshare.persistence.snapshot-interval-s:60}") long snapshotIntervalSeconds,
+            @Value("${rideshare.persistence.max-backlog-mb:64}") long maxBacklogMegabytes) {
+        return new DriverIndexPersistence(driverService, Path.of(directory),
+                flushIntervalMillis, snapshotIntervalSeconds, maxBacklogMegabytes * 1024 * 1024);
+    }
+}
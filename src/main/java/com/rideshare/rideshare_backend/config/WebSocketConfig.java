@@ -0,0 +1,32 @@
+package com.rideshare.rideshare_backend.config;
+
+import com.rideshare.rideshare_backend.controller.DriverLocationWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+    private final DriverLocationWebSocketHandler locationHandler;
+    private final String[] allowedOrigins;
+
+    /**
+     * @param allowedOrigins Origins browsers may open the location socket from. Empty
+     *                       allows only same-origin pages; driver apps are native clients
+     *                       that send no Origin header and are accepted either way.
+     */
+    public WebSocketConfig(DriverLocationWebSocketHandler locationHandler,
+                           @Value("${rideshare.websocket.allowed-origins:}") String[] allowedOrigins) {
+        this.locationHandler = locationHandler;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(locationHandler, DriverLocationWebSocketHandler.PATH)
+                .setAllowedOrigins(allowedOrigins);
+    }
+}
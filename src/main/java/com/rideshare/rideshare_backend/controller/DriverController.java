@@ -2,21 +2,32 @@ package com.rideshare.rideshare_backend.controller;
 
 import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
 import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverLocationUpdate;
 import com.rideshare.rideshare_backend.service.DriverService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.ObjectMapper;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/drivers")
 public class DriverController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final DriverService driverService;
+    private final ObjectMapper objectMapper;
 
-    public DriverController(DriverService driverService) {
+    public DriverController(DriverService driverService, ObjectMapper objectMapper) {
         this.driverService = driverService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -34,7 +45,8 @@ public class DriverController {
             return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
                     "success", true,
                     "message", "Driver registered successfully",
-                    "driver", registered
+                    "driver", registered,
+                    "slot", registered.getSlot()
             ));
 
         } catch (IllegalArgumentException e) {
@@ -45,6 +57,11 @@ public class DriverController {
         }
     }
 
+    /**
+     * Move a driver. With rideshare.eviction.enabled, a driver that sends no location
+     * for rideshare.eviction.ttl-ms is removed, so this returns 404 until it registers
+     * again.
+     */
     @PutMapping("/{id}/location")
     public ResponseEntity<?> updateLocation(
             @PathVariable String id,
@@ -70,6 +87,37 @@ public class DriverController {
         }
     }
 
+    @PutMapping("/locations")
+    public ResponseEntity<?> updateLocations(@RequestBody BatchLocationUpdateRequest request) {
+        if (request.updates == null || request.updates.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                    "success", false,
+                    "message", "At least one location update is required"
+            ));
+        }
+
+        List<DriverLocationUpdate> updates = new ArrayList<>(request.updates.size());
+        for (BatchLocationUpdateRequest.Update update : request.updates) {
+            updates.add(new DriverLocationUpdate(update.id, update.latitude, update.longitude));
+        }
+
+        try {
+            DriverService.BatchUpdateResult result = driverService.updateDriverLocations(updates);
+
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "updated", result.getUpdatedCount(),
+                    "notFound", result.getNotFoundIds()
+            ));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
     @GetMapping("/nearby")
     public ResponseEntity<?> findNearbyDrivers(
             @RequestParam double latitude,
@@ -102,7 +150,8 @@ public class DriverController {
         return driverService.getDriverById(id)
                 .map(driver -> ResponseEntity.ok(Map.of(
                         "success", true,
-                        "driver", driver
+                        "driver", driver,
+                        "slot", driver.getSlot()
                 )))
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
                         "success", false,
@@ -110,15 +159,61 @@ public class DriverController {
                 )));
     }
 
+    /**
+     * One page of drivers in slot order; without parameters, the first 100. "count" is
+     * the size of this page and "total" the number of registered drivers. "nextCursor"
+     * is only present while more pages remain.
+     */
     @GetMapping
-    public ResponseEntity<?> getAllDrivers() {
-        List<Driver> drivers = driverService.getAllDrivers();
+    public ResponseEntity<?> getAllDrivers(
+            @RequestParam(defaultValue = "0") int cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (cursor < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                    "success", false,
+                    "message", "cursor must be at least 0 and limit between 1 and " + MAX_PAGE_SIZE
+            ));
+        }
 
-        return ResponseEntity.ok(Map.of(
-                "success", true,
-                "count", drivers.size(),
-                "drivers", drivers
-        ));
+        DriverService.DriverPage page = driverService.getDriversPage(cursor, limit);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("count", page.getDrivers().size());
+        response.put("total", driverService.getTotalDrivers());
+        response.put("drivers", page.getDrivers());
+        if (page.hasMore()) {
+            response.put("nextCursor", page.getNextCursor());
+        }
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Every driver as newline-delimited JSON, written page by page so memory stays
+     * bounded however large the fleet is
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDrivers() {
+        StreamingResponseBody body = outputStream -> {
+            int cursor = 0;
+
+            while (cursor >= 0) {
+                DriverService.DriverPage page = driverService.getDriversPage(cursor, STREAM_PAGE_SIZE);
+
+                for (Driver driver : page.getDrivers()) {
+                    outputStream.write(objectMapper.writeValueAsBytes(driver));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+
+                cursor = page.getNextCursor();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PutMapping("/{id}/availability")
@@ -183,6 +278,16 @@ public class DriverController {
         public double longitude;
     }
 
+    public static class BatchLocationUpdateRequest {
+        public List<Update> updates;
+
+        public static class Update {
+            public String id;
+            public double latitude;
+            public double longitude;
+        }
+    }
+
     public static class AvailabilityRequest {
         public boolean available;
     }
@@ -0,0 +1,124 @@
+package com.rideshare.rideshare_backend.controller;
+
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming location ingestion: a driver app opens one WebSocket at
+ * /ws/drivers/{id}/location and pushes a frame per ping.
+ *
+ * Frames are either binary, 16 bytes holding latitude and longitude as big-endian
+ * doubles, or text "latitude,longitude". Each frame goes straight to
+ * DriverService.updateDriverLocation and nothing is sent back, so a ping costs no
+ * HTTP parsing and no response body. Frames with coordinates out of range are dropped;
+ * malformed frames close the connection with BAD_DATA, and the connection is closed
+ * with POLICY_VIOLATION once the driver is no longer registered.
+ */
+@Component
+public class DriverLocationWebSocketHandler extends AbstractWebSocketHandler {
+    public static final String PATH = "/ws/drivers/*/location";
+
+    private static final String DRIVER_ID = "driverId";
+    private static final int BINARY_FRAME_BYTES = 2 * Double.BYTES;
+
+    private final DriverService driverService;
+
+    public DriverLocationWebSocketHandler(DriverService driverService) {
+        this.driverService = driverService;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        String driverId = driverIdFromPath(session.getUri());
+
+        if (driverId == null || driverService.getDriverById(driverId).isEmpty()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Driver not found"));
+            return;
+        }
+
+        session.getAttributes().put(DRIVER_ID, driverId);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        ByteBuffer payload = message.getPayload();
+
+        if (payload.remaining() != BINARY_FRAME_BYTES) {
+            session.close(CloseStatus.BAD_DATA.withReason("Expected 16-byte location frame"));
+            return;
+        }
+
+        // Absolute reads; ByteBuffer defaults to big-endian
+        int position = payload.position();
+        applyLocation(session, payload.getDouble(position), payload.getDouble(position + Double.BYTES));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        String payload = message.getPayload();
+        int comma = payload.indexOf(',');
+
+        double latitude;
+        double longitude;
+        try {
+            latitude = Double.parseDouble(payload.substring(0, comma));
+            longitude = Double.parseDouble(payload.substring(comma + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            session.close(CloseStatus.BAD_DATA.withReason("Expected \"latitude,longitude\""));
+            return;
+        }
+
+        applyLocation(session, latitude, longitude);
+    }
+
+    private void applyLocation(WebSocketSession session, double latitude, double longitude) throws Exception {
+        String driverId = (String) session.getAttributes().get(DRIVER_ID);
+
+        if (driverId == null) {
+            return;
+        }
+
+        // Also rejects NaN
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            return;
+        }
+
+        try {
+            driverService.updateDriverLocation(driverId, latitude, longitude);
+        } catch (IllegalArgumentException e) {
+            // The driver was removed while connected
+            session.getAttributes().remove(DRIVER_ID);
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Driver not found"));
+        }
+    }
+
+    /**
+     * Driver id from a /ws/drivers/{id}/location URI
+     */
+    static String driverIdFromPath(URI uri) {
+        if (uri == null) {
+            return null;
+        }
+
+        String path = uri.getPath();
+        String suffix = "/location";
+        int start = path.indexOf("/drivers/");
+
+        if (start < 0 || !path.endsWith(suffix)) {
+            return null;
+        }
+
+        start += "/drivers/".length();
+        int end = path.length() - suffix.length();
+
+        return end > start ? path.substring(start, end) : null;
+    }
+}
@@ -1,15 +1,17 @@
 package com.rideshare.rideshare_backend.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.rideshare.rideshare_backend.model.Driver;
 import com.rideshare.rideshare_backend.model.DriverWithDistance;
 import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.HotCellCache;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/rides")
@@ -54,40 +56,21 @@ public class RideController {
             );
 
             if (closestDrivers.isEmpty()) {
-                return ResponseEntity.ok(Map.of(
-                        "success", true,
-                        "message", "No drivers available in your area",
-                        "driversFound", 0,
-                        "nearestDrivers", List.of()
+                return ResponseEntity.ok(new RideResponse(
+                        true,
+                        "No drivers available in your area",
+                        null,
+                        null,
+                        0,
+                        List.of()
                 ));
             }
 
-            // Format response
-            List<Map<String, Object>> driverInfo = closestDrivers.stream()
-                    .map(dwd -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("driverId", dwd.getDriver().getId());
-                        info.put("driverName", dwd.getDriver().getName());
-                        info.put("latitude", dwd.getDriver().getLatitude());
-                        info.put("longitude", dwd.getDriver().getLongitude());
-                        info.put("distanceKm", Math.round(dwd.getDistanceKm() * 100.0) / 100.0);
-                        info.put("distanceFormatted", dwd.getFormattedDistance());
-                        info.put("estimatedArrivalMinutes", Math.round(dwd.getEstimatedArrivalMinutes()));
-                        info.put("estimatedArrivalFormatted", dwd.getFormattedArrivalTime());
-                        return info;
-                    })
-                    .collect(Collectors.toList());
-
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "message", "Found " + closestDrivers.size() + " nearby driver(s)",
-                    "riderId", request.riderId,
-                    "pickupLocation", Map.of(
-                            "latitude", request.pickupLatitude,
-                            "longitude", request.pickupLongitude
-                    ),
-                    "driversFound", closestDrivers.size(),
-                    "nearestDrivers", driverInfo
+            return ResponseEntity.ok(RideResponse.of(
+                    request.riderId,
+                    request.pickupLatitude,
+                    request.pickupLongitude,
+                    closestDrivers
             ));
 
         } catch (Exception e) {
@@ -98,12 +81,76 @@ public class RideController {
         }
     }
 
+    @PostMapping("/request/batch")
+    public ResponseEntity<?> requestRides(@RequestBody BatchRideRequest request) {
+        if (request.requests == null || request.requests.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                    "success", false,
+                    "message", "At least one ride request is required"
+            ));
+        }
+
+        int count = request.requests.size();
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        int[] maxDrivers = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            RideRequest ride = request.requests.get(i);
+
+            if (ride.pickupLatitude == null || ride.pickupLatitude < -90 || ride.pickupLatitude > 90
+                    || ride.pickupLongitude == null || ride.pickupLongitude < -180 || ride.pickupLongitude > 180) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                        "success", false,
+                        "message", "Invalid pickup location in request " + i
+                ));
+            }
+
+            maxDrivers[i] = ride.maxDrivers != null ? ride.maxDrivers : 5;
+            if (maxDrivers[i] < 1 || maxDrivers[i] > 20) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                        "success", false,
+                        "message", "maxDrivers must be between 1 and 20 in request " + i
+                ));
+            }
+
+            latitudes[i] = ride.pickupLatitude;
+            longitudes[i] = ride.pickupLongitude;
+        }
+
+        try {
+            // Pickups are matched in parallel on the matching executor
+            List<List<DriverWithDistance>> matches =
+                    matchingService.findClosestDriversForAll(latitudes, longitudes, maxDrivers);
+
+            List<BatchRideResult> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(BatchRideResult.of(request.requests.get(i).riderId, matches.get(i)));
+            }
+
+            return ResponseEntity.ok(new BatchRideResponse(true, count, results));
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "success", false,
+                    "message", "Error processing ride requests: " + e.getMessage()
+            ));
+        }
+    }
+
     @GetMapping("/nearby-drivers")
     public ResponseEntity<?> findNearbyDrivers(
             @RequestParam double latitude,
             @RequestParam double longitude,
             @RequestParam(required = false, defaultValue = "5") int maxDrivers) {
 
+        if (maxDrivers < 1 || maxDrivers > 20) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                    "success", false,
+                    "message", "maxDrivers must be between 1 and 20"
+            ));
+        }
+
         try {
             List<DriverWithDistance> nearbyDrivers = matchingService.findClosestDrivers(
                     latitude,
@@ -111,26 +158,16 @@ public class RideController {
                     maxDrivers
             );
 
-            List<Map<String, Object>> driverInfo = nearbyDrivers.stream()
-                    .map(dwd -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("driverId", dwd.getDriver().getId());
-                        info.put("driverName", dwd.getDriver().getName());
-                        info.put("distanceKm", Math.round(dwd.getDistanceKm() * 100.0) / 100.0);
-                        info.put("distanceFormatted", dwd.getFormattedDistance());
-                        info.put("estimatedArrival", dwd.getFormattedArrivalTime());
-                        return info;
-                    })
-                    .collect(Collectors.toList());
+            List<NearbyDriver> drivers = new ArrayList<>(nearbyDrivers.size());
+            for (DriverWithDistance dwd : nearbyDrivers) {
+                drivers.add(NearbyDriver.of(dwd));
+            }
 
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "count", nearbyDrivers.size(),
-                    "location", Map.of(
-                            "latitude", latitude,
-                            "longitude", longitude
-                    ),
-                    "drivers", driverInfo
+            return ResponseEntity.ok(new NearbyDriversResponse(
+                    true,
+                    drivers.size(),
+                    new Location(latitude, longitude),
+                    drivers
             ));
 
         } catch (Exception e) {
@@ -148,6 +185,13 @@ public class RideController {
             @RequestParam double maxDistanceKm,
             @RequestParam(required = false, defaultValue = "10") int maxDrivers) {
 
+        if (maxDrivers < 1 || maxDrivers > 20) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+                    "success", false,
+                    "message", "maxDrivers must be between 1 and 20"
+            ));
+        }
+
         try {
             List<DriverWithDistance> driversInRadius = matchingService.findDriversWithinRadius(
                     latitude,
@@ -156,22 +200,16 @@ public class RideController {
                     maxDrivers
             );
 
-            List<Map<String, Object>> driverInfo = driversInRadius.stream()
-                    .map(dwd -> {
-                        Map<String, Object> info = new HashMap<>();
-                        info.put("driverId", dwd.getDriver().getId());
-                        info.put("driverName", dwd.getDriver().getName());
-                        info.put("distanceKm", Math.round(dwd.getDistanceKm() * 100.0) / 100.0);
-                        info.put("estimatedArrival", dwd.getFormattedArrivalTime());
-                        return info;
-                    })
-                    .collect(Collectors.toList());
+            List<RadiusDriver> drivers = new ArrayList<>(driversInRadius.size());
+            for (DriverWithDistance dwd : driversInRadius) {
+                drivers.add(RadiusDriver.of(dwd));
+            }
 
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "count", driversInRadius.size(),
-                    "searchRadius", maxDistanceKm + " km",
-                    "drivers", driverInfo
+            return ResponseEntity.ok(new RadiusResponse(
+                    true,
+                    drivers.size(),
+                    maxDistanceKm + " km",
+                    drivers
             ));
 
         } catch (Exception e) {
@@ -213,10 +251,166 @@ public class RideController {
         }
     }
 
+    @GetMapping("/cache-stats")
+    public ResponseEntity<?> getCacheStats() {
+        HotCellCache.Stats stats = matchingService.getCacheStats();
+        if (stats == null) {
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "enabled", false
+            ));
+        }
+
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "enabled", true,
+                "stats", Map.of(
+                        "hits", stats.getHits(),
+                        "misses", stats.getMisses(),
+                        "hitRate", Math.round(stats.getHitRate() * 10000.0) / 10000.0,
+                        "rejected", stats.getRejected(),
+                        "skipped", stats.getSkipped(),
+                        "invalidations", stats.getInvalidations(),
+                        "evictions", stats.getEvictions(),
+                        "entries", stats.getEntries(),
+                        "averageHitAgeMillis", Math.round(stats.getAverageHitAgeMillis() * 100.0) / 100.0,
+                        "maxHitAgeMillis", Math.round(stats.getMaxHitAgeMillis() * 100.0) / 100.0
+                )
+        ));
+    }
+
     public static class RideRequest {
         public String riderId;
         public Double pickupLatitude;
         public Double pickupLongitude;
         public Integer maxDrivers;
     }
+
+    public static class BatchRideRequest {
+        public List<RideRequest> requests;
+    }
+
+    /*
+     * Response bodies. Records serialize straight from their components, so a response
+     * costs one object per driver instead of a HashMap per driver plus nested Map.of
+     * structures. Each record has exactly the keys of the map it replaced, and null
+     * values are written as null, as the maps did. Only RideResponse leaves out null
+     * components: the no-drivers answer never had riderId or pickupLocation.
+     */
+
+    public record Location(double latitude, double longitude) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RideResponse(
+            boolean success,
+            String message,
+            String riderId,
+            Location pickupLocation,
+            int driversFound,
+            List<MatchedDriver> nearestDrivers
+    ) {
+        public static RideResponse of(String riderId, double pickupLatitude, double pickupLongitude,
+                                      List<DriverWithDistance> closestDrivers) {
+            List<MatchedDriver> drivers = new ArrayList<>(closestDrivers.size());
+            for (DriverWithDistance dwd : closestDrivers) {
+                drivers.add(MatchedDriver.of(dwd));
+            }
+
+            return new RideResponse(
+                    true,
+                    "Found " + drivers.size() + " nearby driver(s)",
+                    riderId,
+                    new Location(pickupLatitude, pickupLongitude),
+                    drivers.size(),
+                    drivers
+            );
+        }
+    }
+
+    public record MatchedDriver(
+            String driverId,
+            String driverName,
+            double latitude,
+            double longitude,
+            double distanceKm,
+            String distanceFormatted,
+            long estimatedArrivalMinutes,
+            String estimatedArrivalFormatted
+    ) {
+        public static MatchedDriver of(DriverWithDistance dwd) {
+            Driver driver = dwd.getDriver();
+            return new MatchedDriver(
+                    driver.getId(),
+                    driver.getName(),
+                    driver.getLatitude(),
+                    driver.getLongitude(),
+                    roundToHundredths(dwd.getDistanceKm()),
+                    dwd.getFormattedDistance(),
+                    Math.round(dwd.getEstimatedArrivalMinutes()),
+                    dwd.getFormattedArrivalTime()
+            );
+        }
+    }
+
+    public record NearbyDriversResponse(boolean success, int count, Location location, List<NearbyDriver> drivers) {
+    }
+
+    public record RadiusResponse(boolean success, int count, String searchRadius, List<RadiusDriver> drivers) {
+    }
+
+    public record NearbyDriver(
+            String driverId,
+            String driverName,
+            double distanceKm,
+            String distanceFormatted,
+            String estimatedArrival
+    ) {
+        public static NearbyDriver of(DriverWithDistance dwd) {
+            return new NearbyDriver(
+                    dwd.getDriver().getId(),
+                    dwd.getDriver().getName(),
+                    roundToHundredths(dwd.getDistanceKm()),
+                    dwd.getFormattedDistance(),
+                    dwd.getFormattedArrivalTime()
+            );
+        }
+    }
+
+    public record RadiusDriver(String driverId, String driverName, double distanceKm, String estimatedArrival) {
+        public static RadiusDriver of(DriverWithDistance dwd) {
+            return new RadiusDriver(
+                    dwd.getDriver().getId(),
+                    dwd.getDriver().getName(),
+                    roundToHundredths(dwd.getDistanceKm()),
+                    dwd.getFormattedArrivalTime()
+            );
+        }
+    }
+
+    public record BatchRideResponse(boolean success, int count, List<BatchRideResult> results) {
+    }
+
+    public record BatchRideResult(String riderId, int driversFound, List<BatchMatchedDriver> nearestDrivers) {
+        public static BatchRideResult of(String riderId, List<DriverWithDistance> closestDrivers) {
+            List<BatchMatchedDriver> drivers = new ArrayList<>(closestDrivers.size());
+            for (DriverWithDistance dwd : closestDrivers) {
+                drivers.add(new BatchMatchedDriver(
+                        dwd.getDriver().getId(),
+                        dwd.getDriver().getName(),
+                        roundToHundredths(dwd.getDistanceKm()),
+                        Math.round(dwd.getEstimatedArrivalMinutes())
+                ));
+            }
+            return new BatchRideResult(riderId, drivers.size(), drivers);
+        }
+    }
+
+    public record BatchMatchedDriver(String driverId, String driverName, double distanceKm,
+                                     long estimatedArrivalMinutes) {
+    }
+
+    private static double roundToHundredths(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
 }
@@ -0,0 +1,293 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import com.rideshare.rideshare_backend.model.Driver;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Columnar (struct-of-arrays) store of driver positions keyed by dense int slots.
+ *
+ * Each indexed driver gets a slot; its latitude, longitude, cosine of the latitude,
+ * indexed cell, last update time and availability live in primitive columns at that
+ * slot. The cosine is computed once per location write, not once per distance. Scoring candidates
+ * then reads a few contiguous arrays instead of chasing a Driver object per candidate.
+ * The Driver itself is only looked up for candidates that make it into a result.
+ *
+ * Columns are split into fixed-size pages. Growing the store adds pages and never moves
+ * existing entries, so a write can never be lost to a concurrent resize the way it
+ * could with a single array copied on growth. Released slots are reused, keeping the
+ * columns dense.
+ *
+ * A driver is tracked by at most one store at a time: its slot is kept on the Driver.
+ * Column entries for a slot are written by whoever owns that driver (DriverService
+ * under the driver's lock); readers may see a position mid-update, exactly as with
+ * the Driver's own volatile fields.
+ */
+public class DriverLocationStore {
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int INITIAL_PAGES = 4;
+
+    private static final class Page {
+        final double[] latitudes = new double[PAGE_SIZE];
+        final double[] longitudes = new double[PAGE_SIZE];
+        final double[] cosLatitudes = new double[PAGE_SIZE];
+        final long[] cells = new long[PAGE_SIZE];
+        final long[] lastUpdateNanos = new long[PAGE_SIZE];
+        // Bumped each time the slot is handed out, so a reference to a released slot can
+        // tell that the slot now holds another driver
+        final int[] generations = new int[PAGE_SIZE];
+        // Availability bits are shared by 64 slots per word, so they are updated with CAS
+        final AtomicLongArray available = new AtomicLongArray(PAGE_SIZE / Long.SIZE);
+        final Driver[] drivers = new Driver[PAGE_SIZE];
+    }
+
+    private volatile Page[] pages;
+    private int pageCount;
+    private int highWaterMark;
+    private int[] freeSlots;
+    private int freeCount;
+    private int size;
+
+    public DriverLocationStore() {
+        this.pages = new Page[INITIAL_PAGES];
+        this.freeSlots = new int[PAGE_SIZE];
+    }
+
+    /**
+     * Give a driver a slot and fill its columns from the driver's current state
+     *
+     * @return The driver's slot
+     */
+    public synchronized int allocate(Driver driver) {
+        if (driver == null) {
+            throw new IllegalArgumentException("Driver cannot be null");
+        }
+
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot();
+        Page page = pages[slot >>> PAGE_SHIFT];
+        int offset = slot & PAGE_MASK;
+
+        page.drivers[offset] = driver;
+        page.generations[offset]++;
+        page.cells[offset] = driver.getGeohashLong();
+        writeLocation(page, offset, driver.getLatitude(), driver.getLongitude(), driver.getCosLatitude());
+        writeAvailable(page, offset, driver.isAvailable());
+        driver.setSlot(slot);
+        size++;
+
+        return slot;
+    }
+
+    private int nextSlot() {
+        int slot = highWaterMark++;
+        int pageIndex = slot >>> PAGE_SHIFT;
+
+        if (pageIndex == pageCount) {
+            Page[] current = pages;
+            if (pageIndex == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[pageIndex] = new Page();
+            pageCount++;
+            // Publish the new page (and possibly the new page table) to readers
+            pages = current;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Return a slot to the free list, dropping its driver and availability bit
+     */
+    public synchronized void release(int slot) {
+        checkSlot(slot);
+
+        Page page = pages[slot >>> PAGE_SHIFT];
+        int offset = slot & PAGE_MASK;
+        Driver driver = page.drivers[offset];
+
+        if (driver == null) {
+            return;
+        }
+
+        if (driver.getSlot() == slot) {
+            driver.setSlot(-1);
+        }
+        page.drivers[offset] = null;
+        writeAvailable(page, offset, false);
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * @return The driver's slot in this store, or -1 if it has none
+     */
+    public int slotOf(Driver driver) {
+        int slot = driver.getSlot();
+        if (slot < 0) {
+            return -1;
+        }
+
+        Page[] current = pages;
+        int pageIndex = slot >>> PAGE_SHIFT;
+        if (pageIndex >= current.length || current[pageIndex] == null) {
+            return -1;
+        }
+
+        return current[pageIndex].drivers[slot & PAGE_MASK] == driver ? slot : -1;
+    }
+
+    public void setLocation(int slot, double latitude, double longitude) {
+        setLocation(slot, latitude, longitude, Math.cos(Math.toRadians(latitude)));
+    }
+
+    /**
+     * @param cosLatitude Cosine of the latitude, e.g. Driver.getCosLatitude()
+     */
+    public void setLocation(int slot, double latitude, double longitude, double cosLatitude) {
+        writeLocation(page(slot), slot & PAGE_MASK, latitude, longitude, cosLatitude);
+    }
+
+    private static void writeLocation(Page page, int offset, double latitude, double longitude,
+                                      double cosLatitude) {
+        page.latitudes[offset] = latitude;
+        page.longitudes[offset] = longitude;
+        page.cosLatitudes[offset] = cosLatitude;
+        page.lastUpdateNanos[offset] = System.nanoTime();
+    }
+
+    public void setCell(int slot, long cell) {
+        page(slot).cells[slot & PAGE_MASK] = cell;
+    }
+
+    public void setAvailable(int slot, boolean available) {
+        writeAvailable(page(slot), slot & PAGE_MASK, available);
+    }
+
+    private static void writeAvailable(Page page, int offset, boolean available) {
+        int word = offset >>> 6;
+        long bit = 1L << offset;
+
+        while (true) {
+            long current = page.available.get(word);
+            long updated = available ? current | bit : current & ~bit;
+            if (current == updated || page.available.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    public double latitude(int slot) {
+        return page(slot).latitudes[slot & PAGE_MASK];
+    }
+
+    public double longitude(int slot) {
+        return page(slot).longitudes[slot & PAGE_MASK];
+    }
+
+    public double cosLatitude(int slot) {
+        return page(slot).cosLatitudes[slot & PAGE_MASK];
+    }
+
+    /**
+     * Geohash bits the slot is indexed under
+     */
+    public long cell(int slot) {
+        return page(slot).cells[slot & PAGE_MASK];
+    }
+
+    /**
+     * System.nanoTime() of the last location write
+     */
+    public long lastUpdateNanos(int slot) {
+        return page(slot).lastUpdateNanos[slot & PAGE_MASK];
+    }
+
+    /**
+     * Number of times the slot has been allocated; a driver keeps the same generation
+     * for as long as it holds the slot
+     */
+    public int generation(int slot) {
+        return page(slot).generations[slot & PAGE_MASK];
+    }
+
+    public boolean isAvailable(int slot) {
+        int offset = slot & PAGE_MASK;
+        return (page(slot).available.get(offset >>> 6) & (1L << offset)) != 0;
+    }
+
+    public Driver driver(int slot) {
+        return page(slot).drivers[slot & PAGE_MASK];
+    }
+
+    /**
+     * Like driver(slot), but for slots from outside the process, which may be out of range
+     *
+     * @return The driver holding the slot, or null
+     */
+    public Driver findDriver(int slot) {
+        if (slot < 0) {
+            return null;
+        }
+
+        Page[] current = pages;
+        int pageIndex = slot >>> PAGE_SHIFT;
+        if (pageIndex >= current.length || current[pageIndex] == null) {
+            return null;
+        }
+
+        return current[pageIndex].drivers[slot & PAGE_MASK];
+    }
+
+    /**
+     * Number of slots in use
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * One past the highest slot ever handed out; every live slot is below this
+     */
+    public synchronized int capacity() {
+        return highWaterMark;
+    }
+
+    /**
+     * Release every slot. Pages are kept, so a reader still holding a slot from before
+     * the clear reads an empty slot instead of a missing page.
+     */
+    public synchronized void clear() {
+        for (int slot = 0; slot < highWaterMark; slot++) {
+            Page page = pages[slot >>> PAGE_SHIFT];
+            int offset = slot & PAGE_MASK;
+            Driver driver = page.drivers[offset];
+            if (driver != null && driver.getSlot() == slot) {
+                driver.setSlot(-1);
+            }
+            page.drivers[offset] = null;
+            writeAvailable(page, offset, false);
+        }
+
+        highWaterMark = 0;
+        freeCount = 0;
+        size = 0;
+    }
+
+    private Page page(int slot) {
+        return pages[slot >>> PAGE_SHIFT];
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= highWaterMark) {
+            throw new IllegalArgumentException("Invalid slot: " + slot);
+        }
+    }
+}
@@ -1,40 +1,470 @@
 package com.rideshare.rideshare_backend.datastructure;
 
 import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class GeohashTrie {
-    private TrieNode root;
-    private int totalDrivers;
+    /**
+     * Cells are locked by their precision-4 prefix (about 39 x 20 km), hashed into
+     * LOCK_STRIPES read/write locks, so writers spread over one metro area mostly take
+     * different locks. Nodes above that precision are shared between stripes.
+     */
+    static final int STRIPE_PRECISION = 4;
+    private static final int STRIPE_BITS = 8;
+    static final int LOCK_STRIPES = 1 << STRIPE_BITS;
+    private static final long[] NO_STRIPES = new long[0];
+    private static final int ALPHABET_SIZE = 32;
+
+    // Outcomes of the recursive delete and availability helpers
+    private static final int NOT_FOUND = 0;
+    private static final int REMOVED_AVAILABLE = 1;
+    private static final int REMOVED_UNAVAILABLE = 2;
+    private static final int CHANGED = 1;
+    private static final int UNCHANGED = 2;
+
+    private volatile TrieNode root;
+    private final DriverLocationStore store;
+    private final AtomicInteger totalDrivers;
+    private final AtomicInteger availableDrivers;
+    private final AtomicInteger totalNodes;
+    // nodesAtDepth[d] = number of nodes d levels below the root; the deepest non-zero
+    // entry is the trie depth, so stats never have to walk the tree
+    private final AtomicIntegerArray nodesAtDepth;
+    private final boolean concurrent;
+    private final boolean copyOnWrite;
+    private final ReentrantReadWriteLock[] stripes;
+    // Copy-on-write mode: write epochs
+    private final AtomicLong writeEpochs;
+    // Serializes changes to the shared nodes above STRIPE_PRECISION: adding and removing
+    // stripe cells, and publishing roots in copy-on-write mode
+    private final Object sharedLock = new Object();
 
     /**
      * Internal node structure for the Trie
+     * Children are indexed directly by base32 digit, so a lookup is one array load
+     * instead of a boxed-Character hash lookup. Both arrays are allocated on first use:
+     * leaves never get a child array and interior nodes never get a slot array.
+     *
+     * Leaves hold the drivers' slots in the DriverLocationStore rather than Driver
+     * references, so scanning a cell reads an int[] and the store's primitive columns.
+     *
+     * Slots are partitioned by availability: slots[0, availableCount) are available,
+     * slots[availableCount, driverCount) are not. driversInSubtree and
+     * availableInSubtree count drivers in this node and everything below it, so
+     * searches for matchable drivers skip busy drivers and whole subtrees without any,
+     * and per-area counts are read off a single node. The counters of the root and the
+     * other shared nodes above STRIPE_PRECISION are not maintained (their children are
+     * updated under different stripes); the trie-wide totals are kept in atomics, and
+     * counts of coarser cells are summed from the stripe cells below them.
+     *
+     * epoch is the write that created the node. In copy-on-write mode each write gets
+     * a new epoch and copies every node it touches that is older, so nodes reachable
+     * from a published root are never modified again. In-place mode uses epoch 0
+     * throughout, which makes writableChild a plain lookup.
      */
     private static class TrieNode {
-        Map<Character, TrieNode> children;
-        List<Driver> drivers;
+        private static final int INITIAL_DRIVER_CAPACITY = 4;
+
+        final long epoch;
+        TrieNode[] children;
+        int[] slots;
+        int driverCount;
+        int availableCount;
+        int driversInSubtree;
+        int availableInSubtree;
+
+        TrieNode(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * Copy of this node for the write with the given epoch; the arrays are copied
+         * too, since the write may change them
+         */
+        TrieNode copy(long writeEpoch) {
+            TrieNode copy = new TrieNode(writeEpoch);
+            copy.children = children == null ? null : children.clone();
+            copy.slots = slots == null ? null : slots.clone();
+            copy.driverCount = driverCount;
+            copy.availableCount = availableCount;
+            copy.driversInSubtree = driversInSubtree;
+            copy.availableInSubtree = availableInSubtree;
+            return copy;
+        }
+
+        TrieNode child(int digit) {
+            return children == null ? null : children[digit];
+        }
+
+        /**
+         * Child about to be modified by the write that owns this node, copied first if
+         * an earlier write created it
+         */
+        TrieNode writableChild(int digit) {
+            TrieNode child = child(digit);
+            if (child != null && child.epoch != epoch) {
+                child = child.copy(epoch);
+                children[digit] = child;
+            }
+            return child;
+        }
+
+        TrieNode addChild(int digit) {
+            if (children == null) {
+                children = new TrieNode[ALPHABET_SIZE];
+            }
+            TrieNode child = new TrieNode(epoch);
+            children[digit] = child;
+            return child;
+        }
+
+        void setChild(int digit, TrieNode child) {
+            if (children == null) {
+                children = new TrieNode[ALPHABET_SIZE];
+            }
+            children[digit] = child;
+        }
+
+        void removeChild(int digit) {
+            children[digit] = null;
+        }
+
+        void addSlot(int slot, boolean available) {
+            if (slots == null) {
+                slots = new int[INITIAL_DRIVER_CAPACITY];
+            } else if (driverCount == slots.length) {
+                slots = Arrays.copyOf(slots, driverCount * 2);
+            }
+
+            slots[driverCount++] = slot;
+            if (available) {
+                // Grow the available partition by swapping the new slot to its boundary
+                swap(driverCount - 1, availableCount++);
+            }
+        }
+
+        int indexOf(int slot) {
+            for (int i = 0; i < driverCount; i++) {
+                if (slots[i] == slot) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return true if the removed slot was in the available partition
+         */
+        boolean removeSlotAt(int index) {
+            boolean wasAvailable = index < availableCount;
+            if (wasAvailable) {
+                // Move it to the end of the available partition, then shrink the partition
+                swap(index, --availableCount);
+                index = availableCount;
+            }
+
+            // Order within a partition does not matter, so fill the hole with the last slot
+            slots[index] = slots[--driverCount];
+            if (driverCount == 0) {
+                slots = null;
+            }
+            return wasAvailable;
+        }
+
+        /**
+         * @return true if the slot changed partition
+         */
+        boolean setAvailable(int index, boolean available) {
+            if (available && index >= availableCount) {
+                swap(index, availableCount++);
+                return true;
+            }
+            if (!available && index < availableCount) {
+                swap(index, --availableCount);
+                return true;
+            }
+            return false;
+        }
 
-        public TrieNode() {
-            this.children = new HashMap<>();
-            this.drivers = new ArrayList<>();
+        private void swap(int i, int j) {
+            int tmp = slots[i];
+            slots[i] = slots[j];
+            slots[j] = tmp;
         }
 
         public boolean hasChildren() {
-            return !children.isEmpty();
+            if (children == null) {
+                return false;
+            }
+            for (TrieNode child : children) {
+                if (child != null) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         public boolean hasDrivers() {
-            return !drivers.isEmpty();
+            return driverCount > 0;
         }
     }
 
     public GeohashTrie() {
-        this.root = new TrieNode();
-        this.totalDrivers = 0;
+        this(false);
+    }
+
+    public GeohashTrie(boolean concurrent) {
+        this(new DriverLocationStore(), concurrent);
+    }
+
+    /**
+     * @param concurrent if true, the trie may be shared between threads. Each
+     *                   precision-4 cell is guarded by a striped read/write lock, so updates
+     *                   in different cells proceed in parallel and readers only block
+     *                   writers of the cells they are reading. Cells coarser than that
+     *                   lock every stripe.
+     * @param store Columnar store holding the indexed drivers' positions. Inserting a
+     *              driver gives it a slot there and deleting it releases the slot; the
+     *              owner of the store keeps the location columns current.
+     */
+    public GeohashTrie(DriverLocationStore store, boolean concurrent) {
+        this(store, concurrent, false);
+    }
+
+    /**
+     * @param copyOnWrite if true, readers take no locks at all. Writers still lock their
+     *                    stripes, but copy every node on the paths they change and then
+     *                    publish a new root, so a reader traverses whichever root was
+     *                    current when it started and never sees a node change under it.
+     *                    Requires concurrent. See isCopyOnWrite for what readers see.
+     */
+    public GeohashTrie(DriverLocationStore store, boolean concurrent, boolean copyOnWrite) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        if (copyOnWrite && !concurrent) {
+            throw new IllegalArgumentException("Copy-on-write mode requires concurrent mode");
+        }
+
+        this.store = store;
+        this.concurrent = concurrent;
+        this.copyOnWrite = copyOnWrite;
+        this.writeEpochs = new AtomicLong();
+        this.root = newRoot();
+        this.totalDrivers = new AtomicInteger();
+        this.availableDrivers = new AtomicInteger();
+        this.totalNodes = new AtomicInteger(1);
+        this.nodesAtDepth = new AtomicIntegerArray(GeohashUtil.MAX_LONG_PRECISION + 1);
+        this.nodesAtDepth.set(0, 1);
+
+        if (concurrent) {
+            this.stripes = new ReentrantReadWriteLock[LOCK_STRIPES];
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                this.stripes[i] = new ReentrantReadWriteLock();
+            }
+        } else {
+            this.stripes = null;
+        }
+    }
+
+    private TrieNode newRoot() {
+        TrieNode node = new TrieNode(0);
+        node.children = new TrieNode[ALPHABET_SIZE];
+        return node;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * In copy-on-write mode every read works on one snapshot of the trie: counts and
+     * the slots listed per cell are exactly as of one point in time, even across moves
+     * between stripes, as if the read ran at the moment that snapshot was published.
+     * The drivers behind those slots are read live, so a driver that moved since may
+     * still be reported in its old cell, with its new position, by that one read. A
+     * driver removed since is skipped.
+     */
+    public boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
+    /**
+     * Root a write of a cell coarser than STRIPE_PRECISION should modify: the live root in
+     * place, or a private copy of it in copy-on-write mode, to be published with
+     * publishRoot(). Such writes hold every stripe, so no other write runs meanwhile.
+     */
+    private TrieNode beginRootWrite() {
+        return copyOnWrite ? root.copy(writeEpochs.incrementAndGet()) : root;
+    }
+
+    private void publishRoot(TrieNode written) {
+        if (copyOnWrite) {
+            synchronized (sharedLock) {
+                root = written;
+            }
+        }
+    }
+
+    /**
+     * Epoch of a write: a new one in copy-on-write mode, 0 in place
+     */
+    private long beginEpoch() {
+        return copyOnWrite ? writeEpochs.incrementAndGet() : 0;
+    }
+
+    /**
+     * Node of a stripe cell (a cell at STRIPE_PRECISION) that a write holding the cell's
+     * stripe should modify: the live node in place, or a private copy of it in
+     * copy-on-write mode. Only writers holding the stripe change the node and its
+     * subtree, so it stays current until endStripeWrite().
+     *
+     * @param create Whether to start a new, still detached node if the cell has none
+     * @return null if the cell has no node and create is false
+     */
+    private TrieNode beginStripeWrite(long cell, long epoch, boolean create) {
+        TrieNode live = findNode(root, cell, STRIPE_PRECISION);
+        if (live != null) {
+            return copyOnWrite ? live.copy(epoch) : live;
+        }
+        return create ? new TrieNode(epoch) : null;
+    }
+
+    /**
+     * Make a write to one stripe cell visible
+     */
+    private void endStripeWrite(long cell, TrieNode written) {
+        endStripeWrite(cell, written, cell, written);
+    }
+
+    /**
+     * Make a write to two stripe cells visible, e.g. a move: new nodes are attached and
+     * emptied ones removed, and in copy-on-write mode a root with both written nodes in
+     * place is published, so snapshot readers see both changes or neither. Other stripes
+     * may have published since beginStripeWrite, so the shared nodes are taken from the
+     * current root.
+     *
+     * @param writtenA Written node of cellA, or null if there is none
+     */
+    private void endStripeWrite(long cellA, TrieNode writtenA, long cellB, TrieNode writtenB) {
+        boolean both = cellA != cellB && writtenA != null;
+
+        if (!copyOnWrite) {
+            // In place, only new and emptied nodes change the shared nodes
+            boolean attachA = writtenA != null && needsAttach(cellA, writtenA);
+            boolean attachB = (cellA != cellB || writtenA == null) && needsAttach(cellB, writtenB);
+            if (attachA || attachB) {
+                synchronized (sharedLock) {
+                    if (attachA) {
+                        attach(root, cellA, writtenA);
+                    }
+                    if (attachB) {
+                        attach(root, cellB, writtenB);
+                    }
+                }
+            }
+            return;
+        }
+
+        synchronized (sharedLock) {
+            TrieNode merged = root.copy(writtenB.epoch);
+            attach(merged, cellB, writtenB);
+            if (both) {
+                attach(merged, cellA, writtenA);
+            }
+            root = merged;
+        }
+    }
+
+    private boolean needsAttach(long cell, TrieNode written) {
+        return isEmpty(written) || findNode(root, cell, STRIPE_PRECISION) != written;
+    }
+
+    /**
+     * Link a stripe cell's node under top, creating the shared nodes above it as needed,
+     * or unlink it if empty, along with any shared nodes left empty. Called with
+     * sharedLock held. Stripe cell nodes are counted here, the nodes below them by their
+     * writers.
+     */
+    private void attach(TrieNode top, long cell, TrieNode node) {
+        TrieNode[] path = new TrieNode[STRIPE_PRECISION];
+        TrieNode current = top;
+        boolean remove = isEmpty(node);
+
+        for (int i = 0; i < STRIPE_PRECISION - 1; i++) {
+            path[i] = current;
+            int digit = GeohashUtil.digitAt(cell, STRIPE_PRECISION, i);
+            TrieNode child = current.writableChild(digit);
+            if (child == null) {
+                if (remove) {
+                    return;
+                }
+                child = current.addChild(digit);
+                totalNodes.incrementAndGet();
+                nodesAtDepth.incrementAndGet(i + 1);
+            }
+            current = child;
+        }
+        path[STRIPE_PRECISION - 1] = current;
+
+        int last = GeohashUtil.digitAt(cell, STRIPE_PRECISION, STRIPE_PRECISION - 1);
+        boolean present = current.child(last) != null;
+        if (!remove) {
+            current.setChild(last, node);
+            if (!present) {
+                totalNodes.incrementAndGet();
+                nodesAtDepth.incrementAndGet(STRIPE_PRECISION);
+            }
+            return;
+        }
+        if (!present) {
+            return;
+        }
+
+        current.removeChild(last);
+        totalNodes.decrementAndGet();
+        nodesAtDepth.decrementAndGet(STRIPE_PRECISION);
+        // Prune the shared nodes left empty, never the root
+        for (int depth = STRIPE_PRECISION - 1; depth > 0 && isEmpty(path[depth]); depth--) {
+            path[depth - 1].removeChild(GeohashUtil.digitAt(cell, STRIPE_PRECISION, depth - 1));
+            totalNodes.decrementAndGet();
+            nodesAtDepth.decrementAndGet(depth);
+        }
+    }
+
+    private static boolean isEmpty(TrieNode node) {
+        return !node.hasDrivers() && !node.hasChildren();
+    }
+
+    /**
+     * Whether a cell is coarser than a stripe cell. Such cells span many stripes, and
+     * writes and locked reads of them take every stripe.
+     */
+    private static boolean isCoarse(int precision) {
+        return precision < STRIPE_PRECISION;
+    }
+
+    /**
+     * Counters are maintained for stripe cells and everything below them
+     */
+    private static boolean isCounted(int depth) {
+        return depth >= STRIPE_PRECISION;
+    }
+
+    public DriverLocationStore getLocationStore() {
+        return store;
     }
 
     public void insert(String geohash, Driver driver) {
@@ -42,54 +472,310 @@ public class GeohashTrie {
             throw new IllegalArgumentException("Geohash cannot be null or empty");
         }
 
+        insert(GeohashUtil.fromBase32(geohash), geohash.length(), driver);
+    }
+
+    /**
+     * Insert a driver under a geohash given in its long form
+     *
+     * @param geohash Geohash bits (see GeohashUtil.encodeLong)
+     * @param precision Number of geohash characters
+     * @param driver Driver to insert
+     */
+    public void insert(long geohash, int precision, Driver driver) {
+        checkPrecision(precision);
+
         if (driver == null) {
             throw new IllegalArgumentException("Driver cannot be null");
         }
 
-        TrieNode current = root;
+        lockForWrite(geohash, precision);
+        try {
+            int slot = store.slotOf(driver);
+            if (slot < 0) {
+                slot = store.allocate(driver);
+            }
+
+            if (isCoarse(precision)) {
+                TrieNode written = beginRootWrite();
+                insertUnlocked(written, 0, geohash, precision, slot);
+                publishRoot(written);
+                return;
+            }
+
+            long cell = GeohashUtil.prefix(geohash, precision, STRIPE_PRECISION);
+            TrieNode written = beginStripeWrite(cell, beginEpoch(), true);
+            insertUnlocked(written, STRIPE_PRECISION, geohash, precision, slot);
+            endStripeWrite(cell, written);
+        } finally {
+            unlockForWrite(geohash, precision);
+        }
+    }
 
-        for (char ch : geohash.toCharArray()) {
-            current.children.putIfAbsent(ch, new TrieNode());
-            current = current.children.get(ch);
+    /**
+     * @param top Node to insert below: the root, or the driver's stripe cell
+     * @param depth Depth of top
+     */
+    private void insertUnlocked(TrieNode top, int depth, long geohash, int precision, int slot) {
+        boolean available = store.isAvailable(slot);
+        store.setCell(slot, geohash);
+        TrieNode current = top;
+        if (isCounted(depth)) {
+            current.driversInSubtree++;
+            if (available) {
+                current.availableInSubtree++;
+            }
         }
 
-        current.drivers.add(driver);
-        totalDrivers++;
+        for (int i = depth; i < precision; i++) {
+            int digit = GeohashUtil.digitAt(geohash, precision, i);
+            TrieNode child = current.writableChild(digit);
+            if (child == null) {
+                child = current.addChild(digit);
+                totalNodes.incrementAndGet();
+                nodesAtDepth.incrementAndGet(i + 1);
+            }
+
+            current = child;
+            if (isCounted(i + 1)) {
+                current.driversInSubtree++;
+                if (available) {
+                    current.availableInSubtree++;
+                }
+            }
+        }
+
+        current.addSlot(slot, available);
+        totalDrivers.incrementAndGet();
+        if (available) {
+            availableDrivers.incrementAndGet();
+        }
     }
 
     public List<Driver> searchByPrefix(String prefix) {
-        List<Driver> results = new ArrayList<>();
-
         if (prefix == null || prefix.isEmpty()) {
-            collectAllDrivers(root, results);
+            List<Driver> results = new ArrayList<>();
+            lockAllForRead();
+            try {
+                collectAllDrivers(root, results);
+            } finally {
+                unlockAllForRead();
+            }
             return results;
         }
 
-        TrieNode current = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (GeohashUtil.base32Index(prefix.charAt(i)) < 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        return searchByPrefix(GeohashUtil.fromBase32(prefix), prefix.length());
+    }
+
+    /**
+     * Find all drivers whose geohash starts with the given prefix
+     *
+     * @param prefix Prefix bits (see GeohashUtil.encodeLong)
+     * @param prefixLength Number of geohash characters in the prefix
+     * @return Drivers in the prefix cell
+     */
+    public List<Driver> searchByPrefix(long prefix, int prefixLength) {
+        checkPrecision(prefixLength);
+
+        List<Driver> results = new ArrayList<>();
+
+        long[] locked = readStripes(new long[]{prefix}, 1, prefixLength);
+        lockStripesForRead(locked);
+        try {
+            collectPrefix(root, prefix, prefixLength, results);
+        } finally {
+            unlockStripesForRead(locked);
+        }
+
+        return results;
+    }
+
+    /**
+     * Find all drivers under any of several prefixes of the same length in one pass,
+     * e.g. a cell and its neighbors. Each lock stripe involved is taken once, so the
+     * result is a consistent view of all the cells.
+     *
+     * @param prefixes Prefix bits; negative entries are ignored
+     * @param prefixLength Number of geohash characters in each prefix
+     * @return Drivers in any of the prefix cells
+     */
+    public List<Driver> searchByPrefixes(long[] prefixes, int prefixLength) {
+        List<Driver> results = new ArrayList<>();
+        forEachInPrefixes(prefixes, prefixes.length, prefixLength, results::add);
+        return results;
+    }
+
+    /**
+     * Visit every driver under the first count prefixes without copying them into a list.
+     * The visitor runs while the cells' stripes are read-locked, so it must be short
+     * and must not call back into the trie. In copy-on-write mode nothing is locked and
+     * all prefixes are read from the same snapshot.
+     *
+     * @param prefixes Prefix bits; negative entries are ignored
+     * @param count Number of entries of prefixes to use
+     * @param prefixLength Number of geohash characters in each prefix
+     * @param visitor Called once per driver
+     */
+    public void forEachInPrefixes(long[] prefixes, int count, int prefixLength, Consumer<Driver> visitor) {
+        forEachInPrefixes(prefixes, count, prefixLength, false, visitor);
+    }
+
+    /**
+     * Like forEachInPrefixes, but only visits available drivers. Busy drivers are never
+     * touched and subtrees without available drivers are skipped entirely.
+     */
+    public void forEachAvailableInPrefixes(long[] prefixes, int count, int prefixLength,
+                                           Consumer<Driver> visitor) {
+        forEachInPrefixes(prefixes, count, prefixLength, true, visitor);
+    }
 
-        for (char ch : prefix.toCharArray()) {
-            TrieNode child = current.children.get(ch);
+    /**
+     * Visit the store slots of the available drivers under the first count prefixes.
+     * Callers read positions straight from the DriverLocationStore columns and only
+     * resolve the Driver for the candidates they keep. Same locking rules as
+     * forEachInPrefixes. In copy-on-write mode a slot may be released while the visitor
+     * runs, so store.driver(slot) can return null.
+     */
+    public void forEachAvailableSlotInPrefixes(long[] prefixes, int count, int prefixLength,
+                                               IntConsumer visitor) {
+        visitPrefixes(prefixes, count, prefixLength, true, slot -> {
+            visitor.accept(slot);
+            return true;
+        });
+    }
+
+    /**
+     * Like forEachAvailableSlotInPrefixes, but stops as soon as the visitor returns false
+     *
+     * @return false if the visitor stopped the walk
+     */
+    public boolean visitAvailableSlotsInPrefixes(long[] prefixes, int count, int prefixLength,
+                                                 IntPredicate visitor) {
+        return visitPrefixes(prefixes, count, prefixLength, true, visitor);
+    }
+
+    /**
+     * Find all available drivers under any of several prefixes of the same length
+     */
+    public List<Driver> searchAvailableByPrefixes(long[] prefixes, int prefixLength) {
+        List<Driver> results = new ArrayList<>();
+        forEachAvailableInPrefixes(prefixes, prefixes.length, prefixLength, results::add);
+        return results;
+    }
+
+    private void forEachInPrefixes(long[] prefixes, int count, int prefixLength, boolean availableOnly,
+                                   Consumer<Driver> visitor) {
+        visitPrefixes(prefixes, count, prefixLength, availableOnly, slot -> {
+            Driver driver = store.driver(slot);
+            if (driver != null) {
+                visitor.accept(driver);
+            }
+            return true;
+        });
+    }
+
+    private boolean visitPrefixes(long[] prefixes, int count, int prefixLength, boolean availableOnly,
+                                  IntPredicate visitor) {
+        checkPrecision(prefixLength);
+
+        long[] locked = readStripes(prefixes, count, prefixLength);
+        lockStripesForRead(locked);
+        try {
+            TrieNode snapshot = root;
+            for (int i = 0; i < count; i++) {
+                if (prefixes[i] >= 0 && !visitPrefix(snapshot, prefixes[i], prefixLength, availableOnly, visitor)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            unlockStripesForRead(locked);
+        }
+    }
+
+    private boolean visitPrefix(TrieNode from, long prefix, int prefixLength, boolean availableOnly,
+                                IntPredicate visitor) {
+        TrieNode current = from;
+
+        for (int i = 0; i < prefixLength; i++) {
+            TrieNode child = current.child(GeohashUtil.digitAt(prefix, prefixLength, i));
             if (child == null) {
-                return results;
+                return true;
             }
             current = child;
         }
 
-        collectAllDrivers(current, results);
+        return availableOnly
+                ? visitAvailableDrivers(current, prefixLength, visitor)
+                : visitAllDrivers(current, visitor);
+    }
 
-        return results;
+    private void collectPrefix(TrieNode from, long prefix, int prefixLength, List<Driver> results) {
+        visitPrefix(from, prefix, prefixLength, false, slot -> addDriver(slot, results));
     }
 
     private void collectAllDrivers(TrieNode node, List<Driver> results) {
+        visitAllDrivers(node, slot -> addDriver(slot, results));
+    }
+
+    private boolean addDriver(int slot, List<Driver> results) {
+        // Only null in copy-on-write mode, for a slot released after the snapshot
+        Driver driver = store.driver(slot);
+        if (driver != null) {
+            results.add(driver);
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the visitor stopped the walk
+     */
+    private boolean visitAllDrivers(TrieNode node, IntPredicate visitor) {
         if (node == null) {
-            return;
+            return true;
+        }
+
+        for (int i = 0; i < node.driverCount; i++) {
+            if (!visitor.test(node.slots[i])) {
+                return false;
+            }
+        }
+
+        if (node.children != null) {
+            for (TrieNode child : node.children) {
+                if (child != null && !visitAllDrivers(child, visitor)) {
+                    return false;
+                }
+            }
         }
+        return true;
+    }
 
-        results.addAll(node.drivers);
+    private boolean visitAvailableDrivers(TrieNode node, int depth, IntPredicate visitor) {
+        // Only the partition of available drivers is read
+        for (int i = 0; i < node.availableCount; i++) {
+            if (!visitor.test(node.slots[i])) {
+                return false;
+            }
+        }
 
-        for (TrieNode child : node.children.values()) {
-            collectAllDrivers(child, results);
+        if (node.children != null) {
+            // Shared nodes have no counters to skip subtrees by
+            boolean counted = isCounted(depth + 1);
+            for (TrieNode child : node.children) {
+                if (child != null && (!counted || child.availableInSubtree > 0)
+                        && !visitAvailableDrivers(child, depth + 1, visitor)) {
+                    return false;
+                }
+            }
         }
+        return true;
     }
 
     public boolean delete(String geohash, Driver driver) {
@@ -97,34 +783,213 @@ public class GeohashTrie {
             return false;
         }
 
-        return deleteHelper(root, geohash, 0, driver);
+        for (int i = 0; i < geohash.length(); i++) {
+            if (GeohashUtil.base32Index(geohash.charAt(i)) < 0) {
+                return false;
+            }
+        }
+
+        return delete(GeohashUtil.fromBase32(geohash), geohash.length(), driver);
+    }
+
+    public boolean delete(long geohash, int precision, Driver driver) {
+        return delete(geohash, precision, driver, true);
+    }
+
+    /**
+     * Remove a driver from the trie but keep its store slot, so it can be inserted into
+     * another trie sharing the same store without its location columns moving
+     *
+     * @return true if the driver was found in the cell
+     */
+    public boolean detach(long geohash, int precision, Driver driver) {
+        return delete(geohash, precision, driver, false);
+    }
+
+    private boolean delete(long geohash, int precision, Driver driver, boolean releaseSlot) {
+        if (precision < 1 || precision > GeohashUtil.MAX_LONG_PRECISION || driver == null) {
+            return false;
+        }
+
+        lockForWrite(geohash, precision);
+        try {
+            int slot = store.slotOf(driver);
+            if (slot < 0) {
+                return false;
+            }
+
+            if (isCoarse(precision)) {
+                TrieNode written = beginRootWrite();
+                if (!deleteHelper(written, 0, geohash, precision, slot)) {
+                    return false;
+                }
+                publishRoot(written);
+            } else {
+                long cell = GeohashUtil.prefix(geohash, precision, STRIPE_PRECISION);
+                TrieNode written = beginStripeWrite(cell, beginEpoch(), false);
+                if (written == null || !deleteHelper(written, STRIPE_PRECISION, geohash, precision, slot)) {
+                    return false;
+                }
+                endStripeWrite(cell, written);
+            }
+
+            if (releaseSlot) {
+                store.release(slot);
+            }
+            return true;
+        } finally {
+            unlockForWrite(geohash, precision);
+        }
+    }
+
+    /**
+     * @param node Node to delete below: the root, or the driver's stripe cell
+     * @param depth Depth of node
+     */
+    private boolean deleteHelper(TrieNode node, int depth, long geohash, int precision, int slot) {
+        int result = deleteFromSubtree(node, geohash, precision, depth, slot);
+        // Nodes below are updated by deleteFromSubtree, the stripe cell itself here
+        if (isCounted(depth) && result != NOT_FOUND) {
+            node.driversInSubtree--;
+            if (result == REMOVED_AVAILABLE) {
+                node.availableInSubtree--;
+            }
+        }
+        return result != NOT_FOUND;
     }
 
-    private boolean deleteHelper(TrieNode node, String geohash, int index, Driver driver) {
-        if (index == geohash.length()) {
-            boolean removed = node.drivers.remove(driver);
+    private int deleteFromSubtree(TrieNode node, long geohash, int precision, int index, int slot) {
+        if (index == precision) {
+            int position = node.indexOf(slot);
 
-            if (removed) {
-                totalDrivers--;
+            if (position < 0) {
+                return NOT_FOUND;
             }
 
-            return removed;
+            totalDrivers.decrementAndGet();
+            if (node.removeSlotAt(position)) {
+                availableDrivers.decrementAndGet();
+                return REMOVED_AVAILABLE;
+            }
+            return REMOVED_UNAVAILABLE;
         }
 
-        char ch = geohash.charAt(index);
-        TrieNode child = node.children.get(ch);
+        int digit = GeohashUtil.digitAt(geohash, precision, index);
+        TrieNode child = node.writableChild(digit);
 
         if (child == null) {
-            return false;
+            return NOT_FOUND;
         }
 
-        boolean removed = deleteHelper(child, geohash, index + 1, driver);
+        int result = deleteFromSubtree(child, geohash, precision, index + 1, slot);
+
+        if (isCounted(index + 1)) {
+            if (result != NOT_FOUND) {
+                child.driversInSubtree--;
+            }
+            if (result == REMOVED_AVAILABLE) {
+                child.availableInSubtree--;
+            }
+        }
 
         if (!child.hasDrivers() && !child.hasChildren()) {
-            node.children.remove(ch);
+            node.removeChild(digit);
+            totalNodes.decrementAndGet();
+            nodesAtDepth.decrementAndGet(index + 1);
         }
 
-        return removed;
+        return result;
+    }
+
+    /**
+     * Move a driver between the available and unavailable partitions of its cell and
+     * set the driver's flag, so the index and the driver never disagree.
+     *
+     * @param geohash Geohash bits the driver is indexed under
+     * @param precision Precision of geohash
+     * @param driver Driver to update
+     * @param available New availability
+     * @return true if the driver was found in the cell
+     */
+    public boolean setAvailability(long geohash, int precision, Driver driver, boolean available) {
+        checkPrecision(precision);
+
+        if (driver == null) {
+            throw new IllegalArgumentException("Driver cannot be null");
+        }
+
+        lockForWrite(geohash, precision);
+        try {
+            driver.setAvailable(available);
+
+            int slot = store.slotOf(driver);
+            if (slot < 0) {
+                return false;
+            }
+
+            store.setAvailable(slot, available);
+
+            if (isCoarse(precision)) {
+                TrieNode written = beginRootWrite();
+                int result = availabilityHelper(written, geohash, precision, 0, slot, available);
+                if (result == CHANGED) {
+                    publishRoot(written);
+                }
+                return result != NOT_FOUND;
+            }
+
+            long cell = GeohashUtil.prefix(geohash, precision, STRIPE_PRECISION);
+            TrieNode written = beginStripeWrite(cell, beginEpoch(), false);
+            if (written == null) {
+                return false;
+            }
+
+            int result = availabilityHelper(written, geohash, precision, STRIPE_PRECISION, slot, available);
+            if (result == CHANGED) {
+                // The stripe cell's own counter; availabilityHelper updates the ones below
+                written.availableInSubtree += available ? 1 : -1;
+                endStripeWrite(cell, written);
+            }
+            return result != NOT_FOUND;
+        } finally {
+            unlockForWrite(geohash, precision);
+        }
+    }
+
+    private int availabilityHelper(TrieNode node, long geohash, int precision, int index,
+                                   int slot, boolean available) {
+        if (index == precision) {
+            int position = node.indexOf(slot);
+
+            if (position < 0) {
+                return NOT_FOUND;
+            }
+
+            if (!node.setAvailable(position, available)) {
+                return UNCHANGED;
+            }
+
+            if (available) {
+                availableDrivers.incrementAndGet();
+            } else {
+                availableDrivers.decrementAndGet();
+            }
+            return CHANGED;
+        }
+
+        TrieNode child = node.writableChild(GeohashUtil.digitAt(geohash, precision, index));
+
+        if (child == null) {
+            return NOT_FOUND;
+        }
+
+        int result = availabilityHelper(child, geohash, precision, index + 1, slot, available);
+
+        if (result == CHANGED && isCounted(index + 1)) {
+            child.availableInSubtree += available ? 1 : -1;
+        }
+
+        return result;
     }
 
     /**
@@ -136,63 +1001,349 @@ public class GeohashTrie {
      * @return true if update successful
      */
     public boolean updateLocation(String oldGeohash, String newGeohash, Driver driver) {
-        boolean removed = delete(oldGeohash, driver);
+        if (newGeohash == null || newGeohash.isEmpty()) {
+            throw new IllegalArgumentException("Geohash cannot be null or empty");
+        }
 
-        if (!removed) {
-            insert(newGeohash, driver);
-            return true;
+        boolean hasOld = oldGeohash != null && !oldGeohash.isEmpty();
+        return move(
+                hasOld ? GeohashUtil.fromBase32(oldGeohash) : 0,
+                hasOld ? oldGeohash.length() : 0,
+                GeohashUtil.fromBase32(newGeohash),
+                newGeohash.length(),
+                driver
+        );
+    }
+
+    /**
+     * Update driver's location using long geohashes of the same precision
+     * In concurrent mode both cells are locked for the whole move, so readers never
+     * observe the driver missing from, or duplicated across, the two cells.
+     *
+     * @param oldGeohash Previous geohash bits
+     * @param newGeohash New geohash bits
+     * @param precision Precision of both geohashes
+     * @param driver Driver to update
+     * @return true if update successful
+     */
+    public boolean updateLocation(long oldGeohash, long newGeohash, int precision, Driver driver) {
+        return move(oldGeohash, precision, newGeohash, precision, driver);
+    }
+
+    private boolean move(long oldGeohash, int oldPrecision, long newGeohash, int newPrecision, Driver driver) {
+        checkPrecision(newPrecision);
+
+        if (driver == null) {
+            throw new IllegalArgumentException("Driver cannot be null");
         }
 
-        insert(newGeohash, driver);
-        return true;
+        if (isCoarse(newPrecision) || (oldPrecision > 0 && isCoarse(oldPrecision))) {
+            lockAllForWrite();
+            try {
+                TrieNode written = beginRootWrite();
+                int slot = store.slotOf(driver);
+                if (slot >= 0 && oldPrecision > 0) {
+                    deleteHelper(written, 0, oldGeohash, oldPrecision, slot);
+                }
+                insertUnlocked(written, 0, newGeohash, newPrecision, slot >= 0 ? slot : store.allocate(driver));
+                publishRoot(written);
+                return true;
+            } finally {
+                unlockAllForWrite();
+            }
+        }
+
+        int newStripe = stripeOf(newGeohash, newPrecision);
+        int oldStripe = oldPrecision > 0 ? stripeOf(oldGeohash, oldPrecision) : newStripe;
+        // Always acquire in stripe order so two opposite moves cannot deadlock
+        Lock first = writeLock(Math.min(oldStripe, newStripe));
+        Lock second = oldStripe != newStripe ? writeLock(Math.max(oldStripe, newStripe)) : null;
+
+        lock(first);
+        lock(second);
+        try {
+            long epoch = beginEpoch();
+            long newCell = GeohashUtil.prefix(newGeohash, newPrecision, STRIPE_PRECISION);
+            long oldCell = oldPrecision > 0 ? GeohashUtil.prefix(oldGeohash, oldPrecision, STRIPE_PRECISION) : newCell;
+
+            // The driver keeps its slot, so its location columns stay where they are
+            int slot = store.slotOf(driver);
+            TrieNode oldNode = null;
+            if (slot >= 0 && oldPrecision > 0) {
+                oldNode = beginStripeWrite(oldCell, epoch, false);
+                if (oldNode != null) {
+                    deleteHelper(oldNode, STRIPE_PRECISION, oldGeohash, oldPrecision, slot);
+                }
+            }
+
+            TrieNode newNode = oldNode != null && oldCell == newCell
+                    ? oldNode
+                    : beginStripeWrite(newCell, epoch, true);
+            insertUnlocked(newNode, STRIPE_PRECISION, newGeohash, newPrecision,
+                    slot >= 0 ? slot : store.allocate(driver));
+
+            // Both cells change in one published root, so snapshot readers also never
+            // see the driver in both or neither
+            endStripeWrite(oldCell, oldNode, newCell, newNode);
+            return true;
+        } finally {
+            unlock(second);
+            unlock(first);
+        }
     }
 
     public int getTotalDrivers() {
-        return totalDrivers;
+        return totalDrivers.get();
+    }
+
+    public int getAvailableDrivers() {
+        return availableDrivers.get();
     }
 
     public boolean isEmpty() {
-        return totalDrivers == 0;
+        return totalDrivers.get() == 0;
     }
 
     public void clear() {
-        this.root = new TrieNode();
-        this.totalDrivers = 0;
+        lockAllForWrite();
+        try {
+            this.root = newRoot();
+            this.store.clear();
+            this.totalDrivers.set(0);
+            this.availableDrivers.set(0);
+            this.totalNodes.set(1);
+            for (int depth = 1; depth < nodesAtDepth.length(); depth++) {
+                nodesAtDepth.set(depth, 0);
+            }
+        } finally {
+            unlockAllForWrite();
+        }
     }
 
+    /**
+     * Trie statistics from counters maintained on every insert, delete and
+     * availability change: O(depth), no traversal and no locking.
+     */
     public TrieStats getStats() {
         TrieStats stats = new TrieStats();
-        stats.totalDrivers = this.totalDrivers;
-        stats.totalNodes = countNodes(root);
-        stats.maxDepth = getMaxDepth(root, 0);
+        stats.totalDrivers = this.totalDrivers.get();
+        stats.availableDrivers = this.availableDrivers.get();
+        stats.totalNodes = this.totalNodes.get();
+        stats.maxDepth = getMaxDepth();
         return stats;
     }
 
-    private int countNodes(TrieNode node) {
-        if (node == null) {
-            return 0;
+    private int getMaxDepth() {
+        for (int depth = nodesAtDepth.length() - 1; depth > 0; depth--) {
+            if (nodesAtDepth.get(depth) > 0) {
+                return depth;
+            }
         }
-        int count = 1; // Count current node
-        for (TrieNode child : node.children.values()) {
-            count += countNodes(child);
+        return 0;
+    }
+
+    /**
+     * Count drivers under a set of prefixes by reading the subtree counters of the
+     * prefix nodes: O(depth) per prefix, independent of how many drivers are there.
+     *
+     * @param prefixes Prefix bits; negative entries are ignored
+     * @param prefixLength Number of geohash characters in each prefix
+     * @return Total and available drivers in the prefix cells
+     */
+    public CellCounts countByPrefixes(long[] prefixes, int prefixLength) {
+        checkPrecision(prefixLength);
+
+        CellCounts counts = new CellCounts();
+
+        long[] locked = readStripes(prefixes, prefixes.length, prefixLength);
+        lockStripesForRead(locked);
+        try {
+            TrieNode snapshot = root;
+            for (long prefix : prefixes) {
+                if (prefix < 0) {
+                    continue;
+                }
+
+                TrieNode node = findNode(snapshot, prefix, prefixLength);
+                if (node != null) {
+                    addCounts(node, prefixLength, counts);
+                }
+            }
+        } finally {
+            unlockStripesForRead(locked);
         }
-        return count;
+
+        return counts;
     }
 
-    private int getMaxDepth(TrieNode node, int currentDepth) {
-        if (node == null) {
-            return currentDepth;
+    /**
+     * Add a node's subtree counts: its own counters from STRIPE_PRECISION down, the sum
+     * over the stripe cells below it for a shared node
+     */
+    private static void addCounts(TrieNode node, int depth, CellCounts counts) {
+        if (isCounted(depth)) {
+            counts.totalDrivers += node.driversInSubtree;
+            counts.availableDrivers += node.availableInSubtree;
+            return;
+        }
+
+        counts.totalDrivers += node.driverCount;
+        counts.availableDrivers += node.availableCount;
+        if (node.children != null) {
+            for (TrieNode child : node.children) {
+                if (child != null) {
+                    addCounts(child, depth + 1, counts);
+                }
+            }
+        }
+    }
+
+    private TrieNode findNode(TrieNode from, long prefix, int prefixLength) {
+        TrieNode current = from;
+
+        for (int i = 0; i < prefixLength; i++) {
+            current = current.child(GeohashUtil.digitAt(prefix, prefixLength, i));
+            if (current == null) {
+                return null;
+            }
+        }
+
+        return current;
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > GeohashUtil.MAX_LONG_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Geohash precision must be between 1 and " + GeohashUtil.MAX_LONG_PRECISION);
+        }
+    }
+
+    /**
+     * Lock stripe of a cell at STRIPE_PRECISION or finer: a hash of its stripe cell, so
+     * neighboring cells of one metro area mostly fall on different stripes
+     */
+    static int stripeOf(long geohash, int precision) {
+        long cell = GeohashUtil.prefix(geohash, precision, STRIPE_PRECISION);
+        return (int) ((cell * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - STRIPE_BITS));
+    }
+
+    /**
+     * Whether readers lock stripes: in concurrent mode, unless they read snapshots
+     */
+    private boolean lockedReads() {
+        return concurrent && !copyOnWrite;
+    }
+
+    private Lock writeLock(int stripe) {
+        return concurrent ? stripes[stripe].writeLock() : null;
+    }
+
+    private void lockForWrite(long geohash, int precision) {
+        if (isCoarse(precision)) {
+            lockAllForWrite();
+        } else {
+            lock(writeLock(stripeOf(geohash, precision)));
+        }
+    }
+
+    private void unlockForWrite(long geohash, int precision) {
+        if (isCoarse(precision)) {
+            unlockAllForWrite();
+        } else {
+            unlock(writeLock(stripeOf(geohash, precision)));
+        }
+    }
+
+    private static void lock(Lock lock) {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    private static void unlock(Lock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stripes a locked read of the first count prefixes takes, as a bit set
+     */
+    private long[] readStripes(long[] prefixes, int count, int prefixLength) {
+        if (!lockedReads()) {
+            return NO_STRIPES;
+        }
+
+        long[] locked = new long[LOCK_STRIPES / Long.SIZE];
+        for (int i = 0; i < count; i++) {
+            if (prefixes[i] < 0) {
+                continue;
+            }
+            if (isCoarse(prefixLength)) {
+                Arrays.fill(locked, -1L);
+                break;
+            }
+            int stripe = stripeOf(prefixes[i], prefixLength);
+            locked[stripe >>> 6] |= 1L << stripe;
+        }
+        return locked;
+    }
+
+    /**
+     * Read-lock a set of stripes in ascending order, the order every writer and reader
+     * takes them in
+     */
+    private void lockStripesForRead(long[] locked) {
+        for (int word = 0; word < locked.length; word++) {
+            for (long bits = locked[word]; bits != 0; bits &= bits - 1) {
+                stripes[word * Long.SIZE + Long.numberOfTrailingZeros(bits)].readLock().lock();
+            }
         }
-        int maxDepth = currentDepth;
-        for (TrieNode child : node.children.values()) {
-            int childDepth = getMaxDepth(child, currentDepth + 1);
-            maxDepth = Math.max(maxDepth, childDepth);
+    }
+
+    private void unlockStripesForRead(long[] locked) {
+        for (int word = 0; word < locked.length; word++) {
+            for (long bits = locked[word]; bits != 0; bits &= bits - 1) {
+                stripes[word * Long.SIZE + Long.numberOfTrailingZeros(bits)].readLock().unlock();
+            }
+        }
+    }
+
+    private void lockAllForRead() {
+        if (lockedReads()) {
+            for (ReentrantReadWriteLock stripe : stripes) {
+                stripe.readLock().lock();
+            }
+        }
+    }
+
+    private void unlockAllForRead() {
+        if (lockedReads()) {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].readLock().unlock();
+            }
+        }
+    }
+
+    private void lockAllForWrite() {
+        if (concurrent) {
+            for (ReentrantReadWriteLock stripe : stripes) {
+                stripe.writeLock().lock();
+            }
+        }
+    }
+
+    private void unlockAllForWrite() {
+        if (concurrent) {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].writeLock().unlock();
+            }
         }
-        return maxDepth;
     }
 
     public static class TrieStats {
         public int totalDrivers;
+        public int availableDrivers;
         public int totalNodes;
         public int maxDepth;
 
@@ -200,9 +1351,27 @@ public class GeohashTrie {
         public String toString() {
             return "TrieStats{" +
                     "totalDrivers=" + totalDrivers +
+                    ", availableDrivers=" + availableDrivers +
                     ", totalNodes=" + totalNodes +
                     ", maxDepth=" + maxDepth +
                     '}';
         }
     }
+
+    public static class CellCounts {
+        public int totalDrivers;
+        public int availableDrivers;
+
+        public int getUnavailableDrivers() {
+            return totalDrivers - availableDrivers;
+        }
+
+        @Override
+        public String toString() {
+            return "CellCounts{" +
+                    "totalDrivers=" + totalDrivers +
+                    ", availableDrivers=" + availableDrivers +
+                    '}';
+        }
+    }
 }
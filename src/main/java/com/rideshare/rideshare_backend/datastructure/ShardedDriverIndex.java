@@ -0,0 +1,597 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Driver index split into shards by geohash prefix, each a GeohashTrie over one shared
+ * DriverLocationStore.
+ *
+ * A cell's shard is a hash of its prefix at the shard precision, so the cells of one
+ * metro area spread over all shards instead of sharing one top-level cell. With more
+ * than one shard, each shard has a single writer thread: inserts, deletes, availability
+ * changes and moves within a shard run there, one at a time, and callers wait for them.
+ * Readers never go through the writers.
+ *
+ * A move to a cell of another shard is a handoff: the driver is detached from the old
+ * shard and inserted into the new one while the handoff locks of both shards are
+ * write-held, taken in shard order. Reads that span several shards run optimistically
+ * against the handoff locks of the shards they visit, and are redone under their read
+ * sides if a handoff into or out of one of those shards overlapped them, so they never
+ * see a driver in both shards or in neither. Handoffs between other shards neither
+ * block nor redo them, and handoffs between disjoint pairs of shards run in parallel.
+ * Reads confined to one shard do not look at the locks at all.
+ *
+ * With a single shard there is no writer thread and no handoff: callers write the trie
+ * directly under its stripe locks, exactly like a plain GeohashTrie.
+ */
+public class ShardedDriverIndex implements AutoCloseable {
+    /**
+     * Precision-5 cells (about 4.9 km) spread a city over the shards while keeping
+     * the neighborhood of a pickup in one or two of them
+     */
+    public static final int DEFAULT_SHARD_PRECISION = 5;
+
+    private static final int INITIAL_BUFFER_CAPACITY = 64;
+
+    private static final class Shard {
+        final GeohashTrie trie;
+        // null with a single shard
+        final ExecutorService writer;
+        // Write-held while a driver is handed off into or out of this shard
+        final StampedLock handoffs = new StampedLock();
+
+        Shard(GeohashTrie trie, ExecutorService writer) {
+            this.trie = trie;
+            this.writer = writer;
+        }
+    }
+
+    private final DriverLocationStore store;
+    private final Shard[] shards;
+    private final int shardPrecision;
+
+    /**
+     * @param store Store shared by all shards
+     * @param shardCount Number of shards, at least 1
+     * @param shardPrecision Length of the geohash prefix that picks a driver's shard
+     * @param copyOnWrite Whether readers use trie snapshots (see GeohashTrie.isCopyOnWrite)
+     */
+    public ShardedDriverIndex(DriverLocationStore store, int shardCount, int shardPrecision, boolean copyOnWrite) {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        if (shardPrecision < 1 || shardPrecision > GeohashUtil.MAX_LONG_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Shard precision must be between 1 and " + GeohashUtil.MAX_LONG_PRECISION);
+        }
+
+        this.store = store;
+        this.shardPrecision = shardPrecision;
+        this.shards = new Shard[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            ExecutorService writer = null;
+            if (shardCount > 1) {
+                String name = "driver-shard-" + i;
+                writer = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            shards[i] = new Shard(new GeohashTrie(store, true, copyOnWrite), writer);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getShardPrecision() {
+        return shardPrecision;
+    }
+
+    public DriverLocationStore getLocationStore() {
+        return store;
+    }
+
+    /**
+     * Shard holding a cell, or -1 if the cell is coarser than the shard precision and
+     * may span every shard
+     */
+    public int shardOf(long cell, int precision) {
+        if (shards.length == 1) {
+            return 0;
+        }
+        if (precision < shardPrecision) {
+            return -1;
+        }
+
+        long prefix = cell >>> (5 * (precision - shardPrecision));
+        // Fibonacci hashing: neighboring prefixes land on unrelated shards
+        return (int) (((prefix * 0x9E3779B97F4A7C15L) >>> 32) % shards.length);
+    }
+
+    public void insert(long geohash, int precision, Driver driver) {
+        Shard shard = shards[checkedShardOf(geohash, precision)];
+        write(shard, () -> {
+            shard.trie.insert(geohash, precision, driver);
+            return null;
+        });
+    }
+
+    public boolean delete(long geohash, int precision, Driver driver) {
+        if (precision < 1 || precision > GeohashUtil.MAX_LONG_PRECISION || driver == null) {
+            return false;
+        }
+
+        Shard shard = shards[checkedShardOf(geohash, precision)];
+        return write(shard, () -> shard.trie.delete(geohash, precision, driver));
+    }
+
+    /**
+     * See GeohashTrie.setAvailability
+     */
+    public boolean setAvailability(long geohash, int precision, Driver driver, boolean available) {
+        Shard shard = shards[checkedShardOf(geohash, precision)];
+        return write(shard, () -> shard.trie.setAvailability(geohash, precision, driver, available));
+    }
+
+    /**
+     * Move a driver between cells of the same precision, handing it off to another
+     * shard if the new cell belongs to one. The caller must serialize writes for the
+     * driver, as DriverService does under the driver's lock. A handoff whose insert
+     * fails puts the driver back into its old cell before rethrowing.
+     *
+     * @return false if a handoff did not find the driver in its old cell; it is
+     *         inserted into the new one all the same, as a move within a shard does
+     */
+    public boolean updateLocation(long oldGeohash, long newGeohash, int precision, Driver driver) {
+        int from = checkedShardOf(oldGeohash, precision);
+        int to = checkedShardOf(newGeohash, precision);
+
+        if (from == to) {
+            Shard shard = shards[to];
+            return write(shard, () -> shard.trie.updateLocation(oldGeohash, newGeohash, precision, driver));
+        }
+
+        Shard source = shards[from];
+        Shard target = shards[to];
+
+        // Both locks in shard order, so handoffs in opposite directions cannot deadlock
+        Shard first = from < to ? source : target;
+        Shard second = from < to ? target : source;
+        long firstStamp = first.handoffs.writeLock();
+        long secondStamp = second.handoffs.writeLock();
+        try {
+            // The driver keeps its slot: detach does not release it and insert reuses it
+            boolean detached = write(source, () -> source.trie.detach(oldGeohash, precision, driver));
+            try {
+                write(target, () -> {
+                    target.trie.insert(newGeohash, precision, driver);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                // Still under both locks, so no reader sees the driver missing from both
+                if (detached) {
+                    write(source, () -> {
+                        source.trie.insert(oldGeohash, precision, driver);
+                        return null;
+                    });
+                }
+                throw e;
+            }
+            return detached;
+        } finally {
+            second.handoffs.unlockWrite(secondStamp);
+            first.handoffs.unlockWrite(firstStamp);
+        }
+    }
+
+    private int checkedShardOf(long geohash, int precision) {
+        if (precision < shardPrecision && shards.length > 1) {
+            throw new IllegalArgumentException("Drivers must be indexed at precision " + shardPrecision
+                    + " or finer to be sharded");
+        }
+        return shardOf(geohash, precision);
+    }
+
+    /**
+     * Run a write on the shard's writer thread and wait for it, or directly with a single shard
+     */
+    private static <T> T write(Shard shard, Callable<T> operation) {
+        try {
+            if (shard.writer == null) {
+                return operation.call();
+            }
+
+            Future<T> result = shard.writer.submit(operation);
+            return awaitUninterruptibly(result);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Shard write failed", e);
+        }
+    }
+
+    private static <T> T awaitUninterruptibly(Future<T> result) throws Exception {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException e) {
+                    // The write is already queued, so wait for it rather than leave the
+                    // caller unsure whether it was applied
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Find all available drivers under any of several prefixes of the same length
+     */
+    public List<Driver> searchAvailableByPrefixes(long[] prefixes, int prefixLength) {
+        List<Driver> results = new ArrayList<>();
+        forEachAvailableInPrefixes(prefixes, prefixes.length, prefixLength, results::add);
+        return results;
+    }
+
+    /**
+     * See GeohashTrie.forEachAvailableInPrefixes. Across shards the visitor only runs
+     * once the read is known not to have overlapped a handoff.
+     */
+    public void forEachAvailableInPrefixes(long[] prefixes, int count, int prefixLength,
+                                           Consumer<Driver> visitor) {
+        forEachAvailableSlotInPrefixes(prefixes, count, prefixLength, slot -> {
+            Driver driver = store.driver(slot);
+            if (driver != null) {
+                visitor.accept(driver);
+            }
+        });
+    }
+
+    /**
+     * See GeohashTrie.forEachAvailableSlotInPrefixes
+     */
+    public void forEachAvailableSlotInPrefixes(long[] prefixes, int count, int prefixLength,
+                                               IntConsumer visitor) {
+        visitAvailableSlotsInPrefixes(prefixes, count, prefixLength, slot -> {
+            visitor.accept(slot);
+            return true;
+        });
+    }
+
+    /**
+     * See GeohashTrie.visitAvailableSlotsInPrefixes. An optimistic read across shards
+     * still collects every slot before the visitor sees the first.
+     */
+    public boolean visitAvailableSlotsInPrefixes(long[] prefixes, int count, int prefixLength,
+                                                 IntPredicate visitor) {
+        int single = singleShard(prefixes, count, prefixLength);
+        if (single >= 0) {
+            return shards[single].trie.visitAvailableSlotsInPrefixes(prefixes, count, prefixLength, visitor);
+        }
+
+        int[] visited = shardsOf(prefixes, count, prefixLength);
+        long[] stamps = tryOptimisticRead(visited);
+        if (stamps != null) {
+            // Buffer the slots: the visitor must not see a read that gets redone
+            SlotBuffer buffer = new SlotBuffer();
+            visitShards(prefixes, count, prefixLength, visited, buffer);
+            if (validate(visited, stamps)) {
+                return buffer.forEach(visitor);
+            }
+        }
+
+        stamps = readLock(visited);
+        try {
+            return visitShards(prefixes, count, prefixLength, visited, visitor);
+        } finally {
+            unlockRead(visited, stamps);
+        }
+    }
+
+    private boolean visitShards(long[] prefixes, int count, int prefixLength, int[] visited, IntPredicate visitor) {
+        long[] own = new long[count];
+        for (int s : visited) {
+            prefixesOfShard(prefixes, count, prefixLength, s, own);
+            if (!shards[s].trie.visitAvailableSlotsInPrefixes(own, count, prefixLength, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * See GeohashTrie.countByPrefixes
+     */
+    public GeohashTrie.CellCounts countByPrefixes(long[] prefixes, int prefixLength) {
+        int single = singleShard(prefixes, prefixes.length, prefixLength);
+        if (single >= 0) {
+            return shards[single].trie.countByPrefixes(prefixes, prefixLength);
+        }
+
+        int[] visited = shardsOf(prefixes, prefixes.length, prefixLength);
+        long[] stamps = tryOptimisticRead(visited);
+        if (stamps != null) {
+            GeohashTrie.CellCounts counts = countShards(prefixes, prefixLength, visited);
+            if (validate(visited, stamps)) {
+                return counts;
+            }
+        }
+
+        stamps = readLock(visited);
+        try {
+            return countShards(prefixes, prefixLength, visited);
+        } finally {
+            unlockRead(visited, stamps);
+        }
+    }
+
+    private GeohashTrie.CellCounts countShards(long[] prefixes, int prefixLength, int[] visited) {
+        GeohashTrie.CellCounts counts = new GeohashTrie.CellCounts();
+        long[] own = new long[prefixes.length];
+
+        for (int s : visited) {
+            prefixesOfShard(prefixes, prefixes.length, prefixLength, s, own);
+            GeohashTrie.CellCounts shardCounts = shards[s].trie.countByPrefixes(own, prefixLength);
+            counts.totalDrivers += shardCounts.totalDrivers;
+            counts.availableDrivers += shardCounts.availableDrivers;
+        }
+
+        return counts;
+    }
+
+    /**
+     * Shards that may hold drivers under any of the prefixes, in ascending order
+     */
+    private int[] shardsOf(long[] prefixes, int count, int prefixLength) {
+        boolean[] touched = new boolean[shards.length];
+        int touchedCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (prefixes[i] < 0) {
+                continue;
+            }
+
+            int owner = shardOf(prefixes[i], prefixLength);
+            if (owner < 0) {
+                // Coarser than the shard precision: every shard
+                touchedCount = shards.length;
+                Arrays.fill(touched, true);
+                break;
+            }
+            if (!touched[owner]) {
+                touched[owner] = true;
+                touchedCount++;
+            }
+        }
+
+        int[] visited = new int[touchedCount];
+        int next = 0;
+        for (int s = 0; s < shards.length; s++) {
+            if (touched[s]) {
+                visited[next++] = s;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return Optimistic stamps of the shards' handoff locks, or null if a handoff
+     *         involving one of them is in progress
+     */
+    private long[] tryOptimisticRead(int[] visited) {
+        long[] stamps = new long[visited.length];
+        for (int i = 0; i < visited.length; i++) {
+            stamps[i] = shards[visited[i]].handoffs.tryOptimisticRead();
+            if (stamps[i] == 0) {
+                return null;
+            }
+        }
+        return stamps;
+    }
+
+    private boolean validate(int[] visited, long[] stamps) {
+        for (int i = 0; i < visited.length; i++) {
+            if (!shards[visited[i]].handoffs.validate(stamps[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // In ascending shard order, like handoffs
+    private long[] readLock(int[] visited) {
+        long[] stamps = new long[visited.length];
+        for (int i = 0; i < visited.length; i++) {
+            stamps[i] = shards[visited[i]].handoffs.readLock();
+        }
+        return stamps;
+    }
+
+    private void unlockRead(int[] visited, long[] stamps) {
+        for (int i = visited.length - 1; i >= 0; i--) {
+            shards[visited[i]].handoffs.unlockRead(stamps[i]);
+        }
+    }
+
+    /**
+     * @return The one shard all prefixes fall in, or -1 if they span several
+     */
+    private int singleShard(long[] prefixes, int count, int prefixLength) {
+        if (shards.length == 1) {
+            return 0;
+        }
+
+        int shard = -1;
+        for (int i = 0; i < count; i++) {
+            if (prefixes[i] < 0) {
+                continue;
+            }
+
+            int own = shardOf(prefixes[i], prefixLength);
+            if (own < 0 || (shard >= 0 && own != shard)) {
+                return -1;
+            }
+            shard = own;
+        }
+
+        return Math.max(shard, 0);
+    }
+
+    /**
+     * Copy the prefixes that may hold drivers of a shard, with -1 for the others
+     */
+    private void prefixesOfShard(long[] prefixes, int count, int prefixLength, int shard, long[] own) {
+        for (int i = 0; i < count; i++) {
+            long prefix = prefixes[i];
+            own[i] = -1;
+            if (prefix < 0) {
+                continue;
+            }
+
+            // Prefixes coarser than the shard precision span every shard
+            int owner = shardOf(prefix, prefixLength);
+            if (owner == shard || owner < 0) {
+                own[i] = prefix;
+            }
+        }
+    }
+
+    /**
+     * Statistics summed over the shards. Tries of different shards repeat the
+     * interior nodes above their cells, so totalNodes counts those once per shard.
+     */
+    public GeohashTrie.TrieStats getStats() {
+        GeohashTrie.TrieStats stats = new GeohashTrie.TrieStats();
+
+        for (Shard shard : shards) {
+            GeohashTrie.TrieStats shardStats = shard.trie.getStats();
+            stats.totalDrivers += shardStats.totalDrivers;
+            stats.availableDrivers += shardStats.availableDrivers;
+            stats.totalNodes += shardStats.totalNodes;
+            stats.maxDepth = Math.max(stats.maxDepth, shardStats.maxDepth);
+        }
+
+        return stats;
+    }
+
+    /**
+     * Drop every driver. Handoffs are held off and every writer is parked meanwhile,
+     * so no shard writes the shared store while it is being cleared.
+     */
+    public void clear() {
+        if (shards.length == 1) {
+            shards[0].trie.clear();
+            return;
+        }
+
+        long[] stamps = new long[shards.length];
+        for (int s = 0; s < shards.length; s++) {
+            stamps[s] = shards[s].handoffs.writeLock();
+        }
+        CountDownLatch parked = new CountDownLatch(shards.length);
+        CountDownLatch resume = new CountDownLatch(1);
+        try {
+            for (Shard shard : shards) {
+                shard.writer.execute(() -> {
+                    parked.countDown();
+                    awaitQuietly(resume);
+                });
+            }
+            awaitQuietly(parked);
+
+            for (Shard shard : shards) {
+                shard.trie.clear();
+            }
+        } finally {
+            resume.countDown();
+            for (int s = shards.length - 1; s >= 0; s--) {
+                shards[s].handoffs.unlockWrite(stamps[s]);
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the writer threads; writes already queued still run
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            if (shard.writer != null) {
+                shard.writer.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Growable list of slots collected by an optimistic read
+     */
+    private static final class SlotBuffer implements IntPredicate {
+        private int[] slots = new int[INITIAL_BUFFER_CAPACITY];
+        private int size;
+
+        @Override
+        public boolean test(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+            return true;
+        }
+
+        boolean forEach(IntPredicate visitor) {
+            for (int i = 0; i < size; i++) {
+                if (!visitor.test(slots[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
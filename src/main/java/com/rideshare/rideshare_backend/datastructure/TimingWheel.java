@@ -0,0 +1,166 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of primitive long entries, each due at a System.nanoTime()
+ * deadline.
+ *
+ * Time advances in ticks. Level 0 has one bucket per tick for the next 64 ticks, level 1
+ * one bucket per 64 ticks, and so on for 4 levels (2^24 ticks in all). Scheduling
+ * appends the entry to one bucket, and advancing by a tick visits one level-0 bucket,
+ * plus a higher-level bucket every 64^level ticks whose entries move down a level. Each
+ * entry therefore costs O(1) to schedule and at most one move per level, however many
+ * entries are pending. Deadlines beyond the top level wait in its furthest bucket and
+ * are placed again when it comes round.
+ *
+ * An entry fires on the first advance whose tick is at or past its deadline, so it is
+ * never early and at most one tick late. Not thread-safe.
+ */
+public class TimingWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private static final class Bucket {
+        long[] entries = new long[INITIAL_BUCKET_CAPACITY];
+        // Deadline tick of each entry; buckets above level 0 span many ticks
+        long[] deadlines = new long[INITIAL_BUCKET_CAPACITY];
+        int size;
+
+        void add(long entry, long deadline) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+                deadlines = Arrays.copyOf(deadlines, size * 2);
+            }
+            entries[size] = entry;
+            deadlines[size] = deadline;
+            size++;
+        }
+    }
+
+    private final long tickNanos;
+    private final long originNanos;
+    private final Bucket[][] wheels = new Bucket[LEVELS][WHEEL_SIZE];
+    // Swapped in for a bucket being drained, so entries scheduled meanwhile are kept apart
+    private Bucket spare = new Bucket();
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickNanos Length of a tick
+     * @param startNanos System.nanoTime() the wheel starts at
+     */
+    public TimingWheel(long tickNanos, long startNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+        }
+
+        this.tickNanos = tickNanos;
+        this.originNanos = startNanos;
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Schedule an entry. A deadline already passed fires on the next tick.
+     */
+    public void schedule(long entry, long deadlineNanos) {
+        // Round up, so the entry never fires before its deadline
+        long deadlineTick = Math.floorDiv(deadlineNanos - originNanos + tickNanos - 1, tickNanos);
+        place(entry, Math.max(deadlineTick, currentTick + 1));
+        size++;
+    }
+
+    /**
+     * Advance to nowNanos, passing each entry that came due to expired. expired may
+     * schedule entries, including the one it was given.
+     *
+     * @return Number of entries that fired
+     */
+    public int advance(long nowNanos, LongConsumer expired) {
+        long nowTick = Math.floorDiv(nowNanos - originNanos, tickNanos);
+        int fired = 0;
+
+        while (currentTick < nowTick) {
+            if (size == 0) {
+                currentTick = nowTick;
+                break;
+            }
+
+            long tick = ++currentTick;
+            // Move entries down from every level whose bucket boundary this tick crosses,
+            // top level first so they can continue down in the same tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    Bucket bucket = detach(level, (int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                    for (int i = 0; i < bucket.size; i++) {
+                        place(bucket.entries[i], bucket.deadlines[i]);
+                    }
+                    recycle(bucket);
+                }
+            }
+
+            Bucket due = detach(0, (int) tick & WHEEL_MASK);
+            size -= due.size;
+            fired += due.size;
+            for (int i = 0; i < due.size; i++) {
+                expired.accept(due.entries[i]);
+            }
+            recycle(due);
+        }
+
+        return fired;
+    }
+
+    /**
+     * Number of pending entries
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i].size = 0;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * @param deadlineTick At or after currentTick
+     */
+    private void place(long entry, long deadlineTick) {
+        // Lowest level whose wheel reaches the deadline's bucket before coming round again
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * level;
+            if ((deadlineTick >>> shift) - (currentTick >>> shift) <= WHEEL_SIZE) {
+                wheels[level][(int) (deadlineTick >>> shift) & WHEEL_MASK].add(entry, deadlineTick);
+                return;
+            }
+        }
+
+        // Beyond the top level: wait in the bucket it reaches last
+        int shift = WHEEL_BITS * (LEVELS - 1);
+        wheels[LEVELS - 1][(int) (currentTick >>> shift) & WHEEL_MASK].add(entry, deadlineTick);
+    }
+
+    private Bucket detach(int level, int index) {
+        Bucket bucket = wheels[level][index];
+        wheels[level][index] = spare;
+        return bucket;
+    }
+
+    private void recycle(Bucket bucket) {
+        bucket.size = 0;
+        spare = bucket;
+    }
+}
@@ -0,0 +1,173 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import java.util.Arrays;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Keeps the K values with the smallest keys seen so far.
+ *
+ * Backed by a size-K max-heap over a primitive key array, so the worst of the
+ * current top K sits at the root. A candidate that cannot beat it is rejected
+ * in O(1) before anything is allocated for it; accepted candidates cost O(log K).
+ * Selecting K out of N is O(N log K) time and O(K) space, versus O(N log N) and
+ * O(N) for pushing every candidate through an unbounded MinHeap. The arrays start
+ * small and grow up to K as candidates arrive, so a large K with few candidates
+ * costs only what is actually kept.
+ */
+public class TopKSelector<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private double[] keys;
+    private Object[] values;
+    private int size;
+
+    public TopKSelector(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.keys = new double[Math.min(capacity, INITIAL_CAPACITY)];
+        this.values = new Object[keys.length];
+    }
+
+    /**
+     * Check whether a key would make it into the current top K
+     * Use this to skip building a candidate that would be rejected anyway.
+     */
+    public boolean wouldAccept(double key) {
+        return size < capacity || key < keys[0];
+    }
+
+    /**
+     * Offer a candidate
+     *
+     * @param key Ranking key (smaller is better), e.g. distance in km
+     * @param value Candidate
+     * @return true if the candidate is now in the top K
+     */
+    public boolean offer(double key, T value) {
+        if (size < capacity) {
+            if (size == keys.length) {
+                grow();
+            }
+            keys[size] = key;
+            values[size] = value;
+            siftUp(size++);
+            return true;
+        }
+
+        if (key >= keys[0]) {
+            return false;
+        }
+
+        // Replace the current worst and restore the heap
+        keys[0] = key;
+        values[0] = value;
+        siftDown(0, size);
+        return true;
+    }
+
+    /**
+     * Largest key currently kept, or +infinity while fewer than K candidates were seen.
+     * Any candidate with a key at or above this can be skipped.
+     */
+    public double worstKey() {
+        return size < capacity ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Hand the kept candidates to the consumer in ascending key order and empty the selector.
+     * Sorting is an in-place heapsort, so no intermediate collection is built.
+     */
+    @SuppressWarnings("unchecked")
+    public void drainSorted(ObjDoubleConsumer<? super T> consumer) {
+        // Heapsort: move the max to the end and shrink the heap, leaving keys ascending
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+
+        for (int i = 0; i < size; i++) {
+            consumer.accept((T) values[i], keys[i]);
+        }
+
+        clear();
+    }
+
+    private void grow() {
+        int length = (int) Math.min(capacity, 2L * keys.length);
+        keys = Arrays.copyOf(keys, length);
+        values = Arrays.copyOf(values, length);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            // Max-heap: larger keys float to the root
+            if (keys[index] > keys[parent]) {
+                swap(index, parent);
+                index = parent;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void siftDown(int index, int heapSize) {
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < heapSize && keys[left] > keys[largest]) {
+                largest = left;
+            }
+
+            if (right < heapSize && keys[right] > keys[largest]) {
+                largest = right;
+            }
+
+            if (largest == index) {
+                break;
+            }
+
+            swap(index, largest);
+            index = largest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+
+        Object value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,69 @@
+package com.rideshare.rideshare_backend.ingest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of the binary location feed. All values are big-endian.
+ *
+ * <pre>
+ * int    length      bytes that follow this field
+ * byte   type        BY_SLOT or BY_ID
+ *   BY_SLOT: int slot, int idHash (String.hashCode() of the driver id)
+ *   BY_ID:   short idLength, idLength bytes of UTF-8 driver id
+ * double latitude
+ * double longitude
+ * long   timestamp   epoch milliseconds when the ping was taken
+ * </pre>
+ *
+ * Frames follow each other with no separator, so a sender can write any number of
+ * them in one go. The encode methods are for clients such as the telematics gateway
+ * and tests.
+ */
+public final class LocationFeedProtocol {
+    public static final byte BY_SLOT = 1;
+    public static final byte BY_ID = 2;
+
+    static final int LENGTH_BYTES = Integer.BYTES;
+    static final int LOCATION_BYTES = 2 * Double.BYTES + Long.BYTES;
+    static final int SLOT_FRAME_LENGTH = 1 + 2 * Integer.BYTES + LOCATION_BYTES;
+    static final int MAX_ID_BYTES = 256;
+    static final int MIN_FRAME_LENGTH = 1 + Short.BYTES + 1 + LOCATION_BYTES;
+    static final int MAX_FRAME_LENGTH = 1 + Short.BYTES + MAX_ID_BYTES + LOCATION_BYTES;
+
+    private LocationFeedProtocol() {
+    }
+
+    /**
+     * Append a frame addressing the driver by its location store slot
+     */
+    public static void encodeBySlot(ByteBuffer buffer, int slot, String driverId,
+                                    double latitude, double longitude, long timestampMillis) {
+        buffer.putInt(SLOT_FRAME_LENGTH)
+                .put(BY_SLOT)
+                .putInt(slot)
+                .putInt(driverId.hashCode())
+                .putDouble(latitude)
+                .putDouble(longitude)
+                .putLong(timestampMillis);
+    }
+
+    /**
+     * Append a frame addressing the driver by id
+     */
+    public static void encodeById(ByteBuffer buffer, String driverId,
+                                  double latitude, double longitude, long timestampMillis) {
+        byte[] id = driverId.getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Driver id must be 1 to " + MAX_ID_BYTES + " bytes");
+        }
+
+        buffer.putInt(1 + Short.BYTES + id.length + LOCATION_BYTES)
+                .put(BY_ID)
+                .putShort((short) id.length)
+                .put(id)
+                .putDouble(latitude)
+                .putDouble(longitude)
+                .putLong(timestampMillis);
+    }
+}
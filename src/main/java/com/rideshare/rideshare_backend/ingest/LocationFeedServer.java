@@ -0,0 +1,325 @@
+package com.rideshare.rideshare_backend.ingest;
+
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.BY_ID;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.BY_SLOT;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.LENGTH_BYTES;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.LOCATION_BYTES;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.MAX_FRAME_LENGTH;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.MAX_ID_BYTES;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.MIN_FRAME_LENGTH;
+import static com.rideshare.rideshare_backend.ingest.LocationFeedProtocol.SLOT_FRAME_LENGTH;
+
+/**
+ * TCP listener for bulk location feeds in the LocationFeedProtocol format.
+ *
+ * One selector thread serves every connection. Each connection reads into its own
+ * direct buffer, and frames are decoded in place with absolute reads and handed to
+ * DriverService; slot-addressed frames allocate nothing on the way. Frames from one
+ * connection are applied in the order they were sent.
+ *
+ * Frames for unknown drivers, with coordinates out of range or older than the maximum
+ * age are dropped and counted. A frame that breaks the format closes its connection,
+ * since the stream can no longer be split into frames reliably. So does an unexpected
+ * error while applying a frame, e.g. from the write-ahead log or an index listener: it
+ * is logged and only that connection is dropped, and the selector keeps serving the rest.
+ *
+ * The protocol has no authentication or encryption: any client that can connect can
+ * move any driver. The server listens on loopback unless given another bind address,
+ * which should only be an interface on a trusted network.
+ */
+public class LocationFeedServer {
+    private static final Logger log = LoggerFactory.getLogger(LocationFeedServer.class);
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+
+    private final DriverService driverService;
+    private final InetSocketAddress address;
+    private final long maxAgeMillis;
+
+    private final AtomicLong framesApplied = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    /**
+     * Listener on the loopback interface only
+     */
+    public LocationFeedServer(DriverService driverService, int port, long maxAgeMillis) {
+        this(driverService, DEFAULT_BIND_ADDRESS, port, maxAgeMillis);
+    }
+
+    /**
+     * @param bindAddress Interface to listen on, e.g. 127.0.0.1; 0.0.0.0 listens on every
+     *                    interface. Frames are not authenticated, so only bind to
+     *                    interfaces reachable from trusted gateways.
+     * @param port Port to listen on; 0 picks a free one
+     * @param maxAgeMillis Frames with a timestamp older than this are dropped; 0 disables the check
+     */
+    public LocationFeedServer(DriverService driverService, String bindAddress, int port, long maxAgeMillis) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        if (maxAgeMillis < 0) {
+            throw new IllegalArgumentException("Maximum age cannot be negative");
+        }
+        if (bindAddress == null || bindAddress.isBlank()) {
+            throw new IllegalArgumentException("Bind address is required");
+        }
+
+        InetSocketAddress address = new InetSocketAddress(bindAddress, port);
+        if (address.isUnresolved()) {
+            throw new IllegalArgumentException("Unknown bind address: " + bindAddress);
+        }
+
+        this.driverService = driverService;
+        this.address = address;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::run, "location-feed");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Address and port the server is bound to
+     */
+    public synchronized InetSocketAddress getLocalAddress() throws IOException {
+        if (serverChannel == null) {
+            throw new IllegalStateException("Location feed server is not started");
+        }
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Port the server is bound to
+     */
+    public int getPort() throws IOException {
+        return getLocalAddress().getPort();
+    }
+
+    public long getFramesApplied() {
+        return framesApplied.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                return;
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                try {
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                } catch (IOException e) {
+                    closeConnection(key);
+                } catch (RuntimeException e) {
+                    log.warn("Closing location feed connection after an unexpected error", e);
+                    closeConnection(key);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.buffer;
+
+        if (channel.read(buffer) < 0) {
+            closeConnection(key);
+            return;
+        }
+
+        buffer.flip();
+        boolean valid = decodeFrames(connection, buffer);
+        buffer.compact();
+
+        if (!valid) {
+            closeConnection(key);
+        }
+    }
+
+    /**
+     * Apply every complete frame in the buffer, leaving a trailing partial frame unread
+     *
+     * @return false if the stream broke the frame format
+     */
+    private boolean decodeFrames(Connection connection, ByteBuffer buffer) {
+        long now = System.currentTimeMillis();
+
+        while (buffer.remaining() >= LENGTH_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+
+            if (length < MIN_FRAME_LENGTH || length > MAX_FRAME_LENGTH) {
+                return false;
+            }
+            if (buffer.remaining() < LENGTH_BYTES + length) {
+                return true;
+            }
+
+            if (!decodeFrame(connection, buffer, start + LENGTH_BYTES, length, now)) {
+                return false;
+            }
+            buffer.position(start + LENGTH_BYTES + length);
+        }
+
+        return true;
+    }
+
+    private boolean decodeFrame(Connection connection, ByteBuffer buffer, int offset, int length, long now) {
+        byte type = buffer.get(offset);
+
+        if (type == BY_SLOT) {
+            if (length != SLOT_FRAME_LENGTH) {
+                return false;
+            }
+
+            int slot = buffer.getInt(offset + 1);
+            int idHash = buffer.getInt(offset + 1 + Integer.BYTES);
+            int location = offset + 1 + 2 * Integer.BYTES;
+            double latitude = buffer.getDouble(location);
+            double longitude = buffer.getDouble(location + Double.BYTES);
+            long timestamp = buffer.getLong(location + 2 * Double.BYTES);
+
+            if (isAcceptable(latitude, longitude, timestamp, now)
+                    && driverService.updateDriverLocationAtSlot(slot, idHash, latitude, longitude)) {
+                framesApplied.incrementAndGet();
+            } else {
+                framesDropped.incrementAndGet();
+            }
+            return true;
+        }
+
+        if (type == BY_ID) {
+            int idLength = buffer.getShort(offset + 1) & 0xFFFF;
+            if (idLength == 0 || idLength > MAX_ID_BYTES || length != 1 + Short.BYTES + idLength + LOCATION_BYTES) {
+                return false;
+            }
+
+            int location = offset + 1 + Short.BYTES + idLength;
+            double latitude = buffer.getDouble(location);
+            double longitude = buffer.getDouble(location + Double.BYTES);
+            long timestamp = buffer.getLong(location + 2 * Double.BYTES);
+
+            if (!isAcceptable(latitude, longitude, timestamp, now)) {
+                framesDropped.incrementAndGet();
+                return true;
+            }
+
+            buffer.get(offset + 1 + Short.BYTES, connection.idBytes, 0, idLength);
+            String driverId = new String(connection.idBytes, 0, idLength, StandardCharsets.UTF_8);
+
+            try {
+                driverService.updateDriverLocation(driverId, latitude, longitude);
+                framesApplied.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                framesDropped.incrementAndGet();
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean isAcceptable(double latitude, double longitude, long timestamp, long now) {
+        // Also rejects NaN
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            return false;
+        }
+        return maxAgeMillis == 0 || now - timestamp <= maxAgeMillis;
+    }
+
+    private void closeConnection(SelectionKey key) {
+        // A failed accept must not take the listening socket down with it
+        if (key.channel() == serverChannel) {
+            return;
+        }
+
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Nothing left to release
+        }
+    }
+
+    private static final class Connection {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        final byte[] idBytes = new byte[MAX_ID_BYTES];
+    }
+}
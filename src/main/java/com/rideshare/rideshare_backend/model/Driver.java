@@ -1,22 +1,34 @@
 package com.rideshare.rideshare_backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 public class Driver {
     private String id;
     private String name;
-    private double latitude;
-    private double longitude;
-    private String geohash;
-    private boolean available;
-    private LocalDateTime lastUpdated;
+    private volatile double latitude;
+    private volatile double longitude;
+    // Trig terms of the position, computed once per location change instead of once
+    // per distance calculation
+    private volatile double latitudeRadians;
+    private volatile double longitudeRadians;
+    private volatile double cosLatitude;
+    private volatile long geohashLong;
+    private volatile int geohashPrecision;
+    private volatile boolean available;
+    private volatile LocalDateTime lastUpdated;
+    // Slot in the DriverLocationStore indexing this driver, -1 while not indexed
+    private volatile int slot = -1;
 
     public Driver(String id, String name, double latitude, double longitude) {
         this.id = id;
         this.name = name;
         this.latitude = latitude;
         this.longitude = longitude;
+        updateTrigTerms();
         this.available = true;
         this.lastUpdated = LocalDateTime.now();
     }
@@ -39,6 +51,7 @@ public class Driver {
 
     public void setLatitude(double latitude) {
         this.latitude = latitude;
+        updateTrigTerms();
     }
 
     public double getLatitude() {
@@ -47,6 +60,7 @@ public class Driver {
 
     public void setLongitude(double longitude) {
         this.longitude = longitude;
+        updateTrigTerms();
     }
 
     public double getLongitude() {
@@ -54,11 +68,37 @@ public class Driver {
     }
 
     public void setGeohash(String geohash) {
-        this.geohash = geohash;
+        if (geohash == null || geohash.isEmpty()) {
+            this.geohashLong = 0;
+            this.geohashPrecision = 0;
+        } else {
+            this.geohashLong = GeohashUtil.fromBase32(geohash);
+            this.geohashPrecision = geohash.length();
+        }
+    }
+
+    /**
+     * The geohash is kept in its long form; the string form is only built when
+     * someone asks for it (JSON rendering, logging), never on the ping path.
+     */
+    public void setGeohash(long geohash, int precision) {
+        this.geohashLong = geohash;
+        this.geohashPrecision = precision;
     }
 
     public String getGeohash() {
-        return this.geohash;
+        int precision = this.geohashPrecision;
+        return precision == 0 ? null : GeohashUtil.toBase32(geohashLong, precision);
+    }
+
+    @JsonIgnore
+    public long getGeohashLong() {
+        return this.geohashLong;
+    }
+
+    @JsonIgnore
+    public int getGeohashPrecision() {
+        return this.geohashPrecision;
     }
 
     public void setAvailable(boolean available) {
@@ -77,13 +117,45 @@ public class Driver {
         return this.lastUpdated;
     }
 
+    @JsonIgnore
+    public int getSlot() {
+        return this.slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    @JsonIgnore
+    public double getLatitudeRadians() {
+        return this.latitudeRadians;
+    }
+
+    @JsonIgnore
+    public double getLongitudeRadians() {
+        return this.longitudeRadians;
+    }
+
+    @JsonIgnore
+    public double getCosLatitude() {
+        return this.cosLatitude;
+    }
+
     public void updateLocation(double latitude, double longitude) {
         this.latitude = latitude;
         this.longitude = longitude;
+        updateTrigTerms();
         this.lastUpdated = LocalDateTime.now();
 
     }
 
+    private void updateTrigTerms() {
+        double latRad = Math.toRadians(this.latitude);
+        this.latitudeRadians = latRad;
+        this.longitudeRadians = Math.toRadians(this.longitude);
+        this.cosLatitude = Math.cos(latRad);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -104,7 +176,7 @@ public class Driver {
                 ", name='" + name + '\'' +
                 ", latitude=" + latitude +
                 ", longitude=" + longitude +
-                ", geohash='" + geohash + '\'' +
+                ", geohash='" + getGeohash() + '\'' +
                 ", available=" + available +
                 '}';
     }
@@ -0,0 +1,46 @@
+package com.rideshare.rideshare_backend.model;
+
+public class DriverLocationUpdate {
+    private String driverId;
+    private double latitude;
+    private double longitude;
+
+    public DriverLocationUpdate(String driverId, double latitude, double longitude) {
+        this.driverId = driverId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public String getDriverId() {
+        return driverId;
+    }
+
+    public void setDriverId(String driverId) {
+        this.driverId = driverId;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    @Override
+    public String toString() {
+        return "DriverLocationUpdate{" +
+                "driverId='" + driverId + '\'' +
+                ", latitude=" + latitude +
+                ", longitude=" + longitude +
+                '}';
+    }
+}
@@ -49,10 +49,11 @@ public class DriverWithDistance implements Comparable<DriverWithDistance>{
     }
 
     public String getFormattedDistance() {
+        // Same output as "%.0f m" / "%.2f km" without going through Formatter
         if (distanceKm < 1.0) {
-            return String.format("%.0f m", distanceKm * 1000);
+            return Math.round(distanceKm * 1000) + " m";
         } else {
-            return String.format("%.2f km", distanceKm);
+            return formatHundredths(distanceKm) + " km";
         }
     }
 
@@ -60,19 +61,25 @@ public class DriverWithDistance implements Comparable<DriverWithDistance>{
         if (estimatedArrivalMinutes < 1.0) {
             return "< 1 min";
         } else if (estimatedArrivalMinutes < 60) {
-            return String.format("%.0f mins", estimatedArrivalMinutes);
+            return Math.round(estimatedArrivalMinutes) + " mins";
         } else {
             int hours = (int) (estimatedArrivalMinutes / 60);
             int mins = (int) (estimatedArrivalMinutes % 60);
-            return String.format("%d hr %d mins", hours, mins);
+            return hours + " hr " + mins + " mins";
         }
     }
 
+    private static String formatHundredths(double value) {
+        long hundredths = Math.round(value * 100);
+        long fraction = hundredths % 100;
+        return (hundredths / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
     @Override
     public String toString() {
         return "DriverWithDistance{" +
                 "driver=" + driver.getName() +
-                ", distanceKm=" + String.format("%.2f", distanceKm) +
+                ", distanceKm=" + formatHundredths(distanceKm) +
                 ", estimatedArrival=" + getFormattedArrivalTime() +
                 '}';
     }
@@ -0,0 +1,275 @@
+package com.rideshare.rideshare_backend.persistence;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverIndexListener;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps DriverService's index on disk so a restart does not drop every online driver.
+ *
+ * Every change is appended to a write-ahead log, which is flushed to the operating
+ * system every flush interval. Every snapshot interval the log is rotated and a
+ * snapshot of all drivers is written; log segments older than the snapshot are then
+ * deleted. On start, the index is rebuilt from the latest snapshot plus the log
+ * segments written since, before any new change is accepted.
+ *
+ * At most one flush interval of changes is lost if the process dies. Appends only
+ * buffer, so a change is acknowledged before it reaches the disk. If flushes fail, e.g.
+ * on a full disk, each failure is logged and the change stays in memory, retried by the
+ * next flush, and is lost on restart if no flush succeeds. Once the unwritten backlog
+ * reaches its limit, logging is turned off: the backlog is dropped, an error is logged
+ * and isFailed() turns true. Snapshots carry on, so a restart still recovers the index
+ * as of the last snapshot that could be written.
+ */
+public class DriverIndexPersistence implements DriverIndexListener {
+    private static final Logger logger = LoggerFactory.getLogger(DriverIndexPersistence.class);
+
+    private final DriverService driverService;
+    private final Path directory;
+    private final long flushIntervalMillis;
+    private final long snapshotIntervalSeconds;
+    private final WriteAheadLog log;
+    // Scheduled and shutdown snapshots share the temporary file
+    private final Object snapshotLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+    private long recoveredDrivers;
+    private long replayedRecords;
+    private final AtomicBoolean failed = new AtomicBoolean();
+
+    public DriverIndexPersistence(DriverService driverService, Path directory,
+                                  long flushIntervalMillis, long snapshotIntervalSeconds) {
+        this(driverService, directory, flushIntervalMillis, snapshotIntervalSeconds,
+                WriteAheadLog.DEFAULT_MAX_BACKLOG_BYTES);
+    }
+
+    /**
+     * @param maxBacklogBytes Unwritten log bytes at which logging is turned off
+     */
+    public DriverIndexPersistence(DriverService driverService, Path directory,
+                                  long flushIntervalMillis, long snapshotIntervalSeconds, long maxBacklogBytes) {
+        this(driverService, directory, flushIntervalMillis, snapshotIntervalSeconds,
+                new WriteAheadLog(directory, maxBacklogBytes));
+    }
+
+    DriverIndexPersistence(DriverService driverService, Path directory,
+                           long flushIntervalMillis, long snapshotIntervalSeconds, WriteAheadLog log) {
+        if (flushIntervalMillis <= 0 || snapshotIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("Flush and snapshot intervals must be positive");
+        }
+
+        this.driverService = driverService;
+        this.directory = directory;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.log = log;
+    }
+
+    /**
+     * Rebuild the index from disk, then start logging changes
+     */
+    public synchronized void start() throws IOException {
+        if (scheduler != null) {
+            return;
+        }
+
+        recover();
+        log.open();
+        driverService.addListener(this);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "driver-index-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void recover() throws IOException {
+        long fromSegment = DriverSnapshot.read(directory,
+                (driverId, name, latitude, longitude, available) -> {
+                    restore(driverId, name, latitude, longitude, available);
+                    recoveredDrivers++;
+                });
+
+        replayedRecords = WriteAheadLog.replay(directory, fromSegment, new WriteAheadLog.Visitor() {
+            @Override
+            public void register(String driverId, String name, double latitude, double longitude,
+                                 boolean available) {
+                restore(driverId, name, latitude, longitude, available);
+            }
+
+            @Override
+            public void location(String driverId, double latitude, double longitude) {
+                if (driverService.getDriverById(driverId).isPresent()) {
+                    driverService.updateDriverLocation(driverId, latitude, longitude);
+                }
+            }
+
+            @Override
+            public void availability(String driverId, boolean available) {
+                if (driverService.getDriverById(driverId).isPresent()) {
+                    driverService.setDriverAvailability(driverId, available);
+                }
+            }
+
+            @Override
+            public void remove(String driverId) {
+                driverService.removeDriver(driverId);
+            }
+        });
+    }
+
+    /**
+     * Register a driver as logged, replacing one with the same id: the snapshot may
+     * already hold a driver whose registration is replayed again from the log.
+     */
+    private void restore(String driverId, String name, double latitude, double longitude, boolean available) {
+        driverService.removeDriver(driverId);
+
+        Driver driver = new Driver(driverId, name, latitude, longitude);
+        driver.setAvailable(available);
+        driverService.registerDriver(driver);
+    }
+
+    /**
+     * Rotate the log and write a snapshot; segments before the new one are then redundant
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long segment = log.rotate();
+            DriverSnapshot.write(directory, driverService.getAllDrivers(), segment);
+            log.deleteSegmentsBefore(segment);
+        }
+    }
+
+    public void flush() throws IOException {
+        log.flush();
+    }
+
+    /**
+     * Stop logging, write a final snapshot so the next start replays no log
+     */
+    public synchronized void close() throws IOException {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            snapshot();
+        } finally {
+            driverService.removeListener(this);
+            log.close();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Drivers loaded from the snapshot on start
+     */
+    public long getRecoveredDrivers() {
+        return recoveredDrivers;
+    }
+
+    /**
+     * Log records replayed on top of the snapshot on start
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * Whether logging was turned off because the log could not be written for too long.
+     * Changes since the last snapshot are then lost on restart.
+     */
+    public boolean isFailed() {
+        return failed.get();
+    }
+
+    private void flushQuietly() {
+        if (failed.get()) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            // Records stay buffered and the next flush retries them, up to the backlog limit
+            logger.error("Flushing the driver index log failed; {} bytes wait for the next flush",
+                    log.getBacklogBytes(), e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            // The log still holds every change, so the next snapshot catches up
+            logger.error("Writing the driver index snapshot failed", e);
+        }
+    }
+
+    /**
+     * An append was refused: flushes have failed until the backlog hit its limit.
+     * Called under a driver's lock, so it only flips the switch and frees the backlog.
+     */
+    private void backlogFull() {
+        if (!failed.compareAndSet(false, true)) {
+            return;
+        }
+
+        driverService.removeListener(this);
+        long dropped = log.getBacklogBytes();
+        log.discardBacklog();
+        logger.error("Driver index log could not be written and reached its backlog limit; dropped {} bytes "
+                + "and stopped logging changes. Changes since the last snapshot are lost on restart.", dropped);
+    }
+
+    @Override
+    public void onRegistered(Driver driver) {
+        if (!log.appendRegister(driver.getId(), driver.getName(),
+                driver.getLatitude(), driver.getLongitude(), driver.isAvailable())) {
+            backlogFull();
+        }
+    }
+
+    @Override
+    public void onLocationUpdated(Driver driver, long oldCell, long newCell) {
+        if (!log.appendLocation(driver.getId(), driver.getLatitude(), driver.getLongitude())) {
+            backlogFull();
+        }
+    }
+
+    @Override
+    public void onAvailabilityChanged(Driver driver, boolean available) {
+        if (!log.appendAvailability(driver.getId(), available)) {
+            backlogFull();
+        }
+    }
+
+    @Override
+    public void onRemoved(Driver driver) {
+        if (!log.appendRemove(driver.getId())) {
+            backlogFull();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.rideshare.rideshare_backend.persistence;
+
+import com.rideshare.rideshare_backend.model.Driver;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact point-in-time copy of the driver index, written and read through
+ * memory-mapped files.
+ *
+ * <pre>
+ * int  magic, int version
+ * long walSegment   first write-ahead log segment to replay on top of this snapshot
+ * int  drivers, int crc32 of the driver records
+ * per driver: int idLength, id, int nameLength, name, double latitude, double longitude,
+ *             byte available
+ * </pre>
+ *
+ * A snapshot is written to a temporary file, forced to disk and then renamed over the
+ * previous one, so a crash mid-write leaves the previous snapshot in place.
+ */
+public final class DriverSnapshot {
+    private static final int MAGIC = 0x52445358;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+    private static final String FILE_NAME = "snapshot.bin";
+
+    /**
+     * Callbacks for the drivers of a snapshot being loaded
+     */
+    public interface Visitor {
+        void driver(String driverId, String name, double latitude, double longitude, boolean available);
+    }
+
+    private DriverSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the drivers. Each driver is read under its lock so its
+     * coordinates and availability are consistent with each other.
+     *
+     * @param walSegment Segment that holds every change not guaranteed to be in the drivers' state
+     */
+    public static void write(Path directory, List<Driver> drivers, long walSegment) throws IOException {
+        int count = drivers.size();
+        byte[][] ids = new byte[count][];
+        byte[][] names = new byte[count][];
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        boolean[] available = new boolean[count];
+        long bodyBytes = 0;
+
+        for (int i = 0; i < count; i++) {
+            Driver driver = drivers.get(i);
+            synchronized (driver) {
+                ids[i] = driver.getId().getBytes(StandardCharsets.UTF_8);
+                names[i] = driver.getName() == null ? new byte[0] : driver.getName().getBytes(StandardCharsets.UTF_8);
+                latitudes[i] = driver.getLatitude();
+                longitudes[i] = driver.getLongitude();
+                available[i] = driver.isAvailable();
+            }
+            bodyBytes += 2L * Integer.BYTES + ids[i].length + names[i].length + 2L * Double.BYTES + 1;
+        }
+
+        if (HEADER_BYTES + bodyBytes > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds 2 GiB");
+        }
+
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer data = file.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + bodyBytes);
+
+            data.position(HEADER_BYTES);
+            for (int i = 0; i < count; i++) {
+                data.putInt(ids[i].length).put(ids[i])
+                        .putInt(names[i].length).put(names[i])
+                        .putDouble(latitudes[i])
+                        .putDouble(longitudes[i])
+                        .put((byte) (available[i] ? 1 : 0));
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate().position(HEADER_BYTES).limit(HEADER_BYTES + (int) bodyBytes));
+
+            data.putInt(0, MAGIC)
+                    .putInt(Integer.BYTES, VERSION)
+                    .putLong(2 * Integer.BYTES, walSegment)
+                    .putInt(2 * Integer.BYTES + Long.BYTES, count)
+                    .putInt(3 * Integer.BYTES + Long.BYTES, (int) crc.getValue());
+            data.force();
+        }
+
+        Files.move(temporary, directory.resolve(FILE_NAME),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the snapshot in the directory, if there is one
+     *
+     * @return Write-ahead log segment to replay from; 0 if there is no snapshot
+     */
+    public static long read(Path directory, Visitor visitor) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (file.size() < HEADER_BYTES || file.size() > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt snapshot: " + path);
+            }
+
+            MappedByteBuffer data = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                throw new IOException("Unrecognized snapshot format: " + path);
+            }
+
+            long walSegment = data.getLong();
+            int count = data.getInt();
+            int checksum = data.getInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Corrupt snapshot: " + path);
+            }
+
+            for (int i = 0; i < count; i++) {
+                String driverId = WriteAheadLog.readString(data);
+                String name = WriteAheadLog.readString(data);
+                visitor.driver(driverId, name, data.getDouble(), data.getDouble(), data.get() != 0);
+            }
+
+            return walSegment;
+        }
+    }
+}
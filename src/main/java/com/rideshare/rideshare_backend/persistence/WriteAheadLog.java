@@ -0,0 +1,495 @@
+package com.rideshare.rideshare_backend.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of driver index changes, split into numbered segment files.
+ *
+ * Records are buffered in memory and written out by flush(), and on force(), rotate()
+ * and close(). Appends never touch the file: they only take the append lock (this
+ * object's monitor) long enough to encode into the active buffer, and a full buffer is
+ * queued for the next flush and replaced by an empty one. A flush swaps the filled
+ * buffers out under the append lock and writes them under a separate write lock, so
+ * appenders, which run under a driver's lock, never wait for the disk. Lock order is
+ * writeLock, then the append lock. Records that could not be written are kept for the
+ * next flush, up to a limit; past it appends are refused rather than growing the heap
+ * while the disk is failing. Each record is framed as
+ * {@code int length, int crc32, body}, so replay can tell where a torn write at the end
+ * of a segment begins and stops reading that segment there. A reopened log always starts
+ * a new segment instead of appending after a possibly torn tail.
+ *
+ * Every record states the resulting value rather than a delta, so replaying records
+ * over a snapshot that already includes some of them converges to the same index.
+ */
+public class WriteAheadLog {
+    static final byte REGISTER = 1;
+    static final byte LOCATION = 2;
+    static final byte AVAILABILITY = 3;
+    static final byte REMOVE = 4;
+
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final int MAX_SPARE_BUFFERS = 4;
+    public static final long DEFAULT_MAX_BACKLOG_BYTES = 64L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Opens segment files; tests substitute channels that fail
+     */
+    interface SegmentOpener {
+        FileChannel open(Path path) throws IOException;
+    }
+
+    /**
+     * Callbacks for replayed records, in log order
+     */
+    public interface Visitor {
+        void register(String driverId, String name, double latitude, double longitude, boolean available);
+
+        void location(String driverId, double latitude, double longitude);
+
+        void availability(String driverId, boolean available);
+
+        void remove(String driverId);
+    }
+
+    private final Path directory;
+    private final long maxBacklogBytes;
+    private final SegmentOpener opener;
+
+    // Guarded by this object's monitor (the append lock)
+    private final CRC32 crc = new CRC32();
+    // Bytes in filled and unwritten buffers
+    private long backlogBytes;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final List<ByteBuffer> filled = new ArrayList<>();
+    private final ArrayDeque<ByteBuffer> spares = new ArrayDeque<>();
+
+    // Serializes writes to the segment file; its fields are guarded by it
+    private final Object writeLock = new Object();
+    private final ArrayDeque<ByteBuffer> unwritten = new ArrayDeque<>();
+
+    // Changed under both locks, so either one is enough to read them
+    private FileChannel channel;
+    private long segment;
+
+    public WriteAheadLog(Path directory) {
+        this(directory, DEFAULT_MAX_BACKLOG_BYTES);
+    }
+
+    /**
+     * @param maxBacklogBytes Buffered bytes waiting to be written beyond which appends are refused
+     */
+    public WriteAheadLog(Path directory, long maxBacklogBytes) {
+        this(directory, maxBacklogBytes, path -> FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    WriteAheadLog(Path directory, long maxBacklogBytes, SegmentOpener opener) {
+        if (maxBacklogBytes < BUFFER_BYTES) {
+            throw new IllegalArgumentException("Backlog limit must be at least " + BUFFER_BYTES + " bytes");
+        }
+
+        this.directory = directory;
+        this.maxBacklogBytes = maxBacklogBytes;
+        this.opener = opener;
+    }
+
+    /**
+     * Start appending to a new segment after every existing one
+     *
+     * @return The new segment's number
+     */
+    public long open() throws IOException {
+        synchronized (writeLock) {
+            if (channel != null) {
+                throw new IllegalStateException("Write-ahead log is already open");
+            }
+
+            Files.createDirectories(directory);
+            List<Long> existing = segments(directory);
+            long number = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+            FileChannel opened = openSegment(number);
+
+            synchronized (this) {
+                segment = number;
+                channel = opened;
+            }
+            return number;
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return opener.open(segmentPath(directory, number));
+    }
+
+    /**
+     * The append methods return false, dropping the record, if the backlog of records
+     * not yet written is over its limit, i.e. flushes have been failing
+     */
+    public synchronized boolean appendRegister(String driverId, String name, double latitude, double longitude,
+                                               boolean available) {
+        byte[] id = driverId.getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+
+        int start = beginRecord(1 + Integer.BYTES + id.length + Integer.BYTES + nameBytes.length
+                + 2 * Double.BYTES + 1);
+        if (start < 0) {
+            return false;
+        }
+        buffer.put(REGISTER)
+                .putInt(id.length).put(id)
+                .putInt(nameBytes.length).put(nameBytes)
+                .putDouble(latitude)
+                .putDouble(longitude)
+                .put((byte) (available ? 1 : 0));
+        endRecord(start);
+        return true;
+    }
+
+    public synchronized boolean appendLocation(String driverId, double latitude, double longitude) {
+        byte[] id = driverId.getBytes(StandardCharsets.UTF_8);
+
+        int start = beginRecord(1 + Integer.BYTES + id.length + 2 * Double.BYTES);
+        if (start < 0) {
+            return false;
+        }
+        buffer.put(LOCATION)
+                .putInt(id.length).put(id)
+                .putDouble(latitude)
+                .putDouble(longitude);
+        endRecord(start);
+        return true;
+    }
+
+    public synchronized boolean appendAvailability(String driverId, boolean available) {
+        byte[] id = driverId.getBytes(StandardCharsets.UTF_8);
+
+        int start = beginRecord(1 + Integer.BYTES + id.length + 1);
+        if (start < 0) {
+            return false;
+        }
+        buffer.put(AVAILABILITY)
+                .putInt(id.length).put(id)
+                .put((byte) (available ? 1 : 0));
+        endRecord(start);
+        return true;
+    }
+
+    public synchronized boolean appendRemove(String driverId) {
+        byte[] id = driverId.getBytes(StandardCharsets.UTF_8);
+
+        int start = beginRecord(1 + Integer.BYTES + id.length);
+        if (start < 0) {
+            return false;
+        }
+        buffer.put(REMOVE)
+                .putInt(id.length).put(id);
+        endRecord(start);
+        return true;
+    }
+
+    /**
+     * Reserve room for a record header and body
+     *
+     * @return Buffer position of the record, or -1 if the backlog is over its limit
+     */
+    private int beginRecord(int bodyBytes) {
+        if (channel == null) {
+            throw new IllegalStateException("Write-ahead log is not open");
+        }
+
+        int recordBytes = HEADER_BYTES + bodyBytes;
+        if (buffer.remaining() < recordBytes) {
+            if (buffer.position() > 0 && backlogBytes + buffer.position() > maxBacklogBytes) {
+                return -1;
+            }
+            // Queue the full buffer for the next flush instead of writing it here
+            if (buffer.position() > 0) {
+                backlogBytes += buffer.position();
+                filled.add(buffer);
+                ByteBuffer spare = spares.poll();
+                buffer = spare != null ? spare : ByteBuffer.allocate(BUFFER_BYTES);
+            }
+            if (buffer.capacity() < recordBytes) {
+                buffer = ByteBuffer.allocate(recordBytes);
+            }
+        }
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        return start;
+    }
+
+    private void endRecord(int start) {
+        int bodyStart = start + HEADER_BYTES;
+        int bodyBytes = buffer.position() - bodyStart;
+
+        crc.reset();
+        crc.update(buffer.array(), bodyStart, bodyBytes);
+        buffer.putInt(start, bodyBytes);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    /**
+     * Hand buffered records to the operating system. They survive a crash of this
+     * process, but not of the machine until force() or rotate(). Records that fail to
+     * write stay queued, ahead of newer ones, and are retried by the next flush.
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            if (channel != null) {
+                write(channel);
+            }
+        }
+    }
+
+    // Caller holds writeLock
+    private void write(FileChannel target) throws IOException {
+        // Leftovers of a failed write go first. While they keep failing, nothing more is
+        // swapped out, so a failing disk does not cost a fresh buffer per flush.
+        writeUnwritten(target);
+
+        // Swap the filled buffers out; appends continue into an empty one meanwhile
+        synchronized (this) {
+            for (ByteBuffer full : filled) {
+                unwritten.add(full.flip());
+            }
+            filled.clear();
+            if (buffer.position() > 0) {
+                backlogBytes += buffer.position();
+                unwritten.add(buffer.flip());
+                ByteBuffer spare = spares.poll();
+                buffer = spare != null ? spare : ByteBuffer.allocate(BUFFER_BYTES);
+            }
+        }
+
+        writeUnwritten(target);
+    }
+
+    // Caller holds writeLock
+    private void writeUnwritten(FileChannel target) throws IOException {
+        // A retry resumes each buffer where the failed write stopped
+        ByteBuffer next;
+        while ((next = unwritten.peek()) != null) {
+            while (next.hasRemaining()) {
+                target.write(next);
+            }
+            unwritten.poll();
+            recycle(next);
+        }
+    }
+
+    private void recycle(ByteBuffer written) {
+        int bytes = written.limit();
+        written.clear();
+        synchronized (this) {
+            backlogBytes -= bytes;
+            if (written.capacity() == BUFFER_BYTES && spares.size() < MAX_SPARE_BUFFERS) {
+                spares.add(written);
+            }
+        }
+    }
+
+    public void force() throws IOException {
+        synchronized (writeLock) {
+            flush();
+            if (channel != null) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Close the current segment durably and start the next one. Records appended from
+     * now on land in the new segment, which is where replay over a snapshot taken
+     * after this call has to start.
+     *
+     * @return The new segment's number
+     */
+    public long rotate() throws IOException {
+        synchronized (writeLock) {
+            force();
+            FileChannel next = openSegment(segment + 1);
+            channel.close();
+
+            synchronized (this) {
+                segment++;
+                channel = next;
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Delete segments whose records are all covered by a snapshot
+     */
+    public void deleteSegmentsBefore(long number) throws IOException {
+        synchronized (writeLock) {
+            for (long existing : segments(directory)) {
+                if (existing < number) {
+                    Files.deleteIfExists(segmentPath(directory, existing));
+                }
+            }
+        }
+    }
+
+    public synchronized long currentSegment() {
+        return segment;
+    }
+
+    /**
+     * Bytes of records queued for writing: in full buffers, or left over by failed writes
+     */
+    public synchronized long getBacklogBytes() {
+        return backlogBytes;
+    }
+
+    /**
+     * Drop every record not yet written, e.g. once persistence gave up on a failing
+     * disk, so the memory is released. A failed write may have left a torn record at
+     * the end of the segment, where replay stops, so rotate() before appending again.
+     */
+    public void discardBacklog() {
+        synchronized (writeLock) {
+            unwritten.clear();
+            synchronized (this) {
+                filled.clear();
+                buffer.clear();
+                backlogBytes = 0;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            FileChannel closing;
+            // Appends fail from here on, so the last write below holds every record
+            synchronized (this) {
+                closing = channel;
+                channel = null;
+            }
+            if (closing == null) {
+                return;
+            }
+
+            try {
+                write(closing);
+                closing.force(false);
+            } finally {
+                closing.close();
+            }
+        }
+    }
+
+    /**
+     * Replay every intact record of the segments numbered fromSegment and up
+     *
+     * @return Number of records replayed
+     */
+    public static long replay(Path directory, long fromSegment, Visitor visitor) throws IOException {
+        long records = 0;
+
+        for (long number : segments(directory)) {
+            if (number >= fromSegment) {
+                records += replaySegment(segmentPath(directory, number), visitor);
+            }
+        }
+
+        return records;
+    }
+
+    private static long replaySegment(Path path, Visitor visitor) throws IOException {
+        long records = 0;
+
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (file.size() == 0) {
+                return 0;
+            }
+
+            MappedByteBuffer data = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            CRC32 crc = new CRC32();
+
+            while (data.remaining() >= HEADER_BYTES) {
+                int bodyBytes = data.getInt();
+                int checksum = data.getInt();
+
+                // A torn or corrupt record ends the segment
+                if (bodyBytes <= 0 || bodyBytes > data.remaining()) {
+                    break;
+                }
+
+                ByteBuffer body = data.slice();
+                body.limit(bodyBytes);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                data.position(data.position() + bodyBytes);
+                apply(body, visitor);
+                records++;
+            }
+        }
+
+        return records;
+    }
+
+    private static void apply(ByteBuffer body, Visitor visitor) {
+        byte type = body.get();
+
+        String driverId = readString(body);
+
+        switch (type) {
+            case REGISTER -> {
+                String name = readString(body);
+                visitor.register(driverId, name, body.getDouble(), body.getDouble(), body.get() != 0);
+            }
+            case LOCATION -> visitor.location(driverId, body.getDouble(), body.getDouble());
+            case AVAILABILITY -> visitor.availability(driverId, body.get() != 0);
+            case REMOVE -> visitor.remove(driverId);
+            default -> throw new IllegalStateException("Unknown write-ahead log record type: " + type);
+        }
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static List<Long> segments(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return numbers;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> numbers.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,30 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.model.Driver;
+
+/**
+ * Receives every change DriverService makes to its driver index.
+ *
+ * Callbacks run on the thread making the change, while it holds the driver's lock, so
+ * events for one driver arrive in the order they were applied and the driver's fields
+ * match the event. Implementations must be quick and must not call back into
+ * DriverService for another driver. A callback that throws is logged and skipped: the
+ * change has already been applied, and the other listeners still receive it.
+ */
+public interface DriverIndexListener {
+    default void onRegistered(Driver driver) {
+    }
+
+    /**
+     * @param oldCell Cell the driver was indexed under before the move
+     * @param newCell Cell it is indexed under now; equal to oldCell for moves within a cell
+     */
+    default void onLocationUpdated(Driver driver, long oldCell, long newCell) {
+    }
+
+    default void onAvailabilityChanged(Driver driver, boolean available) {
+    }
+
+    default void onRemoved(Driver driver) {
+    }
+}
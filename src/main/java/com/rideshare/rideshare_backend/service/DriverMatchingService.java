@@ -1,23 +1,92 @@
 package com.rideshare.rideshare_backend.service;
 
-import com.rideshare.rideshare_backend.datastructure.MinHeap;
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
+import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
+import com.rideshare.rideshare_backend.datastructure.TopKSelector;
 import com.rideshare.rideshare_backend.model.Driver;
 import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
 import com.rideshare.rideshare_backend.util.HaversineDistanceCalculator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 public class DriverMatchingService {
     private final DriverService driverService;
-    private static final int DEFAULT_SEARCH_PRECISION = 5;
-    private static final int FALLBACK_SEARCH_PRECISION = 4;
-    private static final int MAX_SEARCH_PRECISION = 3;
+    private final Executor matchingExecutor;
+    // null when caching is off
+    private final HotCellCache hotCellCache;
+
+    /**
+     * Ring search schedule: {precision, max ring}. The search expands ring by ring
+     * around the pickup at the finest level first and only moves to coarser cells if
+     * the area is sparse, so dense areas are answered from a handful of small cells
+     * and sparse areas never walk hundreds of empty ones.
+     *   precision 6, rings 0-3: up to  7 x 7 cells of ~1.2 x 0.6 km
+     *   precision 5, rings 0-3: up to  7 x 7 cells of ~4.9 x 4.9 km
+     *   precision 4, rings 0-3: up to  7 x 7 cells of ~39 x 20 km
+     *   precision 3, rings 0-3: up to  7 x 7 cells of ~156 x 156 km at the equator
+     * A plain search has no radius limit: it runs until K drivers are found and settled,
+     * or the whole schedule, several hundred km around the pickup, has been scored.
+     */
+    private static final int[][] SEARCH_LEVELS = {{6, 3}, {5, 3}, {4, 3}, {3, 3}};
+    private static final int MAX_RING = 3;
+    private static final double NO_RADIUS_LIMIT = Double.POSITIVE_INFINITY;
+    // Hot-cell cache entries only cover circles up to this radius
+    private static final double MAX_CACHE_RADIUS_KM = 50.0;
+    private static final int STATS_SEARCH_PRECISION = 5;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    // Rings with at least this many candidates are scored with the batch kernel;
+    // below it the per-call setup is not worth it
+    private static final int BATCH_SCORING_THRESHOLD = 32;
+    // Hot-cell cache entries: at most this many candidates and watched index cells
+    private static final int MAX_CACHE_CANDIDATES = 256;
+    private static final int MAX_CACHE_CELLS = 64;
+    // Length of a degree of latitude, and of longitude at the equator, on the sphere all
+    // distances here are measured on. An ellipsoid's figures would make the watched
+    // area narrower than the circle it has to cover.
+    private static final double KM_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_KM;
 
     public DriverMatchingService(DriverService driverService) {
+        // Without an executor, batch matching runs on the calling thread
+        this(driverService, Runnable::run);
+    }
+
+    public DriverMatchingService(DriverService driverService, Executor matchingExecutor) {
+        this(driverService, matchingExecutor, null);
+    }
+
+    /**
+     * @param cacheSize Hot-cell cache entries (see HotCellCache); 0 turns the cache off
+     * @param cachePrecision Geohash precision of the cached pickup cells
+     */
+    @Autowired
+    public DriverMatchingService(DriverService driverService,
+                                 @Qualifier("matchingExecutor") Executor matchingExecutor,
+                                 @Value("${rideshare.matching.cache-size:1024}") int cacheSize,
+                                 @Value("${rideshare.matching.cache-precision:7}") int cachePrecision) {
+        this(driverService, matchingExecutor, cacheSize > 0 ? new HotCellCache(cacheSize, cachePrecision) : null);
+    }
+
+    public DriverMatchingService(DriverService driverService, Executor matchingExecutor,
+                                 HotCellCache hotCellCache) {
         this.driverService = driverService;
+        this.matchingExecutor = matchingExecutor;
+        this.hotCellCache = hotCellCache;
+        if (hotCellCache != null) {
+            driverService.addListener(hotCellCache);
+        }
     }
 
     public List<DriverWithDistance> findClosestDrivers(
@@ -25,63 +94,599 @@ public class DriverMatchingService {
             double pickupLongitude,
             int maxDrivers
     ) {
-        List<Driver> nearbyDrivers = findNearbyDriversWithFallback(pickupLatitude, pickupLongitude);
+        if (hotCellCache != null && maxDrivers >= 1 && maxDrivers <= HotCellCache.MAX_CACHED_DRIVERS) {
+            return findClosestDriversCached(pickupLatitude, pickupLongitude, maxDrivers);
+        }
+        return findClosestDrivers(pickupLatitude, pickupLongitude, maxDrivers, NO_RADIUS_LIMIT);
+    }
+
+    public List<DriverWithDistance> findClosestDrivers(double pickupLatitude, double pickupLongitude) {
+        return findClosestDrivers(pickupLatitude, pickupLongitude, 5);
+    }
+
+    /**
+     * Match several pickups at once. Each pickup is one task on the matching executor,
+     * so a batch is answered in roughly the time of its slowest pickup.
+     *
+     * @param latitudes Pickup latitudes
+     * @param longitudes Pickup longitudes
+     * @param maxDrivers Number of drivers wanted per pickup
+     * @return Closest drivers for each pickup, in request order
+     */
+    public List<List<DriverWithDistance>> findClosestDriversForAll(
+            double[] latitudes,
+            double[] longitudes,
+            int[] maxDrivers
+    ) {
+        if (latitudes.length != longitudes.length || latitudes.length != maxDrivers.length) {
+            throw new IllegalArgumentException("Pickup arrays must have the same length");
+        }
+
+        List<CompletableFuture<List<DriverWithDistance>>> matches = new ArrayList<>(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++) {
+            double latitude = latitudes[i];
+            double longitude = longitudes[i];
+            int k = maxDrivers[i];
+            matches.add(CompletableFuture.supplyAsync(
+                    () -> findClosestDrivers(latitude, longitude, k),
+                    matchingExecutor
+            ));
+        }
 
-        if (nearbyDrivers.isEmpty()) {
+        List<List<DriverWithDistance>> results = new ArrayList<>(matches.size());
+        for (CompletableFuture<List<DriverWithDistance>> match : matches) {
+            results.add(match.join());
+        }
+        return results;
+    }
+
+    private List<DriverWithDistance> findClosestDrivers(
+            double pickupLatitude,
+            double pickupLongitude,
+            int maxDrivers,
+            double searchRadiusKm
+    ) {
+        if (maxDrivers < 1) {
             return List.of();
         }
 
-        MinHeap<DriverWithDistance> heap = new MinHeap<>();
+        // Only the K best candidates are kept; everything else is rejected without allocating
+        TopKSelector<Driver> closest = new TopKSelector<>(maxDrivers);
+        searchRings(pickupLatitude, pickupLongitude, searchRadiusKm, closest);
+
+        List<DriverWithDistance> closestDrivers = new ArrayList<>(closest.size());
+
+        closest.drainSorted((driver, distance) -> {
+            // A driver that moved between two rings mid-search can be scored twice
+            for (DriverWithDistance existing : closestDrivers) {
+                if (existing.getDriver() == driver) {
+                    return;
+                }
+            }
+            closestDrivers.add(new DriverWithDistance(
+                    driver,
+                    distance,
+                    HaversineDistanceCalculator.estimateTravelTime(distance)
+            ));
+        });
+
+        return closestDrivers;
+    }
+
+    /**
+     * Answer from the pickup cell's cached candidates, building them on a miss. Falls back
+     * to a plain search where the candidates cannot guarantee the exact result.
+     */
+    private List<DriverWithDistance> findClosestDriversCached(double pickupLatitude, double pickupLongitude,
+                                                              int maxDrivers) {
+        long cell = GeohashUtil.encodeLong(pickupLatitude, pickupLongitude, hotCellCache.getPrecision());
+        long key = HotCellCache.key(cell, maxDrivers);
+
+        HotCellCache.Entry entry = hotCellCache.get(key);
+        if (entry != null) {
+            List<DriverWithDistance> closest = rescore(entry, pickupLatitude, pickupLongitude, maxDrivers);
+            if (closest != null) {
+                hotCellCache.recordHit(entry);
+                return closest;
+            }
+            // Candidates moved too far from the center to settle this pickup
+            hotCellCache.invalidate(entry);
+        }
+
+        hotCellCache.recordMiss();
+        if (hotCellCache.skipBuild(key)) {
+            // Too sparse or too dense a moment ago; do not pay for the build again yet
+            return findClosestDrivers(pickupLatitude, pickupLongitude, maxDrivers, NO_RADIUS_LIMIT);
+        }
+
+        long[] stamps = hotCellCache.beginBuild();
+        try {
+            entry = buildCacheEntry(cell, key, maxDrivers);
+            if (entry == null) {
+                hotCellCache.recordRejected(key);
+            } else {
+                hotCellCache.put(entry, stamps);
+            }
+        } finally {
+            hotCellCache.endBuild();
+        }
+
+        List<DriverWithDistance> closest = entry != null
+                ? rescore(entry, pickupLatitude, pickupLongitude, maxDrivers)
+                : null;
+        return closest != null
+                ? closest
+                : findClosestDrivers(pickupLatitude, pickupLongitude, maxDrivers, NO_RADIUS_LIMIT);
+    }
+
+    /**
+     * Collect every available driver within (K-th closest distance + cell diameter) of
+     * the cell's center. Any pickup in the cell is within half a diameter of the center,
+     * so its K closest drivers are all among them.
+     *
+     * @return null if the area is too sparse or too dense to cache
+     */
+    private HotCellCache.Entry buildCacheEntry(long cell, long key, int maxDrivers) {
+        int precision = hotCellCache.getPrecision();
+        double centerLatitude = GeohashUtil.decodeLatitude(cell, precision);
+        double centerLongitude = GeohashUtil.decodeLongitude(cell, precision);
+        double halfHeight = GeohashUtil.cellHeightDegrees(precision) / 2;
+        double halfWidth = GeohashUtil.cellWidthDegrees(precision) / 2;
+        // The corner on the equator side of the center is the furthest
+        double cornerLatitude = Math.abs(centerLatitude - halfHeight) < Math.abs(centerLatitude + halfHeight)
+                ? centerLatitude - halfHeight
+                : centerLatitude + halfHeight;
+        double cellRadiusKm = HaversineDistanceCalculator.calculateDistance(
+                centerLatitude, centerLongitude, cornerLatitude, centerLongitude + halfWidth);
+
+        // The K-th closest to the center sets the radius...
+        TopKSelector<Driver> nearest = new TopKSelector<>(maxDrivers);
+        searchRings(centerLatitude, centerLongitude, MAX_CACHE_RADIUS_KM, nearest);
+        if (!nearest.isFull()) {
+            return null;
+        }
+
+        double radiusKm = nearest.worstKey() + 2 * cellRadiusKm;
+        long[] cells = radiusKm <= MAX_CACHE_RADIUS_KM
+                ? cellsCovering(centerLatitude, centerLongitude, radiusKm)
+                : null;
+        if (cells == null) {
+            return null;
+        }
+
+        // ...and every available driver in the cells overlapping its circle is checked,
+        // the approximation ruling out most of them without trigonometry
+        int indexPrecision = driverService.getIndexPrecision();
+        DriverLocationStore store = driverService.getLocationStore();
+        double latitudeRadians = Math.toRadians(centerLatitude);
+        double longitudeRadians = Math.toRadians(centerLongitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        double epsilon = HaversineDistanceCalculator.approximationErrorBound(centerLatitude,
+                radiusKm / KM_PER_DEGREE + GeohashUtil.cellHeightDegrees(indexPrecision), 2 * radiusKm);
+        double approximateCut = radiusKm * (1 + epsilon);
+        List<Driver> candidates = new ArrayList<>();
+        // Index snapshots can list a driver twice if it moved
+        Set<Driver> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Stops at the first candidate past the cap: a dense area is not cached anyway
+        boolean complete = driverService.visitAvailableSlotsInCells(cells, cells.length, indexPrecision, slot -> {
+            double latitude = store.latitude(slot);
+            double longitude = store.longitude(slot);
+            if (HaversineDistanceCalculator.approximateDistance(
+                    centerLatitude, centerLongitude, cosLatitude, latitude, longitude) > approximateCut) {
+                return true;
+            }
 
-        for (Driver driver : nearbyDrivers) {
             double distance = HaversineDistanceCalculator.calculateDistance(
-                    pickupLatitude,
-                    pickupLongitude,
-                    driver.getLatitude(),
-                    driver.getLongitude()
-            );
+                    latitudeRadians, longitudeRadians, cosLatitude,
+                    Math.toRadians(latitude), Math.toRadians(longitude), store.cosLatitude(slot));
+            // ...or a slot released since
+            Driver driver = store.driver(slot);
+            if (distance <= radiusKm && driver != null && seen.add(driver)) {
+                candidates.add(driver);
+            }
+            return candidates.size() <= MAX_CACHE_CANDIDATES;
+        });
+
+        if (!complete) {
+            return null;
+        }
+        return new HotCellCache.Entry(key, centerLatitude, centerLongitude, radiusKm,
+                candidates.toArray(new Driver[0]), cells);
+    }
+
+    /**
+     * Index cells overlapping the bounding box of a circle
+     *
+     * @return null if there are too many, or the box crosses a pole or the antimeridian
+     */
+    private long[] cellsCovering(double latitude, double longitude, double radiusKm) {
+        int indexPrecision = driverService.getIndexPrecision();
+        double deltaLat = radiusKm / KM_PER_DEGREE;
+        double south = latitude - deltaLat;
+        double north = latitude + deltaLat;
+        if (south < -90.0 || north > 90.0) {
+            return null;
+        }
+
+        double cosLatitude = Math.cos(Math.toRadians(Math.max(Math.abs(south), Math.abs(north))));
+        double deltaLon = radiusKm / (KM_PER_DEGREE * cosLatitude);
+        double west = longitude - deltaLon;
+        double east = longitude + deltaLon;
+        if (west < -180.0 || east >= 180.0) {
+            return null;
+        }
 
-            double arrivalTime = HaversineDistanceCalculator.estimateTravelTime(distance);
+        long southWest = GeohashUtil.encodeLong(south, west, indexPrecision);
+        long northEast = GeohashUtil.encodeLong(north, east, indexPrecision);
+        long latMin = GeohashUtil.latitudeIndex(southWest, indexPrecision);
+        long latMax = GeohashUtil.latitudeIndex(northEast, indexPrecision);
+        long lonMin = GeohashUtil.longitudeIndex(southWest, indexPrecision);
+        long lonMax = GeohashUtil.longitudeIndex(northEast, indexPrecision);
 
-            DriverWithDistance driverWithDistance = new DriverWithDistance(driver, distance, arrivalTime);
+        long count = (latMax - latMin + 1) * (lonMax - lonMin + 1);
+        if (count > MAX_CACHE_CELLS) {
+            return null;
+        }
 
-            heap.insert(driverWithDistance);
+        long[] cells = new long[(int) count];
+        int next = 0;
+        for (long lat = latMin; lat <= latMax; lat++) {
+            for (long lon = lonMin; lon <= lonMax; lon++) {
+                cells[next++] = GeohashUtil.fromIndices(lat, lon, indexPrecision);
+            }
         }
+        return cells;
+    }
 
-        int driversToReturn = Math.min(maxDrivers, heap.size());
-        List<DriverWithDistance> closestDrivers = new ArrayList<>();
+    /**
+     * Score an entry's candidates against the pickup at their current positions
+     *
+     * @return null unless the result is exact: the K-th best must be closer to the pickup
+     *         than any driver outside the entry's circle can be
+     */
+    private static List<DriverWithDistance> rescore(HotCellCache.Entry entry, double pickupLatitude,
+                                                    double pickupLongitude, int maxDrivers) {
+        double latitudeRadians = Math.toRadians(pickupLatitude);
+        double longitudeRadians = Math.toRadians(pickupLongitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        TopKSelector<Driver> closest = new TopKSelector<>(maxDrivers);
+
+        for (Driver driver : entry.candidates) {
+            if (!driver.isAvailable()) {
+                continue;
+            }
+            double distance = HaversineDistanceCalculator.calculateDistance(
+                    latitudeRadians, longitudeRadians, cosLatitude,
+                    driver.getLatitudeRadians(), driver.getLongitudeRadians(), driver.getCosLatitude()
+            );
+            if (closest.wouldAccept(distance)) {
+                closest.offer(distance, driver);
+            }
+        }
 
-        for (int i = 0; i < driversToReturn; i++) {
-            closestDrivers.add(heap.extractMin());
+        double fromCenter = HaversineDistanceCalculator.calculateDistance(
+                pickupLatitude, pickupLongitude, entry.centerLatitude, entry.centerLongitude);
+        if (!closest.isFull() || closest.worstKey() > entry.radiusKm - fromCenter) {
+            return null;
         }
 
+        List<DriverWithDistance> closestDrivers = new ArrayList<>(maxDrivers);
+        closest.drainSorted((driver, distance) -> closestDrivers.add(new DriverWithDistance(
+                driver,
+                distance,
+                HaversineDistanceCalculator.estimateTravelTime(distance)
+        )));
         return closestDrivers;
     }
 
-    public List<DriverWithDistance> findClosestDrivers(double pickupLatitude, double pickupLongitude) {
-        return findClosestDrivers(pickupLatitude, pickupLongitude, 5);
+    /**
+     * Hot-cell cache counters, or null if the cache is off
+     */
+    public HotCellCache.Stats getCacheStats() {
+        return hotCellCache != null ? hotCellCache.getStats() : null;
+    }
+
+    /**
+     * Incremental k-nearest search. Rings of cells are scored outward from the pickup
+     * until the K-th best distance found is no larger than the distance from the pickup
+     * to the nearest unvisited cell, at which point no unvisited driver can improve the
+     * result. Also stops once everything within searchRadiusKm has been visited.
+     */
+    private void searchRings(double latitude, double longitude, double searchRadiusKm,
+                             TopKSelector<Driver> closest) {
+        int indexPrecision = driverService.getIndexPrecision();
+        DriverLocationStore store = driverService.getLocationStore();
+        CandidateBatch batch = new CandidateBatch(closest.capacity());
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        long[] ring = new long[8 * MAX_RING];
+        SearchBox[] visited = new SearchBox[SEARCH_LEVELS.length];
+        int visitedLevels = 0;
+        double coveredKm = 0.0;
+
+        for (int[] level : SEARCH_LEVELS) {
+            int precision = level[0];
+            long center = GeohashUtil.encodeLong(latitude, longitude, precision);
+            SearchBox box = null;
+
+            for (int radius = 0; radius <= level[1]; radius++) {
+                int count = GeohashUtil.getRing(center, precision, radius, ring);
+
+                // Cells of a coarser level overlap the finer blocks already scored
+                SearchBox[] skip = visited;
+                int skipCount = visitedLevels;
+
+                // Positions are copied out of the store's columns while the cells are
+                // locked and scored afterwards, in one batch for the whole ring
+                batch.clear();
+                driverService.forEachAvailableSlotInCells(ring, count, precision, slot -> {
+                    if (skipCount > 0 && alreadyVisited(store.cell(slot), indexPrecision, skip, skipCount)) {
+                        return;
+                    }
+
+                    // Index snapshots can list a slot released since
+                    Driver driver = store.driver(slot);
+                    if (driver != null) {
+                        batch.add(driver, store.latitude(slot), store.longitude(slot), store.cosLatitude(slot));
+                    }
+                });
+                preRank(latitude, longitude, cosLatitude, batch, closest);
+                scoreBatch(latitude, longitude, cosLatitude, batch, closest);
+
+                box = new SearchBox(center, precision, radius, indexPrecision);
+                coveredKm = Math.max(coveredKm, box.coveredRadiusKm(latitude, longitude));
+
+                if (coveredKm >= searchRadiusKm || closest.worstKey() <= coveredKm) {
+                    return;
+                }
+            }
+
+            visited[visitedLevels++] = box;
+        }
     }
 
-    private List<Driver> findNearbyDriversWithFallback(double latitude, double longitude) {
-        List<Driver> drivers = driverService.findNearbyDrivers(latitude, longitude, DEFAULT_SEARCH_PRECISION);
+    /**
+     * First scoring stage: rank the batch with the equirectangular approximation and
+     * drop every candidate that provably cannot reach the top K, so that exact
+     * Haversine only runs on the shortlist.
+     *
+     * With approximations within a factor (1 +- e) of the true distances, a candidate
+     * approximated at a is at least a / (1 + e) away. It is dropped if that exceeds the
+     * current K-th best exact distance, or the largest exact distance the batch's own
+     * K-th best approximation T allows, T / (1 - e). Both cuts keep every candidate that
+     * could still rank in the top K, so the final order is unchanged.
+     */
+    private static void preRank(double latitude, double longitude, double cosLatitude,
+                                CandidateBatch batch, TopKSelector<Driver> closest) {
+        int size = batch.size;
+        int k = closest.capacity();
+
+        // Nothing to gain until there are more candidates than result slots
+        if (size <= k && !closest.isFull()) {
+            return;
+        }
+
+        double[] approximate = batch.distances;
+        double maxDeltaLatitude = 0.0;
+        double maxApproximate = 0.0;
 
-        if (drivers.size() < 3) {
-            drivers = driverService.findNearbyDrivers(
-                    latitude,
-                    longitude,
-                    FALLBACK_SEARCH_PRECISION
+        for (int i = 0; i < size; i++) {
+            approximate[i] = HaversineDistanceCalculator.approximateDistance(
+                    latitude, longitude, cosLatitude,
+                    batch.latitudes[i], batch.longitudes[i]
             );
+            maxDeltaLatitude = Math.max(maxDeltaLatitude, Math.abs(batch.latitudes[i] - latitude));
+            maxApproximate = Math.max(maxApproximate, approximate[i]);
         }
 
-        if (drivers.size() < 3) {
-            drivers = driverService.findNearbyDrivers(
-                    latitude,
-                    longitude,
-                    MAX_SEARCH_PRECISION
+        double epsilon = HaversineDistanceCalculator.approximationErrorBound(
+                latitude, maxDeltaLatitude, maxApproximate);
+        if (Double.isInfinite(epsilon)) {
+            return;
+        }
+
+        double cut = closest.worstKey() * (1 + epsilon);
+
+        if (size > k) {
+            TopKSelector<Object> kthApproximate = batch.kthSelector;
+            for (int i = 0; i < size; i++) {
+                kthApproximate.offer(approximate[i], null);
+            }
+            cut = Math.min(cut, kthApproximate.worstKey() * (1 + epsilon) / (1 - epsilon));
+            kthApproximate.clear();
+        }
+
+        batch.retainAtMost(cut);
+    }
+
+    private static void scoreBatch(double latitude, double longitude, double cosLatitude,
+                                   CandidateBatch batch, TopKSelector<Driver> closest) {
+        double[] distances = batch.distances;
+
+        // Candidate latitude cosines come cached from the store, so neither path
+        // computes a cosine per candidate
+        if (batch.size >= BATCH_SCORING_THRESHOLD) {
+            HaversineDistanceCalculator.calculateDistances(
+                    latitude, longitude,
+                    batch.latitudes, batch.longitudes, batch.cosLatitudes, batch.size,
+                    distances
             );
+        } else {
+            double latitudeRadians = Math.toRadians(latitude);
+            double longitudeRadians = Math.toRadians(longitude);
+
+            for (int i = 0; i < batch.size; i++) {
+                distances[i] = HaversineDistanceCalculator.calculateDistance(
+                        latitudeRadians, longitudeRadians, cosLatitude,
+                        Math.toRadians(batch.latitudes[i]), Math.toRadians(batch.longitudes[i]),
+                        batch.cosLatitudes[i]
+                );
+            }
+        }
+
+        for (int i = 0; i < batch.size; i++) {
+            if (closest.wouldAccept(distances[i])) {
+                closest.offer(distances[i], batch.drivers[i]);
+            }
         }
+    }
+
+    private static boolean alreadyVisited(long geohash, int indexPrecision, SearchBox[] boxes, int count) {
+        long latIndex = GeohashUtil.latitudeIndex(geohash, indexPrecision);
+        long lonIndex = GeohashUtil.longitudeIndex(geohash, indexPrecision);
 
-        return drivers;
+        for (int i = 0; i < count; i++) {
+            if (boxes[i].contains(latIndex, lonIndex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Candidates of one ring as parallel arrays, reused across rings
+     */
+    private static final class CandidateBatch {
+        private static final int INITIAL_CAPACITY = 64;
+
+        Driver[] drivers = new Driver[INITIAL_CAPACITY];
+        double[] latitudes = new double[INITIAL_CAPACITY];
+        double[] longitudes = new double[INITIAL_CAPACITY];
+        double[] cosLatitudes = new double[INITIAL_CAPACITY];
+        double[] distances = new double[INITIAL_CAPACITY];
+        int size;
+
+        // Finds the K-th smallest approximate distance during pre-ranking
+        final TopKSelector<Object> kthSelector;
+
+        CandidateBatch(int k) {
+            this.kthSelector = new TopKSelector<>(k);
+        }
+
+        void add(Driver driver, double latitude, double longitude, double cosLatitude) {
+            if (size == drivers.length) {
+                int capacity = size * 2;
+                drivers = Arrays.copyOf(drivers, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                cosLatitudes = Arrays.copyOf(cosLatitudes, capacity);
+                distances = new double[capacity];
+            }
+
+            drivers[size] = driver;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            cosLatitudes[size] = cosLatitude;
+            size++;
+        }
+
+        /**
+         * Keep only the candidates whose distances entry is at most the limit
+         */
+        void retainAtMost(double limit) {
+            int kept = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (distances[i] <= limit) {
+                    drivers[kept] = drivers[i];
+                    latitudes[kept] = latitudes[i];
+                    longitudes[kept] = longitudes[i];
+                    cosLatitudes[kept] = cosLatitudes[i];
+                    kept++;
+                }
+            }
+
+            Arrays.fill(drivers, kept, size, null);
+            size = kept;
+        }
+
+        void clear() {
+            Arrays.fill(drivers, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Block of (2r+1) x (2r+1) cells around a center cell, i.e. the area covered by rings 0..r
+     */
+    private static final class SearchBox {
+        private final int precision;
+        private final long latMin;
+        private final long latMax;
+        private final long lonMin;
+        private final long lonMax;
+        private final long latCells;
+        private final long lonCells;
+
+        // Same block expressed in cells of the index precision, for membership tests
+        private final long indexLatMin;
+        private final long indexLatMax;
+        private final long indexLonMin;
+        private final long indexLonSpan;
+        private final long indexLonCells;
+
+        SearchBox(long center, int precision, int radius, int indexPrecision) {
+            this.precision = precision;
+            long latIndex = GeohashUtil.latitudeIndex(center, precision);
+            long lonIndex = GeohashUtil.longitudeIndex(center, precision);
+            this.latCells = 1L << GeohashUtil.latitudeBits(precision);
+            this.lonCells = 1L << GeohashUtil.longitudeBits(precision);
+
+            this.latMin = Math.max(0, latIndex - radius);
+            this.latMax = Math.min(latCells - 1, latIndex + radius);
+            // Longitude is kept unwrapped; the block may extend past the antimeridian
+            this.lonMin = lonIndex - radius;
+            this.lonMax = lonIndex + radius;
+
+            int latShift = GeohashUtil.latitudeBits(indexPrecision) - GeohashUtil.latitudeBits(precision);
+            int lonShift = GeohashUtil.longitudeBits(indexPrecision) - GeohashUtil.longitudeBits(precision);
+            this.indexLatMin = latMin << latShift;
+            this.indexLatMax = ((latMax + 1) << latShift) - 1;
+            this.indexLonMin = lonMin << lonShift;
+            this.indexLonSpan = ((lonMax - lonMin + 1) << lonShift) - 1;
+            this.indexLonCells = 1L << GeohashUtil.longitudeBits(indexPrecision);
+        }
+
+        boolean contains(long latIndex, long lonIndex) {
+            return latIndex >= indexLatMin && latIndex <= indexLatMax
+                    && Math.floorMod(lonIndex - indexLonMin, indexLonCells) <= indexLonSpan;
+        }
+
+        /**
+         * Lower bound on the great-circle distance from a point inside the block to any
+         * point outside it. Leaving the block means crossing one of its edges: a parallel
+         * at least |dLat| away, or a meridian, whose closest point lies
+         * asin(cos(lat) * sin(dLon)) away along the great circle.
+         */
+        double coveredRadiusKm(double latitude, double longitude) {
+            double cellHeight = GeohashUtil.cellHeightDegrees(precision);
+            double cellWidth = GeohashUtil.cellWidthDegrees(precision);
+
+            double covered = Double.POSITIVE_INFINITY;
+
+            // An edge on a pole, or a block spanning every longitude, has nothing beyond it
+            if (latMax < latCells - 1) {
+                double north = -90.0 + (latMax + 1) * cellHeight;
+                covered = Math.min(covered, Math.toRadians(north - latitude) * EARTH_RADIUS_KM);
+            }
+            if (latMin > 0) {
+                double south = -90.0 + latMin * cellHeight;
+                covered = Math.min(covered, Math.toRadians(latitude - south) * EARTH_RADIUS_KM);
+            }
+            if (lonMax - lonMin + 1 < lonCells) {
+                double east = -180.0 + (lonMax + 1) * cellWidth - longitude;
+                double west = longitude - (-180.0 + lonMin * cellWidth);
+                covered = Math.min(covered, distanceToMeridianKm(latitude, Math.min(east, west)));
+            }
+
+            return covered;
+        }
+
+        private static double distanceToMeridianKm(double latitude, double deltaLonDegrees) {
+            double deltaLon = Math.toRadians(Math.min(deltaLonDegrees, 90.0));
+            double sin = Math.cos(Math.toRadians(latitude)) * Math.sin(deltaLon);
+            return Math.asin(Math.min(1.0, sin)) * EARTH_RADIUS_KM;
+        }
     }
 
     public DriverWithDistance findClosestDriver(double pickupLatitude, double pickupLongitude) {
@@ -95,10 +700,12 @@ public class DriverMatchingService {
             double maxDistanceKm,
             int maxDrivers
     ) {
+        // The ring search can stop as soon as the radius has been covered
         List<DriverWithDistance> closestDrivers = findClosestDrivers(
                 pickupLatitude,
                 pickupLongitude,
-                maxDrivers * 2
+                maxDrivers,
+                maxDistanceKm
         );
 
         return closestDrivers.stream()
@@ -108,24 +715,36 @@ public class DriverMatchingService {
     }
 
     public DriverAvailabilityStats getAvailabilityStats(double latitude, double longitude) {
-        List<Driver> nearby = findNearbyDriversWithFallback(latitude, longitude);
-
-        long availableCount = nearby.stream().filter(Driver::isAvailable).count();
-        long unavailableCount = nearby.size() - availableCount;
+        // Counts come straight from the trie's per-cell counters
+        GeohashTrie.CellCounts counts = driverService.countDriversInNeighborhood(
+                latitude,
+                longitude,
+                STATS_SEARCH_PRECISION
+        );
 
-        // Calculate average distance to available drivers
+        // Average distance to available drivers in one pass over the same cells
         double avgDistance = 0.0;
-        if (availableCount > 0) {
-            List<DriverWithDistance> withDistances = findClosestDrivers(latitude, longitude, (int) availableCount);
-            avgDistance = withDistances.stream()
-                    .mapToDouble(DriverWithDistance::getDistanceKm)
-                    .average()
-                    .orElse(0.0);
+        if (counts.availableDrivers > 0) {
+            long center = GeohashUtil.encodeLong(latitude, longitude, STATS_SEARCH_PRECISION);
+            long[] cells = GeohashUtil.getNeighborhood(center, STATS_SEARCH_PRECISION);
+            double[] sum = new double[2];
+
+            driverService.forEachAvailableDriverInCells(cells, cells.length, STATS_SEARCH_PRECISION, driver -> {
+                sum[0] += HaversineDistanceCalculator.calculateDistance(
+                        latitude, longitude,
+                        driver.getLatitude(), driver.getLongitude()
+                );
+                sum[1]++;
+            });
+
+            if (sum[1] > 0) {
+                avgDistance = sum[0] / sum[1];
+            }
         }
 
         return new DriverAvailabilityStats(
-                (int) availableCount,
-                (int) unavailableCount,
+                counts.availableDrivers,
+                counts.getUnavailableDrivers(),
                 avgDistance
         );
     }
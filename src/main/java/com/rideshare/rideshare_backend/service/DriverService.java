@@ -1,41 +1,96 @@
 package com.rideshare.rideshare_backend.service;
 
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
 import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
+import com.rideshare.rideshare_backend.datastructure.ShardedDriverIndex;
 import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverLocationUpdate;
 import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 
 @Service
-public class DriverService {
-    private final GeohashTrie geohashTrie;
+public class DriverService implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DriverService.class);
+
+    private final ShardedDriverIndex driverIndex;
+    private final DriverLocationStore locationStore;
     private final Map<String, Driver> driverById;
+    private final List<DriverIndexListener> listeners = new CopyOnWriteArrayList<>();
     private static final int DEFAULT_SEARCH_PRECISION = 5;
+    private static final int INDEX_PRECISION = GeohashUtil.DEFAULT_PRECISION;
 
     public DriverService() {
-        this.geohashTrie = new GeohashTrie();
-        this.driverById = new HashMap<>();
+        this(true);
+    }
+
+    /**
+     * @param copyOnWriteIndex Request threads call into the service concurrently: the trie
+     *                         runs in its striped-lock mode and per-driver mutations are
+     *                         serialized on the driver itself. With copyOnWriteIndex,
+     *                         searches also skip the stripe read locks and read snapshots
+     *                         of the trie instead, since they far outnumber the writes that
+     *                         change it; each such write copies its path to the root.
+     */
+    public DriverService(boolean copyOnWriteIndex) {
+        this(1, copyOnWriteIndex);
+    }
+
+    /**
+     * @param shards Number of index shards (see ShardedDriverIndex). With more than one,
+     *               index writes run on each shard's writer thread and a driver crossing
+     *               into another shard's cells is handed off between them.
+     */
+    @Autowired
+    public DriverService(@Value("${rideshare.index.shards:1}") int shards,
+                         @Value("${rideshare.index.copy-on-write:true}") boolean copyOnWriteIndex) {
+        this.locationStore = new DriverLocationStore();
+        this.driverIndex = new ShardedDriverIndex(locationStore, shards,
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, copyOnWriteIndex);
+        this.driverById = new ConcurrentHashMap<>();
     }
 
     public Driver registerDriver(Driver driver) {
         if (driver == null) {
             throw new IllegalArgumentException("Driver cannot be null");
         }
-
-        if (driverById.containsKey(driver.getId())) {
-            throw new IllegalArgumentException("Driver with ID " + driver.getId() + " already exists");
+        if (driver.getId() == null) {
+            throw new IllegalArgumentException("Driver ID cannot be null");
         }
 
-        String geohash = GeohashUtil.encode(driver.getLatitude(), driver.getLongitude());
-        driver.setGeohash(geohash);
+        long geohash = GeohashUtil.encodeLong(driver.getLatitude(), driver.getLongitude(), INDEX_PRECISION);
 
-        geohashTrie.insert(geohash, driver);
+        synchronized (driver) {
+            if (driverById.putIfAbsent(driver.getId(), driver) != null) {
+                throw new IllegalArgumentException("Driver with ID " + driver.getId() + " already exists");
+            }
 
-        driverById.put(driver.getId(), driver);
+            driver.setGeohash(geohash, INDEX_PRECISION);
+            driverIndex.insert(geohash, INDEX_PRECISION, driver);
+
+            for (DriverIndexListener listener : listeners) {
+                try {
+                    listener.onRegistered(driver);
+                } catch (RuntimeException e) {
+                    listenerFailed(listener, driver, e);
+                }
+            }
+        }
 
         return driver;
     }
@@ -47,33 +102,210 @@ public class DriverService {
             throw new IllegalArgumentException("Driver not found: " + driverId);
         }
 
-        String oldGeohash = driver.getGeohash();
-        String newGeohash = GeohashUtil.encode(newLatitude, newLongitude);
+        long newGeohash = GeohashUtil.encodeLong(newLatitude, newLongitude, INDEX_PRECISION);
 
-        if (!oldGeohash.equals(newGeohash)) {
-            geohashTrie.updateLocation(oldGeohash, newGeohash, driver);
-            driver.setGeohash(newGeohash);
+        if (!applyLocation(driver, newLatitude, newLongitude, newGeohash)) {
+            throw new IllegalArgumentException("Driver not found: " + driverId);
         }
 
-        driver.updateLocation(newLatitude, newLongitude);
-
         return driver;
     }
 
-    public List<Driver> findNearbyDrivers(double latitude, double longitude, int precision) {
-        String searchGeohash = GeohashUtil.encode(latitude, longitude, precision);
+    /**
+     * Update the driver holding a location store slot. Used by binary feeds that address
+     * drivers by slot, which skips the id lookup and needs no String per update.
+     *
+     * @param slot Driver's slot, as returned when it was registered
+     * @param idHash Driver id's hashCode(); guards against the slot having been released
+     *               and handed to another driver since the sender learned it
+     * @return false if the slot is not held by a driver with that id hash
+     */
+    public boolean updateDriverLocationAtSlot(int slot, int idHash, double newLatitude, double newLongitude) {
+        Driver driver = locationStore.findDriver(slot);
+
+        if (driver == null || driver.getId().hashCode() != idHash) {
+            return false;
+        }
+
+        long newGeohash = GeohashUtil.encodeLong(newLatitude, newLongitude, INDEX_PRECISION);
+
+        return applyLocation(driver, newLatitude, newLongitude, newGeohash);
+    }
+
+    /**
+     * Apply a batch of location updates.
+     * Several updates for the same driver collapse to the last one, and the rest are
+     * applied grouped by target cell so consecutive trie moves hit the same nodes.
+     * Each update is applied like a single updateDriverLocation call; unknown drivers
+     * are reported instead of failing the batch.
+     *
+     * @param updates Location updates in arrival order
+     * @return Number of drivers updated and the ids that were not found
+     * @throws IllegalArgumentException naming the first update without a driver id or
+     *         with coordinates out of range; nothing is applied then
+     */
+    public BatchUpdateResult updateDriverLocations(List<DriverLocationUpdate> updates) {
+        if (updates == null) {
+            throw new IllegalArgumentException("Updates cannot be null");
+        }
 
-        List<Driver> nearbyDrivers = geohashTrie.searchByPrefix(searchGeohash);
+        // Last update per driver wins
+        // Every update is checked before any is applied, so a bad one rejects the whole batch
+        Map<String, DriverLocationUpdate> latest = new LinkedHashMap<>();
+        for (int i = 0; i < updates.size(); i++) {
+            DriverLocationUpdate update = updates.get(i);
+            if (update == null || update.getDriverId() == null) {
+                throw new IllegalArgumentException("Update " + i + " must have a driver id");
+            }
+            double latitude = update.getLatitude();
+            double longitude = update.getLongitude();
+            if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+                throw new IllegalArgumentException("Invalid location in update " + i
+                        + ": latitude must be between -90 and 90 and longitude between -180 and 180");
+            }
+            latest.put(update.getDriverId(), update);
+        }
+
+        DriverLocationUpdate[] pending = latest.values().toArray(new DriverLocationUpdate[0]);
+        long[] geohashes = new long[pending.length];
+
+        // Sort by target cell: a precision-6 cell is 30 bits, so cell and position
+        // pack into one long and a primitive sort does the grouping
+        long[] order = new long[pending.length];
+        for (int i = 0; i < pending.length; i++) {
+            geohashes[i] = GeohashUtil.encodeLong(pending[i].getLatitude(), pending[i].getLongitude(), INDEX_PRECISION);
+            order[i] = (geohashes[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        BatchUpdateResult result = new BatchUpdateResult();
+        for (long packed : order) {
+            int i = (int) packed;
+            DriverLocationUpdate update = pending[i];
+            Driver driver = driverById.get(update.getDriverId());
+
+            if (driver != null && applyLocation(driver, update.getLatitude(), update.getLongitude(), geohashes[i])) {
+                result.updatedCount++;
+            } else {
+                result.notFoundIds.add(update.getDriverId());
+            }
+        }
 
-        return nearbyDrivers.stream()
-                .filter(Driver::isAvailable)
-                .toList();
+        return result;
+    }
+
+    /**
+     * Move a driver to a new location, re-indexing it only if its cell changed.
+     *
+     * @return false if the driver was removed before its lock was acquired
+     */
+    private boolean applyLocation(Driver driver, double latitude, double longitude, long newGeohash) {
+        synchronized (driver) {
+            // The driver may have been removed while we were waiting for its lock
+            if (driverById.get(driver.getId()) != driver) {
+                return false;
+            }
+
+            long oldGeohash = driver.getGeohashLong();
+
+            driver.updateLocation(latitude, longitude);
+            locationStore.setLocation(driver.getSlot(), latitude, longitude, driver.getCosLatitude());
+
+            if (oldGeohash != newGeohash) {
+                driverIndex.updateLocation(oldGeohash, newGeohash, INDEX_PRECISION, driver);
+                driver.setGeohash(newGeohash, INDEX_PRECISION);
+            }
+
+            for (DriverIndexListener listener : listeners) {
+                try {
+                    listener.onLocationUpdated(driver, oldGeohash, newGeohash);
+                } catch (RuntimeException e) {
+                    listenerFailed(listener, driver, e);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    public List<Driver> findNearbyDrivers(double latitude, double longitude, int precision) {
+        long searchGeohash = GeohashUtil.encodeLong(latitude, longitude, precision);
+
+        // The trie only walks the available partition, so busy drivers are never copied
+        return driverIndex.searchAvailableByPrefixes(new long[]{searchGeohash}, precision);
     }
 
     public List<Driver> findNearbyDrivers(double latitude, double longitude) {
         return findNearbyDrivers(latitude, longitude, DEFAULT_SEARCH_PRECISION);
     }
 
+    /**
+     * Find available drivers in the cell containing the location and its 8 neighbors.
+     * Unlike a single-cell prefix search this does not miss drivers just across a cell
+     * edge, so any driver within one cell width of the location is found.
+     */
+    public List<Driver> findNearbyDriversInNeighborhood(double latitude, double longitude, int precision) {
+        long center = GeohashUtil.encodeLong(latitude, longitude, precision);
+        long[] cells = GeohashUtil.getNeighborhood(center, precision);
+
+        return driverIndex.searchAvailableByPrefixes(cells, precision);
+    }
+
+    /**
+     * Count total and available drivers in the 3x3 neighborhood of cells around a location
+     * from the trie's per-cell counters, without visiting any driver.
+     */
+    public GeohashTrie.CellCounts countDriversInNeighborhood(double latitude, double longitude, int precision) {
+        long center = GeohashUtil.encodeLong(latitude, longitude, precision);
+        long[] cells = GeohashUtil.getNeighborhood(center, precision);
+
+        return driverIndex.countByPrefixes(cells, precision);
+    }
+
+    /**
+     * Visit the available drivers in a set of cells without copying them into a list.
+     * The visitor runs while the cells are read-locked (or on a snapshot of the index,
+     * see GeohashTrie.isCopyOnWrite) and must not call back into this service.
+     *
+     * @param cells Geohash bits of the cells; negative entries are ignored
+     * @param count Number of entries of cells to use
+     * @param precision Precision of the cells
+     * @param visitor Called once per available driver
+     */
+    public void forEachAvailableDriverInCells(long[] cells, int count, int precision, Consumer<Driver> visitor) {
+        driverIndex.forEachAvailableInPrefixes(cells, count, precision, visitor);
+    }
+
+    /**
+     * Visit the store slots of the available drivers in a set of cells. Positions are
+     * read from getLocationStore(); same locking rules as forEachAvailableDriverInCells.
+     * On a snapshot a slot may be released while the visitor runs, leaving no driver there.
+     */
+    public void forEachAvailableSlotInCells(long[] cells, int count, int precision, IntConsumer visitor) {
+        driverIndex.forEachAvailableSlotInPrefixes(cells, count, precision, visitor);
+    }
+
+    /**
+     * Like forEachAvailableSlotInCells, but stops as soon as the visitor returns false
+     *
+     * @return false if the visitor stopped the walk
+     */
+    public boolean visitAvailableSlotsInCells(long[] cells, int count, int precision, IntPredicate visitor) {
+        return driverIndex.visitAvailableSlotsInPrefixes(cells, count, precision, visitor);
+    }
+
+    public DriverLocationStore getLocationStore() {
+        return locationStore;
+    }
+
+    public int getIndexPrecision() {
+        return INDEX_PRECISION;
+    }
+
+    public int getShardCount() {
+        return driverIndex.getShardCount();
+    }
+
     public Optional<Driver> getDriverById(String driverId) {
         return Optional.ofNullable(driverById.get(driverId));
     }
@@ -85,7 +317,23 @@ public class DriverService {
             throw new IllegalArgumentException("Driver not found: " + driverId);
         }
 
-        driver.setAvailable(available);
+        synchronized (driver) {
+            if (driverById.get(driverId) != driver) {
+                throw new IllegalArgumentException("Driver not found: " + driverId);
+            }
+
+            // The trie moves the driver between its available and busy partitions
+            driverIndex.setAvailability(driver.getGeohashLong(), INDEX_PRECISION, driver, available);
+
+            for (DriverIndexListener listener : listeners) {
+                try {
+                    listener.onAvailabilityChanged(driver, available);
+                } catch (RuntimeException e) {
+                    listenerFailed(listener, driver, e);
+                }
+            }
+        }
+
         return driver;
     }
 
@@ -96,27 +344,180 @@ public class DriverService {
             return false;
         }
 
-        geohashTrie.delete(driver.getGeohash(), driver);
+        synchronized (driver) {
+            // Compare by identity: a re-registered driver with the same id is a different object
+            if (driverById.get(driverId) != driver) {
+                return false;
+            }
+
+            unindex(driver);
+        }
+
+        return true;
+    }
 
-        driverById.remove(driverId);
+    /**
+     * Remove a driver whose last location write is no later than cutoffNanos, unless it
+     * was removed or sent a location since the caller last looked at it.
+     *
+     * @param cutoffNanos System.nanoTime() the driver's last ping must not be after
+     * @return true if the driver was removed
+     */
+    public boolean removeIfStale(Driver driver, long cutoffNanos) {
+        synchronized (driver) {
+            if (driverById.get(driver.getId()) != driver
+                    || locationStore.lastUpdateNanos(driver.getSlot()) - cutoffNanos > 0) {
+                return false;
+            }
+
+            unindex(driver);
+        }
 
         return true;
     }
 
+    // Caller holds the driver's lock and has checked it is still registered
+    private void unindex(Driver driver) {
+        // Unindex before unmapping so a re-registration cannot land in the trie
+        // while this instance is still there
+        driverIndex.delete(driver.getGeohashLong(), INDEX_PRECISION, driver);
+        driverById.remove(driver.getId());
+
+        for (DriverIndexListener listener : listeners) {
+            try {
+                listener.onRemoved(driver);
+            } catch (RuntimeException e) {
+                listenerFailed(listener, driver, e);
+            }
+        }
+    }
+
     public List<Driver> getAllDrivers() {
         return driverById.values().stream().toList();
     }
 
+    /**
+     * One page of drivers in slot order, for listing a large fleet without copying it.
+     * A driver indexed for the whole walk is returned exactly once; drivers registered
+     * or removed meanwhile may or may not be.
+     *
+     * @param cursor Slot to start at: 0 for the first page, then the previous page's next cursor
+     * @param limit Maximum number of drivers in the page
+     * @return The page's drivers and the cursor of the next page
+     */
+    public DriverPage getDriversPage(int cursor, int limit) {
+        if (cursor < 0) {
+            throw new IllegalArgumentException("Cursor cannot be negative");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+
+        int capacity = locationStore.capacity();
+        List<Driver> drivers = new ArrayList<>(Math.min(limit, Math.max(0, capacity - cursor)));
+        int slot = cursor;
+
+        while (slot < capacity && drivers.size() < limit) {
+            Driver driver = locationStore.findDriver(slot);
+            // Skip free slots and drivers still being allocated
+            if (driver != null && driver.getSlot() == slot) {
+                drivers.add(driver);
+            }
+            slot++;
+        }
+
+        return new DriverPage(drivers, slot < capacity ? slot : -1);
+    }
+
     public int getTotalDrivers() {
         return driverById.size();
     }
 
     public GeohashTrie.TrieStats getTrieStats() {
-        return geohashTrie.getStats();
+        return driverIndex.getStats();
     }
 
+    /**
+     * Remove every driver, one at a time under its lock as removeDriver() does, so a
+     * driver registered meanwhile is either removed or left fully indexed. Listeners see
+     * an onRemoved() per driver.
+     */
     public void clearAll() {
-        geohashTrie.clear();
-        driverById.clear();
+        for (Driver driver : driverById.values()) {
+            synchronized (driver) {
+                if (driverById.get(driver.getId()) == driver) {
+                    unindex(driver);
+                }
+            }
+        }
+    }
+
+    /**
+     * Register a listener for index changes, e.g. persistence or cache invalidation
+     */
+    public void addListener(DriverIndexListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(DriverIndexListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The change a listener failed on is already applied to the index, so it stands:
+     * the failure is logged and the remaining listeners, e.g. cache invalidation, still
+     * see the event.
+     */
+    private static void listenerFailed(DriverIndexListener listener, Driver driver, RuntimeException e) {
+        log.error("Index listener {} failed for driver {}", listener.getClass().getSimpleName(), driver.getId(), e);
+    }
+
+    /**
+     * Stop the index shards' writer threads
+     */
+    @Override
+    public void close() {
+        driverIndex.close();
+    }
+
+    public static class DriverPage {
+        private final List<Driver> drivers;
+        private final int nextCursor;
+
+        DriverPage(List<Driver> drivers, int nextCursor) {
+            this.drivers = drivers;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Driver> getDrivers() {
+            return drivers;
+        }
+
+        /**
+         * @return Cursor of the next page, or -1 if this is the last one
+         */
+        public int getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean hasMore() {
+            return nextCursor >= 0;
+        }
+    }
+
+    public static class BatchUpdateResult {
+        private int updatedCount;
+        private final List<String> notFoundIds = new ArrayList<>();
+
+        public int getUpdatedCount() {
+            return updatedCount;
+        }
+
+        public List<String> getNotFoundIds() {
+            return notFoundIds;
+        }
     }
 }
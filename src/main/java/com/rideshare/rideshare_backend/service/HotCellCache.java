@@ -0,0 +1,645 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.HaversineDistanceCalculator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of closest-driver candidates for hot pickup cells, e.g. airports and stadiums,
+ * where bursts of requests come from the same few cells.
+ *
+ * An entry covers one pickup cell (precision 7 by default, about 150 m) and one
+ * number of drivers K. It holds every available driver within a radius R of the cell's
+ * center, where R is the K-th closest distance from the center plus the cell's
+ * diameter. For any pickup in the cell, the true K closest drivers are then all
+ * candidates, so a hit re-scores only the candidates against the exact pickup
+ * (see DriverMatchingService) instead of walking the index.
+ *
+ * Most pickup cells are requested once in a while, and a build costs a few searches,
+ * so a key is only built on its second miss within ADMISSION_WINDOW_NANOS. Keys seen
+ * once are remembered in a bounded doorkeeper map; their misses, and misses on keys
+ * whose build was rejected moments ago, are answered by a plain search.
+ *
+ * Entries stay exact through this listener. An entry watches the index cells
+ * overlapping its circle. It is dropped as soon as a driver in one of those cells
+ * enters or leaves the circle, or changes availability inside it. Candidates that
+ * move but stay inside the circle need nothing, since hits read their current position.
+ * Entries are evicted least recently used once there are more than the capacity.
+ *
+ * An entry is built from an index search that may overlap changes to its cells. Each
+ * change bumps a stamp for its cell while any build is running, and a build whose cells'
+ * stamps moved is not cached.
+ */
+public class HotCellCache implements DriverIndexListener {
+    public static final int DEFAULT_PRECISION = 7;
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * Results are cached for up to this many drivers
+     */
+    public static final int MAX_CACHED_DRIVERS = 64;
+    private static final int MAX_PRECISION = 10;
+    private static final int STAMP_STRIPES = 256;
+    // A cell whose build was rejected as too sparse or too dense is not built again for this long
+    private static final long REJECTION_NANOS = 1_000_000_000L;
+    // A key is built on its second miss within this window
+    private static final long ADMISSION_WINDOW_NANOS = 10_000_000_000L;
+    // Keys the doorkeeper remembers, per entry of capacity
+    private static final int DOORKEEPER_KEYS_PER_ENTRY = 8;
+
+    /**
+     * Candidates of one pickup cell. Immutable once cached apart from being invalidated.
+     */
+    static final class Entry {
+        final long key;
+        final double centerLatitude;
+        final double centerLongitude;
+        final double radiusKm;
+        final Driver[] candidates;
+        final long[] cells;
+        // Membership of candidates, checked on every change in a watched cell
+        private final Set<Driver> members;
+        final long createdNanos = System.nanoTime();
+        private final double centerLatitudeRadians;
+        private final double centerLongitudeRadians;
+        private final double centerCosLatitude;
+        // The circle's reach in degrees of latitude, and the error of approximate
+        // distances within it (infinite where the approximation does not apply)
+        private final double radiusDegrees;
+        private final double approximationError;
+        volatile boolean valid = true;
+
+        /**
+         * @param candidates Every available driver within radiusKm of the center
+         * @param cells Index cells covering the circle
+         */
+        Entry(long key, double centerLatitude, double centerLongitude, double radiusKm,
+              Driver[] candidates, long[] cells) {
+            this.key = key;
+            this.centerLatitude = centerLatitude;
+            this.centerLongitude = centerLongitude;
+            this.radiusKm = radiusKm;
+            this.candidates = candidates;
+            this.cells = cells;
+            this.members = Collections.newSetFromMap(new IdentityHashMap<>(candidates.length));
+            Collections.addAll(members, candidates);
+            this.centerLatitudeRadians = Math.toRadians(centerLatitude);
+            this.centerLongitudeRadians = Math.toRadians(centerLongitude);
+            this.centerCosLatitude = Math.cos(centerLatitudeRadians);
+            this.radiusDegrees = Math.toDegrees(radiusKm / HaversineDistanceCalculator.EARTH_RADIUS_KM);
+            this.approximationError = HaversineDistanceCalculator.approximationErrorBound(
+                    centerLatitude, radiusDegrees, 2 * radiusKm);
+        }
+
+        boolean contains(Driver driver) {
+            return members.contains(driver);
+        }
+
+        /**
+         * Whether the driver is inside the circle. Checked against every entry watching
+         * a pinged cell, so most drivers are settled by the latitude difference or the
+         * approximate distance, and only those close to the edge pay for trigonometry.
+         */
+        boolean covers(Driver driver) {
+            // No point further north or south than the radius is inside
+            if (Math.abs(driver.getLatitude() - centerLatitude) > radiusDegrees) {
+                return false;
+            }
+            if (approximationError < 1.0) {
+                double approximate = HaversineDistanceCalculator.approximateDistance(
+                        centerLatitude, centerLongitude, centerCosLatitude, driver.getLatitude(), driver.getLongitude());
+                if (approximate > radiusKm * (1 + approximationError)) {
+                    return false;
+                }
+                if (approximate < radiusKm * (1 - approximationError)) {
+                    return true;
+                }
+            }
+
+            return HaversineDistanceCalculator.calculateDistance(
+                    centerLatitudeRadians, centerLongitudeRadians, centerCosLatitude,
+                    driver.getLatitudeRadians(), driver.getLongitudeRadians(), driver.getCosLatitude()
+            ) <= radiusKm;
+        }
+    }
+
+    private final int precision;
+    private final int capacity;
+    private final boolean admitOnFirstMiss;
+    // Access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Key -> System.nanoTime() until which it is not built again, oldest first; guarded by itself
+    private final LinkedHashMap<Long, Long> rejectedUntil = new LinkedHashMap<>();
+    // Key -> System.nanoTime() of its first recent miss, oldest first; guarded by itself
+    private final LinkedHashMap<Long, Long> firstMisses = new LinkedHashMap<>();
+    // Index cell -> entries watching it. Read without locking on every index change,
+    // changed under the entries lock.
+    private volatile WatcherTable watchers = new WatcherTable(64);
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private final AtomicInteger buildsInFlight = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hitAgeNanos = new LongAdder();
+    private final AtomicLong maxHitAgeNanos = new AtomicLong();
+
+    public HotCellCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param capacity Maximum number of cached entries
+     * @param precision Geohash precision of the pickup cells; 6 or 7 suit dense venues
+     */
+    public HotCellCache(int capacity, int precision) {
+        this(capacity, precision, false);
+    }
+
+    /**
+     * @param admitOnFirstMiss Build on every miss instead of a key's second; for tests
+     *                         of the entries themselves
+     */
+    HotCellCache(int capacity, int precision, boolean admitOnFirstMiss) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + MAX_PRECISION + ": " + precision);
+        }
+
+        this.capacity = capacity;
+        this.precision = precision;
+        this.admitOnFirstMiss = admitOnFirstMiss;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Cache key of a pickup cell at this cache's precision and a number of drivers
+     */
+    static long key(long cell, int maxDrivers) {
+        return (cell << 8) | maxDrivers;
+    }
+
+    Entry get(long key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        return entry != null && entry.valid ? entry : null;
+    }
+
+    void recordHit(Entry entry) {
+        long age = System.nanoTime() - entry.createdNanos;
+        hits.increment();
+        hitAgeNanos.add(age);
+        maxHitAgeNanos.accumulateAndGet(age, Math::max);
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Start building an entry. Must be paired with endBuild().
+     *
+     * @return Stamps to pass to put()
+     */
+    long[] beginBuild() {
+        buildsInFlight.incrementAndGet();
+        long[] snapshot = new long[STAMP_STRIPES];
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            snapshot[i] = stamps.get(i);
+        }
+        return snapshot;
+    }
+
+    void endBuild() {
+        buildsInFlight.decrementAndGet();
+    }
+
+    /**
+     * Cache an entry built since beginBuild() returned the stamps, unless one of its
+     * cells changed meanwhile
+     *
+     * @return true if the entry was cached
+     */
+    boolean put(Entry entry, long[] stampsAtStart) {
+        synchronized (entries) {
+            // Watch first: a change stamped after the check below then finds the entry
+            watch(entry);
+            for (long cell : entry.cells) {
+                int stripe = stripe(cell);
+                if (stamps.get(stripe) != stampsAtStart[stripe]) {
+                    unwatch(entry);
+                    rejected.increment();
+                    return false;
+                }
+            }
+
+            Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                previous.valid = false;
+                unwatch(previous);
+            }
+
+            if (entries.size() > capacity) {
+                Iterator<Entry> eldest = entries.values().iterator();
+                Entry evicted = eldest.next();
+                eldest.remove();
+                evicted.valid = false;
+                unwatch(evicted);
+                evictions.increment();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Record a search result that could not be cached, e.g. in a sparse area. The key
+     * is not built again for a while, see skipBuild().
+     */
+    void recordRejected(long key) {
+        rejected.increment();
+        long until = System.nanoTime() + REJECTION_NANOS;
+        synchronized (rejectedUntil) {
+            rejectedUntil.remove(key);
+            rejectedUntil.put(key, until);
+            if (rejectedUntil.size() > capacity) {
+                Iterator<Long> eldest = rejectedUntil.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Whether a miss on the key should go straight to a plain search instead of building
+     * an entry: the key has not missed before within the admission window, or its last
+     * build was rejected moments ago. Cold cells would otherwise pay for a build that is
+     * never hit, and dense cells for one that is thrown away on every request.
+     */
+    boolean skipBuild(long key) {
+        long now = System.nanoTime();
+        if (recentlyRejected(key, now) || !admit(key, now)) {
+            skipped.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean recentlyRejected(long key, long now) {
+        synchronized (rejectedUntil) {
+            Long until = rejectedUntil.get(key);
+            if (until == null) {
+                return false;
+            }
+            if (until - now <= 0) {
+                rejectedUntil.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private boolean admit(long key, long now) {
+        if (admitOnFirstMiss) {
+            return true;
+        }
+
+        synchronized (firstMisses) {
+            Long first = firstMisses.remove(key);
+            if (first != null && now - first <= ADMISSION_WINDOW_NANOS) {
+                return true;
+            }
+
+            firstMisses.put(key, now);
+            if (firstMisses.size() > (long) capacity * DOORKEEPER_KEYS_PER_ENTRY) {
+                Iterator<Long> eldest = firstMisses.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return false;
+        }
+    }
+
+    void invalidate(Entry entry) {
+        synchronized (entries) {
+            if (!entry.valid) {
+                return;
+            }
+            entry.valid = false;
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+            }
+            unwatch(entry);
+            invalidations.increment();
+        }
+    }
+
+    // Caller holds the entries lock
+    private void watch(Entry entry) {
+        for (long cell : entry.cells) {
+            if (!watchers.add(cell, entry)) {
+                // Full: copy the cells still watched into a larger table first
+                watchers = watchers.resized();
+                watchers.add(cell, entry);
+            }
+        }
+    }
+
+    // Caller holds the entries lock
+    private void unwatch(Entry entry) {
+        for (long cell : entry.cells) {
+            watchers.remove(cell, entry);
+        }
+    }
+
+    /**
+     * A driver in the cell changed
+     *
+     * @param counted Whether the driver now counts as a candidate, i.e. is indexed and available
+     */
+    private void touch(long cell, Driver driver, boolean counted) {
+        if (buildsInFlight.get() > 0) {
+            stamps.incrementAndGet(stripe(cell));
+        }
+
+        Entry[] watching = watchers.get(cell);
+        if (watching == null) {
+            return;
+        }
+
+        for (Entry entry : watching) {
+            if (entry.valid && entry.contains(driver) != (counted && entry.covers(driver))) {
+                invalidate(entry);
+            }
+        }
+    }
+
+    private static int stripe(long cell) {
+        return (int) ((cell * 0x9E3779B97F4A7C15L) >>> 56) & (STAMP_STRIPES - 1);
+    }
+
+    /**
+     * Open-addressing map from index cell to the entries watching it, so a ping looks its
+     * cell up without boxing. One writer at a time (the entries lock), any number of
+     * lock-free readers. Each cell's entries are an immutable array replaced on change. A
+     * cell is never removed, only left with no entries, until resized() copies the cells
+     * still watched into a new table that the writer then publishes.
+     */
+    private static final class WatcherTable {
+        private static final long EMPTY = -1;
+
+        private final AtomicLongArray cells;
+        private final AtomicReferenceArray<Entry[]> entries;
+        private final int mask;
+        // Slots with a cell in them; writer only
+        private int used;
+
+        WatcherTable(int capacity) {
+            cells = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                cells.set(i, EMPTY);
+            }
+            entries = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        Entry[] get(long cell) {
+            for (int i = slot(cell); ; i = (i + 1) & mask) {
+                long found = cells.get(i);
+                if (found == cell) {
+                    return entries.get(i);
+                }
+                if (found == EMPTY) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * @return false if the table is too full to take another cell
+         */
+        boolean add(long cell, Entry entry) {
+            int i = slot(cell);
+            for (long found; (found = cells.get(i)) != EMPTY; i = (i + 1) & mask) {
+                if (found == cell) {
+                    Entry[] current = entries.get(i);
+                    if (current == null) {
+                        entries.set(i, new Entry[]{entry});
+                    } else {
+                        Entry[] grown = Arrays.copyOf(current, current.length + 1);
+                        grown[current.length] = entry;
+                        entries.set(i, grown);
+                    }
+                    return true;
+                }
+            }
+
+            // Keep at least half the slots empty so probes stay short
+            if (2 * (used + 1) > cells.length()) {
+                return false;
+            }
+            // Entries before the cell, so a reader finding the cell finds its entries
+            entries.set(i, new Entry[]{entry});
+            cells.set(i, cell);
+            used++;
+            return true;
+        }
+
+        void remove(long cell, Entry entry) {
+            for (int i = slot(cell); ; i = (i + 1) & mask) {
+                long found = cells.get(i);
+                if (found == EMPTY) {
+                    return;
+                }
+                if (found != cell) {
+                    continue;
+                }
+
+                Entry[] current = entries.get(i);
+                if (current == null) {
+                    return;
+                }
+                int at = 0;
+                while (at < current.length && current[at] != entry) {
+                    at++;
+                }
+                if (at == current.length) {
+                    return;
+                }
+                if (current.length == 1) {
+                    entries.set(i, null);
+                } else {
+                    Entry[] shrunk = new Entry[current.length - 1];
+                    System.arraycopy(current, 0, shrunk, 0, at);
+                    System.arraycopy(current, at + 1, shrunk, at, shrunk.length - at);
+                    entries.set(i, shrunk);
+                }
+                return;
+            }
+        }
+
+        /**
+         * A table holding the cells still watched, with room for as many again
+         */
+        WatcherTable resized() {
+            int live = 0;
+            for (int i = 0; i < cells.length(); i++) {
+                if (entries.get(i) != null) {
+                    live++;
+                }
+            }
+
+            int capacity = Integer.highestOneBit(Math.max(64, 4 * (live + 1)) - 1) << 1;
+            WatcherTable resized = new WatcherTable(capacity);
+            for (int i = 0; i < cells.length(); i++) {
+                Entry[] watching = entries.get(i);
+                if (watching != null) {
+                    resized.put(cells.get(i), watching);
+                }
+            }
+            return resized;
+        }
+
+        private void put(long cell, Entry[] watching) {
+            int i = slot(cell);
+            while (cells.get(i) != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            entries.set(i, watching);
+            cells.set(i, cell);
+            used++;
+        }
+
+        private int slot(long cell) {
+            return (int) ((cell * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        }
+    }
+
+    @Override
+    public void onRegistered(Driver driver) {
+        touch(driver.getGeohashLong(), driver, driver.isAvailable());
+    }
+
+    @Override
+    public void onLocationUpdated(Driver driver, long oldCell, long newCell) {
+        touch(oldCell, driver, driver.isAvailable());
+        if (newCell != oldCell) {
+            touch(newCell, driver, driver.isAvailable());
+        }
+    }
+
+    @Override
+    public void onAvailabilityChanged(Driver driver, boolean available) {
+        touch(driver.getGeohashLong(), driver, available);
+    }
+
+    @Override
+    public void onRemoved(Driver driver) {
+        touch(driver.getGeohashLong(), driver, false);
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), rejected.sum(), skipped.sum(), invalidations.sum(),
+                evictions.sum(), size, hitAgeNanos.sum(), maxHitAgeNanos.get());
+    }
+
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long rejected;
+        private final long skipped;
+        private final long invalidations;
+        private final long evictions;
+        private final int entries;
+        private final long totalHitAgeNanos;
+        private final long maxHitAgeNanos;
+
+        Stats(long hits, long misses, long rejected, long skipped, long invalidations, long evictions,
+              int entries, long totalHitAgeNanos, long maxHitAgeNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.rejected = rejected;
+            this.skipped = skipped;
+            this.invalidations = invalidations;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.totalHitAgeNanos = totalHitAgeNanos;
+            this.maxHitAgeNanos = maxHitAgeNanos;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        /**
+         * Searches whose result could not be cached: too sparse or too dense an area,
+         * or a change to its cells during the search
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Misses answered by a plain search without a build: the key's first miss within
+         * the admission window, or a cell rejected moments before
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        /**
+         * Staleness: average time since the served entries were built
+         */
+        public double getAverageHitAgeMillis() {
+            return hits == 0 ? 0.0 : totalHitAgeNanos / (double) hits / 1_000_000.0;
+        }
+
+        public double getMaxHitAgeMillis() {
+            return maxHitAgeNanos / 1_000_000.0;
+        }
+    }
+}
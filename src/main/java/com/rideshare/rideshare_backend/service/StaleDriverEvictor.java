@@ -0,0 +1,185 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
+import com.rideshare.rideshare_backend.datastructure.TimingWheel;
+import com.rideshare.rideshare_backend.model.Driver;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes drivers that stopped sending locations, e.g. because their app crashed, so
+ * they are no longer matched.
+ *
+ * Each registered driver has one entry in a TimingWheel, due one TTL after its last
+ * ping. Pings do not touch the wheel: they only write the location store's
+ * lastUpdateNanos column, as they already did. When an entry comes due, the driver's
+ * last ping is read from the store. If the driver pinged since, the entry is scheduled
+ * again for one TTL after that ping. Otherwise the driver is removed through
+ * DriverService, so listeners such as persistence see an ordinary removal.
+ *
+ * Entries are the driver's store slot and the slot's generation packed in a long, so
+ * an entry for a driver that was removed is dropped, even if its slot has been handed
+ * to another driver since. Drivers are removed at most one tick after their TTL.
+ */
+public class StaleDriverEvictor implements DriverIndexListener, AutoCloseable {
+    private final DriverService driverService;
+    private final DriverLocationStore store;
+    private final long ttlNanos;
+    private final long tickMillis;
+    private final TimingWheel wheel;
+    // Serializes expiry passes; the wheel itself is guarded by its own monitor
+    private final Object expiryLock = new Object();
+
+    private long[] due = new long[64];
+    private int dueCount;
+    private volatile long evictedDrivers;
+    private ScheduledExecutorService scheduler;
+
+    public StaleDriverEvictor(DriverService driverService, long ttlMillis, long tickMillis) {
+        if (ttlMillis <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("TTL and tick must be positive");
+        }
+
+        this.driverService = driverService;
+        this.store = driverService.getLocationStore();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.tickMillis = tickMillis;
+        this.wheel = new TimingWheel(TimeUnit.MILLISECONDS.toNanos(tickMillis), System.nanoTime());
+    }
+
+    /**
+     * Track every driver already registered and every driver registered from now on,
+     * and start expiring them every tick
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        driverService.addListener(this);
+        for (Driver driver : driverService.getAllDrivers()) {
+            // Racing registrations may be scheduled twice; the extra entry is harmless
+            synchronized (driver) {
+                int slot = store.slotOf(driver);
+                if (slot >= 0) {
+                    schedule(slot, store.generation(slot), store.lastUpdateNanos(slot) + ttlNanos);
+                }
+            }
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stale-driver-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> expire(System.nanoTime()),
+                tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler == null) {
+            return;
+        }
+
+        driverService.removeListener(this);
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    /**
+     * Remove the drivers whose last ping is at least one TTL before nowNanos. Called
+     * every tick; may be called directly with a later time.
+     *
+     * @param nowNanos System.nanoTime() to expire as of
+     * @return Number of drivers removed
+     */
+    public int expire(long nowNanos) {
+        synchronized (expiryLock) {
+            // Drain the wheel first: removals take driver locks, which registrations hold
+            // while scheduling into the wheel
+            dueCount = 0;
+            synchronized (wheel) {
+                wheel.advance(nowNanos, this::addDue);
+            }
+
+            int evicted = 0;
+            for (int i = 0; i < dueCount; i++) {
+                int slot = (int) (due[i] >>> 32);
+                int generation = (int) due[i];
+                if (expire(slot, generation, nowNanos)) {
+                    evicted++;
+                }
+            }
+
+            evictedDrivers += evicted;
+            return evicted;
+        }
+    }
+
+    private boolean expire(int slot, int generation, long nowNanos) {
+        Driver driver = store.findDriver(slot);
+        if (driver == null || store.generation(slot) != generation) {
+            return false;
+        }
+
+        long deadline = store.lastUpdateNanos(slot) + ttlNanos;
+        if (deadline - nowNanos <= 0 && driverService.removeIfStale(driver, nowNanos - ttlNanos)) {
+            return true;
+        }
+
+        // Pinged since the entry was scheduled, or just now: follow the latest ping
+        if (store.findDriver(slot) == driver && store.generation(slot) == generation) {
+            schedule(slot, generation, store.lastUpdateNanos(slot) + ttlNanos);
+        }
+        return false;
+    }
+
+    private void addDue(long entry) {
+        if (dueCount == due.length) {
+            due = Arrays.copyOf(due, dueCount * 2);
+        }
+        due[dueCount++] = entry;
+    }
+
+    private void schedule(int slot, int generation, long deadlineNanos) {
+        long entry = ((long) slot << 32) | (generation & 0xFFFFFFFFL);
+        synchronized (wheel) {
+            wheel.schedule(entry, deadlineNanos);
+        }
+    }
+
+    /**
+     * Drivers removed for missing their TTL since this evictor was created
+     */
+    public long getEvictedDrivers() {
+        return evictedDrivers;
+    }
+
+    /**
+     * Entries waiting in the wheel: about one per registered driver
+     */
+    public int getScheduledDrivers() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    @Override
+    public void onRegistered(Driver driver) {
+        int slot = driver.getSlot();
+        schedule(slot, store.generation(slot), store.lastUpdateNanos(slot) + ttlNanos);
+    }
+}
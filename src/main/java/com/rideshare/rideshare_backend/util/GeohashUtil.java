@@ -1,12 +1,29 @@
 package com.rideshare.rideshare_backend.util;
 
+import java.util.Arrays;
+
 /**
  * Geohash encoding and decoding utility
  * Converts lat/lon coordinates to geohash strings and vice versa
  */
 public class GeohashUtil {
     private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
-    private static final int DEFAULT_PRECISION = 6;
+    public static final int DEFAULT_PRECISION = 6;
+    public static final int MAX_LONG_PRECISION = 12;
+    private static final int BITS_PER_CHAR = 5;
+    private static final int[] BASE32_INDEX = new int[128];
+
+    // {latSteps, lonSteps} for N, NE, E, SE, S, SW, W, NW
+    private static final int[][] NEIGHBOR_OFFSETS = {
+            {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}
+    };
+
+    static {
+        Arrays.fill(BASE32_INDEX, -1);
+        for (int i = 0; i < BASE32.length(); i++) {
+            BASE32_INDEX[BASE32.charAt(i)] = i;
+        }
+    }
 
     /**
      * Encode latitude and longitude to geohash
@@ -17,45 +34,167 @@ public class GeohashUtil {
      * @return Geohash string
      */
     public static String encode(double latitude, double longitude, int precision) {
-        double[] latRange = {-90.0, 90.0};
-        double[] lonRange = {-180.0, 180.0};
+        return toBase32(encodeLong(latitude, longitude, precision), precision);
+    }
 
-        StringBuilder geohash = new StringBuilder();
-        StringBuilder bits = new StringBuilder();
+    /**
+     * Encode latitude and longitude to a geohash packed into a long
+     * Each base32 character is 5 bits, most significant character first, right-aligned,
+     * so the long form of a prefix is the long form of the full hash shifted right.
+     * Runs in constant time and allocates nothing.
+     *
+     * @param latitude Latitude (-90 to 90)
+     * @param longitude Longitude (-180 to 180)
+     * @param precision Number of geohash characters (1 to 12)
+     * @return Geohash bits
+     */
+    public static long encodeLong(double latitude, double longitude, int precision) {
+        checkLongPrecision(precision);
 
-        boolean isEven = true;
+        int totalBits = precision * BITS_PER_CHAR;
+        int lonBits = (totalBits + 1) / 2;
+        int latBits = totalBits / 2;
 
-        while(geohash.length() < precision) {
-            if (isEven) {
-                double mid = (lonRange[0] + lonRange[1]) / 2;
-                if (longitude > mid) {
-                    bits.append('1');
-                    lonRange[0] = mid;
-                } else {
-                    bits.append('0');
-                    lonRange[1] = mid;
-                }
-            } else {
-                double mid = (latRange[0] + latRange[1]) / 2;
-                if (latitude > mid) {
-                    bits.append('1');
-                    latRange[0] = mid;
-                } else {
-                    bits.append('0');
-                    latRange[1] = mid;
-                }
-            }
+        long latIndex = quantize(latitude, -90.0, 180.0, latBits);
+        long lonIndex = quantize(longitude, -180.0, 360.0, lonBits);
+
+        return fromIndices(latIndex, lonIndex, precision);
+    }
+
+    public static long encodeLong(double latitude, double longitude) {
+        return encodeLong(latitude, longitude, DEFAULT_PRECISION);
+    }
 
-            isEven = !isEven;
+    private static long quantize(double value, double min, double range, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor((value - min) / range * cells);
+        if (index < 0) {
+            return 0;
+        }
+        return index >= cells ? cells - 1 : index;
+    }
+
+    /**
+     * Build a geohash from its latitude and longitude cell indices
+     * Longitude takes the first (most significant) bit, then the two axes alternate.
+     *
+     * @param latIndex Latitude cell index (0 to 2^latBits - 1)
+     * @param lonIndex Longitude cell index (0 to 2^lonBits - 1)
+     * @param precision Number of geohash characters (1 to 12)
+     * @return Geohash bits
+     */
+    public static long fromIndices(long latIndex, long lonIndex, int precision) {
+        if ((precision & 1) == 0) {
+            // Even bit count: longitude lands on the odd bit positions
+            return (spread(lonIndex) << 1) | spread(latIndex);
+        }
+        return spread(lonIndex) | (spread(latIndex) << 1);
+    }
+
+    public static long latitudeIndex(long geohash, int precision) {
+        return (precision & 1) == 0 ? compact(geohash) : compact(geohash >>> 1);
+    }
+
+    public static long longitudeIndex(long geohash, int precision) {
+        return (precision & 1) == 0 ? compact(geohash >>> 1) : compact(geohash);
+    }
 
-            if (bits.length() == 5) {
-                int index = Integer.parseInt(bits.toString(), 2);
-                geohash.append(BASE32.charAt(index));
-                bits = new StringBuilder();
+    public static int latitudeBits(int precision) {
+        return precision * BITS_PER_CHAR / 2;
+    }
+
+    public static int longitudeBits(int precision) {
+        return (precision * BITS_PER_CHAR + 1) / 2;
+    }
+
+    /**
+     * Spread the low 32 bits of x so that bit i moves to bit 2i
+     */
+    private static long spread(long x) {
+        x &= 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    /**
+     * Inverse of spread: gather the even bits of x into the low 32 bits
+     */
+    private static long compact(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+
+    /**
+     * Truncate a long geohash to a shorter precision
+     *
+     * @param geohash Geohash bits
+     * @param precision Precision of geohash
+     * @param prefixPrecision Desired precision (at most precision)
+     * @return Geohash bits of the enclosing cell
+     */
+    public static long prefix(long geohash, int precision, int prefixPrecision) {
+        if (prefixPrecision > precision) {
+            throw new IllegalArgumentException("Prefix precision cannot exceed geohash precision");
+        }
+        return geohash >>> ((precision - prefixPrecision) * BITS_PER_CHAR);
+    }
+
+    /**
+     * Base32 digit at a character position of a long geohash
+     *
+     * @param geohash Geohash bits
+     * @param precision Precision of geohash
+     * @param index Character position (0 = first character)
+     * @return Digit value (0-31)
+     */
+    public static int digitAt(long geohash, int precision, int index) {
+        return (int) (geohash >>> ((precision - 1 - index) * BITS_PER_CHAR)) & 31;
+    }
+
+    /**
+     * Render a long geohash as its base32 string
+     */
+    public static String toBase32(long geohash, int precision) {
+        char[] chars = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            chars[i] = BASE32.charAt(digitAt(geohash, precision, i));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parse a base32 geohash string into its long form
+     *
+     * @param geohash Geohash string (1 to 12 characters)
+     * @return Geohash bits
+     */
+    public static long fromBase32(String geohash) {
+        checkLongPrecision(geohash.length());
+
+        long bits = 0;
+        for (int i = 0; i < geohash.length(); i++) {
+            int index = base32Index(geohash.charAt(i));
+            if (index == -1) {
+                throw new IllegalArgumentException("Invalid geohash character: " + geohash.charAt(i));
             }
+            bits = (bits << BITS_PER_CHAR) | index;
         }
+        return bits;
+    }
 
-        return geohash.toString();
+    private static void checkLongPrecision(int precision) {
+        if (precision < 1 || precision > MAX_LONG_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + MAX_LONG_PRECISION);
+        }
     }
 
     public static String encode(double latitude, double longitude) {
@@ -76,7 +215,7 @@ public class GeohashUtil {
         boolean isEven = true;
 
         for (char c : geohash.toCharArray()) {
-            int index = BASE32.indexOf(c);
+            int index = base32Index(c);
 
             if (index == -1) {
                 throw new IllegalArgumentException("Invalid geohash character: " + c);
@@ -109,8 +248,184 @@ public class GeohashUtil {
         return new double[]{lat, lon};
     }
 
+    /**
+     * Decode a long geohash to the center point of its cell
+     *
+     * @param geohash Geohash bits
+     * @param precision Precision of geohash
+     * @return Array [latitude, longitude]
+     */
+    public static double[] decode(long geohash, int precision) {
+        return new double[]{decodeLatitude(geohash, precision), decodeLongitude(geohash, precision)};
+    }
+
+    public static double decodeLatitude(long geohash, int precision) {
+        return -90.0 + (latitudeIndex(geohash, precision) + 0.5) * cellHeightDegrees(precision);
+    }
+
+    public static double decodeLongitude(long geohash, int precision) {
+        return -180.0 + (longitudeIndex(geohash, precision) + 0.5) * cellWidthDegrees(precision);
+    }
+
+    public static double cellHeightDegrees(int precision) {
+        return 180.0 / (1L << latitudeBits(precision));
+    }
+
+    public static double cellWidthDegrees(int precision) {
+        return 360.0 / (1L << longitudeBits(precision));
+    }
+
+    /**
+     * Adjacent cell of a long geohash, offset by whole cells along each axis
+     * Longitude wraps around the antimeridian; stepping past a pole has no cell.
+     *
+     * @param geohash Geohash bits
+     * @param precision Precision of geohash
+     * @param latSteps Cells to move north (negative = south)
+     * @param lonSteps Cells to move east (negative = west)
+     * @return Geohash bits of the neighbor, or -1 if it would lie beyond a pole
+     */
+    public static long neighbor(long geohash, int precision, int latSteps, int lonSteps) {
+        long latIndex = latitudeIndex(geohash, precision) + latSteps;
+        if (latIndex < 0 || latIndex >= (1L << latitudeBits(precision))) {
+            return -1;
+        }
+
+        long lonCells = 1L << longitudeBits(precision);
+        long lonIndex = Math.floorMod(longitudeIndex(geohash, precision) + lonSteps, lonCells);
+
+        return fromIndices(latIndex, lonIndex, precision);
+    }
+
+    /**
+     * Position of a geohash character in the base32 alphabet
+     *
+     * @param c Geohash character
+     * @return Digit value (0-31), or -1 if the character is not valid base32
+     */
+    public static int base32Index(char c) {
+        return c < BASE32_INDEX.length ? BASE32_INDEX[c] : -1;
+    }
+
+    /**
+     * Get the 8 cells surrounding a geohash, in the order
+     * N, NE, E, SE, S, SW, W, NW. Cells that would lie beyond a pole are left out,
+     * so fewer than 8 neighbors are returned for cells on the top or bottom row.
+     *
+     * @param geohash Geohash string
+     * @return Neighboring geohash strings of the same precision
+     */
     public static String[] getNeighbors(String geohash) {
-        return new String[0];
+        int precision = geohash.length();
+        long[] neighbors = getNeighbors(fromBase32(geohash), precision);
+
+        int count = 0;
+        for (long neighbor : neighbors) {
+            if (neighbor >= 0) {
+                count++;
+            }
+        }
+
+        String[] result = new String[count];
+        int i = 0;
+        for (long neighbor : neighbors) {
+            if (neighbor >= 0) {
+                result[i++] = toBase32(neighbor, precision);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the 8 cells surrounding a long geohash, in the order
+     * N, NE, E, SE, S, SW, W, NW
+     *
+     * @param geohash Geohash bits
+     * @param precision Precision of geohash
+     * @return Neighbor geohash bits, -1 for positions beyond a pole
+     */
+    public static long[] getNeighbors(long geohash, int precision) {
+        long[] neighbors = new long[NEIGHBOR_OFFSETS.length];
+        for (int i = 0; i < NEIGHBOR_OFFSETS.length; i++) {
+            neighbors[i] = neighbor(geohash, precision, NEIGHBOR_OFFSETS[i][0], NEIGHBOR_OFFSETS[i][1]);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Get the 3x3 block of cells centered on a geohash: the cell itself followed by
+     * its neighbors. Every point within one cell width of the center cell falls in
+     * one of these, which is what makes a single-level nearby search complete.
+     * Cells beyond a pole are skipped and duplicates (only possible when the
+     * longitude wraps at very coarse precisions) are removed.
+     *
+     * @param geohash Geohash bits
+     * @param precision Precision of geohash
+     * @return Distinct geohash bits, center first
+     */
+    public static long[] getNeighborhood(long geohash, int precision) {
+        long[] cells = new long[NEIGHBOR_OFFSETS.length + 1];
+        cells[0] = geohash;
+        int count = 1;
+
+        for (int[] offset : NEIGHBOR_OFFSETS) {
+            long cell = neighbor(geohash, precision, offset[0], offset[1]);
+            if (cell >= 0 && !contains(cells, count, cell)) {
+                cells[count++] = cell;
+            }
+        }
+
+        return count == cells.length ? cells : Arrays.copyOf(cells, count);
+    }
+
+    /**
+     * Get the cells at Chebyshev distance radius from a center cell, i.e. the border
+     * of the (2r+1) x (2r+1) block around it. Ring 0 is the center cell itself, ring 1
+     * its 8 neighbors, and so on; rings never overlap, so visiting rings 0..r visits
+     * every cell of the block exactly once. Rows beyond a pole are skipped and
+     * longitude wraps, so the ring must be narrower than the globe (always true from
+     * precision 3 upwards for the radii used here).
+     *
+     * @param center Center geohash bits
+     * @param precision Precision of geohash
+     * @param radius Ring number (0 = center cell)
+     * @param out Receives the ring cells; needs room for max(1, 8 * radius) entries
+     * @return Number of cells written to out
+     */
+    public static int getRing(long center, int precision, int radius, long[] out) {
+        if (radius == 0) {
+            out[0] = center;
+            return 1;
+        }
+
+        long latIndex = latitudeIndex(center, precision);
+        long lonIndex = longitudeIndex(center, precision);
+        long latCells = 1L << latitudeBits(precision);
+        long lonCells = 1L << longitudeBits(precision);
+
+        int count = 0;
+        for (int dLat = -radius; dLat <= radius; dLat++) {
+            long lat = latIndex + dLat;
+            if (lat < 0 || lat >= latCells) {
+                continue;
+            }
+
+            // Top and bottom rows are full; rows in between only contribute their two ends
+            int step = (dLat == -radius || dLat == radius) ? 1 : 2 * radius;
+            for (int dLon = -radius; dLon <= radius; dLon += step) {
+                out[count++] = fromIndices(lat, Math.floorMod(lonIndex + dLon, lonCells), precision);
+            }
+        }
+        return count;
+    }
+
+    private static boolean contains(long[] cells, int count, long cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static double getPrecisionInKm(int precision) {
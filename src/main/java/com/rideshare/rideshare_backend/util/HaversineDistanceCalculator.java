@@ -1,7 +1,17 @@
 package com.rideshare.rideshare_backend.util;
 
 public class HaversineDistanceCalculator {
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Domain of approximationErrorBound
+    private static final double MAX_APPROXIMATION_LATITUDE = 80.0;
+    private static final double MAX_APPROXIMATION_KM = 250.0;
+    private static final double APPROXIMATION_SLACK = 0.005;
+
+    // The Vector API is an incubator module and only resolvable when the JVM was
+    // started with --add-modules jdk.incubator.vector
+    private static final boolean VECTOR_API_AVAILABLE =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
 
     public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         double lat1Rad = Math.toRadians(lat1);
@@ -23,6 +33,145 @@ public class HaversineDistanceCalculator {
         return distance;
     }
 
+    /**
+     * Distance in km from precomputed trig terms (see Driver.getLatitudeRadians,
+     * getLongitudeRadians and getCosLatitude). Skips the toRadians conversions and the
+     * two cosines the plain overload recomputes on every call.
+     */
+    public static double calculateDistance(double lat1Rad, double lon1Rad, double cosLat1,
+                                           double lat2Rad, double lon2Rad, double cosLat2) {
+        double sinDeltaLat = Math.sin((lat2Rad - lat1Rad) / 2);
+        double sinDeltaLon = Math.sin((lon2Rad - lon1Rad) / 2);
+
+        double a = sinDeltaLat * sinDeltaLat + cosLat1 * cosLat2 * sinDeltaLon * sinDeltaLon;
+
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1.0, a)));
+    }
+
+    /**
+     * Distances from one point to a batch of points, in km
+     * Uses SIMD lanes through the Vector API when the module is available, and a scalar
+     * loop otherwise. Both use the haversine formula with the pickup's terms computed
+     * once, and agree with calculateDistance to within floating-point rounding.
+     *
+     * @param latitude Latitude of the common point
+     * @param longitude Longitude of the common point
+     * @param latitudes Latitudes of the other points
+     * @param longitudes Longitudes of the other points
+     * @param count Number of points to score
+     * @param distances Receives the distances; must hold at least count entries
+     */
+    public static void calculateDistances(double latitude, double longitude,
+                                          double[] latitudes, double[] longitudes, int count,
+                                          double[] distances) {
+        if (count > latitudes.length || count > longitudes.length || count > distances.length) {
+            throw new IllegalArgumentException("Arrays must hold at least " + count + " entries");
+        }
+
+        calculateDistances(latitude, longitude, latitudes, longitudes, null, count, distances);
+    }
+
+    /**
+     * Batch distances with the other points' latitude cosines already known, e.g. from
+     * DriverLocationStore, so the kernel does no cosine per point.
+     *
+     * @param cosLatitudes cos(toRadians(latitudes[i])), or null to compute them
+     */
+    public static void calculateDistances(double latitude, double longitude,
+                                          double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                                          int count, double[] distances) {
+        if (count > latitudes.length || count > longitudes.length || count > distances.length
+                || (cosLatitudes != null && count > cosLatitudes.length)) {
+            throw new IllegalArgumentException("Arrays must hold at least " + count + " entries");
+        }
+
+        if (VECTOR_API_AVAILABLE) {
+            VectorizedHaversine.calculateDistances(
+                    latitude, longitude, latitudes, longitudes, cosLatitudes, count, distances);
+        } else {
+            calculateDistances(latitude, longitude, latitudes, longitudes, cosLatitudes, 0, count, distances);
+        }
+    }
+
+    /**
+     * Scalar batch kernel over [from, to); also scores the vector kernel's tail
+     */
+    static void calculateDistances(double latitude, double longitude,
+                                   double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                                   int from, int to, double[] distances) {
+        double lat1Rad = Math.toRadians(latitude);
+        double lon1Rad = Math.toRadians(longitude);
+        double cosLat1 = Math.cos(lat1Rad);
+
+        for (int i = from; i < to; i++) {
+            double lat2Rad = Math.toRadians(latitudes[i]);
+            double cosLat2 = cosLatitudes != null ? cosLatitudes[i] : Math.cos(lat2Rad);
+            double sinDeltaLat = Math.sin((lat2Rad - lat1Rad) / 2);
+            double sinDeltaLon = Math.sin((Math.toRadians(longitudes[i]) - lon1Rad) / 2);
+
+            double a = sinDeltaLat * sinDeltaLat + cosLat1 * cosLat2 * sinDeltaLon * sinDeltaLon;
+
+            // 2 * asin(sqrt(a)) is the same angle as 2 * atan2(sqrt(a), sqrt(1 - a))
+            distances[i] = 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1.0, a)));
+        }
+    }
+
+    /**
+     * Equirectangular approximation of the distance in km, for ranking candidates
+     * around one point without any trigonometry per candidate. Longitude differences
+     * are scaled by the cosine of the first point's latitude, which the caller
+     * computes once. See approximationErrorBound for how far it can be off.
+     *
+     * @param cosLatitude Math.cos(Math.toRadians(latitude))
+     */
+    public static double approximateDistance(double latitude, double longitude, double cosLatitude,
+                                             double latitude2, double longitude2) {
+        double deltaLonDegrees = longitude2 - longitude;
+        if (deltaLonDegrees > 180.0) {
+            deltaLonDegrees -= 360.0;
+        } else if (deltaLonDegrees < -180.0) {
+            deltaLonDegrees += 360.0;
+        }
+
+        double deltaLat = Math.toRadians(latitude2 - latitude);
+        double deltaLon = Math.toRadians(deltaLonDegrees) * cosLatitude;
+
+        return EARTH_RADIUS_KM * Math.sqrt(deltaLat * deltaLat + deltaLon * deltaLon);
+    }
+
+    /**
+     * Relative error bound e of approximateDistance around a point:
+     * (1 - e) * d <= approximation <= (1 + e) * d for every point whose latitude is within
+     * maxDeltaLatitude of it and whose approximate distance is at most maxApproximateKm.
+     *
+     * The approximation uses cos(lat1) where the exact formula uses cos(lat1) * cos(lat2),
+     * so the east-west term is off by a factor cos(lat2) / cos(lat1), which is within
+     * t = dLat * tan(|lat1| + dLat) of 1. The distance is then within 1 / sqrt(1 - t) of
+     * exact, about 1 + t / 2 for small t. A fixed slack covers the flat-earth terms,
+     * which stay below 1e-4 over a few hundred km.
+     *
+     * @return The bound, or +infinity where it does not apply (near the poles, or for
+     *         points too far apart); callers should then use exact distances
+     */
+    public static double approximationErrorBound(double latitude, double maxDeltaLatitude, double maxApproximateKm) {
+        double reach = Math.abs(latitude) + maxDeltaLatitude;
+
+        if (reach >= MAX_APPROXIMATION_LATITUDE || maxApproximateKm > MAX_APPROXIMATION_KM) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double t = Math.toRadians(maxDeltaLatitude) * Math.tan(Math.toRadians(reach));
+        if (t >= 0.5) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return 1.0 / Math.sqrt(1.0 - t) - 1.0 + APPROXIMATION_SLACK;
+    }
+
+    public static boolean isVectorized() {
+        return VECTOR_API_AVAILABLE;
+    }
+
     public static double calculateDistanceInMeters(double lat1, double lon1, double lat2, double lon2) {
         return calculateDistance(lat1, lon1, lat2, lon2) * 0.621371;
     }
@@ -0,0 +1,57 @@
+package com.rideshare.rideshare_backend.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API version of HaversineDistanceCalculator's batch kernel.
+ * Only loaded when jdk.incubator.vector is present; HaversineDistanceCalculator checks
+ * that before the first call, so this class never has to be resolved otherwise.
+ */
+final class VectorizedHaversine {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double DEGREES_TO_RADIANS = Math.PI / 180.0;
+
+    private VectorizedHaversine() {
+    }
+
+    static void calculateDistances(double latitude, double longitude,
+                                   double[] latitudes, double[] longitudes, double[] cosLatitudes,
+                                   int count, double[] distances) {
+        double lat1Rad = Math.toRadians(latitude);
+        double lon1Rad = Math.toRadians(longitude);
+        double cosLat1 = Math.cos(lat1Rad);
+
+        int lanes = SPECIES.length();
+        int bound = SPECIES.loopBound(count);
+        int i = 0;
+
+        for (; i < bound; i += lanes) {
+            DoubleVector lat2Rad = DoubleVector.fromArray(SPECIES, latitudes, i).mul(DEGREES_TO_RADIANS);
+            DoubleVector lon2Rad = DoubleVector.fromArray(SPECIES, longitudes, i).mul(DEGREES_TO_RADIANS);
+
+            DoubleVector sinDeltaLat = lat2Rad.sub(lat1Rad).mul(0.5).lanewise(VectorOperators.SIN);
+            DoubleVector sinDeltaLon = lon2Rad.sub(lon1Rad).mul(0.5).lanewise(VectorOperators.SIN);
+
+            DoubleVector cosLat2 = cosLatitudes != null
+                    ? DoubleVector.fromArray(SPECIES, cosLatitudes, i)
+                    : lat2Rad.lanewise(VectorOperators.COS);
+
+            DoubleVector a = cosLat2
+                    .mul(cosLat1)
+                    .mul(sinDeltaLon.mul(sinDeltaLon))
+                    .add(sinDeltaLat.mul(sinDeltaLat));
+
+            a.min(1.0)
+                    .sqrt()
+                    .lanewise(VectorOperators.ASIN)
+                    .mul(2 * HaversineDistanceCalculator.EARTH_RADIUS_KM)
+                    .intoArray(distances, i);
+        }
+
+        // Remainder that does not fill a whole vector
+        HaversineDistanceCalculator.calculateDistances(
+                latitude, longitude, latitudes, longitudes, cosLatitudes, i, count, distances);
+    }
+}
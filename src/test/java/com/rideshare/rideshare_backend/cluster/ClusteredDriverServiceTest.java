@@ -0,0 +1,279 @@
+package com.rideshare.rideshare_backend.cluster;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusteredDriverServiceTest {
+    private static final int NODES = 4;
+    private static final int DRIVERS = 2000;
+    private static final int PICKUPS = 300;
+
+    private static final double[][] CITIES = {
+            {40.7128, -74.0060}, {51.5074, -0.1278}, {35.6762, 139.6503}, {37.7749, -122.4194},
+            {-33.8688, 151.2093}, {48.8566, 2.3522}, {-23.5505, -46.6333}, {19.0760, 72.8777}
+    };
+
+    private static List<String> nodeIds(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("node-" + i);
+        }
+        return ids;
+    }
+
+    private static InProcessTransport transportFor(List<String> nodes, InProcessTransport transport) {
+        for (String node : nodes) {
+            transport.addNode(node, new DriverService());
+        }
+        return transport;
+    }
+
+    @Test
+    void writesGoToTheOwningNode() {
+        List<String> nodes = nodeIds(NODES);
+        InProcessTransport transport = transportFor(nodes, new InProcessTransport());
+        ClusteredDriverService cluster = new ClusteredDriverService(new ConsistentHashRing(nodes), transport);
+
+        for (int i = 0; i < CITIES.length; i++) {
+            cluster.registerDriver(new Driver("driver-" + i, "Driver " + i, CITIES[i][0], CITIES[i][1]));
+        }
+
+        for (int i = 0; i < CITIES.length; i++) {
+            String owner = cluster.nodeFor(CITIES[i][0], CITIES[i][1]);
+            assertEquals(owner, cluster.nodeOfDriver("driver-" + i));
+            for (String node : nodes) {
+                assertEquals(node.equals(owner), transport.getNode(node).getDriverById("driver-" + i).isPresent());
+            }
+        }
+
+        // Hand driver-0 off to the first city owned by another node
+        String from = cluster.nodeOfDriver("driver-0");
+        int target = 1;
+        while (cluster.nodeFor(CITIES[target][0], CITIES[target][1]).equals(from)) {
+            target++;
+        }
+        String to = cluster.nodeFor(CITIES[target][0], CITIES[target][1]);
+
+        cluster.setDriverAvailability("driver-0", false);
+        Driver moved = cluster.updateDriverLocation("driver-0", CITIES[target][0], CITIES[target][1]);
+
+        assertNotEquals(from, to);
+        assertEquals(to, cluster.nodeOfDriver("driver-0"));
+        assertFalse(transport.getNode(from).getDriverById("driver-0").isPresent());
+        Driver onNode = transport.getNode(to).getDriverById("driver-0").orElseThrow();
+        assertEquals("Driver 0", onNode.getName());
+        assertFalse(onNode.isAvailable());
+        assertEquals(CITIES[target][0], moved.getLatitude(), 0.0);
+
+        // A move within the prefix stays on the node
+        cluster.updateDriverLocation("driver-0", CITIES[target][0] + 0.01, CITIES[target][1]);
+        assertEquals(to, cluster.nodeOfDriver("driver-0"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> cluster.updateDriverLocation("missing", 40.7128, -74.0060));
+        assertThrows(IllegalArgumentException.class,
+                () -> cluster.registerDriver(new Driver("driver-1", "Again", 40.7128, -74.0060)));
+
+        for (int i = 0; i < CITIES.length; i++) {
+            assertTrue(cluster.removeDriver("driver-" + i));
+        }
+        assertEquals(0, cluster.getTotalDrivers());
+        for (String node : nodes) {
+            assertEquals(0, transport.getNode(node).getTotalDrivers());
+        }
+    }
+
+    @Test
+    void failedHandoffsLeaveTheDriverOnItsOldNode() {
+        List<String> nodes = nodeIds(NODES);
+        Set<String> unreachable = new HashSet<>();
+        InProcessTransport transport = transportFor(nodes, new InProcessTransport() {
+            @Override
+            public CompletableFuture<Driver> registerDriver(String nodeId, Driver driver) {
+                return unreachable.contains(nodeId)
+                        ? CompletableFuture.failedFuture(new IllegalStateException("Node unreachable: " + nodeId))
+                        : super.registerDriver(nodeId, driver);
+            }
+        });
+        ClusteredDriverService cluster = new ClusteredDriverService(new ConsistentHashRing(nodes), transport);
+
+        cluster.registerDriver(new Driver("driver", "Driver", CITIES[0][0], CITIES[0][1]));
+        cluster.setDriverAvailability("driver", false);
+        String from = cluster.nodeOfDriver("driver");
+        int target = 1;
+        while (cluster.nodeFor(CITIES[target][0], CITIES[target][1]).equals(from)) {
+            target++;
+        }
+        String to = cluster.nodeFor(CITIES[target][0], CITIES[target][1]);
+
+        unreachable.add(to);
+        double[] city = CITIES[target];
+        assertThrows(IllegalStateException.class, () -> cluster.updateDriverLocation("driver", city[0], city[1]));
+
+        assertEquals(from, cluster.nodeOfDriver("driver"));
+        assertFalse(transport.getNode(to).getDriverById("driver").isPresent());
+        Driver onNode = transport.getNode(from).getDriverById("driver").orElseThrow();
+        assertEquals(CITIES[0][0], onNode.getLatitude(), 0.0);
+        assertEquals(CITIES[0][1], onNode.getLongitude(), 0.0);
+        assertFalse(onNode.isAvailable());
+
+        // Once the node is back, the next ping hands the driver off
+        unreachable.clear();
+        cluster.updateDriverLocation("driver", city[0], city[1]);
+        assertEquals(to, cluster.nodeOfDriver("driver"));
+        assertEquals(1, cluster.getTotalDrivers());
+    }
+
+    @Test
+    void searchesReachNodesJustPastTheEastEdgeOfTheirCircle() {
+        List<String> nodes = nodeIds(NODES);
+        InProcessTransport transport = transportFor(nodes, new InProcessTransport());
+        ClusteredDriverService cluster = new ClusteredDriverService(new ConsistentHashRing(nodes), transport);
+
+        // A prefix boundary in the row of cells centered on this latitude, between two nodes
+        int precision = ClusteredDriverService.DEFAULT_PARTITION_PRECISION;
+        double width = GeohashUtil.cellWidthDegrees(precision);
+        double latitude = GeohashUtil.cellHeightDegrees(precision) / 2;
+        double boundary = width;
+        while (cluster.nodeFor(latitude, boundary - width / 2).equals(cluster.nodeFor(latitude, boundary + width / 2))) {
+            boundary += width;
+        }
+
+        // The circle reaches 10 m past the boundary, where a driver waits on the other node
+        double radiusKm = 20.0;
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double pickupLongitude = boundary - Math.toDegrees((radiusKm - 0.01) / 6371.0) / cosLatitude;
+        cluster.registerDriver(new Driver("east", "East", latitude, boundary + 1e-6));
+        assertNotEquals(cluster.nodeFor(latitude, pickupLongitude), cluster.nodeOfDriver("east"));
+
+        List<DriverWithDistance> found = cluster.findDriversWithinRadius(latitude, pickupLongitude, radiusKm, 1);
+        assertEquals(1, found.size());
+        assertTrue(found.get(0).getDistanceKm() <= radiusKm);
+    }
+
+    @Test
+    void scatterGatherMatchesASingleNode() {
+        List<String> nodes = nodeIds(NODES);
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        try {
+            InProcessTransport transport = transportFor(nodes, new InProcessTransport(executor));
+            ClusteredDriverService cluster = new ClusteredDriverService(new ConsistentHashRing(nodes), transport);
+            DriverService single = new DriverService();
+            DriverMatchingService singleMatching = new DriverMatchingService(single);
+
+            // A 4 x 4 degree area around New York spans several partition prefixes and nodes
+            Random random = new Random(5);
+            Set<String> owners = new HashSet<>();
+            for (int i = 0; i < DRIVERS; i++) {
+                double latitude = 38.7 + random.nextDouble() * 4;
+                double longitude = -76.0 + random.nextDouble() * 4;
+                cluster.registerDriver(new Driver("driver-" + i, "Driver " + i, latitude, longitude));
+                single.registerDriver(new Driver("driver-" + i, "Driver " + i, latitude, longitude));
+                owners.add(cluster.nodeOfDriver("driver-" + i));
+            }
+            assertTrue(owners.size() > 1, "area should span several nodes");
+
+            assertSameMatches(cluster, singleMatching, random);
+
+            // Moves, some across partitions, and availability changes keep the two in step
+            for (int op = 0; op < DRIVERS; op++) {
+                String id = "driver-" + random.nextInt(DRIVERS);
+                if (random.nextInt(4) == 0) {
+                    boolean available = random.nextBoolean();
+                    cluster.setDriverAvailability(id, available);
+                    single.setDriverAvailability(id, available);
+                } else {
+                    double latitude = 38.7 + random.nextDouble() * 4;
+                    double longitude = -76.0 + random.nextDouble() * 4;
+                    cluster.updateDriverLocation(id, latitude, longitude);
+                    single.updateDriverLocation(id, latitude, longitude);
+                }
+            }
+            assertEquals(DRIVERS, cluster.getTotalDrivers());
+
+            assertSameMatches(cluster, singleMatching, random);
+
+            double[] center = {40.7, -74.0};
+            assertEquals(ids(single.findNearbyDrivers(center[0], center[1], 2)),
+                    ids(cluster.findNearbyDrivers(center[0], center[1], 2)));
+            assertEquals(ids(single.findNearbyDrivers(center[0], center[1], 5)),
+                    ids(cluster.findNearbyDrivers(center[0], center[1], 5)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameMatches(ClusteredDriverService cluster, DriverMatchingService single,
+                                          Random random) {
+        for (int p = 0; p < PICKUPS; p++) {
+            double latitude = 39.2 + random.nextDouble() * 3;
+            double longitude = -75.5 + random.nextDouble() * 3;
+
+            List<DriverWithDistance> expected = single.findClosestDrivers(latitude, longitude, 5);
+            List<DriverWithDistance> actual = cluster.findClosestDrivers(latitude, longitude, 5);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getDriver().getId(), actual.get(i).getDriver().getId());
+                assertEquals(expected.get(i).getDistanceKm(), actual.get(i).getDistanceKm(), 1e-9);
+            }
+        }
+    }
+
+    private static Set<String> ids(List<Driver> drivers) {
+        Set<String> ids = new HashSet<>();
+        for (Driver driver : drivers) {
+            ids.add(driver.getId());
+        }
+        assertEquals(drivers.size(), ids.size());
+        return ids;
+    }
+
+    @Test
+    void addingANodeOnlyMovesPrefixesToIt() {
+        int precision = ClusteredDriverService.DEFAULT_PARTITION_PRECISION;
+        long prefixes = 1L << (precision * 5);
+        ConsistentHashRing before = new ConsistentHashRing(nodeIds(NODES));
+        ConsistentHashRing after = new ConsistentHashRing(nodeIds(NODES + 1));
+
+        Map<String, Integer> shares = new HashMap<>();
+        int moved = 0;
+        for (long prefix = 0; prefix < prefixes; prefix++) {
+            String owner = before.nodeFor(prefix);
+            shares.merge(owner, 1, Integer::sum);
+
+            String newOwner = after.nodeFor(prefix);
+            if (!newOwner.equals(owner)) {
+                assertEquals("node-" + NODES, newOwner);
+                moved++;
+            }
+        }
+
+        // About 1/5 of the prefixes move, and the 4 nodes held about 1/4 each
+        assertTrue(moved > prefixes / 10 && moved < prefixes * 3 / 10, "moved " + moved);
+        for (int share : shares.values()) {
+            assertTrue(share > prefixes * 15 / 100 && share < prefixes * 35 / 100, "share " + share);
+        }
+    }
+}
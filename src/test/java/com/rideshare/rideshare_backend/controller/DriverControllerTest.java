@@ -0,0 +1,54 @@
+package com.rideshare.rideshare_backend.controller;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tools.jackson.databind.json.JsonMapper;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the JSON contract of the driver listing through Spring MVC
+ */
+class DriverControllerTest {
+    private static final int DRIVERS = 150;
+
+    @Test
+    void listingReturnsPagesOfOneHundredByDefault() throws Exception {
+        DriverService driverService = new DriverService();
+        for (int i = 0; i < DRIVERS; i++) {
+            driverService.registerDriver(new Driver("driver-" + i, "Driver " + i, 40.7128, -74.0060));
+        }
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(
+                new DriverController(driverService, JsonMapper.builder().build())).build();
+        int nextCursor = driverService.getDriversPage(0, 100).getNextCursor();
+
+        mvc.perform(get("/api/drivers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.count").value(100))
+                .andExpect(jsonPath("$.total").value(DRIVERS))
+                .andExpect(jsonPath("$.drivers.length()").value(100))
+                .andExpect(jsonPath("$.drivers[0].id").value("driver-0"))
+                .andExpect(jsonPath("$.nextCursor").value(nextCursor));
+
+        mvc.perform(get("/api/drivers").param("cursor", String.valueOf(nextCursor)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(DRIVERS - 100))
+                .andExpect(jsonPath("$.total").value(DRIVERS))
+                .andExpect(jsonPath("$.drivers[0].id").value("driver-100"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mvc.perform(get("/api/drivers").param("limit", "1000"))
+                .andExpect(jsonPath("$.count").value(DRIVERS))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mvc.perform(get("/api/drivers").param("limit", "1001"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+    }
+}
@@ -0,0 +1,255 @@
+package com.rideshare.rideshare_backend.controller;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverLocationWebSocketHandlerTest {
+
+    @Test
+    void binaryFramesMoveTheDriver() throws Exception {
+        DriverService service = new DriverService();
+        Driver driver = service.registerDriver(new Driver("ws-1", "WS", 40.7128, -74.0060));
+        DriverLocationWebSocketHandler handler = new DriverLocationWebSocketHandler(service);
+        FakeSession session = connect(handler, "ws-1");
+
+        handler.handleMessage(session, new BinaryMessage(frame(40.7580, -73.9855)));
+        assertEquals(40.7580, driver.getLatitude());
+        assertEquals(-73.9855, driver.getLongitude());
+        assertTrue(service.findNearbyDrivers(40.7580, -73.9855, 6).contains(driver));
+
+        // Reads start at the buffer's position, not at index 0
+        ByteBuffer offset = ByteBuffer.allocate(4 + 16);
+        offset.position(4);
+        offset.putDouble(51.5074).putDouble(-0.1278);
+        offset.position(4);
+        handler.handleMessage(session, new BinaryMessage(offset));
+        assertEquals(51.5074, driver.getLatitude());
+        assertEquals(-0.1278, driver.getLongitude());
+        assertNull(session.closeStatus);
+    }
+
+    @Test
+    void textFramesMoveTheDriver() throws Exception {
+        DriverService service = new DriverService();
+        Driver driver = service.registerDriver(new Driver("ws-1", "WS", 40.7128, -74.0060));
+        DriverLocationWebSocketHandler handler = new DriverLocationWebSocketHandler(service);
+        FakeSession session = connect(handler, "ws-1");
+
+        handler.handleMessage(session, new TextMessage("40.7580,-73.9855"));
+        assertEquals(40.7580, driver.getLatitude());
+        assertEquals(-73.9855, driver.getLongitude());
+
+        handler.handleMessage(session, new TextMessage("-33.8688, 151.2093"));
+        assertEquals(-33.8688, driver.getLatitude());
+        assertEquals(151.2093, driver.getLongitude());
+        assertNull(session.closeStatus);
+    }
+
+    @Test
+    void outOfRangeFramesAreDroppedWithoutClosing() throws Exception {
+        DriverService service = new DriverService();
+        Driver driver = service.registerDriver(new Driver("ws-1", "WS", 40.7128, -74.0060));
+        DriverLocationWebSocketHandler handler = new DriverLocationWebSocketHandler(service);
+        FakeSession session = connect(handler, "ws-1");
+
+        handler.handleMessage(session, new BinaryMessage(frame(91.0, 0.0)));
+        handler.handleMessage(session, new BinaryMessage(frame(Double.NaN, 0.0)));
+        handler.handleMessage(session, new TextMessage("0,180.5"));
+
+        assertEquals(40.7128, driver.getLatitude());
+        assertEquals(-74.0060, driver.getLongitude());
+        assertNull(session.closeStatus);
+    }
+
+    @Test
+    void malformedFramesCloseWithBadData() throws Exception {
+        DriverService service = new DriverService();
+        service.registerDriver(new Driver("ws-1", "WS", 40.7128, -74.0060));
+        DriverLocationWebSocketHandler handler = new DriverLocationWebSocketHandler(service);
+
+        List<Object> frames = List.of(
+                new BinaryMessage(new byte[15]),
+                new BinaryMessage(new byte[17]),
+                new TextMessage("40.7580"),
+                new TextMessage("north,west"),
+                new TextMessage(""));
+        for (Object frame : frames) {
+            FakeSession session = connect(handler, "ws-1");
+            handler.handleMessage(session, (WebSocketMessage<?>) frame);
+            assertEquals(CloseStatus.BAD_DATA.getCode(), session.closeStatus.getCode(), frame.toString());
+        }
+    }
+
+    @Test
+    void unknownDriverIsClosedWithPolicyViolation() throws Exception {
+        DriverService service = new DriverService();
+        DriverLocationWebSocketHandler handler = new DriverLocationWebSocketHandler(service);
+
+        FakeSession session = connect(handler, "nobody");
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), session.closeStatus.getCode());
+
+        // Frames that still arrive before the close completes are ignored
+        service.registerDriver(new Driver("nobody", "Late", 40.7128, -74.0060));
+        handler.handleMessage(session, new TextMessage("40.7580,-73.9855"));
+        assertEquals(40.7128, service.getDriverById("nobody").orElseThrow().getLatitude());
+
+        FakeSession malformed = new FakeSession(URI.create("ws://localhost/ws/drivers/location"));
+        handler.afterConnectionEstablished(malformed);
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), malformed.closeStatus.getCode());
+    }
+
+    @Test
+    void removedDriverIsClosedWithPolicyViolation() throws Exception {
+        DriverService service = new DriverService();
+        service.registerDriver(new Driver("ws-1", "WS", 40.7128, -74.0060));
+        DriverLocationWebSocketHandler handler = new DriverLocationWebSocketHandler(service);
+        FakeSession session = connect(handler, "ws-1");
+
+        service.removeDriver("ws-1");
+        handler.handleMessage(session, new BinaryMessage(frame(40.7580, -73.9855)));
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(), session.closeStatus.getCode());
+
+        // A driver registering again under the id is not moved by the old connection
+        Driver again = service.registerDriver(new Driver("ws-1", "WS", 40.7128, -74.0060));
+        handler.handleMessage(session, new BinaryMessage(frame(40.7580, -73.9855)));
+        assertEquals(40.7128, again.getLatitude());
+    }
+
+    @Test
+    void driverIdComesFromThePath() {
+        assertEquals("ws-1", DriverLocationWebSocketHandler.driverIdFromPath(
+                URI.create("ws://localhost:8080/ws/drivers/ws-1/location")));
+        assertEquals("driver 7", DriverLocationWebSocketHandler.driverIdFromPath(
+                URI.create("ws://localhost/ws/drivers/driver%207/location?token=x")));
+        assertNull(DriverLocationWebSocketHandler.driverIdFromPath(URI.create("ws://localhost/ws/drivers//location")));
+        assertNull(DriverLocationWebSocketHandler.driverIdFromPath(URI.create("ws://localhost/ws/drivers/ws-1")));
+        assertNull(DriverLocationWebSocketHandler.driverIdFromPath(URI.create("ws://localhost/ws/riders/ws-1/location")));
+        assertNull(DriverLocationWebSocketHandler.driverIdFromPath(null));
+    }
+
+    private static FakeSession connect(DriverLocationWebSocketHandler handler, String driverId) throws Exception {
+        FakeSession session = new FakeSession(URI.create("ws://localhost/ws/drivers/" + driverId + "/location"));
+        handler.afterConnectionEstablished(session);
+        return session;
+    }
+
+    private static ByteBuffer frame(double latitude, double longitude) {
+        return ByteBuffer.allocate(16).putDouble(latitude).putDouble(longitude).flip();
+    }
+
+    /**
+     * Session that records how the handler closed it
+     */
+    private static final class FakeSession implements WebSocketSession {
+        private final URI uri;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private CloseStatus closeStatus;
+
+        FakeSession(URI uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        public String getId() {
+            return "fake";
+        }
+
+        @Override
+        public URI getUri() {
+            return uri;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            throw new UnsupportedOperationException("The handler never replies");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+        }
+    }
+}
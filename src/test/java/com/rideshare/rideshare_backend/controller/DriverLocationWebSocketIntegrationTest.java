@@ -0,0 +1,95 @@
+package com.rideshare.rideshare_backend.controller;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the location socket through a real server and the Spring WebSocket client
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DriverLocationWebSocketIntegrationTest {
+    private static final long TIMEOUT_MS = 5_000;
+
+    @Autowired
+    private DriverService driverService;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Test
+    void framesFromTheClientMoveTheDriver() throws Exception {
+        Driver driver = driverService.registerDriver(new Driver("ws-it-1", "WS", 40.7128, -74.0060));
+        ClosingHandler handler = new ClosingHandler();
+        WebSocketSession session = connect(handler, "ws-it-1");
+
+        try {
+            session.sendMessage(new BinaryMessage(ByteBuffer.allocate(16).putDouble(40.7580).putDouble(-73.9855).flip()));
+            awaitTrue(() -> driver.getLatitude() == 40.7580 && driver.getLongitude() == -73.9855);
+
+            session.sendMessage(new TextMessage("51.5074,-0.1278"));
+            awaitTrue(() -> driver.getLatitude() == 51.5074 && driver.getLongitude() == -0.1278);
+            assertTrue(driverService.findNearbyDrivers(51.5074, -0.1278, 6).contains(driver));
+
+            // A malformed frame gets the connection closed by the server
+            session.sendMessage(new TextMessage("not a location"));
+            assertEquals(CloseStatus.BAD_DATA.getCode(),
+                    handler.closed.get(TIMEOUT_MS, TimeUnit.MILLISECONDS).getCode());
+        } finally {
+            session.close();
+            driverService.removeDriver("ws-it-1");
+        }
+    }
+
+    @Test
+    void unknownDriverIsRefused() throws Exception {
+        ClosingHandler handler = new ClosingHandler();
+        connect(handler, "ws-it-nobody");
+
+        assertEquals(CloseStatus.POLICY_VIOLATION.getCode(),
+                handler.closed.get(TIMEOUT_MS, TimeUnit.MILLISECONDS).getCode());
+    }
+
+    private WebSocketSession connect(ClosingHandler handler, String driverId) throws Exception {
+        return new StandardWebSocketClient()
+                .execute(handler, "ws://localhost:" + port + "/ws/drivers/{id}/location", driverId)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Client side; the server never sends anything, so only the close is observed
+     */
+    private static final class ClosingHandler extends AbstractWebSocketHandler {
+        final CompletableFuture<CloseStatus> closed = new CompletableFuture<>();
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            closed.complete(status);
+        }
+    }
+}
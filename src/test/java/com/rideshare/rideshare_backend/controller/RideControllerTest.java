@@ -0,0 +1,170 @@
+package com.rideshare.rideshare_backend.controller;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.service.DriverMatchingService;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the JSON of the ride endpoints to what the map-based responses produced: the
+ * same keys, the same values, and null names written as null rather than left out.
+ * Expected values are computed the way those maps computed them.
+ */
+class RideControllerTest {
+    private static final double LATITUDE = 40.7128;
+    private static final double LONGITUDE = -74.0060;
+
+    private final DriverService driverService = new DriverService();
+    private final DriverMatchingService matchingService = new DriverMatchingService(driverService);
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new RideController(matchingService)).build();
+
+    RideControllerTest() {
+        driverService.registerDriver(new Driver("near", "Alice", 40.7138, -74.0060));
+        // Registered without a name: the maps wrote "driverName": null
+        driverService.registerDriver(new Driver("unnamed", null, 40.7228, -74.0060));
+        driverService.registerDriver(new Driver("far", "Carol", 40.8000, -74.0060));
+    }
+
+    @Test
+    void rideRequestsKeepTheirFields() throws Exception {
+        List<DriverWithDistance> expected = matchingService.findClosestDrivers(LATITUDE, LONGITUDE, 2);
+        assertEquals(2, expected.size());
+
+        ResultActions result = mvc.perform(post("/api/rides/request")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"riderId\": \"rider-1\", \"pickupLatitude\": 40.7128,"
+                                + " \"pickupLongitude\": -74.0060, \"maxDrivers\": 2}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("Found 2 nearby driver(s)"))
+                .andExpect(jsonPath("$.riderId").value("rider-1"))
+                .andExpect(jsonPath("$.pickupLocation.length()").value(2))
+                .andExpect(jsonPath("$.pickupLocation.latitude").value(LATITUDE))
+                .andExpect(jsonPath("$.pickupLocation.longitude").value(LONGITUDE))
+                .andExpect(jsonPath("$.driversFound").value(2))
+                .andExpect(jsonPath("$.nearestDrivers.length()").value(2))
+                .andExpect(jsonPath("$.nearestDrivers[1].driverName").value(nullValue()));
+
+        for (int i = 0; i < expected.size(); i++) {
+            DriverWithDistance dwd = expected.get(i);
+            String driver = "$.nearestDrivers[" + i + "]";
+            result.andExpect(jsonPath(driver + ".length()").value(8))
+                    .andExpect(jsonPath(driver + ".driverId").value(dwd.getDriver().getId()))
+                    .andExpect(jsonPath(driver + ".driverName").value(dwd.getDriver().getName()))
+                    .andExpect(jsonPath(driver + ".latitude").value(dwd.getDriver().getLatitude()))
+                    .andExpect(jsonPath(driver + ".longitude").value(dwd.getDriver().getLongitude()))
+                    .andExpect(jsonPath(driver + ".distanceKm").value(Math.round(dwd.getDistanceKm() * 100.0) / 100.0))
+                    .andExpect(jsonPath(driver + ".distanceFormatted").value(dwd.getFormattedDistance()))
+                    .andExpect(jsonPath(driver + ".estimatedArrivalMinutes")
+                            .value(Math.round(dwd.getEstimatedArrivalMinutes())))
+                    .andExpect(jsonPath(driver + ".estimatedArrivalFormatted").value(dwd.getFormattedArrivalTime()));
+        }
+    }
+
+    @Test
+    void rideRequestsWithNoDriversLeaveOutTheRiderAndPickup() throws Exception {
+        mvc.perform(post("/api/rides/request")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"riderId\": \"rider-2\", \"pickupLatitude\": -45.0, \"pickupLongitude\": 170.0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("No drivers available in your area"))
+                .andExpect(jsonPath("$.driversFound").value(0))
+                .andExpect(jsonPath("$.nearestDrivers.length()").value(0))
+                .andExpect(jsonPath("$.riderId").doesNotExist())
+                .andExpect(jsonPath("$.pickupLocation").doesNotExist());
+    }
+
+    @Test
+    void nearbyDriversKeepTheirFields() throws Exception {
+        List<DriverWithDistance> expected = matchingService.findClosestDrivers(LATITUDE, LONGITUDE, 3);
+        assertEquals(3, expected.size());
+
+        ResultActions result = mvc.perform(get("/api/rides/nearby-drivers")
+                        .param("latitude", "40.7128")
+                        .param("longitude", "-74.0060")
+                        .param("maxDrivers", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.count").value(3))
+                .andExpect(jsonPath("$.location.length()").value(2))
+                .andExpect(jsonPath("$.location.latitude").value(LATITUDE))
+                .andExpect(jsonPath("$.location.longitude").value(LONGITUDE))
+                .andExpect(jsonPath("$.drivers.length()").value(3))
+                .andExpect(jsonPath("$.drivers[1].driverName").value(nullValue()));
+
+        for (int i = 0; i < expected.size(); i++) {
+            DriverWithDistance dwd = expected.get(i);
+            String driver = "$.drivers[" + i + "]";
+            result.andExpect(jsonPath(driver + ".length()").value(5))
+                    .andExpect(jsonPath(driver + ".driverId").value(dwd.getDriver().getId()))
+                    .andExpect(jsonPath(driver + ".driverName").value(dwd.getDriver().getName()))
+                    .andExpect(jsonPath(driver + ".distanceKm").value(Math.round(dwd.getDistanceKm() * 100.0) / 100.0))
+                    .andExpect(jsonPath(driver + ".distanceFormatted").value(dwd.getFormattedDistance()))
+                    .andExpect(jsonPath(driver + ".estimatedArrival").value(dwd.getFormattedArrivalTime()));
+        }
+    }
+
+    @Test
+    void driversWithinRadiusKeepTheirFields() throws Exception {
+        List<DriverWithDistance> expected = matchingService.findDriversWithinRadius(LATITUDE, LONGITUDE, 5.0, 10);
+        assertEquals(2, expected.size());
+
+        ResultActions result = mvc.perform(get("/api/rides/nearby-drivers/radius")
+                        .param("latitude", "40.7128")
+                        .param("longitude", "-74.0060")
+                        .param("maxDistanceKm", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.searchRadius").value("5.0 km"))
+                .andExpect(jsonPath("$.drivers.length()").value(2))
+                .andExpect(jsonPath("$.drivers[1].driverName").value(nullValue()));
+
+        for (int i = 0; i < expected.size(); i++) {
+            DriverWithDistance dwd = expected.get(i);
+            String driver = "$.drivers[" + i + "]";
+            // No formatted distance here, as before
+            result.andExpect(jsonPath(driver + ".length()").value(4))
+                    .andExpect(jsonPath(driver + ".driverId").value(dwd.getDriver().getId()))
+                    .andExpect(jsonPath(driver + ".driverName").value(dwd.getDriver().getName()))
+                    .andExpect(jsonPath(driver + ".distanceKm").value(Math.round(dwd.getDistanceKm() * 100.0) / 100.0))
+                    .andExpect(jsonPath(driver + ".estimatedArrival").value(dwd.getFormattedArrivalTime()))
+                    .andExpect(jsonPath(driver + ".distanceFormatted").doesNotExist());
+        }
+    }
+
+    @Test
+    void batchResultsWriteAMissingRiderIdAsNull() throws Exception {
+        mvc.perform(post("/api/rides/request/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"requests\": [{\"pickupLatitude\": 40.7128, \"pickupLongitude\": -74.0060,"
+                                + " \"maxDrivers\": 1}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.results[0].length()").value(3))
+                .andExpect(jsonPath("$.results[0].riderId").value(nullValue()))
+                .andExpect(jsonPath("$.results[0].driversFound").value(1))
+                .andExpect(jsonPath("$.results[0].nearestDrivers[0].length()").value(4))
+                .andExpect(jsonPath("$.results[0].nearestDrivers[0].driverId").value("near"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GeohashTrieCopyOnWriteTest {
+    private static final int PRECISION = GeohashUtil.DEFAULT_PRECISION;
+    private static final int DRIVERS = 200;
+    private static final int MOVES = 50_000;
+    private static final int READERS = 4;
+
+    // Cells in different top-level cells, so every move spans two lock stripes
+    private static final long NEW_YORK = GeohashUtil.encodeLong(40.7128, -74.0060, PRECISION);
+    private static final long LONDON = GeohashUtil.encodeLong(51.5074, -0.1278, PRECISION);
+
+    @Test
+    void readersSeeWholeMovesWithoutLocking() throws Exception {
+        GeohashTrie trie = new GeohashTrie(new DriverLocationStore(), true, true);
+        Driver[] drivers = new Driver[DRIVERS];
+        long[] cells = new long[DRIVERS];
+
+        for (int i = 0; i < DRIVERS; i++) {
+            drivers[i] = new Driver("driver-" + i, "Driver " + i, 40.7128, -74.0060);
+            cells[i] = NEW_YORK;
+            trie.insert(NEW_YORK, PRECISION, drivers[i]);
+        }
+
+        long[] both = {NEW_YORK, LONDON};
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 2);
+        List<Future<Integer>> readers = new ArrayList<>();
+
+        for (int r = 0; r < READERS; r++) {
+            readers.add(executor.submit(() -> {
+                int reads = 0;
+                while (writing.get()) {
+                    // Each read is one snapshot: a driver moving between the two cells is
+                    // counted and listed exactly once, whichever side it is on
+                    assertEquals(DRIVERS, trie.countByPrefixes(both, PRECISION).totalDrivers);
+
+                    List<Driver> listed = trie.searchByPrefixes(both, PRECISION);
+                    assertEquals(DRIVERS, listed.size());
+                    assertEquals(DRIVERS, new HashSet<>(listed).size());
+                    reads++;
+                }
+                return reads;
+            }));
+        }
+
+        Future<?> mover = executor.submit(() -> {
+            Random random = new Random(1);
+            for (int op = 0; op < MOVES; op++) {
+                int i = random.nextInt(DRIVERS);
+                // Writers of one driver are serialized on it, as DriverService does
+                synchronized (drivers[i]) {
+                    long to = cells[i] == NEW_YORK ? LONDON : NEW_YORK;
+                    trie.updateLocation(cells[i], to, PRECISION, drivers[i]);
+                    cells[i] = to;
+                }
+            }
+            return null;
+        });
+        Future<?> toggler = executor.submit(() -> {
+            Random random = new Random(2);
+            while (!mover.isDone()) {
+                int i = random.nextInt(DRIVERS);
+                synchronized (drivers[i]) {
+                    trie.setAvailability(cells[i], PRECISION, drivers[i], random.nextBoolean());
+                }
+            }
+            return null;
+        });
+
+        try {
+            mover.get(60, TimeUnit.SECONDS);
+            toggler.get(60, TimeUnit.SECONDS);
+        } finally {
+            writing.set(false);
+        }
+        for (Future<Integer> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long available = 0;
+        for (Driver driver : drivers) {
+            if (driver.isAvailable()) {
+                available++;
+            }
+        }
+        GeohashTrie.CellCounts counts = trie.countByPrefixes(both, PRECISION);
+        assertEquals(DRIVERS, counts.totalDrivers);
+        assertEquals(available, counts.availableDrivers);
+        assertEquals(available, trie.searchAvailableByPrefixes(both, PRECISION).size());
+    }
+
+    @Test
+    void copyOnWriteRequiresConcurrentMode() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GeohashTrie(new DriverLocationStore(), false, true));
+    }
+}
@@ -0,0 +1,154 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeohashTrieStripingTest {
+    private static final int PRECISION = GeohashUtil.DEFAULT_PRECISION;
+    private static final int DRIVERS = 300;
+    private static final int WRITERS = 4;
+    private static final int OPERATIONS = 20_000;
+
+    // Midtown Manhattan; the metro area spans roughly 40 x 40 km
+    private static final double CENTER_LATITUDE = 40.7580;
+    private static final double CENTER_LONGITUDE = -73.9855;
+
+    private static double[] inMetro(Random random) {
+        return new double[]{
+                CENTER_LATITUDE + (random.nextDouble() - 0.5) * 0.36,
+                CENTER_LONGITUDE + (random.nextDouble() - 0.5) * 0.47
+        };
+    }
+
+    @Test
+    void writersInOneMetroRarelyShareAStripe() {
+        Random random = new Random(3);
+        int samples = 100_000;
+        int[] writes = new int[GeohashTrie.LOCK_STRIPES];
+        for (int i = 0; i < samples; i++) {
+            double[] location = inMetro(random);
+            writes[GeohashTrie.stripeOf(GeohashUtil.encodeLong(location[0], location[1], PRECISION), PRECISION)]++;
+        }
+
+        // Chance that two concurrent writes lock the same stripe; 1.0 with one lock
+        // per top-level cell, since the whole metro is under "d"
+        int stripes = 0;
+        double collision = 0;
+        for (int count : writes) {
+            if (count > 0) {
+                stripes++;
+            }
+            collision += (double) count / samples * count / samples;
+        }
+        assertTrue(stripes >= 6, "stripes " + stripes);
+        assertTrue(collision < 0.35, "collision " + collision);
+    }
+
+    @Test
+    void countsAndNodesStayExactUnderConcurrentWrites() throws Exception {
+        for (boolean copyOnWrite : new boolean[]{false, true}) {
+            GeohashTrie trie = new GeohashTrie(new DriverLocationStore(), true, copyOnWrite);
+            Driver[] drivers = new Driver[DRIVERS];
+            long[] cells = new long[DRIVERS];
+            int[] precisions = new int[DRIVERS];
+
+            Random seed = new Random(4);
+            for (int i = 0; i < DRIVERS; i++) {
+                double[] location = inMetro(seed);
+                drivers[i] = new Driver("driver-" + i, "Driver " + i, location[0], location[1]);
+                cells[i] = GeohashUtil.encodeLong(location[0], location[1], PRECISION);
+                precisions[i] = PRECISION;
+                trie.insert(cells[i], PRECISION, drivers[i]);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    Random random = new Random(10 + writer);
+                    for (int op = 0; op < OPERATIONS; op++) {
+                        int i = random.nextInt(DRIVERS);
+                        // Writers of one driver are serialized on it, as DriverService does
+                        synchronized (drivers[i]) {
+                            int action = random.nextInt(20);
+                            if (action < 14) {
+                                // Within the metro, now and then to another continent, and
+                                // rarely into a cell coarser than a stripe
+                                double[] location = action == 0
+                                        ? new double[]{-33.8688, 151.2093}
+                                        : inMetro(random);
+                                int precision = action == 1 ? 2 : PRECISION;
+                                long to = GeohashUtil.encodeLong(location[0], location[1], precision);
+                                String from = precisions[i] > 0 ? GeohashUtil.toBase32(cells[i], precisions[i]) : null;
+                                trie.updateLocation(from, GeohashUtil.toBase32(to, precision), drivers[i]);
+                                cells[i] = to;
+                                precisions[i] = precision;
+                            } else if (action < 18 && precisions[i] > 0) {
+                                trie.setAvailability(cells[i], precisions[i], drivers[i], random.nextBoolean());
+                            } else if (precisions[i] > 0) {
+                                trie.delete(cells[i], precisions[i], drivers[i]);
+                                precisions[i] = 0;
+                            } else {
+                                trie.insert(cells[i] = GeohashUtil.encodeLong(CENTER_LATITUDE, CENTER_LONGITUDE,
+                                        PRECISION), PRECISION, drivers[i]);
+                                precisions[i] = PRECISION;
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            GeohashTrie rebuilt = new GeohashTrie();
+            for (int i = 0; i < DRIVERS; i++) {
+                if (precisions[i] > 0) {
+                    Driver copy = new Driver(drivers[i].getId(), drivers[i].getName(), 0, 0);
+                    copy.setAvailable(drivers[i].isAvailable());
+                    rebuilt.insert(cells[i], precisions[i], copy);
+                }
+            }
+
+            assertEquals(rebuilt.getTotalDrivers(), trie.getTotalDrivers());
+            assertEquals(rebuilt.getAvailableDrivers(), trie.getAvailableDrivers());
+            assertEquals(rebuilt.getStats().totalNodes, trie.getStats().totalNodes);
+            assertEquals(rebuilt.getStats().maxDepth, trie.getStats().maxDepth);
+
+            // Counts of cells coarser and finer than a stripe cell
+            long center = GeohashUtil.encodeLong(CENTER_LATITUDE, CENTER_LONGITUDE, PRECISION);
+            for (int precision = 1; precision <= PRECISION; precision++) {
+                long[] cell = {GeohashUtil.prefix(center, PRECISION, precision)};
+                GeohashTrie.CellCounts expected = rebuilt.countByPrefixes(cell, precision);
+                GeohashTrie.CellCounts actual = trie.countByPrefixes(cell, precision);
+                assertEquals(expected.totalDrivers, actual.totalDrivers, "precision " + precision);
+                assertEquals(expected.availableDrivers, actual.availableDrivers, "precision " + precision);
+                assertEquals(expected.availableDrivers, trie.searchAvailableByPrefixes(cell, precision).size());
+            }
+
+            // Emptied cells are pruned up to the root, shared nodes included
+            for (int i = 0; i < DRIVERS; i++) {
+                if (precisions[i] > 0) {
+                    assertTrue(trie.delete(cells[i], precisions[i], drivers[i]));
+                }
+            }
+            assertEquals(1, trie.getStats().totalNodes);
+            assertEquals(0, trie.getStats().maxDepth);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedDriverIndexTest {
+    private static final int PRECISION = GeohashUtil.DEFAULT_PRECISION;
+    private static final int SHARDS = 8;
+    private static final int DRIVERS = 200;
+    private static final int MOVES = 20_000;
+    private static final int READERS = 3;
+
+    @Test
+    void handoffsAreAtomicForReadsSpanningBothShards() throws Exception {
+        try (ShardedDriverIndex index = new ShardedDriverIndex(new DriverLocationStore(), SHARDS,
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, true)) {
+            long home = GeohashUtil.encodeLong(40.7580, -73.9855, PRECISION);
+            long away = nearestCellOfAnotherShard(index, home);
+            assertNotEquals(index.shardOf(home, PRECISION), index.shardOf(away, PRECISION));
+
+            Driver[] drivers = new Driver[DRIVERS];
+            long[] cells = new long[DRIVERS];
+            for (int i = 0; i < DRIVERS; i++) {
+                drivers[i] = new Driver("driver-" + i, "Driver " + i, 40.7580, -73.9855);
+                cells[i] = home;
+                index.insert(home, PRECISION, drivers[i]);
+            }
+
+            long[] both = {home, away};
+            AtomicBoolean moving = new AtomicBoolean(true);
+            ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+            List<Future<?>> readers = new ArrayList<>();
+
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(() -> {
+                    while (moving.get()) {
+                        assertEquals(DRIVERS, index.countByPrefixes(both, PRECISION).totalDrivers);
+
+                        List<Driver> listed = index.searchAvailableByPrefixes(both, PRECISION);
+                        assertEquals(DRIVERS, listed.size());
+                        assertEquals(DRIVERS, new HashSet<>(listed).size());
+                    }
+                    return null;
+                }));
+            }
+
+            Future<?> mover = executor.submit(() -> {
+                Random random = new Random(3);
+                for (int op = 0; op < MOVES; op++) {
+                    int i = random.nextInt(DRIVERS);
+                    long to = cells[i] == home ? away : home;
+                    index.updateLocation(cells[i], to, PRECISION, drivers[i]);
+                    cells[i] = to;
+                }
+                return null;
+            });
+
+            try {
+                mover.get(60, TimeUnit.SECONDS);
+            } finally {
+                moving.set(false);
+            }
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            // Handoffs keep each driver's slot
+            DriverLocationStore store = index.getLocationStore();
+            assertEquals(DRIVERS, store.size());
+            for (int i = 0; i < DRIVERS; i++) {
+                int slot = store.slotOf(drivers[i]);
+                assertTrue(slot >= 0);
+                assertEquals(cells[i], store.cell(slot));
+            }
+            assertEquals(DRIVERS, index.getStats().totalDrivers);
+        }
+    }
+
+    @Test
+    void handoffsBetweenDisjointShardPairsRunSideBySide() throws Exception {
+        try (ShardedDriverIndex index = new ShardedDriverIndex(new DriverLocationStore(), SHARDS,
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, true)) {
+            // Two pairs of cells, all four in different shards
+            long[] cells = cellsOfDistinctShards(index, GeohashUtil.encodeLong(40.7580, -73.9855, PRECISION), 4);
+            long[][] pairs = {{cells[0], cells[1]}, {cells[2], cells[3]}};
+
+            Driver[][] drivers = new Driver[pairs.length][DRIVERS / 2];
+            long[][] at = new long[pairs.length][DRIVERS / 2];
+            for (int p = 0; p < pairs.length; p++) {
+                for (int i = 0; i < DRIVERS / 2; i++) {
+                    drivers[p][i] = new Driver("driver-" + p + "-" + i, "Driver", 40.7580, -73.9855);
+                    at[p][i] = pairs[p][0];
+                    index.insert(pairs[p][0], PRECISION, drivers[p][i]);
+                }
+            }
+
+            AtomicBoolean moving = new AtomicBoolean(true);
+            ExecutorService executor = Executors.newFixedThreadPool(2 * pairs.length);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int p = 0; p < pairs.length; p++) {
+                long[] pair = pairs[p];
+                tasks.add(executor.submit(() -> {
+                    while (moving.get()) {
+                        assertEquals(DRIVERS / 2, index.countByPrefixes(pair, PRECISION).totalDrivers);
+                        assertEquals(DRIVERS / 2, index.searchAvailableByPrefixes(pair, PRECISION).size());
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<?>> movers = new ArrayList<>();
+            for (int p = 0; p < pairs.length; p++) {
+                int pair = p;
+                movers.add(executor.submit(() -> {
+                    Random random = new Random(5 + pair);
+                    for (int op = 0; op < MOVES / 2; op++) {
+                        int i = random.nextInt(DRIVERS / 2);
+                        long to = at[pair][i] == pairs[pair][0] ? pairs[pair][1] : pairs[pair][0];
+                        index.updateLocation(at[pair][i], to, PRECISION, drivers[pair][i]);
+                        at[pair][i] = to;
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                for (Future<?> mover : movers) {
+                    mover.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                moving.set(false);
+            }
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            // A read over all four cells sees every driver exactly once
+            assertEquals(DRIVERS, new HashSet<>(index.searchAvailableByPrefixes(cells, PRECISION)).size());
+            assertEquals(DRIVERS, index.getStats().totalDrivers);
+        }
+    }
+
+    @Test
+    void cellsCoarserThanTheShardPrecisionAreRejected() {
+        try (ShardedDriverIndex index = new ShardedDriverIndex(new DriverLocationStore(), SHARDS,
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, true)) {
+            long cell = GeohashUtil.encodeLong(40.7580, -73.9855, PRECISION);
+            Driver driver = new Driver("driver", "Driver", 40.7580, -73.9855);
+            index.insert(cell, PRECISION, driver);
+
+            long coarse = GeohashUtil.prefix(cell, PRECISION, 3);
+            assertThrows(IllegalArgumentException.class, () -> index.delete(coarse, 3, driver));
+            assertThrows(IllegalArgumentException.class, () -> index.insert(coarse, 3, driver));
+            assertEquals(1, index.getStats().totalDrivers);
+
+            assertTrue(index.delete(cell, PRECISION, driver));
+            assertEquals(0, index.getStats().totalDrivers);
+        }
+    }
+
+    @Test
+    void failedHandoffsLeaveTheDriverInItsOldShard() {
+        AtomicLong failingCell = new AtomicLong(-1);
+        // Fails inserts into one cell before they touch the trie
+        DriverLocationStore store = new DriverLocationStore() {
+            @Override
+            public void setCell(int slot, long cell) {
+                if (cell == failingCell.get()) {
+                    throw new IllegalStateException("Insert failed");
+                }
+                super.setCell(slot, cell);
+            }
+        };
+
+        try (ShardedDriverIndex index = new ShardedDriverIndex(store, SHARDS,
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, true)) {
+            long home = GeohashUtil.encodeLong(40.7580, -73.9855, PRECISION);
+            long away = nearestCellOfAnotherShard(index, home);
+            long[] both = {home, away};
+            Driver driver = new Driver("driver", "Driver", 40.7580, -73.9855);
+            index.insert(home, PRECISION, driver);
+
+            failingCell.set(away);
+            assertThrows(IllegalStateException.class, () -> index.updateLocation(home, away, PRECISION, driver));
+            assertEquals(List.of(driver), index.searchAvailableByPrefixes(new long[]{home}, PRECISION));
+            assertEquals(1, index.countByPrefixes(both, PRECISION).totalDrivers);
+            assertEquals(home, store.cell(store.slotOf(driver)));
+
+            failingCell.set(-1);
+            assertTrue(index.updateLocation(home, away, PRECISION, driver));
+            assertEquals(List.of(driver), index.searchAvailableByPrefixes(new long[]{away}, PRECISION));
+
+            // A handoff of a driver missing from its old cell still places it, but says so
+            Driver stray = new Driver("stray", "Stray", 40.7580, -73.9855);
+            assertFalse(index.updateLocation(home, away, PRECISION, stray));
+            assertEquals(2, index.countByPrefixes(both, PRECISION).totalDrivers);
+            assertTrue(index.searchAvailableByPrefixes(new long[]{away}, PRECISION).contains(stray));
+        }
+    }
+
+    private static long[] cellsOfDistinctShards(ShardedDriverIndex index, long center, int count) {
+        long[] cells = new long[count];
+        HashSet<Integer> used = new HashSet<>();
+        cells[0] = center;
+        used.add(index.shardOf(center, PRECISION));
+        int found = 1;
+
+        long[] ring = new long[64];
+        for (int radius = 1; found < count; radius++) {
+            if (8 * radius > ring.length) {
+                ring = new long[8 * radius];
+            }
+            int ringSize = GeohashUtil.getRing(center, PRECISION, radius, ring);
+            for (int i = 0; i < ringSize && found < count; i++) {
+                if (used.add(index.shardOf(ring[i], PRECISION))) {
+                    cells[found++] = ring[i];
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static long nearestCellOfAnotherShard(ShardedDriverIndex index, long cell) {
+        for (int radius = 1; ; radius++) {
+            long[] ring = new long[8 * radius];
+            int count = GeohashUtil.getRing(cell, PRECISION, radius, ring);
+            for (int i = 0; i < count; i++) {
+                if (ring[i] >= 0 && index.shardOf(ring[i], PRECISION) != index.shardOf(cell, PRECISION)) {
+                    return ring[i];
+                }
+            }
+        }
+    }
+
+    @Test
+    void clearEmptiesEveryShard() {
+        try (ShardedDriverIndex index = new ShardedDriverIndex(new DriverLocationStore(), SHARDS,
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, true)) {
+            Random random = new Random(4);
+            for (int i = 0; i < DRIVERS; i++) {
+                Driver driver = new Driver("driver-" + i, "Driver " + i,
+                        40.5 + random.nextDouble(), -74.5 + random.nextDouble());
+                index.insert(GeohashUtil.encodeLong(driver.getLatitude(), driver.getLongitude(), PRECISION),
+                        PRECISION, driver);
+            }
+
+            index.clear();
+
+            assertEquals(0, index.getStats().totalDrivers);
+            assertEquals(0, index.getLocationStore().size());
+
+            // Writers resume after the clear
+            Driver driver = new Driver("after", "After", 40.7580, -73.9855);
+            index.insert(GeohashUtil.encodeLong(40.7580, -73.9855, PRECISION), PRECISION, driver);
+            assertEquals(1, index.getStats().totalDrivers);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long TICK = 1_000;
+    private static final long START = 123_456_789L;
+    private static final int ENTRIES = 5_000;
+    // Past the wheel's 2^24 ticks, so some entries wait in the top level more than once
+    private static final long MAX_DELAY_TICKS = 40_000_000L;
+
+    @Test
+    void entriesFireOnTheFirstAdvancePastTheirDeadline() {
+        TimingWheel wheel = new TimingWheel(TICK, START);
+        Random random = new Random(6);
+        long[] deadlines = new long[ENTRIES];
+        long[] firedAt = new long[ENTRIES];
+        Arrays.fill(firedAt, -1);
+
+        for (int i = 0; i < ENTRIES; i++) {
+            // Mostly short delays, with a spread across every level
+            long delayTicks = random.nextInt(4) == 0
+                    ? (long) (random.nextDouble() * MAX_DELAY_TICKS)
+                    : random.nextInt(200);
+            deadlines[i] = START + delayTicks * TICK + random.nextInt((int) TICK);
+            wheel.schedule(i, deadlines[i]);
+        }
+        assertEquals(ENTRIES, wheel.size());
+
+        long now = START;
+        long previous = START;
+        int fired = 0;
+        while (fired < ENTRIES) {
+            previous = now;
+            now += random.nextInt(4) == 0 ? random.nextInt(1_000_000) * TICK : random.nextInt((int) (3 * TICK));
+            long at = now;
+            fired += wheel.advance(now, entry -> firedAt[(int) entry] = at);
+        }
+
+        assertEquals(0, wheel.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            assertTrue(firedAt[i] >= deadlines[i], "entry " + i + " fired early");
+        }
+        assertTrue(previous <= now);
+    }
+
+    @Test
+    void entriesAreNeverEarlyOrMoreThanATickLate() {
+        TimingWheel wheel = new TimingWheel(TICK, START);
+        Random random = new Random(7);
+        long[] deadlines = new long[ENTRIES];
+        long[] firedAt = new long[ENTRIES];
+
+        for (int i = 0; i < ENTRIES; i++) {
+            deadlines[i] = START + (long) (random.nextDouble() * 300_000 * TICK);
+            wheel.schedule(i, deadlines[i]);
+        }
+
+        // Advance tick by tick
+        for (long now = START; wheel.size() > 0; now += TICK) {
+            long at = now;
+            wheel.advance(now, entry -> firedAt[(int) entry] = at);
+        }
+
+        for (int i = 0; i < ENTRIES; i++) {
+            assertTrue(firedAt[i] >= deadlines[i], "entry " + i + " fired early");
+            assertTrue(firedAt[i] - deadlines[i] < 2 * TICK, "entry " + i + " fired late");
+        }
+    }
+
+    @Test
+    void expiredEntriesCanBeRescheduled() {
+        TimingWheel wheel = new TimingWheel(TICK, START);
+        int[] fires = new int[1];
+
+        wheel.schedule(42, START + 64 * TICK);
+        for (long now = START; now <= START + 64 * TICK * 10; now += TICK) {
+            long at = now;
+            wheel.advance(now, entry -> {
+                fires[0]++;
+                assertEquals(42L, entry);
+                // Due again 64 ticks later, in the very bucket being drained
+                wheel.schedule(entry, at + 64 * TICK);
+            });
+        }
+
+        assertEquals(10, fires[0]);
+        assertEquals(1, wheel.size());
+
+        // A deadline in the past fires on the next tick
+        wheel.clear();
+        wheel.schedule(7, START);
+        assertEquals(0, wheel.advance(START + 64 * TICK * 10, entry -> { }));
+        assertEquals(1, wheel.advance(START + 64 * TICK * 10 + TICK, entry -> { }));
+    }
+}
@@ -0,0 +1,77 @@
+package com.rideshare.rideshare_backend.datastructure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKSelectorTest {
+
+    @Test
+    void keepsTheKSmallestKeysInOrder() {
+        Random random = new Random(5);
+
+        for (int k : new int[]{1, 5, 16, 17, 100, 1000}) {
+            double[] keys = new double[500];
+            TopKSelector<Integer> selector = new TopKSelector<>(k);
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextDouble();
+                selector.offer(keys[i], i);
+            }
+
+            double[] sorted = keys.clone();
+            Arrays.sort(sorted);
+            List<Double> drained = new ArrayList<>();
+            selector.drainSorted((index, key) -> {
+                assertEquals(keys[index], key);
+                drained.add(key);
+            });
+
+            assertEquals(Math.min(k, keys.length), drained.size(), "k " + k);
+            for (int i = 0; i < drained.size(); i++) {
+                assertEquals(sorted[i], drained.get(i), "k " + k);
+            }
+            assertTrue(selector.isEmpty());
+        }
+    }
+
+    @Test
+    void hugeCapacityOnlyPaysForWhatIsKept() {
+        // Would need 24 GB if the arrays were sized to the capacity up front
+        TopKSelector<String> selector = new TopKSelector<>(2_000_000_000);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(selector.offer(100 - i, "driver-" + i));
+        }
+        assertFalse(selector.isFull());
+        assertEquals(Double.POSITIVE_INFINITY, selector.worstKey());
+        assertEquals(100, selector.size());
+
+        List<String> drained = new ArrayList<>();
+        selector.drainSorted((value, key) -> drained.add(value));
+        assertEquals("driver-99", drained.get(0));
+        assertEquals("driver-0", drained.get(99));
+    }
+
+    @Test
+    void rejectsCandidatesWorseThanAFullTopK() {
+        TopKSelector<String> selector = new TopKSelector<>(2);
+        selector.offer(1.0, "a");
+        selector.offer(3.0, "b");
+
+        assertTrue(selector.isFull());
+        assertEquals(3.0, selector.worstKey());
+        assertFalse(selector.wouldAccept(3.0));
+        assertFalse(selector.offer(4.0, "c"));
+        assertTrue(selector.offer(2.0, "d"));
+        assertEquals(2.0, selector.worstKey());
+        assertThrows(IllegalArgumentException.class, () -> new TopKSelector<>(0));
+    }
+}
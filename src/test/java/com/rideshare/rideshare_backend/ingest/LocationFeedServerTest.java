@@ -0,0 +1,170 @@
+package com.rideshare.rideshare_backend.ingest;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives LocationFeedServer with a plain SocketChannel client, the way a telematics
+ * gateway would.
+ */
+class LocationFeedServerTest {
+    private static final long MAX_AGE_MILLIS = 30_000;
+
+    @Test
+    void framesByIdAndBySlotUpdateDrivers() throws Exception {
+        DriverService service = new DriverService();
+        Driver byId = service.registerDriver(new Driver("gw-1", "By Id", 40.7128, -74.0060));
+        Driver bySlot = service.registerDriver(new Driver("gw-2", "By Slot", 40.7128, -74.0060));
+
+        LocationFeedServer server = new LocationFeedServer(service, 0, MAX_AGE_MILLIS);
+        server.start();
+
+        try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+            long now = System.currentTimeMillis();
+            ByteBuffer frames = ByteBuffer.allocate(1024);
+
+            LocationFeedProtocol.encodeById(frames, "gw-1", 40.7580, -73.9855, now);
+            LocationFeedProtocol.encodeBySlot(frames, bySlot.getSlot(), "gw-2", 40.6892, -74.0445, now);
+            // Dropped: unknown driver, slot held by another driver, stale, out of range
+            LocationFeedProtocol.encodeById(frames, "missing", 40.7, -74.0, now);
+            LocationFeedProtocol.encodeBySlot(frames, byId.getSlot(), "gw-2", 0, 0, now);
+            LocationFeedProtocol.encodeById(frames, "gw-1", 0, 0, now - 2 * MAX_AGE_MILLIS);
+            LocationFeedProtocol.encodeById(frames, "gw-1", 91, 0, now);
+            frames.flip();
+
+            // Split the stream mid-frame to exercise reassembly across reads
+            ByteBuffer head = frames.duplicate();
+            head.limit(7);
+            writeFully(client, head);
+            Thread.sleep(20);
+            frames.position(7);
+            writeFully(client, frames);
+
+            awaitFrames(server, 6);
+        } finally {
+            server.close();
+        }
+
+        assertEquals(2, server.getFramesApplied());
+        assertEquals(4, server.getFramesDropped());
+        assertEquals(40.7580, byId.getLatitude(), 0.0);
+        assertEquals(-74.0445, bySlot.getLongitude(), 0.0);
+        assertEquals(40.7580, service.getLocationStore().latitude(byId.getSlot()), 0.0);
+        assertTrue(service.findNearbyDrivers(40.6892, -74.0445).contains(bySlot));
+        assertFalse(service.findNearbyDrivers(40.7128, -74.0060).contains(byId));
+    }
+
+    @Test
+    void malformedFrameClosesConnection() throws Exception {
+        DriverService service = new DriverService();
+        LocationFeedServer server = new LocationFeedServer(service, 0, 0);
+        server.start();
+
+        try (SocketChannel client = SocketChannel.open(server.getLocalAddress())) {
+            ByteBuffer frame = ByteBuffer.allocate(8).putInt(3).putInt(0);
+            frame.flip();
+            writeFully(client, frame);
+
+            client.socket().setSoTimeout(5_000);
+            assertEquals(-1, client.socket().getInputStream().read());
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void serviceFailureDropsOnlyItsConnection() throws Exception {
+        // Stands in for a failing write-ahead log or index listener
+        DriverService service = new DriverService() {
+            @Override
+            public Driver updateDriverLocation(String driverId, double newLatitude, double newLongitude) {
+                if (driverId.equals("poison")) {
+                    throw new IllegalStateException("Index listener failed");
+                }
+                return super.updateDriverLocation(driverId, newLatitude, newLongitude);
+            }
+        };
+        Driver driver = service.registerDriver(new Driver("gw-1", "Healthy", 40.7128, -74.0060));
+        service.registerDriver(new Driver("poison", "Poison", 40.7128, -74.0060));
+
+        LocationFeedServer server = new LocationFeedServer(service, 0, 0);
+        server.start();
+
+        try (SocketChannel failing = SocketChannel.open(server.getLocalAddress());
+             SocketChannel healthy = SocketChannel.open(server.getLocalAddress())) {
+            ByteBuffer frame = ByteBuffer.allocate(256);
+            LocationFeedProtocol.encodeById(frame, "poison", 40.7580, -73.9855, 0);
+            frame.flip();
+            writeFully(failing, frame);
+
+            failing.socket().setSoTimeout(5_000);
+            assertEquals(-1, failing.socket().getInputStream().read());
+
+            // A connection opened before the failure is still served
+            frame.clear();
+            LocationFeedProtocol.encodeById(frame, "gw-1", 40.7580, -73.9855, 0);
+            frame.flip();
+            writeFully(healthy, frame);
+            awaitFrames(server, 1);
+            assertEquals(40.7580, driver.getLatitude(), 0.0);
+
+            // And so is one opened after it
+            try (SocketChannel later = SocketChannel.open(server.getLocalAddress())) {
+                frame.clear();
+                LocationFeedProtocol.encodeBySlot(frame, driver.getSlot(), "gw-1", 40.6892, -74.0445, 0);
+                frame.flip();
+                writeFully(later, frame);
+                awaitFrames(server, 2);
+                assertEquals(40.6892, driver.getLatitude(), 0.0);
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    void listensOnLoopbackUnlessGivenAnAddress() throws Exception {
+        DriverService service = new DriverService();
+        LocationFeedServer loopback = new LocationFeedServer(service, 0, 0);
+        LocationFeedServer everywhere = new LocationFeedServer(service, "0.0.0.0", 0, 0);
+        loopback.start();
+        everywhere.start();
+
+        try {
+            assertTrue(loopback.getLocalAddress().getAddress().isLoopbackAddress());
+            assertTrue(everywhere.getLocalAddress().getAddress().isAnyLocalAddress());
+        } finally {
+            loopback.close();
+            everywhere.close();
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new LocationFeedServer(service, " ", 0, 0));
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws Exception {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void awaitFrames(LocationFeedServer server, long frames) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (server.getFramesApplied() + server.getFramesDropped() < frames) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for " + frames + " frames");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.rideshare.rideshare_backend.persistence;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.service.DriverService;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverIndexPersistenceTest {
+    private static final long LONG_INTERVAL = 3600;
+
+    @Test
+    void restartRestoresSnapshotAndLogTail() throws Exception {
+        Path directory = Files.createTempDirectory("driver-index");
+        try {
+            DriverService before = new DriverService();
+            DriverIndexPersistence persistence = new DriverIndexPersistence(before, directory, LONG_INTERVAL, LONG_INTERVAL);
+            persistence.start();
+
+            for (int i = 0; i < 50; i++) {
+                before.registerDriver(new Driver("driver-" + i, "Driver " + i, 40.70 + i * 0.001, -74.00));
+            }
+            persistence.snapshot();
+
+            // Tail after the snapshot: moves, availability, removal and re-registration
+            before.updateDriverLocation("driver-1", 51.5074, -0.1278);
+            before.setDriverAvailability("driver-2", false);
+            before.removeDriver("driver-3");
+            before.removeDriver("driver-4");
+            before.registerDriver(new Driver("driver-4", "Driver 4 again", 35.6762, 139.6503));
+            before.registerDriver(new Driver("driver-50", "Driver 50", 40.75, -73.98));
+            persistence.close();
+
+            DriverService after = new DriverService();
+            DriverIndexPersistence restarted = new DriverIndexPersistence(after, directory, LONG_INTERVAL, LONG_INTERVAL);
+            restarted.start();
+            restarted.close();
+
+            assertSameIndex(before, after);
+            assertEquals(51.5074, after.getDriverById("driver-1").orElseThrow().getLatitude(), 0.0);
+            assertFalse(after.getDriverById("driver-2").orElseThrow().isAvailable());
+            assertFalse(after.getDriverById("driver-3").isPresent());
+            assertEquals("Driver 4 again", after.getDriverById("driver-4").orElseThrow().getName());
+            assertTrue(after.findNearbyDrivers(51.5074, -0.1278).contains(after.getDriverById("driver-1").orElseThrow()));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void crashRecoversFromLogAndIgnoresTornTail() throws Exception {
+        Path directory = Files.createTempDirectory("driver-index");
+        try {
+            DriverService before = new DriverService();
+            DriverIndexPersistence persistence = new DriverIndexPersistence(before, directory, LONG_INTERVAL, LONG_INTERVAL);
+            persistence.start();
+
+            before.registerDriver(new Driver("a", "A", 40.7128, -74.0060));
+            before.registerDriver(new Driver("b", "B", 40.7128, -74.0060));
+            before.updateDriverLocation("a", 40.7580, -73.9855);
+            before.setDriverAvailability("b", false);
+            // Simulate a crash: records reach the file, but no snapshot or close
+            persistence.flush();
+
+            // Half-written record at the end of the segment
+            Path segment;
+            try (Stream<Path> files = Files.list(directory)) {
+                segment = files.filter(path -> path.getFileName().toString().startsWith("wal-"))
+                        .max(Comparator.naturalOrder())
+                        .orElseThrow();
+            }
+            try (FileChannel file = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                file.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+            }
+
+            DriverService after = new DriverService();
+            DriverIndexPersistence restarted = new DriverIndexPersistence(after, directory, LONG_INTERVAL, LONG_INTERVAL);
+            restarted.start();
+
+            assertEquals(0, restarted.getRecoveredDrivers());
+            assertEquals(4, restarted.getReplayedRecords());
+            assertSameIndex(before, after);
+
+            // The restarted log keeps working after the torn segment
+            after.removeDriver("a");
+            restarted.close();
+
+            DriverService third = new DriverService();
+            DriverIndexPersistence again = new DriverIndexPersistence(third, directory, LONG_INTERVAL, LONG_INTERVAL);
+            again.start();
+            again.close();
+
+            assertEquals(1, third.getTotalDrivers());
+            assertFalse(third.getDriverById("b").orElseThrow().isAvailable());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void loggingTurnsOffLoudlyWhenTheLogCannotBeWritten() throws Exception {
+        Path directory = Files.createTempDirectory("driver-index");
+        try {
+            DriverService before = new DriverService();
+            AtomicBoolean failing = new AtomicBoolean(false);
+            WriteAheadLog log = new WriteAheadLog(directory, 256 * 1024, WriteAheadLogTest.failingOpener(failing));
+            DriverIndexPersistence persistence = new DriverIndexPersistence(before, directory,
+                    LONG_INTERVAL, LONG_INTERVAL, log);
+            persistence.start();
+            before.registerDriver(new Driver("a", "A", 40.7128, -74.0060));
+            persistence.snapshot();
+
+            // The disk fills up: pings are still acknowledged until the backlog hits its limit
+            failing.set(true);
+            int pings = 0;
+            while (!persistence.isFailed() && pings < 1_000_000) {
+                before.updateDriverLocation("a", 40.7128 + (pings++ % 1000) * 0.0001, -74.0060);
+            }
+            assertTrue(persistence.isFailed());
+            assertEquals(0, log.getBacklogBytes());
+
+            // The index keeps working without the log
+            before.updateDriverLocation("a", 40.7580, -73.9855);
+            before.registerDriver(new Driver("b", "B", 40.7128, -74.0060));
+            assertEquals(0, log.getBacklogBytes());
+
+            // Once there is room again, the shutdown snapshot still saves the index
+            failing.set(false);
+            persistence.close();
+
+            DriverService after = new DriverService();
+            DriverIndexPersistence restarted = new DriverIndexPersistence(after, directory, LONG_INTERVAL, LONG_INTERVAL);
+            restarted.start();
+            restarted.close();
+            assertSameIndex(before, after);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void assertSameIndex(DriverService expected, DriverService actual) {
+        assertEquals(expected.getTotalDrivers(), actual.getTotalDrivers());
+        assertEquals(expected.getTrieStats().availableDrivers, actual.getTrieStats().availableDrivers);
+
+        for (Driver driver : expected.getAllDrivers()) {
+            Driver restored = actual.getDriverById(driver.getId()).orElseThrow();
+            assertEquals(driver.getName(), restored.getName());
+            assertEquals(driver.getLatitude(), restored.getLatitude(), 0.0);
+            assertEquals(driver.getLongitude(), restored.getLongitude(), 0.0);
+            assertEquals(driver.isAvailable(), restored.isAvailable());
+            assertEquals(driver.getGeohashLong(), restored.getGeohashLong());
+        }
+    }
+
+    private static void delete(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> paths = files.sorted(Comparator.reverseOrder()).toList();
+            for (Path path : paths) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.rideshare.rideshare_backend.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+    private static final int WRITERS = 4;
+    private static final int RECORDS_PER_WRITER = 50_000;
+
+    @Test
+    void appendsDuringFlushesAndRotationsAreAllKeptInOrder() throws Exception {
+        Path directory = Files.createTempDirectory("wal");
+        try {
+            WriteAheadLog log = new WriteAheadLog(directory);
+            long first = log.open();
+
+            ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 1);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                String driverId = "driver-" + w;
+                writers.add(executor.submit(() -> {
+                    // Each record's latitude is its sequence number within the driver
+                    for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                        log.appendLocation(driverId, i, 0);
+                    }
+                    return null;
+                }));
+            }
+            // Flushes, and now and then a rotation, run while the writers append
+            Future<?> flusher = executor.submit(() -> {
+                int flushes = 0;
+                while (!writers.stream().allMatch(Future::isDone)) {
+                    if (++flushes % 50 == 0) {
+                        log.rotate();
+                    } else {
+                        log.flush();
+                    }
+                }
+                return null;
+            });
+
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            flusher.get(60, TimeUnit.SECONDS);
+            executor.shutdown();
+            log.close();
+            assertThrows(IllegalStateException.class, () -> log.appendRemove("driver-0"));
+
+            Map<String, Integer> next = new HashMap<>();
+            long records = WriteAheadLog.replay(directory, first, new WriteAheadLog.Visitor() {
+                @Override
+                public void register(String driverId, String name, double latitude, double longitude,
+                                     boolean available) {
+                    throw new AssertionError("Unexpected register record");
+                }
+
+                @Override
+                public void location(String driverId, double latitude, double longitude) {
+                    int expected = next.getOrDefault(driverId, 0);
+                    assertEquals(expected, (int) latitude, "record out of order for " + driverId);
+                    next.put(driverId, expected + 1);
+                }
+
+                @Override
+                public void availability(String driverId, boolean available) {
+                    throw new AssertionError("Unexpected availability record");
+                }
+
+                @Override
+                public void remove(String driverId) {
+                    throw new AssertionError("Unexpected remove record");
+                }
+            });
+
+            assertEquals((long) WRITERS * RECORDS_PER_WRITER, records);
+            for (int w = 0; w < WRITERS; w++) {
+                assertEquals(RECORDS_PER_WRITER, (int) next.get("driver-" + w));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void failedWritesAreKeptUpToTheBacklogLimit() throws Exception {
+        Path directory = Files.createTempDirectory("wal");
+        try {
+            AtomicBoolean failing = new AtomicBoolean(true);
+            long limit = 1024 * 1024;
+            WriteAheadLog log = new WriteAheadLog(directory, limit, failingOpener(failing));
+            long first = log.open();
+
+            // Nothing reaches the disk, so the backlog grows until appends are refused
+            int accepted = 0;
+            while (log.appendLocation("driver", accepted, 0)) {
+                accepted++;
+                if (accepted % 1000 == 0) {
+                    assertThrows(IOException.class, log::flush);
+                }
+            }
+            assertTrue(accepted > 0);
+            assertTrue(log.getBacklogBytes() > limit / 2);
+            assertTrue(log.getBacklogBytes() <= limit, "backlog " + log.getBacklogBytes());
+            assertFalse(log.appendLocation("driver", accepted, 0));
+
+            // Once the disk recovers, the backlog is written in order and appends resume
+            failing.set(false);
+            log.flush();
+            assertEquals(0, log.getBacklogBytes());
+            assertTrue(log.appendLocation("driver", accepted, 0));
+            log.close();
+
+            int[] next = {0};
+            long records = WriteAheadLog.replay(directory, first, new LocationVisitor() {
+                @Override
+                public void location(String driverId, double latitude, double longitude) {
+                    assertEquals(next[0]++, (int) latitude);
+                }
+            });
+            assertEquals(accepted + 1, records);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    static WriteAheadLog.SegmentOpener failingOpener(AtomicBoolean failing) {
+        return path -> new FailingChannel(
+                FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), failing);
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Visitor for logs holding only location records
+     */
+    private abstract static class LocationVisitor implements WriteAheadLog.Visitor {
+        @Override
+        public void register(String driverId, String name, double latitude, double longitude, boolean available) {
+            throw new AssertionError("Unexpected register record");
+        }
+
+        @Override
+        public void availability(String driverId, boolean available) {
+            throw new AssertionError("Unexpected availability record");
+        }
+
+        @Override
+        public void remove(String driverId) {
+            throw new AssertionError("Unexpected remove record");
+        }
+    }
+
+    /**
+     * File channel whose writes fail, as on a full disk, while the flag is set
+     */
+    static final class FailingChannel extends FileChannel {
+        private final FileChannel file;
+        private final AtomicBoolean failing;
+
+        FailingChannel(FileChannel file, AtomicBoolean failing) {
+            this.file = file;
+            this.failing = failing;
+        }
+
+        private void check() throws IOException {
+            if (failing.get()) {
+                throw new IOException("No space left on device");
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            check();
+            return file.write(source);
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            check();
+            return file.write(sources, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            check();
+            return file.write(source, position);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            check();
+            file.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            return file.read(destination);
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return file.read(destinations, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return file.read(destination, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return file.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            file.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            file.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return file.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            check();
+            return file.transferFrom(source, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return file.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return file.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return file.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.util.HaversineDistanceCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverMatchingServiceTest {
+    // {latitude, longitude, spread in degrees, drivers}
+    private static final double[][] AREAS = {
+            {40.7580, -73.9855, 0.05, 20_000},  // dense city center
+            {40.7580, -73.9855, 0.60, 300},     // sparse suburbs
+            {69.6492, 18.9553, 0.30, 2_000},    // high latitude (Tromso)
+            {-17.7134, 179.95, 0.30, 2_000}     // across the antimeridian (Fiji)
+    };
+
+    @Test
+    void closestDriversMatchExactBruteForce() {
+        Random random = new Random(42);
+
+        for (double[] area : AREAS) {
+            DriverService driverService = new DriverService();
+            DriverMatchingService matchingService = new DriverMatchingService(driverService);
+            List<Driver> drivers = new ArrayList<>();
+
+            for (int i = 0; i < (int) area[3]; i++) {
+                Driver driver = new Driver("driver-" + i, "Driver " + i,
+                        area[0] + (random.nextDouble() - 0.5) * area[2],
+                        wrap(area[1] + (random.nextDouble() - 0.5) * area[2]));
+                driverService.registerDriver(driver);
+                drivers.add(driver);
+
+                if (random.nextInt(4) == 0) {
+                    driverService.setDriverAvailability(driver.getId(), false);
+                }
+            }
+
+            for (int query = 0; query < 100; query++) {
+                double latitude = area[0] + (random.nextDouble() - 0.5) * area[2];
+                double longitude = wrap(area[1] + (random.nextDouble() - 0.5) * area[2]);
+                int k = 1 + random.nextInt(25);
+
+                List<DriverWithDistance> expected = drivers.stream()
+                        .filter(Driver::isAvailable)
+                        .map(d -> new DriverWithDistance(d, HaversineDistanceCalculator.calculateDistance(
+                                latitude, longitude, d.getLatitude(), d.getLongitude())))
+                        .sorted(Comparator.comparingDouble(DriverWithDistance::getDistanceKm))
+                        .limit(k)
+                        .toList();
+
+                List<DriverWithDistance> actual = matchingService.findClosestDrivers(latitude, longitude, k);
+
+                assertEquals(expected.size(), actual.size(), "result size at " + latitude + "," + longitude);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getDistanceKm(), actual.get(i).getDistanceKm(), 1e-9,
+                            "rank " + i + " at " + latitude + "," + longitude);
+                    if (i + 1 < expected.size()
+                            && expected.get(i + 1).getDistanceKm() - expected.get(i).getDistanceKm() > 1e-9) {
+                        assertSame(expected.get(i).getDriver(), actual.get(i).getDriver());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sparseAreasFindDriversBeyondFiftyKilometers() {
+        DriverService driverService = new DriverService();
+        DriverMatchingService matchingService = new DriverMatchingService(driverService);
+        // A rural pickup with the closest drivers in two towns 70 and 210 km away
+        double latitude = 44.0;
+        double longitude = -100.0;
+        driverService.registerDriver(new Driver("near", "Near", latitude + 0.63, longitude));
+        driverService.registerDriver(new Driver("far", "Far", latitude - 1.89, longitude));
+
+        List<DriverWithDistance> closest = matchingService.findClosestDrivers(latitude, longitude, 2);
+
+        assertEquals(2, closest.size());
+        assertEquals("near", closest.get(0).getDriver().getId());
+        assertEquals(70.0, closest.get(0).getDistanceKm(), 0.1);
+        assertEquals("far", closest.get(1).getDriver().getId());
+        assertEquals(210.2, closest.get(1).getDistanceKm(), 0.1);
+        assertEquals("near", matchingService.findClosestDriver(latitude, longitude).getDriver().getId());
+        assertTrue(matchingService.findDriversWithinRadius(latitude, longitude, 50.0, 2).isEmpty());
+    }
+
+    private static double wrap(double longitude) {
+        if (longitude > 180.0) {
+            return longitude - 360.0;
+        }
+        return longitude < -180.0 ? longitude + 360.0 : longitude;
+    }
+}
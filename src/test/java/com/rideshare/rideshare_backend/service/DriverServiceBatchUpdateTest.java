@@ -0,0 +1,67 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverLocationUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverServiceBatchUpdateTest {
+
+    @Test
+    void lastPingPerDriverWins() {
+        DriverService service = new DriverService();
+        Driver a = service.registerDriver(new Driver("a", "A", 40.7128, -74.0060));
+        Driver b = service.registerDriver(new Driver("b", "B", 40.7128, -74.0060));
+
+        DriverService.BatchUpdateResult result = service.updateDriverLocations(List.of(
+                new DriverLocationUpdate("a", 51.5074, -0.1278),
+                new DriverLocationUpdate("b", 40.7580, -73.9855),
+                new DriverLocationUpdate("missing", 0, 0),
+                new DriverLocationUpdate("a", 35.6762, 139.6503),
+                new DriverLocationUpdate("a", 40.7306, -73.9352)));
+
+        // One update per driver, the last one sent
+        assertEquals(2, result.getUpdatedCount());
+        assertEquals(List.of("missing"), result.getNotFoundIds());
+        assertEquals(40.7306, a.getLatitude());
+        assertEquals(-73.9352, a.getLongitude());
+        assertEquals(40.7580, b.getLatitude());
+
+        // Indexed where the last ping put it, and nowhere the earlier ones did
+        assertTrue(service.findNearbyDrivers(40.7306, -73.9352, 6).contains(a));
+        assertTrue(service.findNearbyDrivers(51.5074, -0.1278, 4).isEmpty());
+        assertTrue(service.findNearbyDrivers(35.6762, 139.6503, 4).isEmpty());
+        assertEquals(2, service.getTrieStats().totalDrivers);
+    }
+
+    @Test
+    void outOfRangeItemRejectsTheBatchWithItsIndex() {
+        DriverService service = new DriverService();
+        Driver a = service.registerDriver(new Driver("a", "A", 40.7128, -74.0060));
+        service.registerDriver(new Driver("b", "B", 40.7128, -74.0060));
+
+        for (double[] location : new double[][]{{91, 0}, {-90.5, 0}, {0, 180.5}, {0, -181}, {Double.NaN, 0}}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> service.updateDriverLocations(List.of(
+                            new DriverLocationUpdate("a", 51.5074, -0.1278),
+                            new DriverLocationUpdate("b", location[0], location[1]))));
+            assertTrue(e.getMessage().contains("update 1"), e.getMessage());
+        }
+
+        // The valid item ahead of the bad one was not applied either
+        assertEquals(40.7128, a.getLatitude());
+        assertEquals(-74.0060, a.getLongitude());
+        assertTrue(service.findNearbyDrivers(40.7128, -74.0060, 6).contains(a));
+
+        // Edges of the range are valid
+        DriverService.BatchUpdateResult result = service.updateDriverLocations(List.of(
+                new DriverLocationUpdate("a", 90, 180),
+                new DriverLocationUpdate("b", -90, -180)));
+        assertEquals(2, result.getUpdatedCount());
+    }
+}
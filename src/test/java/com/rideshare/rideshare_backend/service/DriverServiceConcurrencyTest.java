@@ -0,0 +1,205 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
+import com.rideshare.rideshare_backend.datastructure.GeohashTrie;
+import com.rideshare.rideshare_backend.datastructure.ShardedDriverIndex;
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverLocationUpdate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverServiceConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+    private static final int DRIVERS = 500;
+
+    // Spread drivers over a few top-level cells so moves cross lock stripes
+    private static final double[][] CITIES = {
+            {40.7128, -74.0060},  // New York
+            {51.5074, -0.1278},   // London
+            {35.6762, 139.6503},  // Tokyo
+            {-33.8688, 151.2093}  // Sydney
+    };
+
+    @Test
+    void concurrentUpdatesKeepTrieAndMapConsistent() throws Exception {
+        assertConsistentAfterConcurrentUpdates(new DriverService(true));
+    }
+
+    @Test
+    void concurrentUpdatesKeepLockedTrieAndMapConsistent() throws Exception {
+        assertConsistentAfterConcurrentUpdates(new DriverService(false));
+    }
+
+    @Test
+    void concurrentUpdatesKeepShardedIndexAndMapConsistent() throws Exception {
+        try (DriverService service = new DriverService(8, true)) {
+            assertConsistentAfterConcurrentUpdates(service);
+        }
+    }
+
+    @Test
+    void registerWithoutIdIsRejected() {
+        DriverService service = new DriverService();
+        assertThrows(IllegalArgumentException.class,
+                () -> service.registerDriver(new Driver(null, "No Id", 40.7128, -74.0060)));
+        assertEquals(0, service.getTotalDrivers());
+        assertEquals(0, service.getTrieStats().totalDrivers);
+    }
+
+    @Test
+    void clearAllRacingRegistrationsLeavesNoDriverHalfIndexed() throws Exception {
+        DriverService service = new DriverService();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Future<?> registrations = executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                double[] city = CITIES[i % CITIES.length];
+                service.registerDriver(new Driver("driver-" + i, "Driver " + i, city[0], city[1]));
+            }
+            return null;
+        });
+        Future<?> clears = executor.submit(() -> {
+            start.await();
+            while (!registrations.isDone()) {
+                service.clearAll();
+            }
+            return null;
+        });
+
+        start.countDown();
+        registrations.get(60, TimeUnit.SECONDS);
+        clears.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // Whatever survived the last clear is in the map and the index alike
+        List<Driver> registered = service.getAllDrivers();
+        assertEquals(registered.size(), service.getTrieStats().totalDrivers);
+        assertEquals(registered.size(), service.getLocationStore().size());
+        for (Driver driver : registered) {
+            List<Driver> inCell = service.findNearbyDrivers(driver.getLatitude(), driver.getLongitude(), 6);
+            assertEquals(1L, inCell.stream().filter(d -> d == driver).count());
+        }
+
+        service.clearAll();
+        assertEquals(0, service.getTotalDrivers());
+        assertEquals(0, service.getTrieStats().totalDrivers);
+        assertEquals(1, service.getTrieStats().totalNodes);
+    }
+
+    private static void assertConsistentAfterConcurrentUpdates(DriverService service) throws Exception {
+
+        for (int i = 0; i < DRIVERS; i++) {
+            double[] city = CITIES[i % CITIES.length];
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, city[0], city[1]));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    String id = "driver-" + random.nextInt(DRIVERS + 50);
+                    double[] city = CITIES[random.nextInt(CITIES.length)];
+                    double lat = city[0] + (random.nextDouble() - 0.5) * 0.2;
+                    double lon = city[1] + (random.nextDouble() - 0.5) * 0.2;
+
+                    try {
+                        switch (random.nextInt(10)) {
+                            case 0 -> service.removeDriver(id);
+                            case 1 -> service.registerDriver(new Driver(id, id, lat, lon));
+                            case 2 -> service.setDriverAvailability(id, random.nextBoolean());
+                            case 3 -> service.findNearbyDrivers(lat, lon, 4);
+                            case 4 -> service.updateDriverLocations(List.of(
+                                    new DriverLocationUpdate(id, lon > 0 ? lat : -lat, lon),
+                                    new DriverLocationUpdate("driver-" + random.nextInt(DRIVERS + 50), lat, lon),
+                                    new DriverLocationUpdate(id, lat, lon)));
+                            default -> service.updateDriverLocation(id, lat, lon);
+                        }
+                    } catch (IllegalArgumentException expected) {
+                        // Unknown or duplicate driver ids are part of the workload
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Driver> registered = service.getAllDrivers();
+        assertEquals(registered.size(), service.getTrieStats().totalDrivers,
+                "trie driver count must match registered drivers");
+
+        // Incrementally maintained counters must match an index built from scratch
+        // (from copies: a driver is indexed by one location store at a time)
+        ShardedDriverIndex rebuilt = new ShardedDriverIndex(new DriverLocationStore(), service.getShardCount(),
+                ShardedDriverIndex.DEFAULT_SHARD_PRECISION, false);
+        for (Driver driver : registered) {
+            Driver copy = new Driver(driver.getId(), driver.getName(), driver.getLatitude(), driver.getLongitude());
+            copy.setAvailable(driver.isAvailable());
+            rebuilt.insert(driver.getGeohashLong(), driver.getGeohashPrecision(), copy);
+        }
+        rebuilt.close();
+        GeohashTrie.TrieStats stats = service.getTrieStats();
+        assertEquals(registered.stream().filter(Driver::isAvailable).count(), stats.availableDrivers);
+        assertEquals(rebuilt.getStats().totalNodes, stats.totalNodes);
+        assertEquals(rebuilt.getStats().maxDepth, stats.maxDepth);
+
+        // Every registered driver owns one store slot holding its current position
+        DriverLocationStore store = service.getLocationStore();
+        assertEquals(registered.size(), store.size());
+        for (Driver driver : registered) {
+            int slot = store.slotOf(driver);
+            assertTrue(slot >= 0, "driver " + driver.getId() + " has no slot");
+            assertEquals(driver.getLatitude(), store.latitude(slot));
+            assertEquals(driver.getLongitude(), store.longitude(slot));
+            assertEquals(driver.isAvailable(), store.isAvailable(slot));
+        }
+
+        // Nearby searches must see exactly the available drivers
+        for (Driver driver : registered) {
+            List<Driver> inCell = service.findNearbyDrivers(driver.getLatitude(), driver.getLongitude(), 6);
+            long occurrences = inCell.stream().filter(d -> d == driver).count();
+            assertEquals(driver.isAvailable() ? 1L : 0L, occurrences,
+                    "availability partition out of sync for " + driver.getId());
+        }
+
+        for (Driver driver : registered) {
+            service.setDriverAvailability(driver.getId(), true);
+        }
+
+        Set<Driver> indexed = new HashSet<>();
+        for (Driver driver : registered) {
+            List<Driver> inCell = service.findNearbyDrivers(driver.getLatitude(), driver.getLongitude(), 6);
+            long occurrences = inCell.stream().filter(d -> d == driver).count();
+            assertEquals(1L, occurrences, "driver " + driver.getId() + " must be indexed exactly once");
+            assertTrue(indexed.add(driver));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverServicePaginationTest {
+    private static final int STABLE_DRIVERS = 3000;
+
+    @Test
+    void pagesVisitEveryDriverOnce() {
+        DriverService service = new DriverService();
+        for (int i = 0; i < 1000; i++) {
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, 40.7 + i * 1e-4, -74.0));
+        }
+        // Leave free slots behind for the walk to skip
+        for (int i = 0; i < 1000; i += 3) {
+            service.removeDriver("driver-" + i);
+        }
+
+        Map<String, Integer> seen = walk(service, 37);
+
+        assertEquals(service.getTotalDrivers(), seen.size());
+        for (int count : seen.values()) {
+            assertEquals(1, count);
+        }
+    }
+
+    @Test
+    void driversPresentThroughoutAreSeenOnceDespiteChurn() throws Exception {
+        DriverService service = new DriverService();
+        for (int i = 0; i < STABLE_DRIVERS; i++) {
+            service.registerDriver(new Driver("stable-" + i, "Stable " + i, 40.7, -74.0));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread churn = new Thread(() -> {
+            int next = 0;
+            while (running.get()) {
+                // Registrations reuse freed slots on both sides of the cursor
+                service.registerDriver(new Driver("churn-" + next, "Churn", 40.7, -74.0));
+                if (next >= 50) {
+                    service.removeDriver("churn-" + (next - 50));
+                }
+                next++;
+            }
+        });
+        churn.start();
+
+        try {
+            for (int round = 0; round < 20; round++) {
+                Map<String, Integer> seen = walk(service, 64);
+
+                for (int i = 0; i < STABLE_DRIVERS; i++) {
+                    assertEquals(1, (int) seen.getOrDefault("stable-" + i, 0), "stable-" + i);
+                }
+            }
+        } finally {
+            running.set(false);
+            churn.join();
+        }
+    }
+
+    private static Map<String, Integer> walk(DriverService service, int limit) {
+        Map<String, Integer> seen = new HashMap<>();
+        int cursor = 0;
+
+        while (cursor >= 0) {
+            DriverService.DriverPage page = service.getDriversPage(cursor, limit);
+            assertTrue(page.getDrivers().size() <= limit);
+
+            for (Driver driver : page.getDrivers()) {
+                seen.merge(driver.getId(), 1, Integer::sum);
+            }
+            cursor = page.getNextCursor();
+        }
+
+        return seen;
+    }
+}
@@ -0,0 +1,322 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import com.rideshare.rideshare_backend.model.DriverWithDistance;
+import com.rideshare.rideshare_backend.util.GeohashUtil;
+import com.rideshare.rideshare_backend.util.HaversineDistanceCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotCellCacheTest {
+    // JFK arrivals area
+    private static final double AIRPORT_LATITUDE = 40.6413;
+    private static final double AIRPORT_LONGITUDE = -73.7781;
+    private static final int DRIVERS = 400;
+    private static final int OPERATIONS = 20_000;
+
+    private static double[] nearAirport(Random random, double spreadDegrees) {
+        return new double[]{
+                AIRPORT_LATITUDE + (random.nextDouble() - 0.5) * spreadDegrees,
+                AIRPORT_LONGITUDE + (random.nextDouble() - 0.5) * spreadDegrees
+        };
+    }
+
+    private static void assertSameResult(List<DriverWithDistance> expected, List<DriverWithDistance> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDriver().getId(), actual.get(i).getDriver().getId());
+            assertEquals(expected.get(i).getDistanceKm(), actual.get(i).getDistanceKm(), 1e-9);
+        }
+    }
+
+    /**
+     * Builds on the first miss, so tests can count hits and misses per request
+     */
+    private static HotCellCache eagerCache() {
+        return new HotCellCache(HotCellCache.DEFAULT_CAPACITY, HotCellCache.DEFAULT_PRECISION, true);
+    }
+
+    @Test
+    void cachedResultsMatchAFreshSearchWhileDriversChange() {
+        DriverService service = new DriverService();
+        DriverMatchingService plain = new DriverMatchingService(service);
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, new HotCellCache());
+
+        Random random = new Random(8);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < DRIVERS; i++) {
+            double[] location = nearAirport(random, 0.04);
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, location[0], location[1]));
+            ids.add("driver-" + i);
+        }
+
+        // A handful of hot pickup spots, each requested from slightly different points
+        double[][] spots = new double[6][];
+        for (int i = 0; i < spots.length; i++) {
+            spots[i] = nearAirport(random, 0.01);
+        }
+
+        int nextId = DRIVERS;
+        for (int op = 0; op < OPERATIONS; op++) {
+            int action = random.nextInt(10);
+            if (action < 7) {
+                double[] spot = spots[random.nextInt(spots.length)];
+                double latitude = spot[0] + (random.nextDouble() - 0.5) * 0.0005;
+                double longitude = spot[1] + (random.nextDouble() - 0.5) * 0.0005;
+                int k = 1 + random.nextInt(5);
+                assertSameResult(plain.findClosestDrivers(latitude, longitude, k),
+                        cached.findClosestDrivers(latitude, longitude, k));
+            } else if (action == 7) {
+                String id = ids.get(random.nextInt(ids.size()));
+                double[] location = nearAirport(random, random.nextBoolean() ? 0.002 : 0.04);
+                service.updateDriverLocation(id, location[0], location[1]);
+            } else if (action == 8) {
+                service.setDriverAvailability(ids.get(random.nextInt(ids.size())), random.nextBoolean());
+            } else if (random.nextBoolean()) {
+                String id = ids.remove(random.nextInt(ids.size()));
+                service.removeDriver(id);
+            } else {
+                double[] location = nearAirport(random, 0.04);
+                String id = "driver-" + nextId++;
+                service.registerDriver(new Driver(id, "Driver " + id, location[0], location[1]));
+                ids.add(id);
+            }
+        }
+
+        HotCellCache.Stats stats = cached.getCacheStats();
+        assertTrue(stats.getHits() > 0, "hits " + stats.getHits());
+        assertTrue(stats.getInvalidations() > 0, "invalidations " + stats.getInvalidations());
+        assertTrue(stats.getHitRate() > 0.0 && stats.getHitRate() < 1.0);
+    }
+
+    @Test
+    void onlyChangesInsideTheCandidateCircleInvalidate() {
+        DriverService service = new DriverService();
+        DriverMatchingService plain = new DriverMatchingService(service);
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, eagerCache());
+
+        Random random = new Random(9);
+        for (int i = 0; i < 50; i++) {
+            double[] location = nearAirport(random, 0.01);
+            service.registerDriver(new Driver("near-" + i, "Near " + i, location[0], location[1]));
+        }
+        // About 5 km north, never among the candidates
+        service.registerDriver(new Driver("far", "Far", AIRPORT_LATITUDE + 0.045, AIRPORT_LONGITUDE));
+
+        List<DriverWithDistance> first = cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3);
+        cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3);
+        assertEquals(1, cached.getCacheStats().getMisses());
+        assertEquals(1, cached.getCacheStats().getHits());
+
+        // Far away and staying there
+        service.updateDriverLocation("far", AIRPORT_LATITUDE + 0.046, AIRPORT_LONGITUDE);
+        service.setDriverAvailability("far", false);
+        // The closest candidate moves a few meters: hits read its current position
+        Driver closest = first.get(0).getDriver();
+        service.updateDriverLocation(closest.getId(), closest.getLatitude() + 0.00002, closest.getLongitude());
+
+        assertSameResult(plain.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3),
+                cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3));
+        assertEquals(0, cached.getCacheStats().getInvalidations());
+        assertEquals(2, cached.getCacheStats().getHits());
+
+        // A candidate going busy changes the result
+        service.setDriverAvailability(closest.getId(), false);
+        assertEquals(1, cached.getCacheStats().getInvalidations());
+
+        // A driver arriving right at the pickup does too
+        cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3);
+        service.updateDriverLocation("far", AIRPORT_LATITUDE, AIRPORT_LONGITUDE);
+        service.setDriverAvailability("far", true);
+        assertEquals(2, cached.getCacheStats().getInvalidations());
+        assertEquals("far", cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3)
+                .get(0).getDriver().getId());
+        assertEquals(3, cached.getCacheStats().getMisses());
+    }
+
+    @Test
+    void denseCellsAreRejectedOnceAndThenSearchedDirectly() {
+        DriverService service = new DriverService();
+        DriverMatchingService plain = new DriverMatchingService(service);
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, eagerCache());
+
+        // A taxi rank: far more drivers within the entry's circle than it may hold
+        Random random = new Random(12);
+        for (int i = 0; i < 2_000; i++) {
+            double[] location = nearAirport(random, 0.002);
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, location[0], location[1]));
+        }
+
+        assertSameResult(plain.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 5),
+                cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 5));
+        assertEquals(1, cached.getCacheStats().getRejected());
+        assertEquals(0, cached.getCacheStats().getEntries());
+
+        // Further requests from the cell skip the build that would be thrown away again
+        for (int i = 0; i < 10; i++) {
+            double latitude = AIRPORT_LATITUDE + i * 0.00001;
+            assertSameResult(plain.findClosestDrivers(latitude, AIRPORT_LONGITUDE, 5),
+                    cached.findClosestDrivers(latitude, AIRPORT_LONGITUDE, 5));
+        }
+        assertEquals(1, cached.getCacheStats().getRejected());
+        assertEquals(10, cached.getCacheStats().getSkipped());
+        assertEquals(11, cached.getCacheStats().getMisses());
+    }
+
+    @Test
+    void entriesCoverDriversOnTheEastAndWestEdgesOfTheirCircle() {
+        DriverService service = new DriverService();
+        HotCellCache cache = eagerCache();
+        DriverMatchingService plain = new DriverMatchingService(service);
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, cache);
+
+        long cell = GeohashUtil.encodeLong(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, cache.getPrecision());
+        double latitude = GeohashUtil.decodeLatitude(cell, cache.getPrecision());
+        double longitude = GeohashUtil.decodeLongitude(cell, cache.getPrecision());
+        long key = HotCellCache.key(cell, 1);
+
+        // A first entry tells the circle's margin over the closest driver's distance
+        Driver north = service.registerDriver(new Driver("north", "North", latitude + 0.003, longitude));
+        cached.findClosestDrivers(latitude, longitude, 1);
+        double margin = cache.get(key).radiusKm
+                - HaversineDistanceCalculator.calculateDistance(latitude, longitude, north.getLatitude(), longitude);
+        service.removeDriver("north");
+
+        // Size the circle so its east edge reaches just past an index cell boundary
+        int indexPrecision = service.getIndexPrecision();
+        double boundary = GeohashUtil.decodeLongitude(
+                GeohashUtil.encodeLong(latitude, longitude + 0.01, indexPrecision), indexPrecision)
+                + GeohashUtil.cellWidthDegrees(indexPrecision) / 2;
+        double edgeLongitude = boundary + 1e-8;
+        double edgeKm = HaversineDistanceCalculator.calculateDistance(latitude, longitude, latitude, edgeLongitude);
+        double closestKm = edgeKm + 1e-6 - margin;
+        service.registerDriver(new Driver("north", "North", latitude + Math.toDegrees(closestKm / 6371.0), longitude));
+        Driver east = service.registerDriver(new Driver("east", "East", latitude, edgeLongitude));
+        Driver west = service.registerDriver(new Driver("west", "West", latitude, 2 * longitude - edgeLongitude));
+
+        cached.findClosestDrivers(latitude, longitude, 1);
+        HotCellCache.Entry entry = cache.get(key);
+        assertTrue(entry.radiusKm > edgeKm, "radius " + entry.radiusKm + " edge " + edgeKm);
+        assertTrue(entry.contains(east));
+        assertTrue(entry.contains(west));
+
+        // Edge drivers moving in are seen by the entry's watchers
+        service.updateDriverLocation("east", latitude + 0.0001, longitude + 0.0001);
+        assertSameResult(plain.findClosestDrivers(latitude, longitude, 1),
+                cached.findClosestDrivers(latitude, longitude, 1));
+        assertEquals("east", cached.findClosestDrivers(latitude, longitude, 1).get(0).getDriver().getId());
+        service.setDriverAvailability("east", false);
+        service.updateDriverLocation("west", latitude - 0.0001, longitude - 0.0001);
+        assertSameResult(plain.findClosestDrivers(latitude, longitude, 1),
+                cached.findClosestDrivers(latitude, longitude, 1));
+        assertEquals("west", cached.findClosestDrivers(latitude, longitude, 1).get(0).getDriver().getId());
+    }
+
+    @Test
+    void keysAreBuiltOnTheirSecondMiss() {
+        DriverService service = new DriverService();
+        DriverMatchingService plain = new DriverMatchingService(service);
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, new HotCellCache());
+
+        Random random = new Random(11);
+        for (int i = 0; i < 100; i++) {
+            double[] location = nearAirport(random, 0.02);
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, location[0], location[1]));
+        }
+
+        // Pickups scattered over cells requested once are never built
+        for (int i = 0; i < 20; i++) {
+            double latitude = AIRPORT_LATITUDE + i * 0.005;
+            assertSameResult(plain.findClosestDrivers(latitude, AIRPORT_LONGITUDE, 5),
+                    cached.findClosestDrivers(latitude, AIRPORT_LONGITUDE, 5));
+        }
+        assertEquals(0, cached.getCacheStats().getEntries());
+        assertEquals(20, cached.getCacheStats().getSkipped());
+
+        // A cell requested again is built, then hit
+        cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 5);
+        assertEquals(1, cached.getCacheStats().getEntries());
+        assertSameResult(plain.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 5),
+                cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 5));
+        assertEquals(1, cached.getCacheStats().getHits());
+        assertEquals(21, cached.getCacheStats().getMisses());
+
+        // The same cell with another K is a key of its own
+        cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3);
+        assertEquals(1, cached.getCacheStats().getEntries());
+        assertEquals(21, cached.getCacheStats().getSkipped());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        DriverService service = new DriverService();
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, new HotCellCache(2, 7, true));
+
+        Random random = new Random(10);
+        for (int i = 0; i < 100; i++) {
+            double[] location = nearAirport(random, 0.02);
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, location[0], location[1]));
+        }
+
+        // Pickups about 1 km apart, each in its own cell
+        for (int i = 0; i < 3; i++) {
+            cached.findClosestDrivers(AIRPORT_LATITUDE + i * 0.01, AIRPORT_LONGITUDE, 5);
+        }
+        assertEquals(2, cached.getCacheStats().getEntries());
+        assertEquals(1, cached.getCacheStats().getEvictions());
+
+        cached.findClosestDrivers(AIRPORT_LATITUDE + 0.02, AIRPORT_LONGITUDE, 5);
+        assertEquals(1, cached.getCacheStats().getHits());
+        cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 5);
+        assertEquals(4, cached.getCacheStats().getMisses());
+    }
+
+    @Test
+    void failingListenerAheadOfTheCacheLeavesNoStaleEntry() {
+        DriverService service = new DriverService();
+        // Registered before the cache, like a write-ahead log that cannot write
+        service.addListener(new DriverIndexListener() {
+            @Override
+            public void onLocationUpdated(Driver driver, long oldCell, long newCell) {
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            }
+
+            @Override
+            public void onRemoved(Driver driver) {
+                throw new IllegalStateException("Log closed");
+            }
+        });
+        DriverMatchingService plain = new DriverMatchingService(service);
+        DriverMatchingService cached = new DriverMatchingService(service, Runnable::run, eagerCache());
+
+        Random random = new Random(9);
+        for (int i = 0; i < 20; i++) {
+            double[] location = nearAirport(random, 0.01);
+            service.registerDriver(new Driver("driver-" + i, "Driver " + i, location[0], location[1]));
+        }
+        for (int i = 0; i < 3; i++) {
+            cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3);
+        }
+        assertTrue(cached.getCacheStats().getHits() > 0);
+
+        // Both changes stand and still reach the cache behind the failing listener
+        String closest = cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 1).get(0).getDriver().getId();
+        service.updateDriverLocation(closest, 40.7580, -73.9855);
+        assertSameResult(plain.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3),
+                cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3));
+
+        String next = cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 1).get(0).getDriver().getId();
+        assertTrue(service.removeDriver(next));
+        assertSameResult(plain.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3),
+                cached.findClosestDrivers(AIRPORT_LATITUDE, AIRPORT_LONGITUDE, 3));
+        assertEquals(19, service.getTotalDrivers());
+    }
+}
@@ -0,0 +1,140 @@
+package com.rideshare.rideshare_backend.service;
+
+import com.rideshare.rideshare_backend.datastructure.DriverLocationStore;
+import com.rideshare.rideshare_backend.model.Driver;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StaleDriverEvictorTest {
+    // Long enough that the evictor's own ticks never expire anything during a test;
+    // the tests expire as of later times themselves
+    private static final long TTL_MILLIS = 600_000;
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS);
+    // Entries fire up to one tick after their deadline
+    private static final long TICK_MILLIS = 1;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    @Test
+    void evictsDriversWhoseLastPingIsOlderThanTheTtl() throws InterruptedException {
+        DriverService service = new DriverService();
+        DriverLocationStore store = service.getLocationStore();
+        service.registerDriver(new Driver("crashed", "Crashed", 40.7580, -73.9855));
+        service.registerDriver(new Driver("busy", "Busy", 40.7590, -73.9845));
+        service.registerDriver(new Driver("online", "Online", 40.7600, -73.9835));
+        service.setDriverAvailability("busy", false);
+
+        try (StaleDriverEvictor evictor = new StaleDriverEvictor(service, TTL_MILLIS, TICK_MILLIS)) {
+            evictor.start();
+            assertEquals(3, evictor.getScheduledDrivers());
+
+            Thread.sleep(5);
+            service.updateDriverLocation("online", 40.7610, -73.9825);
+            long lastPing = store.lastUpdateNanos(service.getDriverById("online").orElseThrow().getSlot());
+
+            // Registered before the ping, so their TTL runs out first
+            assertEquals(2, evictor.expire(lastPing + TTL_NANOS - 1));
+            assertFalse(service.getDriverById("crashed").isPresent());
+            assertFalse(service.getDriverById("busy").isPresent());
+            assertTrue(service.getDriverById("online").isPresent());
+            assertEquals(1, service.findNearbyDrivers(40.7580, -73.9855, 5).size());
+            assertEquals(1, store.size());
+            assertEquals(1, evictor.getScheduledDrivers());
+
+            assertEquals(1, evictor.expire(lastPing + TTL_NANOS + TICK_NANOS));
+            assertEquals(0, service.getTotalDrivers());
+            assertEquals(3, evictor.getEvictedDrivers());
+            assertEquals(0, evictor.getScheduledDrivers());
+        }
+    }
+
+    @Test
+    void pingsPushTheDeadlineBackWithoutTouchingTheWheel() throws InterruptedException {
+        DriverService service = new DriverService();
+        DriverLocationStore store = service.getLocationStore();
+
+        try (StaleDriverEvictor evictor = new StaleDriverEvictor(service, TTL_MILLIS, TICK_MILLIS)) {
+            evictor.start();
+            Driver driver = service.registerDriver(new Driver("driver", "Driver", 40.7580, -73.9855));
+            long registered = store.lastUpdateNanos(driver.getSlot());
+
+            Thread.sleep(5);
+            for (int i = 0; i < 100; i++) {
+                service.updateDriverLocation("driver", 40.7580 + i * 0.001, -73.9855);
+            }
+            long lastPing = store.lastUpdateNanos(driver.getSlot());
+            assertEquals(1, evictor.getScheduledDrivers());
+
+            // The entry comes due at the registration's deadline and follows the last ping
+            assertEquals(0, evictor.expire(registered + TTL_NANOS + TICK_NANOS));
+            assertTrue(service.getDriverById("driver").isPresent());
+            assertEquals(1, evictor.getScheduledDrivers());
+
+            assertEquals(1, evictor.expire(lastPing + TTL_NANOS + TICK_NANOS));
+            assertFalse(service.getDriverById("driver").isPresent());
+        }
+    }
+
+    @Test
+    void entriesOfRemovedDriversAreDroppedWhenTheirSlotIsReused() throws InterruptedException {
+        DriverService service = new DriverService();
+        DriverLocationStore store = service.getLocationStore();
+
+        try (StaleDriverEvictor evictor = new StaleDriverEvictor(service, TTL_MILLIS, TICK_MILLIS)) {
+            evictor.start();
+            Driver first = service.registerDriver(new Driver("first", "First", 40.7580, -73.9855));
+            int slot = first.getSlot();
+            long firstDeadline = store.lastUpdateNanos(slot) + TTL_NANOS;
+            service.removeDriver("first");
+
+            Thread.sleep(5);
+            Driver second = service.registerDriver(new Driver("second", "Second", 40.7580, -73.9855));
+            assertEquals(slot, second.getSlot());
+            assertEquals(2, evictor.getScheduledDrivers());
+
+            // The first driver's entry finds another generation in the slot and is dropped
+            assertEquals(0, evictor.expire(firstDeadline + TICK_NANOS));
+            assertTrue(service.getDriverById("second").isPresent());
+            assertEquals(1, evictor.getScheduledDrivers());
+            assertEquals(0, evictor.getEvictedDrivers());
+        }
+    }
+
+    @Test
+    void pingsResetTheTtlOfADriverRegisteredAgainIntoItsOldSlot() throws InterruptedException {
+        DriverService service = new DriverService();
+        DriverLocationStore store = service.getLocationStore();
+
+        try (StaleDriverEvictor evictor = new StaleDriverEvictor(service, TTL_MILLIS, TICK_MILLIS)) {
+            evictor.start();
+            Driver first = service.registerDriver(new Driver("driver", "Driver", 40.7580, -73.9855));
+            int slot = first.getSlot();
+            long firstDeadline = store.lastUpdateNanos(slot) + TTL_NANOS;
+            service.removeDriver("driver");
+
+            Thread.sleep(5);
+            Driver again = service.registerDriver(new Driver("driver", "Driver", 40.7580, -73.9855));
+            assertEquals(slot, again.getSlot());
+            long registered = store.lastUpdateNanos(slot);
+
+            Thread.sleep(5);
+            service.updateDriverLocation("driver", 40.7590, -73.9845);
+            long lastPing = store.lastUpdateNanos(slot);
+
+            // Neither the old registration's entry nor the new one's evicts the driver
+            // once the ping has moved its deadline
+            assertEquals(0, evictor.expire(firstDeadline + TICK_NANOS));
+            assertEquals(0, evictor.expire(registered + TTL_NANOS + TICK_NANOS));
+            assertTrue(service.getDriverById("driver").isPresent());
+            assertEquals(1, evictor.getScheduledDrivers());
+
+            assertEquals(1, evictor.expire(lastPing + TTL_NANOS + TICK_NANOS));
+            assertFalse(service.getDriverById("driver").isPresent());
+            assertEquals(0, evictor.getScheduledDrivers());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.rideshare.rideshare_backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeohashUtilTest {
+    private static final double EPSILON = 1e-9;
+
+    // {latitude, longitude, precision}, geohash; the first two are the published examples
+    private static final Object[][] KNOWN = {
+            {57.64911, 10.40744, 11, "u4pruydqqvj"},
+            {42.6, -5.6, 5, "ezs42"},
+            {40.7128, -74.0060, 9, "dr5regw3p"},    // New York
+            {51.5074, -0.1278, 9, "gcpvj0duq"},     // London
+            {35.6762, 139.6503, 9, "xn76cydhz"},    // Tokyo
+            {-33.8688, 151.2093, 9, "r3gx2f77b"}    // Sydney
+    };
+
+    @Test
+    void encodesKnownGeohashes() {
+        for (Object[] known : KNOWN) {
+            double latitude = (double) known[0];
+            double longitude = (double) known[1];
+            int precision = (int) known[2];
+            String expected = (String) known[3];
+
+            assertEquals(expected, GeohashUtil.encode(latitude, longitude, precision));
+            assertEquals(expected, GeohashUtil.toBase32(GeohashUtil.encodeLong(latitude, longitude, precision), precision));
+            assertEquals(GeohashUtil.encodeLong(latitude, longitude, precision), GeohashUtil.fromBase32(expected));
+        }
+    }
+
+    @Test
+    void encodingsRoundTrip() {
+        Random random = new Random(7);
+
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = (random.nextDouble() * 2 - 1) * 90.0;
+            double longitude = (random.nextDouble() * 2 - 1) * 180.0;
+            int precision = 1 + random.nextInt(GeohashUtil.MAX_LONG_PRECISION);
+
+            long bits = GeohashUtil.encodeLong(latitude, longitude, precision);
+            String hash = GeohashUtil.encode(latitude, longitude, precision);
+            assertEquals(hash, GeohashUtil.toBase32(bits, precision));
+            assertEquals(bits, GeohashUtil.fromBase32(hash));
+
+            // Both decoders give the cell center, which encodes back to the same cell
+            double[] center = GeohashUtil.decode(hash);
+            double[] longCenter = GeohashUtil.decode(bits, precision);
+            assertEquals(center[0], longCenter[0], EPSILON);
+            assertEquals(center[1], longCenter[1], EPSILON);
+            assertEquals(bits, GeohashUtil.encodeLong(center[0], center[1], precision));
+
+            // A prefix of the long form is the long form of the string prefix
+            int shorter = 1 + random.nextInt(precision);
+            assertEquals(hash.substring(0, shorter),
+                    GeohashUtil.toBase32(GeohashUtil.prefix(bits, precision, shorter), shorter));
+        }
+    }
+
+    @Test
+    void clampsBoundaryCoordinatesIntoEdgeCells() {
+        assertEquals("0", GeohashUtil.encode(-90.0, -180.0, 1));
+        assertEquals("b", GeohashUtil.encode(90.0, -180.0, 1));
+        assertEquals("p", GeohashUtil.encode(-90.0, 180.0, 1));
+        assertEquals("z", GeohashUtil.encode(90.0, 180.0, 1));
+        assertEquals("000000000000", GeohashUtil.encode(-90.0, -180.0, 12));
+        assertEquals("zzzzzzzzzzzz", GeohashUtil.encode(90.0, 180.0, 12));
+
+        // Out-of-range input lands in the nearest edge cell rather than wrapping
+        assertEquals(GeohashUtil.encode(90.0, 180.0, 6), GeohashUtil.encode(91.0, 181.0, 6));
+        assertEquals(GeohashUtil.encode(-90.0, -180.0, 6), GeohashUtil.encode(-91.0, -181.0, 6));
+    }
+
+    @Test
+    void exactMidpointsFallIntoTheUpperHalf() {
+        // Floor quantization: a point on a cell border belongs to the cell above or east of it
+        assertEquals("s", GeohashUtil.encode(0.0, 0.0, 1));
+        assertEquals("s00000000000", GeohashUtil.encode(0.0, 0.0, 12));
+        assertEquals("7", GeohashUtil.encode(-1e-9, -1e-9, 1));
+        assertEquals("e", GeohashUtil.encode(0.0, -1e-9, 1));
+        assertEquals("k", GeohashUtil.encode(-1e-9, 0.0, 1));
+
+        // Also on finer borders: 45 degrees latitude starts a new precision-1 row
+        assertEquals("u", GeohashUtil.encode(45.0, 0.0, 1));
+        assertEquals("s", GeohashUtil.encode(45.0 - 1e-9, 0.0, 1));
+    }
+
+    @Test
+    void decodedCellBoundsContainTheEncodedPoint() {
+        assertEquals(45.0, GeohashUtil.cellHeightDegrees(1), EPSILON);
+        assertEquals(45.0, GeohashUtil.cellWidthDegrees(1), EPSILON);
+        assertEquals(5.625, GeohashUtil.cellHeightDegrees(2), EPSILON);
+        assertEquals(11.25, GeohashUtil.cellWidthDegrees(2), EPSILON);
+        assertEquals(180.0 / (1 << 15), GeohashUtil.cellHeightDegrees(6), EPSILON);
+        assertEquals(360.0 / (1 << 15), GeohashUtil.cellWidthDegrees(6), EPSILON);
+
+        // "s" spans 0..45 N and 0..45 E
+        double[] center = GeohashUtil.decode("s");
+        assertEquals(22.5, center[0], EPSILON);
+        assertEquals(22.5, center[1], EPSILON);
+
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = (random.nextDouble() * 2 - 1) * 90.0;
+            double longitude = (random.nextDouble() * 2 - 1) * 180.0;
+            int precision = 1 + random.nextInt(GeohashUtil.MAX_LONG_PRECISION);
+
+            long bits = GeohashUtil.encodeLong(latitude, longitude, precision);
+            double halfHeight = GeohashUtil.cellHeightDegrees(precision) / 2;
+            double halfWidth = GeohashUtil.cellWidthDegrees(precision) / 2;
+            double south = GeohashUtil.decodeLatitude(bits, precision) - halfHeight;
+            double west = GeohashUtil.decodeLongitude(bits, precision) - halfWidth;
+
+            assertTrue(latitude >= south - EPSILON && latitude < south + 2 * halfHeight + EPSILON,
+                    latitude + " outside cell " + GeohashUtil.toBase32(bits, precision));
+            assertTrue(longitude >= west - EPSILON && longitude < west + 2 * halfWidth + EPSILON,
+                    longitude + " outside cell " + GeohashUtil.toBase32(bits, precision));
+        }
+    }
+
+    @Test
+    void eastNeighborWrapsAroundTheAntimeridian() {
+        int precision = GeohashUtil.DEFAULT_PRECISION;
+        long west = GeohashUtil.encodeLong(10.0, 179.99, precision);
+
+        long east = GeohashUtil.neighbor(west, precision, 0, 1);
+        assertEquals(GeohashUtil.encodeLong(10.0, -180.0, precision), east);
+        assertEquals(GeohashUtil.decodeLatitude(west, precision), GeohashUtil.decodeLatitude(east, precision), EPSILON);
+        assertEquals(-180.0 + GeohashUtil.cellWidthDegrees(precision) / 2,
+                GeohashUtil.decodeLongitude(east, precision), EPSILON);
+        assertEquals(west, GeohashUtil.neighbor(east, precision, 0, -1));
+
+        // The wrapped cell is one of the 8 neighbors, in the E position
+        assertEquals(east, GeohashUtil.getNeighbors(west, precision)[2]);
+        assertEquals(GeohashUtil.toBase32(east, precision),
+                GeohashUtil.getNeighbors(GeohashUtil.toBase32(west, precision))[2]);
+    }
+
+    @Test
+    void noNeighborsBeyondThePoles() {
+        // Cells 0.044 degrees tall, so 89.99 is on the top row
+        int precision = 5;
+        long top = GeohashUtil.encodeLong(89.99, 20.0, precision);
+
+        assertEquals(-1L, GeohashUtil.neighbor(top, precision, 1, 0));
+        long[] neighbors = GeohashUtil.getNeighbors(top, precision);
+        assertEquals(-1L, neighbors[0]);  // N
+        assertEquals(-1L, neighbors[1]);  // NE
+        assertEquals(-1L, neighbors[7]);  // NW
+        assertEquals(5, GeohashUtil.getNeighbors(GeohashUtil.toBase32(top, precision)).length);
+        assertEquals(6, GeohashUtil.getNeighborhood(top, precision).length);
+
+        long bottom = GeohashUtil.encodeLong(-89.99, 20.0, precision);
+        assertEquals(-1L, GeohashUtil.neighbor(bottom, precision, -1, 0));
+        assertEquals(6, GeohashUtil.getNeighborhood(bottom, precision).length);
+
+        // Off the top row the block is complete again
+        long below = GeohashUtil.neighbor(top, precision, -1, 0);
+        assertEquals(9, GeohashUtil.getNeighborhood(below, precision).length);
+    }
+
+    @Test
+    void neighborhoodIsTheCenterAndItsDistinctNeighbors() {
+        for (int precision = 1; precision <= GeohashUtil.MAX_LONG_PRECISION; precision++) {
+            long center = GeohashUtil.encodeLong(40.7128, -74.0060, precision);
+            long[] neighborhood = GeohashUtil.getNeighborhood(center, precision);
+
+            assertEquals(center, neighborhood[0]);
+            assertEquals(9, neighborhood.length);
+            assertEquals(9, distinct(neighborhood, neighborhood.length).size());
+            long[] ring = new long[8];
+            Set<Long> block = distinct(ring, GeohashUtil.getRing(center, precision, 1, ring));
+            block.add(center);
+            assertEquals(block, distinct(neighborhood, neighborhood.length), "precision " + precision);
+        }
+    }
+
+    @Test
+    void ringsHaveEightRCellsAndTileTheBlock() {
+        int precision = 5;
+        int maxRadius = 6;
+        long[] ring = new long[8 * maxRadius];
+
+        // Next to the antimeridian, so every ring wraps
+        for (double longitude : new double[]{-74.0060, 179.99}) {
+            long center = GeohashUtil.encodeLong(40.7128, longitude, precision);
+            long centerLat = GeohashUtil.latitudeIndex(center, precision);
+            long centerLon = GeohashUtil.longitudeIndex(center, precision);
+            long lonCells = 1L << GeohashUtil.longitudeBits(precision);
+            Set<Long> seen = new HashSet<>();
+
+            for (int radius = 0; radius <= maxRadius; radius++) {
+                int count = GeohashUtil.getRing(center, precision, radius, ring);
+                assertEquals(radius == 0 ? 1 : 8 * radius, count, "radius " + radius);
+                assertEquals(count, distinct(ring, count).size(), "duplicate cell in ring " + radius);
+
+                for (int i = 0; i < count; i++) {
+                    assertTrue(seen.add(ring[i]), "ring " + radius + " overlaps an inner ring");
+
+                    long dLat = Math.abs(GeohashUtil.latitudeIndex(ring[i], precision) - centerLat);
+                    long dLon = Math.floorMod(GeohashUtil.longitudeIndex(ring[i], precision) - centerLon, lonCells);
+                    dLon = Math.min(dLon, lonCells - dLon);
+                    assertEquals(radius, (int) Math.max(dLat, dLon), "cell not on ring " + radius);
+                }
+                assertEquals((2 * radius + 1) * (2 * radius + 1), seen.size());
+            }
+        }
+    }
+
+    @Test
+    void ringsSkipRowsBeyondAPole() {
+        int precision = 5;
+        long top = GeohashUtil.encodeLong(89.99, 20.0, precision);
+        long[] ring = new long[16];
+
+        // Only the bottom row and the two lower cells of each side remain
+        assertEquals(5, GeohashUtil.getRing(top, precision, 1, ring));
+        int count = GeohashUtil.getRing(top, precision, 2, ring);
+        assertEquals(9, count);
+        assertEquals(count, distinct(ring, count).size());
+        assertFalse(distinct(ring, count).contains(top));
+    }
+
+    private static Set<Long> distinct(long[] cells, int count) {
+        Set<Long> set = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            set.add(cells[i]);
+        }
+        return set;
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtil.encodeLong(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtil.encodeLong(0, 0, 13));
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtil.fromBase32("dr5a"));
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtil.decode("dr5i"));
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtil.prefix(0, 4, 5));
+    }
+}
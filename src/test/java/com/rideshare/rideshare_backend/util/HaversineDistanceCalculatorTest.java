@@ -0,0 +1,98 @@
+package com.rideshare.rideshare_backend.util;
+
+import com.rideshare.rideshare_backend.model.Driver;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HaversineDistanceCalculatorTest {
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void approximationStaysWithinErrorBound() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            double latitude = (random.nextDouble() * 2 - 1) * 78.0;
+            double longitude = (random.nextDouble() * 2 - 1) * 180.0;
+            double cosLatitude = Math.cos(Math.toRadians(latitude));
+
+            // Separations up to ~2 degrees, wrapping across the antimeridian
+            double deltaLatitude = (random.nextDouble() * 2 - 1) * 2.0 * random.nextDouble();
+            double latitude2 = latitude + deltaLatitude;
+            double longitude2 = longitude + (random.nextDouble() * 2 - 1) * 2.0 * random.nextDouble();
+            if (longitude2 > 180.0) {
+                longitude2 -= 360.0;
+            } else if (longitude2 < -180.0) {
+                longitude2 += 360.0;
+            }
+
+            double exact = HaversineDistanceCalculator.calculateDistance(latitude, longitude, latitude2, longitude2);
+            double approximate = HaversineDistanceCalculator.approximateDistance(
+                    latitude, longitude, cosLatitude, latitude2, longitude2);
+            double bound = HaversineDistanceCalculator.approximationErrorBound(
+                    latitude, Math.abs(deltaLatitude), approximate);
+
+            if (Double.isInfinite(bound)) {
+                continue;
+            }
+
+            assertTrue(approximate <= exact * (1 + bound) + 1e-9,
+                    "over bound at " + latitude + "," + longitude + " -> " + latitude2 + "," + longitude2);
+            assertTrue(approximate >= exact * (1 - bound) - 1e-9,
+                    "under bound at " + latitude + "," + longitude + " -> " + latitude2 + "," + longitude2);
+        }
+    }
+
+    @Test
+    void errorBoundIsSmallForCitySearchesAndDisabledNearPoles() {
+        // 50 km around mid-latitude cities: well under 1%
+        assertTrue(HaversineDistanceCalculator.approximationErrorBound(40.7, 0.45, 50.0) < 0.01);
+        assertTrue(HaversineDistanceCalculator.approximationErrorBound(-33.9, 0.45, 50.0) < 0.01);
+
+        assertTrue(Double.isInfinite(HaversineDistanceCalculator.approximationErrorBound(79.5, 1.0, 50.0)));
+        assertTrue(Double.isInfinite(HaversineDistanceCalculator.approximationErrorBound(40.7, 0.45, 1000.0)));
+    }
+
+    @Test
+    void batchDistancesMatchSingleDistances() {
+        Random random = new Random(7);
+        int count = 1003;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        double[] distances = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 40.7 + (random.nextDouble() - 0.5);
+            longitudes[i] = -74.0 + (random.nextDouble() - 0.5);
+        }
+
+        HaversineDistanceCalculator.calculateDistances(40.7, -74.0, latitudes, longitudes, count, distances);
+
+        for (int i = 0; i < count; i++) {
+            double expected = HaversineDistanceCalculator.calculateDistance(40.7, -74.0, latitudes[i], longitudes[i]);
+            assertEquals(expected, distances[i], 1e-9);
+        }
+    }
+
+    @Test
+    void precomputedTermsMatchPlainDistance() {
+        Random random = new Random(11);
+
+        for (int i = 0; i < 10_000; i++) {
+            Driver pickup = new Driver("p", "p", (random.nextDouble() * 2 - 1) * 85, (random.nextDouble() * 2 - 1) * 180);
+            Driver driver = new Driver("d", "d", (random.nextDouble() * 2 - 1) * 85, (random.nextDouble() * 2 - 1) * 180);
+
+            double expected = HaversineDistanceCalculator.calculateDistance(
+                    pickup.getLatitude(), pickup.getLongitude(), driver.getLatitude(), driver.getLongitude());
+            double actual = HaversineDistanceCalculator.calculateDistance(
+                    pickup.getLatitudeRadians(), pickup.getLongitudeRadians(), pickup.getCosLatitude(),
+                    driver.getLatitudeRadians(), driver.getLongitudeRadians(), driver.getCosLatitude());
+
+            assertEquals(expected, actual, 1e-9);
+        }
+    }
+}